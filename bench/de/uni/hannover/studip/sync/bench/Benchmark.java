@@ -0,0 +1,82 @@
+package de.uni.hannover.studip.sync.bench;
+
+/**
+ * Benchmark definition.
+ *
+ * @author Lennart Glauer
+ */
+public abstract class Benchmark {
+
+	/**
+	 * Benchmark operation.
+	 */
+	public interface Operation {
+		/**
+		 * Untimed preparation before each invocation (e.g. reset mutated state).
+		 *
+		 * @throws Exception
+		 */
+		default void prepare() throws Exception {
+			// Nothing to prepare.
+		}
+
+		/**
+		 * Timed invocation.
+		 *
+		 * @return Result which is consumed to prevent dead code elimination
+		 * @throws Exception
+		 */
+		Object run() throws Exception;
+	}
+
+	/**
+	 * Benchmark name.
+	 */
+	private final String name;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param name Benchmark name
+	 */
+	protected Benchmark(final String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Get benchmark name.
+	 *
+	 * @return Name
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Untimed setup for the given problem size.
+	 *
+	 * @param size Number of documents
+	 * @return Operation
+	 * @throws Exception
+	 */
+	public abstract Operation setup(int size) throws Exception;
+
+	/**
+	 * Bytes processed by one invocation, used to report the throughput.
+	 *
+	 * @param size Number of documents
+	 * @return Bytes per invocation or 0 if not applicable
+	 */
+	public long getBytes(final int size) {
+		return 0;
+	}
+
+	/**
+	 * Release resources after all iterations.
+	 *
+	 * @throws Exception
+	 */
+	public void tearDown() throws Exception {
+		// Nothing to release.
+	}
+}
@@ -0,0 +1,284 @@
+package de.uni.hannover.studip.sync.bench;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Minimal benchmark harness.
+ *
+ * Each benchmark is set up once per problem size, then runs a number of warmup and
+ * measurement iterations. An iteration repeats the operation until the iteration time
+ * is reached (at least once) and records the average time per operation.
+ *
+ * Usage: BenchmarkRunner [-sizes 1000,10000,100000] [-warmup 3] [-iterations 5] [-time 1000]
+ *                        [-save results.csv] [-baseline results.csv] [-threshold 1.25] [-verbose] [filter]
+ *
+ * With -baseline the results are compared with a previous run, the exit code is 1
+ * if any benchmark is slower than the baseline by more than the threshold factor.
+ *
+ * @author Lennart Glauer
+ */
+public final class BenchmarkRunner {
+
+	/**
+	 * Result sink to prevent dead code elimination.
+	 */
+	public static volatile int sink;
+
+	private int[] sizes = {1000, 10000, 100000};
+	private int warmupIterations = 3;
+	private int measurementIterations = 5;
+	private long iterationNanos = 1000L * 1000 * 1000;
+	private double threshold = 1.25;
+	private String filter;
+	private Path saveFile;
+	private Path baselineFile;
+	private boolean verbose;
+
+	private BenchmarkRunner() {
+		// Use main.
+	}
+
+	public static void main(final String[] args) throws Exception {
+		final BenchmarkRunner runner = new BenchmarkRunner();
+		runner.parseArgs(args);
+
+		/* Never touch the user config, the settings and tree are created in a temporary home directory. */
+		final Path workDirectory = Files.createTempDirectory("studip-sync-bench");
+		System.setProperty("user.home", workDirectory.toString());
+
+		/* Logging (e.g. resolved name conflicts) would dominate some measurements. */
+		Logger.getLogger(Logger.GLOBAL_LOGGER_NAME).setLevel(runner.verbose ? Level.ALL : Level.SEVERE);
+
+		boolean regression;
+		try {
+			regression = runner.run(Benchmarks.all(workDirectory));
+		} finally {
+			deleteRecursive(workDirectory);
+		}
+
+		System.exit(regression ? 1 : 0);
+	}
+
+	private void parseArgs(final String[] args) {
+		for (int i = 0; i < args.length; i++) {
+			switch (args[i]) {
+			case "-sizes":
+				final String[] values = args[++i].split(",");
+				sizes = new int[values.length];
+				for (int j = 0; j < values.length; j++) {
+					sizes[j] = Integer.parseInt(values[j].trim());
+				}
+				break;
+			case "-warmup":
+				warmupIterations = Integer.parseInt(args[++i]);
+				break;
+			case "-iterations":
+				measurementIterations = Math.max(1, Integer.parseInt(args[++i]));
+				break;
+			case "-time":
+				iterationNanos = Long.parseLong(args[++i]) * 1000L * 1000;
+				break;
+			case "-save":
+				saveFile = Paths.get(args[++i]);
+				break;
+			case "-baseline":
+				baselineFile = Paths.get(args[++i]);
+				break;
+			case "-verbose":
+				verbose = true;
+				break;
+			case "-threshold":
+				threshold = Double.parseDouble(args[++i]);
+				break;
+			default:
+				filter = args[i];
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Run all matching benchmarks.
+	 *
+	 * @return True if a regression was detected
+	 * @throws Exception
+	 */
+	private boolean run(final List<Benchmark> benchmarks) throws Exception {
+		final Map<String, Double> baseline = baselineFile == null ? null : readResults(baselineFile);
+		final Map<String, Double> results = new LinkedHashMap<String, Double>();
+		boolean regression = false;
+
+		System.out.println(String.format(Locale.ROOT, "%-22s %8s %12s %10s %12s %10s %10s",
+				"Benchmark", "Size", "ms/op", "+/- ms", "ops/s", "MB/s", "Baseline"));
+
+		for (final Benchmark benchmark : benchmarks) {
+			if (filter != null && !benchmark.getName().contains(filter)) {
+				continue;
+			}
+
+			for (final int size : sizes) {
+				final double[] scores = measure(benchmark, size);
+				final double mean = mean(scores);
+				final double error = stddev(scores, mean);
+				final long bytes = benchmark.getBytes(size);
+				final String key = benchmark.getName() + ':' + size;
+				results.put(key, mean);
+
+				String compare = "";
+				if (baseline != null && baseline.containsKey(key)) {
+					final double factor = mean / baseline.get(key);
+					compare = String.format(Locale.ROOT, "%.2fx", factor);
+					if (factor > threshold) {
+						compare += " !";
+						regression = true;
+					}
+				}
+
+				System.out.println(String.format(Locale.ROOT, "%-22s %8d %12.3f %10.3f %12.1f %10s %10s",
+						benchmark.getName(), size, mean / 1e6, error / 1e6, 1e9 / mean,
+						bytes > 0 ? String.format(Locale.ROOT, "%.1f", bytes / (mean / 1e9) / (1024 * 1024)) : "-",
+						compare));
+			}
+		}
+
+		if (saveFile != null) {
+			writeResults(saveFile, results);
+		}
+
+		if (regression) {
+			System.out.println(String.format(Locale.ROOT, "Regression: at least one benchmark is more than %.2fx slower than the baseline.", threshold));
+		}
+
+		return regression;
+	}
+
+	/**
+	 * Run warmup and measurement iterations.
+	 *
+	 * @return Average nanoseconds per operation of each measurement iteration
+	 */
+	private double[] measure(final Benchmark benchmark, final int size) throws Exception {
+		final Benchmark.Operation operation = benchmark.setup(size);
+		final double[] scores = new double[measurementIterations];
+
+		try {
+			for (int i = 0; i < warmupIterations; i++) {
+				iteration(operation);
+			}
+
+			for (int i = 0; i < measurementIterations; i++) {
+				scores[i] = iteration(operation);
+			}
+
+		} finally {
+			benchmark.tearDown();
+		}
+
+		return scores;
+	}
+
+	/**
+	 * Run one iteration.
+	 *
+	 * @return Average nanoseconds per operation
+	 */
+	private double iteration(final Benchmark.Operation operation) throws Exception {
+		long elapsed = 0;
+		long operations = 0;
+
+		do {
+			operation.prepare();
+
+			final long start = System.nanoTime();
+			final Object result = operation.run();
+			elapsed += System.nanoTime() - start;
+			operations++;
+
+			sink += result == null ? 0 : result.hashCode();
+		} while (elapsed < iterationNanos);
+
+		return (double) elapsed / operations;
+	}
+
+	private static double mean(final double[] values) {
+		double sum = 0;
+		for (final double value : values) {
+			sum += value;
+		}
+
+		return sum / values.length;
+	}
+
+	private static double stddev(final double[] values, final double mean) {
+		if (values.length < 2) {
+			return 0;
+		}
+
+		double sum = 0;
+		for (final double value : values) {
+			sum += (value - mean) * (value - mean);
+		}
+
+		return Math.sqrt(sum / (values.length - 1));
+	}
+
+	/**
+	 * Read results csv (benchmark:size,ns/op).
+	 */
+	private static Map<String, Double> readResults(final Path file) throws IOException {
+		final Map<String, Double> results = new LinkedHashMap<String, Double>();
+		for (final String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+			final int comma = line.lastIndexOf(',');
+			if (comma > 0) {
+				results.put(line.substring(0, comma), Double.parseDouble(line.substring(comma + 1)));
+			}
+		}
+
+		return results;
+	}
+
+	/**
+	 * Write results csv (benchmark:size,ns/op).
+	 */
+	private static void writeResults(final Path file, final Map<String, Double> results) throws IOException {
+		final List<String> lines = new ArrayList<String>(results.size());
+		for (final Map.Entry<String, Double> entry : results.entrySet()) {
+			lines.add(entry.getKey() + ',' + String.format(Locale.ROOT, "%.1f", entry.getValue()));
+		}
+
+		Files.write(file, lines, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Delete temporary files.
+	 */
+	static void deleteRecursive(final Path directory) throws IOException {
+		Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) throws IOException {
+				Files.delete(file);
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult postVisitDirectory(final Path dir, final IOException e) throws IOException {
+				Files.delete(dir);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+}
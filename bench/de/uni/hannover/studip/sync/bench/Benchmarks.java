@@ -0,0 +1,526 @@
+package de.uni.hannover.studip.sync.bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import de.elanev.studip.android.app.backend.datamodel.DocumentFolders;
+import de.uni.hannover.studip.sync.datamodel.CourseTreeNode;
+import de.uni.hannover.studip.sync.datamodel.DocumentFolderTreeNode;
+import de.uni.hannover.studip.sync.datamodel.DocumentTreeNode;
+import de.uni.hannover.studip.sync.datamodel.RecentDocument;
+import de.uni.hannover.studip.sync.datamodel.SemesterTreeNode;
+import de.uni.hannover.studip.sync.datamodel.SemestersTreeNode;
+import de.uni.hannover.studip.sync.models.Config;
+import de.uni.hannover.studip.sync.models.CourseIndex;
+import de.uni.hannover.studip.sync.models.DocumentFolderReader;
+import de.uni.hannover.studip.sync.models.JacksonRequest;
+import de.uni.hannover.studip.sync.models.LectureIndex;
+import de.uni.hannover.studip.sync.models.PathBuilder;
+import de.uni.hannover.studip.sync.models.RecentIndex;
+import de.uni.hannover.studip.sync.models.SearchIndex;
+import de.uni.hannover.studip.sync.models.TreeBuilder;
+import de.uni.hannover.studip.sync.models.TreeConflict;
+import de.uni.hannover.studip.sync.models.TreeIndex;
+import de.uni.hannover.studip.sync.utils.FileBrowser;
+import de.uni.hannover.studip.sync.utils.FileDownload;
+
+/**
+ * Sync hot path benchmarks.
+ *
+ * @author Lennart Glauer
+ */
+public final class Benchmarks {
+
+	private static final long SEED = 42;
+
+	/**
+	 * Documents replaced per course by the incremental update benchmark.
+	 */
+	private static final int UPDATES_PER_COURSE = 10;
+
+	/**
+	 * Download size per document.
+	 */
+	private static final int DOWNLOAD_BYTES_PER_DOCUMENT = 1024;
+
+	/**
+	 * Rows of the first new documents page.
+	 */
+	private static final int PAGE_SIZE = 200;
+
+	private Benchmarks() {
+		// Utility class.
+	}
+
+	/**
+	 * Get all benchmarks.
+	 *
+	 * @param workDirectory Directory for temporary files
+	 * @return Benchmark list
+	 */
+	public static List<Benchmark> all(final Path workDirectory) {
+		return Arrays.asList(
+				treeSave(workDirectory),
+				treeLoad(workDirectory),
+				sanitizeFileNames(),
+				pathTemplate(),
+				pathUpdate(),
+				resolveNameConflicts(),
+				treeIndex(),
+				courseIndexUpdate(),
+				parseFolderListing(),
+				streamFolderListing(),
+				newDocumentsTree(workDirectory),
+				newDocumentsIndex(workDirectory),
+				searchBuild(),
+				searchQuery(),
+				download(workDirectory));
+	}
+
+	/**
+	 * Serialize tree to json (TreeBuilder.writeTree).
+	 */
+	private static Benchmark treeSave(final Path workDirectory) {
+		return new Benchmark("tree.save") {
+			private long bytes;
+
+			@Override
+			public Operation setup(final int size) throws Exception {
+				final SemestersTreeNode rootNode = SyntheticTree.generate(size, SEED);
+				final Path tree = workDirectory.resolve("save.json");
+				TreeBuilder.writeTree(tree, rootNode);
+				bytes = Files.size(tree);
+
+				return () -> {
+					TreeBuilder.writeTree(tree, rootNode);
+					return tree;
+				};
+			}
+
+			@Override
+			public long getBytes(final int size) {
+				return bytes;
+			}
+		};
+	}
+
+	/**
+	 * Read tree from json (TreeBuilder.readTree).
+	 */
+	private static Benchmark treeLoad(final Path workDirectory) {
+		return new Benchmark("tree.load") {
+			private long bytes;
+
+			@Override
+			public Operation setup(final int size) throws Exception {
+				final Path tree = workDirectory.resolve("load.json");
+				TreeBuilder.writeTree(tree, SyntheticTree.generate(size, SEED));
+				bytes = Files.size(tree);
+
+				return () -> TreeBuilder.readTree(tree);
+			}
+
+			@Override
+			public long getBytes(final int size) {
+				return bytes;
+			}
+		};
+	}
+
+	/**
+	 * Sanitize all document filenames (FileBrowser.removeIllegalCharacters).
+	 */
+	private static Benchmark sanitizeFileNames() {
+		return new Benchmark("filename.sanitize") {
+			@Override
+			public Operation setup(final int size) throws Exception {
+				final List<String> fileNames = new ArrayList<String>(size);
+				collectFileNames(SyntheticTree.generate(size, SEED), fileNames);
+				final int replaceWhitespaces = Config.getInstance().getReplaceWhitespaces();
+
+				return () -> {
+					int hash = 0;
+					for (final String fileName : fileNames) {
+						hash += FileBrowser.removeIllegalCharacters(fileName, replaceWhitespaces).hashCode();
+					}
+					return hash;
+				};
+			}
+		};
+	}
+
+	/**
+	 * Resolve the course path template of all courses (PathBuilder.toString).
+	 */
+	private static Benchmark pathTemplate() {
+		return new Benchmark("path.template") {
+			@Override
+			public Operation setup(final int size) throws Exception {
+				final SemestersTreeNode rootNode = SyntheticTree.generate(size, SEED);
+
+				return () -> {
+					int hash = 0;
+					for (final SemesterTreeNode semester : rootNode.semesters) {
+						final LectureIndex lectures = new LectureIndex(semester);
+						for (final CourseTreeNode course : semester.courses) {
+							hash += PathBuilder.toString(":semester/:lecture/:type", semester, course, lectures).hashCode();
+						}
+					}
+					return hash;
+				};
+			}
+		};
+	}
+
+	/**
+	 * Resolve the cached paths of all nodes (PathBuilder.updatePaths).
+	 */
+	private static Benchmark pathUpdate() {
+		return new Benchmark("path.update") {
+			@Override
+			public Operation setup(final int size) throws Exception {
+				final SemestersTreeNode rootNode = SyntheticTree.generate(size, SEED);
+
+				return new Operation() {
+					@Override
+					public void prepare() {
+						/* Invalidate the cached paths. */
+						rootNode.folderStructure = null;
+					}
+
+					@Override
+					public Object run() {
+						return PathBuilder.updatePaths(rootNode);
+					}
+				};
+			}
+		};
+	}
+
+	/**
+	 * Resolve folder/file name conflicts of all courses (TreeConflict.resolveNameConflicts).
+	 */
+	private static Benchmark resolveNameConflicts() {
+		return new Benchmark("conflict.resolve") {
+			@Override
+			public Operation setup(final int size) throws Exception {
+				return new Operation() {
+					private SemestersTreeNode rootNode;
+
+					@Override
+					public void prepare() {
+						/* Conflicts are resolved in place, start with a fresh tree. */
+						rootNode = SyntheticTree.generate(size, SEED);
+					}
+
+					@Override
+					public Object run() {
+						for (final SemesterTreeNode semester : rootNode.semesters) {
+							for (final CourseTreeNode course : semester.courses) {
+								TreeConflict.resolveNameConflicts(course.root);
+							}
+						}
+						return rootNode;
+					}
+				};
+			}
+		};
+	}
+
+	/**
+	 * Build the tree-wide document/folder index (TreeIndex).
+	 */
+	private static Benchmark treeIndex() {
+		return new Benchmark("index.tree") {
+			@Override
+			public Operation setup(final int size) throws Exception {
+				final SemestersTreeNode rootNode = SyntheticTree.generate(size, SEED);
+
+				return () -> new TreeIndex(rootNode).getDocumentCount();
+			}
+		};
+	}
+
+	/**
+	 * Incremental course update like UpdateDocumentsJob (CourseIndex build, replace documents, commit).
+	 */
+	private static Benchmark courseIndexUpdate() {
+		return new Benchmark("index.course.update") {
+			@Override
+			public Operation setup(final int size) throws Exception {
+				final SemestersTreeNode rootNode = SyntheticTree.generate(size, SEED);
+				for (final SemesterTreeNode semester : rootNode.semesters) {
+					for (final CourseTreeNode course : semester.courses) {
+						TreeConflict.resolveNameConflicts(course.root);
+					}
+				}
+				PathBuilder.updatePaths(rootNode);
+				final TreeIndex treeIndex = new TreeIndex(rootNode);
+
+				return () -> {
+					int updated = 0;
+					for (final SemesterTreeNode semester : rootNode.semesters) {
+						for (final CourseTreeNode course : semester.courses) {
+							final CourseIndex index = new CourseIndex(treeIndex, course.root);
+							final List<DocumentTreeNode> documents = new ArrayList<DocumentTreeNode>(UPDATES_PER_COURSE);
+							collectDocuments(course.root, documents, UPDATES_PER_COURSE);
+
+							/* Replace the documents with an updated copy (remove + add). */
+							for (final DocumentTreeNode document : documents) {
+								final DocumentFolderTreeNode folder = treeIndex.getDocumentParent(document.documentId);
+								index.removeDocument(document.documentId);
+								index.addDocument(folder, copy(document));
+								updated++;
+							}
+
+							index.commit();
+						}
+					}
+					return updated;
+				};
+			}
+		};
+	}
+
+	/**
+	 * Parse a large folder listing (JacksonRequest.parse).
+	 */
+	private static Benchmark parseFolderListing() {
+		return new Benchmark("json.parse.folders") {
+			private byte[] payload;
+
+			@Override
+			public Operation setup(final int size) throws Exception {
+				final DocumentFolders listing = SyntheticTree.generateListing(size, SEED);
+				payload = Config.getMapper().writeValueAsBytes(listing);
+
+				return () -> JacksonRequest.parse(new ByteArrayInputStream(payload), DocumentFolders.class);
+			}
+
+			@Override
+			public long getBytes(final int size) {
+				return payload.length;
+			}
+		};
+	}
+
+	/**
+	 * Stream a large folder listing into tree-nodes (DocumentFolderReader).
+	 */
+	private static Benchmark streamFolderListing() {
+		return new Benchmark("json.stream.folders") {
+			private byte[] payload;
+
+			@Override
+			public Operation setup(final int size) throws Exception {
+				final DocumentFolders listing = SyntheticTree.generateListing(size, SEED);
+				payload = Config.getMapper().writeValueAsBytes(listing);
+
+				return () -> {
+					final List<DocumentFolderTreeNode> folders = new ArrayList<DocumentFolderTreeNode>();
+					final List<DocumentTreeNode> documents = new ArrayList<DocumentTreeNode>();
+					JacksonRequest.stream(new ByteArrayInputStream(payload), DocumentFolders.class,
+							parser -> DocumentFolderReader.read(parser, new DocumentFolderReader.Listener() {
+								@Override
+								public void folder(final DocumentFolderTreeNode folder) {
+									folders.add(folder);
+								}
+
+								@Override
+								public void document(final DocumentTreeNode document) {
+									documents.add(document);
+								}
+							}));
+					return folders.size() + documents.size();
+				};
+			}
+
+			@Override
+			public long getBytes(final int size) {
+				return payload.length;
+			}
+		};
+	}
+
+	/**
+	 * New documents view without index (read tree, collect and sort all documents by chdate).
+	 */
+	private static Benchmark newDocumentsTree(final Path workDirectory) {
+		return new Benchmark("newdocs.tree") {
+			@Override
+			public Operation setup(final int size) throws Exception {
+				final Path tree = writePathTree(workDirectory.resolve("newdocs-tree.json"), size);
+
+				return () -> {
+					final SemestersTreeNode rootNode = TreeBuilder.readTree(tree);
+					PathBuilder.updatePaths(rootNode);
+
+					final List<DocumentTreeNode> documents = new ArrayList<DocumentTreeNode>();
+					for (final SemesterTreeNode semester : rootNode.semesters) {
+						for (final CourseTreeNode course : semester.courses) {
+							collectDocuments(course.root, documents, Integer.MAX_VALUE);
+						}
+					}
+					documents.sort((a, b) -> Long.compare(b.chDate, a.chDate));
+
+					return documents.subList(0, Math.min(PAGE_SIZE, documents.size()));
+				};
+			}
+		};
+	}
+
+	/**
+	 * New documents view with the recency index (RecentIndex.read, first page).
+	 */
+	private static Benchmark newDocumentsIndex(final Path workDirectory) {
+		return new Benchmark("newdocs.index") {
+			@Override
+			public Operation setup(final int size) throws Exception {
+				final Path tree = writePathTree(workDirectory.resolve("newdocs-index.json"), size);
+
+				return () -> {
+					final List<RecentDocument> documents = RecentIndex.read(tree).documents;
+					return documents.subList(0, Math.min(PAGE_SIZE, documents.size()));
+				};
+			}
+		};
+	}
+
+	/**
+	 * Build the search index of a tree (SearchIndex.build, without extracted text).
+	 */
+	private static Benchmark searchBuild() {
+		return new Benchmark("search.build") {
+			@Override
+			public Operation setup(final int size) throws Exception {
+				final SemestersTreeNode rootNode = SyntheticTree.generate(size, SEED);
+				PathBuilder.updatePaths(rootNode);
+
+				return () -> SearchIndex.build(rootNode, Collections.<String, String>emptyMap()).getTermCount();
+			}
+		};
+	}
+
+	/**
+	 * Two term prefix query (SearchIndex.search, first page).
+	 */
+	private static Benchmark searchQuery() {
+		return new Benchmark("search.query") {
+			@Override
+			public Operation setup(final int size) throws Exception {
+				final SemestersTreeNode rootNode = SyntheticTree.generate(size, SEED);
+				PathBuilder.updatePaths(rootNode);
+				final SearchIndex index = SearchIndex.build(rootNode, Collections.<String, String>emptyMap());
+
+				return () -> index.search("skript 1", PAGE_SIZE);
+			}
+		};
+	}
+
+	/**
+	 * Write a synthetic tree with resolved paths (and recency index).
+	 */
+	private static Path writePathTree(final Path tree, final int size) throws Exception {
+		final SemestersTreeNode rootNode = SyntheticTree.generate(size, SEED);
+		PathBuilder.updatePaths(rootNode);
+		TreeBuilder.writeTree(tree, rootNode);
+
+		return tree;
+	}
+
+	/**
+	 * Write a response stream to disk (FileDownload.get).
+	 */
+	private static Benchmark download(final Path workDirectory) {
+		return new Benchmark("download") {
+			@Override
+			public Operation setup(final int size) throws Exception {
+				final Path file = workDirectory.resolve("download.bin");
+				final long length = getBytes(size);
+
+				return () -> FileDownload.get(new SyntheticStream(length), file);
+			}
+
+			@Override
+			public long getBytes(final int size) {
+				return (long) size * DOWNLOAD_BYTES_PER_DOCUMENT;
+			}
+		};
+	}
+
+	private static void collectFileNames(final SemestersTreeNode rootNode, final List<String> fileNames) {
+		for (final SemesterTreeNode semester : rootNode.semesters) {
+			for (final CourseTreeNode course : semester.courses) {
+				final List<DocumentTreeNode> documents = new ArrayList<DocumentTreeNode>();
+				collectDocuments(course.root, documents, Integer.MAX_VALUE);
+				for (final DocumentTreeNode document : documents) {
+					fileNames.add(document.fileName);
+				}
+			}
+		}
+	}
+
+	private static void collectDocuments(final DocumentFolderTreeNode folder, final List<DocumentTreeNode> documents, final int limit) {
+		for (final DocumentTreeNode document : folder.documents) {
+			if (documents.size() >= limit) {
+				return;
+			}
+			documents.add(document);
+		}
+
+		for (final DocumentFolderTreeNode child : folder.folders) {
+			collectDocuments(child, documents, limit);
+		}
+	}
+
+	private static DocumentTreeNode copy(final DocumentTreeNode document) {
+		final DocumentTreeNode copy = new DocumentTreeNode();
+		copy.documentId = document.documentId;
+		copy.userId = document.userId;
+		copy.name = document.name;
+		copy.description = document.description;
+		copy.mkDate = document.mkDate;
+		copy.chDate = document.chDate;
+		copy.fileName = document.fileName;
+		copy.fileSize = document.fileSize;
+
+		return copy;
+	}
+
+	/**
+	 * Input stream of the given length, without copying from a backing array.
+	 */
+	private static final class SyntheticStream extends InputStream {
+		private long remaining;
+
+		SyntheticStream(final long length) {
+			remaining = length;
+		}
+
+		@Override
+		public int read() {
+			if (remaining <= 0) {
+				return -1;
+			}
+			remaining--;
+			return 'x';
+		}
+
+		@Override
+		public int read(final byte[] buffer, final int offset, final int length) {
+			if (remaining <= 0) {
+				return -1;
+			}
+
+			final int count = (int) Math.min(length, remaining);
+			remaining -= count;
+			return count;
+		}
+	}
+}
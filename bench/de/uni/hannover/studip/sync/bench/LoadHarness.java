@@ -0,0 +1,283 @@
+package de.uni.hannover.studip.sync.bench;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.scribe.model.Token;
+
+import de.elanev.studip.android.app.backend.datamodel.User;
+import de.uni.hannover.studip.sync.AppState;
+import de.uni.hannover.studip.sync.datamodel.CourseTreeNode;
+import de.uni.hannover.studip.sync.datamodel.DocumentFolderTreeNode;
+import de.uni.hannover.studip.sync.datamodel.DocumentTreeNode;
+import de.uni.hannover.studip.sync.datamodel.SemesterTreeNode;
+import de.uni.hannover.studip.sync.datamodel.SemestersTreeNode;
+import de.uni.hannover.studip.sync.models.Config;
+import de.uni.hannover.studip.sync.models.OAuth;
+import de.uni.hannover.studip.sync.models.TreeBuilder;
+import de.uni.hannover.studip.sync.models.TreeSync;
+import de.uni.hannover.studip.sync.oauth.StudIPApiProvider;
+
+/**
+ * End-to-end load harness.
+ *
+ * Starts a StandInServer with a synthetic dataset and runs build, update and sync
+ * against it in a temporary home directory (config, tree and sync root).
+ *
+ * Usage: LoadHarness [-documents 10000] [-fileSize 16384] [-latency 0] [-bandwidth 0]
+ *                    [-errors 0.0] [-errorCode 503] [-touch 0.01] [-threads 16] [-verbose] [-keep]
+ *
+ * Bandwidth is given in KiB/s per response, latency in milliseconds per request.
+ * Unexpected status codes (e.g. 503) abort the sync engine like in the app, the harness stops at the aborted phase.
+ * The temporary home directory is deleted afterwards, unless -keep is given.
+ *
+ * @author Lennart Glauer
+ */
+public final class LoadHarness {
+
+	private static final long SEED = 42;
+
+	private int documents = 10000;
+	private int fileSize = 16 * 1024;
+	private int latency;
+	private long bandwidth;
+	private double errorRate;
+	private int errorCode = 503;
+	private double touch = 0.01;
+	private int threads = 16;
+	private boolean verbose;
+	private boolean keep;
+
+	private StandInServer server;
+	private long requests;
+	private long bytes;
+	private long errors;
+
+	private LoadHarness() {
+		// Use main.
+	}
+
+	public static void main(final String[] args) throws Exception {
+		final LoadHarness harness = new LoadHarness();
+		harness.parseArgs(args);
+
+		final Path home = Files.createTempDirectory("studip-sync-load");
+		final Path rootDirectory = Files.createDirectory(home.resolve("sync"));
+
+		/* Must be set before the config and oauth singletons are initialized. */
+		System.setProperty("user.home", home.toString());
+		System.setProperty("studip.apiKey", "bench");
+		System.setProperty("studip.apiSecret", "bench");
+
+		Logger.getLogger(Logger.GLOBAL_LOGGER_NAME).setLevel(harness.verbose ? Level.ALL : Level.WARNING);
+
+		/* Uncaught job exceptions (e.g. IllegalStateException on an injected status code) abort the phase like in Headless. */
+		Thread.setDefaultUncaughtExceptionHandler((thread, throwable) -> {
+			if (harness.verbose) {
+				throwable.printStackTrace();
+			} else {
+				System.out.println("Job failed: " + throwable);
+			}
+
+			// Signal worker threads to terminate gracefully.
+			AppState.exitPending = true;
+		});
+
+		try {
+			harness.run(rootDirectory);
+		} finally {
+			if (harness.server != null) {
+				harness.server.close();
+			}
+
+			if (harness.keep) {
+				System.out.println("Temporary files: " + home);
+			} else {
+				BenchmarkRunner.deleteRecursive(home);
+			}
+		}
+
+		System.exit(0);
+	}
+
+	private void parseArgs(final String[] args) {
+		for (int i = 0; i < args.length; i++) {
+			switch (args[i]) {
+			case "-documents":
+				documents = Integer.parseInt(args[++i]);
+				break;
+			case "-fileSize":
+				fileSize = Integer.parseInt(args[++i]);
+				break;
+			case "-latency":
+				latency = Integer.parseInt(args[++i]);
+				break;
+			case "-bandwidth":
+				bandwidth = Long.parseLong(args[++i]) * 1024;
+				break;
+			case "-errors":
+				errorRate = Double.parseDouble(args[++i]);
+				break;
+			case "-errorCode":
+				errorCode = Integer.parseInt(args[++i]);
+				break;
+			case "-touch":
+				touch = Double.parseDouble(args[++i]);
+				break;
+			case "-threads":
+				threads = Integer.parseInt(args[++i]);
+				break;
+			case "-verbose":
+				verbose = true;
+				break;
+			case "-keep":
+				keep = true;
+				break;
+			default:
+				System.out.println("Invalid argument: " + args[i]);
+				System.exit(1);
+				break;
+			}
+		}
+	}
+
+	private void run(final Path rootDirectory) throws Exception {
+		/* Dataset with small files, so downloads are dominated by the request overhead and not the disk. */
+		final SemestersTreeNode dataset = SyntheticTree.generate(documents, SEED);
+		final Random random = new Random(SEED);
+		forEachDocument(dataset, document -> document.fileSize = 1L + random.nextInt(2 * fileSize));
+
+		server = new StandInServer(dataset, threads);
+		server.setLatency(latency);
+		server.setBandwidth(bandwidth);
+		server.setErrorRate(errorRate, errorCode);
+		server.start();
+		System.setProperty("studip.baseUrl", server.getBaseUrl());
+
+		/* Dummy account. */
+		final Config config = Config.getInstance();
+		config.setRootDirectory(rootDirectory.toString());
+		config.setAccessToken(new Token("bench", "bench"),
+				new User("00000000000000000000000000000000", "bench", "autor", "", "Bench", "User", "", "", "", "", "", "", "", "", 0));
+		if (!OAuth.getInstance().restoreAccessToken()) {
+			throw new IllegalStateException("Could not restore access token!");
+		}
+
+		System.out.println(String.format(Locale.ROOT, "Dataset: %d documents, %d courses, %d semesters, server %s",
+				SyntheticTree.countDocuments(dataset), courseCount(dataset), dataset.semesters.size(), server.getBaseUrl()));
+		System.out.println(String.format(Locale.ROOT, "%-14s %10s %10s %10s %12s %10s %10s",
+				"Phase", "ms", "Jobs", "Requests", "MB", "Errors", "Jobs/s"));
+
+		final Path treeFile = Config.openTreeFile();
+		try (final TreeSync tree = new TreeSync(rootDirectory)) {
+			if (measure(tree, "build", () -> tree.build(treeFile))) {
+				/* Expire the request cache, no documents have changed. */
+				expireCache(treeFile);
+
+				if (measure(tree, "update", () -> tree.update(treeFile))) {
+					/* Change some documents on the server and expire the request cache again. */
+					final long now = System.currentTimeMillis() / 1000L;
+					final int touched = server.touch(touch, now - 60, SEED);
+					expireCache(treeFile);
+
+					if (measure(tree, "update+" + touched, () -> tree.update(treeFile))
+							&& measure(tree, "sync", () -> tree.sync(treeFile, true))) {
+						measure(tree, "sync (noop)", () -> tree.sync(treeFile, true));
+					}
+				}
+			}
+		}
+
+		System.out.println();
+		System.out.println("Requests per endpoint:");
+		for (final Map.Entry<String, Long> entry : new TreeMap<String, Long>(server.getRequests()).entrySet()) {
+			System.out.println(String.format(Locale.ROOT, "  %-22s %10d", entry.getKey(), entry.getValue()));
+		}
+	}
+
+	@FunctionalInterface
+	private interface Phase {
+		int run() throws Exception;
+	}
+
+	@FunctionalInterface
+	private interface DocumentVisitor {
+		void visit(DocumentTreeNode document);
+	}
+
+	/**
+	 * Run and report a phase.
+	 *
+	 * @return False if the phase was aborted (connection failure or uncaught job exception, e.g. an injected error code)
+	 */
+	private boolean measure(final TreeSync tree, final String name, final Phase phase) throws Exception {
+		final long start = System.nanoTime();
+		final int jobs = phase.run();
+		final long elapsed = System.nanoTime() - start;
+
+		final long deltaRequests = server.getRequestCount() - requests;
+		final long deltaBytes = server.getBytes() - bytes;
+		final long deltaErrors = server.getErrorCount() - errors;
+		requests += deltaRequests;
+		bytes += deltaBytes;
+		errors += deltaErrors;
+
+		final boolean aborted = tree.stopPending || AppState.exitPending;
+
+		System.out.println(String.format(Locale.ROOT, "%-14s %10.1f %10d %10d %12.2f %10d %10.1f%s",
+				name, elapsed / 1e6, jobs, deltaRequests, deltaBytes / (1024.0 * 1024.0), deltaErrors,
+				jobs / (elapsed / 1e9), aborted ? "  aborted" : ""));
+
+		return !aborted;
+	}
+
+	/**
+	 * Age the tree by one day (course update times and activity cursor),
+	 * so the request cache of all courses is expired.
+	 */
+	private static void expireCache(final Path treeFile) throws Exception {
+		final SemestersTreeNode rootNode = TreeBuilder.readTree(treeFile);
+		final long age = StudIPApiProvider.LARGE_CACHE_TIME + 60;
+		rootNode.activityTime -= age;
+		for (final SemesterTreeNode semester : rootNode.semesters) {
+			for (final CourseTreeNode course : semester.courses) {
+				course.updateTime -= age;
+			}
+		}
+
+		TreeBuilder.writeTree(treeFile, rootNode);
+	}
+
+	private static int courseCount(final SemestersTreeNode rootNode) {
+		int count = 0;
+		for (final SemesterTreeNode semester : rootNode.semesters) {
+			count += semester.courses.size();
+		}
+
+		return count;
+	}
+
+	private static void forEachDocument(final SemestersTreeNode rootNode, final DocumentVisitor visitor) {
+		for (final SemesterTreeNode semester : rootNode.semesters) {
+			for (final CourseTreeNode course : semester.courses) {
+				forEachDocument(course.root, visitor);
+			}
+		}
+	}
+
+	private static void forEachDocument(final DocumentFolderTreeNode folder, final DocumentVisitor visitor) {
+		for (final DocumentTreeNode document : folder.documents) {
+			visitor.visit(document);
+		}
+
+		for (final DocumentFolderTreeNode child : folder.folders) {
+			forEachDocument(child, visitor);
+		}
+	}
+}
@@ -0,0 +1,454 @@
+package de.uni.hannover.studip.sync.bench;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPOutputStream;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import de.elanev.studip.android.app.backend.datamodel.Activities;
+import de.elanev.studip.android.app.backend.datamodel.Activity;
+import de.elanev.studip.android.app.backend.datamodel.Course;
+import de.elanev.studip.android.app.backend.datamodel.Courses;
+import de.elanev.studip.android.app.backend.datamodel.Document;
+import de.elanev.studip.android.app.backend.datamodel.DocumentFolder;
+import de.elanev.studip.android.app.backend.datamodel.DocumentFolders;
+import de.elanev.studip.android.app.backend.datamodel.Documents;
+import de.elanev.studip.android.app.backend.datamodel.Semester;
+import de.elanev.studip.android.app.backend.datamodel.Semesters;
+import de.elanev.studip.android.app.backend.datamodel.User;
+import de.uni.hannover.studip.sync.datamodel.CourseTreeNode;
+import de.uni.hannover.studip.sync.datamodel.DocumentFolderTreeNode;
+import de.uni.hannover.studip.sync.datamodel.DocumentTreeNode;
+import de.uni.hannover.studip.sync.datamodel.SemesterTreeNode;
+import de.uni.hannover.studip.sync.datamodel.SemestersTreeNode;
+import de.uni.hannover.studip.sync.models.Config;
+
+/**
+ * Local Stud.IP Rest.IP stand-in server.
+ *
+ * Serves a synthetic tree with the endpoints used by the sync engine:
+ * /courses/semester, /courses/semester/:semester_id, /documents/:course_id/folder[/:folder_id],
+ * /documents/:course_id/new/:timestamp, /documents/:document_id/download, /activities and /user.
+ *
+ * Latency, bandwidth (per response) and error rate can be changed at runtime.
+ * Requests without an OAuth authorization header are rejected with 401.
+ *
+ * @author Lennart Glauer
+ * @notice Thread safe
+ */
+public final class StandInServer implements AutoCloseable {
+
+	public static final String API_PATH = "/api.php";
+
+	private static final int CHUNK_SIZE = 8192;
+
+	private static final ObjectWriter WRITER = Config.getMapper().writer();
+	private static final ObjectWriter ROOT_WRITER = WRITER.with(SerializationFeature.WRAP_ROOT_VALUE);
+
+	private final HttpServer server;
+	private final ExecutorService executor;
+
+	/* Read-only dataset indexes (document chDates may be touched). */
+	private final List<SemesterTreeNode> semesters;
+	private final Map<String, SemesterTreeNode> semesterIndex = new HashMap<String, SemesterTreeNode>();
+	private final Map<String, CourseTreeNode> courseIndex = new HashMap<String, CourseTreeNode>();
+	private final Map<String, DocumentFolderTreeNode> folderIndex = new HashMap<String, DocumentFolderTreeNode>();
+	private final Map<String, DocumentTreeNode> documentIndex = new HashMap<String, DocumentTreeNode>();
+	private final Map<DocumentTreeNode, String> documentFolders = new HashMap<DocumentTreeNode, String>();
+	private final Map<DocumentTreeNode, String> documentCourses = new HashMap<DocumentTreeNode, String>();
+	private final List<DocumentTreeNode> documents = new ArrayList<DocumentTreeNode>();
+
+	private volatile int latencyMillis;
+	private volatile long bytesPerSecond;
+	private volatile double errorRate;
+	private volatile int errorCode = 503;
+
+	private final Map<String, LongAdder> requests = new ConcurrentHashMap<String, LongAdder>();
+	private final LongAdder errors = new LongAdder();
+	private final LongAdder bytes = new LongAdder();
+
+	/* Activity feed (file activities of touched documents). */
+	private final List<Activity> activities = new CopyOnWriteArrayList<Activity>();
+
+	/**
+	 * Create server on a free local port, call start() to serve requests.
+	 *
+	 * @param rootNode Dataset
+	 * @param threads Number of server threads
+	 * @throws IOException
+	 */
+	public StandInServer(final SemestersTreeNode rootNode, final int threads) throws IOException {
+		semesters = rootNode.semesters;
+		for (final SemesterTreeNode semester : semesters) {
+			semesterIndex.put(semester.semesterId, semester);
+			for (final CourseTreeNode course : semester.courses) {
+				courseIndex.put(course.courseId, course);
+				indexFolder(course.courseId, course.root);
+			}
+		}
+
+		/* Without TCP_NODELAY small responses are delayed by ~40ms (Nagle + delayed ack). */
+		System.setProperty("sun.net.httpserver.nodelay", "true");
+
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 128);
+		server.createContext(API_PATH, this::handle);
+		executor = Executors.newFixedThreadPool(threads);
+		server.setExecutor(executor);
+	}
+
+	public void start() {
+		server.start();
+	}
+
+	@Override
+	public void close() {
+		server.stop(0);
+		executor.shutdownNow();
+	}
+
+	/**
+	 * Get api base url.
+	 *
+	 * @return Base url
+	 */
+	public String getBaseUrl() {
+		return "http://127.0.0.1:" + server.getAddress().getPort() + API_PATH;
+	}
+
+	public void setLatency(final int millis) {
+		latencyMillis = millis;
+	}
+
+	public void setBandwidth(final long bytesPerSecond) {
+		this.bytesPerSecond = bytesPerSecond;
+	}
+
+	public void setErrorRate(final double rate, final int code) {
+		errorRate = rate;
+		errorCode = code;
+	}
+
+	/**
+	 * Change the chDate of some documents, so they are returned by the new documents endpoint
+	 * and reported by the activity feed.
+	 *
+	 * @param fraction Fraction of documents
+	 * @param chDate New change date
+	 * @param seed Random seed
+	 * @return Number of touched documents
+	 */
+	public int touch(final double fraction, final long chDate, final long seed) {
+		final Random random = new Random(seed);
+		int count = 0;
+		for (final DocumentTreeNode document : documents) {
+			if (random.nextDouble() < fraction) {
+				document.chDate = chDate;
+				activities.add(new Activity(Long.toHexString(random.nextLong()), document.name, "Bench User",
+						document.userId, "https://studip.example/folder.php?cid=" + documentCourses.get(document)
+						+ "&open=" + document.documentId, (int) chDate, document.name, "", "documents"));
+				count++;
+			}
+		}
+
+		return count;
+	}
+
+	/**
+	 * Get number of requests per endpoint.
+	 *
+	 * @return Endpoint -> request count
+	 */
+	public Map<String, Long> getRequests() {
+		final Map<String, Long> result = new HashMap<String, Long>();
+		for (final Map.Entry<String, LongAdder> entry : requests.entrySet()) {
+			result.put(entry.getKey(), entry.getValue().sum());
+		}
+
+		return result;
+	}
+
+	public long getRequestCount() {
+		long sum = 0;
+		for (final LongAdder count : requests.values()) {
+			sum += count.sum();
+		}
+
+		return sum;
+	}
+
+	public long getErrorCount() {
+		return errors.sum();
+	}
+
+	public long getBytes() {
+		return bytes.sum();
+	}
+
+	private void indexFolder(final String courseId, final DocumentFolderTreeNode folder) {
+		if (folder.folderId != null) {
+			folderIndex.put(folder.folderId, folder);
+		}
+
+		for (final DocumentTreeNode document : folder.documents) {
+			documentIndex.put(document.documentId, document);
+			documentFolders.put(document, folder.folderId);
+			documentCourses.put(document, courseId);
+			documents.add(document);
+		}
+
+		for (final DocumentFolderTreeNode child : folder.folders) {
+			indexFolder(courseId, child);
+		}
+	}
+
+	private void handle(final HttpExchange exchange) throws IOException {
+		try {
+			final String path = exchange.getRequestURI().getPath().substring(API_PATH.length());
+			final List<String> parts = new ArrayList<String>(Arrays.asList(path.split("/")));
+			parts.removeIf(String::isEmpty);
+
+			final String endpoint = endpoint(parts);
+			requests.computeIfAbsent(endpoint, key -> new LongAdder()).increment();
+
+			if (latencyMillis > 0) {
+				Thread.sleep(latencyMillis);
+			}
+
+			final String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+			if (authorization == null || !authorization.startsWith("OAuth")) {
+				send(exchange, 401, new byte[0]);
+				return;
+			}
+
+			if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+				errors.increment();
+				send(exchange, errorCode, new byte[0]);
+				return;
+			}
+
+			route(exchange, endpoint, parts);
+
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+
+		} finally {
+			exchange.close();
+		}
+	}
+
+	private static String endpoint(final List<String> parts) {
+		if (parts.size() >= 3 && "documents".equals(parts.get(0))) {
+			return "documents/" + parts.get(2);
+		}
+
+		return String.join("/", parts.subList(0, Math.min(2, parts.size())));
+	}
+
+	private void route(final HttpExchange exchange, final String endpoint, final List<String> parts) throws IOException, InterruptedException {
+		switch (endpoint) {
+		case "courses/semester":
+			if (parts.size() == 2) {
+				sendJson(exchange, getSemesters(), false);
+			} else {
+				final SemesterTreeNode semester = semesterIndex.get(parts.get(2));
+				if (semester == null) {
+					send(exchange, 404, new byte[0]);
+				} else {
+					sendJson(exchange, getCourses(semester), false);
+				}
+			}
+			break;
+
+		case "documents/folder":
+			final CourseTreeNode folderCourse = courseIndex.get(parts.get(1));
+			final DocumentFolderTreeNode folder = folderCourse == null ? null
+					: parts.size() > 3 ? folderIndex.get(parts.get(3)) : folderCourse.root;
+			if (folder == null) {
+				send(exchange, 404, new byte[0]);
+			} else {
+				sendJson(exchange, getFolder(folder), false);
+			}
+			break;
+
+		case "documents/new":
+			final CourseTreeNode newCourse = courseIndex.get(parts.get(1));
+			if (newCourse == null || parts.size() < 4) {
+				send(exchange, 400, new byte[0]);
+			} else {
+				final Documents result = new Documents();
+				collectNewDocuments(newCourse.root, Long.parseLong(parts.get(3)), result.documents);
+				sendJson(exchange, result, false);
+			}
+			break;
+
+		case "documents/download":
+			final DocumentTreeNode document = documentIndex.get(parts.get(1));
+			if (document == null) {
+				send(exchange, 404, new byte[0]);
+			} else {
+				sendDownload(exchange, document.fileSize);
+			}
+			break;
+
+		case "activities":
+			final Activities result = new Activities();
+			result.activities.addAll(activities);
+			sendJson(exchange, result, false);
+			break;
+
+		case "user":
+			final User user = new User("00000000000000000000000000000000", "bench", "autor", "", "Bench", "User", "", "", "", "", "", "", "", "", 0);
+			sendJson(exchange, user, true);
+			break;
+
+		default:
+			send(exchange, 404, new byte[0]);
+			break;
+		}
+	}
+
+	private Semesters getSemesters() {
+		final Semesters result = new Semesters();
+		for (final SemesterTreeNode semester : semesters) {
+			result.semesters.add(new Semester(semester.semesterId, semester.title, "",
+					semester.begin, semester.end, semester.seminarsBegin, semester.seminarsEnd));
+		}
+
+		return result;
+	}
+
+	private static Courses getCourses(final SemesterTreeNode semester) {
+		final Courses result = new Courses();
+		for (final CourseTreeNode courseNode : semester.courses) {
+			final Course course = new Course();
+			course.courseId = courseNode.courseId;
+			course.title = courseNode.title;
+			course.startTime = courseNode.startTime;
+			course.durationTime = courseNode.durationTime;
+			course.semesterId = semester.semesterId;
+			course.type = courseNode.type;
+			result.courses.add(course);
+		}
+
+		return result;
+	}
+
+	private DocumentFolders getFolder(final DocumentFolderTreeNode folderNode) {
+		final DocumentFolders result = new DocumentFolders();
+		for (final DocumentFolderTreeNode folder : folderNode.folders) {
+			result.folders.add(new DocumentFolder(folder.folderId, folder.userId, folder.name,
+					folder.mkDate, folder.chDate, "", null));
+		}
+
+		for (final DocumentTreeNode document : folderNode.documents) {
+			result.documents.add(toDocument(document));
+		}
+
+		return result;
+	}
+
+	private void collectNewDocuments(final DocumentFolderTreeNode folder, final long timestamp, final List<Document> result) {
+		for (final DocumentTreeNode document : folder.documents) {
+			if (document.chDate > timestamp) {
+				result.add(toDocument(document));
+			}
+		}
+
+		for (final DocumentFolderTreeNode child : folder.folders) {
+			collectNewDocuments(child, timestamp, result);
+		}
+	}
+
+	private Document toDocument(final DocumentTreeNode document) {
+		return new Document(document.documentId, documentFolders.get(document), document.userId,
+				document.name, document.description, document.mkDate, document.chDate,
+				document.fileName, document.fileSize, 0, Boolean.FALSE, "application/octet-stream");
+	}
+
+	private void sendJson(final HttpExchange exchange, final Object value, final boolean wrapRoot) throws IOException, InterruptedException {
+		exchange.getResponseHeaders().set("Content-Type", "application/json");
+		byte[] body = (wrapRoot ? ROOT_WRITER : WRITER).writeValueAsBytes(value);
+
+		/* Compress json like a real web server. */
+		final String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+		if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+			final ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 4 + 64);
+			try (final GZIPOutputStream gzip = new GZIPOutputStream(out, CHUNK_SIZE)) {
+				gzip.write(body);
+			}
+			body = out.toByteArray();
+			exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+		}
+
+		send(exchange, 200, body);
+	}
+
+	private void send(final HttpExchange exchange, final int code, final byte[] body) throws IOException, InterruptedException {
+		exchange.sendResponseHeaders(code, body.length == 0 ? -1 : body.length);
+		if (body.length > 0) {
+			write(exchange.getResponseBody(), body, body.length);
+		}
+	}
+
+	private void sendDownload(final HttpExchange exchange, final long length) throws IOException, InterruptedException {
+		exchange.getResponseHeaders().set("Content-Type", "application/octet-stream");
+		exchange.sendResponseHeaders(200, length == 0 ? -1 : length);
+
+		final byte[] chunk = new byte[CHUNK_SIZE];
+		Arrays.fill(chunk, (byte) 'x');
+
+		final OutputStream out = exchange.getResponseBody();
+		long remaining = length;
+		final long start = System.nanoTime();
+		long written = 0;
+		while (remaining > 0) {
+			final int count = (int) Math.min(chunk.length, remaining);
+			out.write(chunk, 0, count);
+			remaining -= count;
+			written += count;
+			throttle(start, written);
+		}
+		bytes.add(length);
+	}
+
+	private void write(final OutputStream out, final byte[] body, final int length) throws IOException, InterruptedException {
+		final long start = System.nanoTime();
+		for (int offset = 0; offset < length; offset += CHUNK_SIZE) {
+			final int count = Math.min(CHUNK_SIZE, length - offset);
+			out.write(body, offset, count);
+			throttle(start, offset + count);
+		}
+		bytes.add(length);
+	}
+
+	/**
+	 * Sleep until the response bandwidth is below the cap.
+	 */
+	private void throttle(final long start, final long written) throws InterruptedException {
+		final long cap = bytesPerSecond;
+		if (cap > 0) {
+			final long due = written * 1000L / cap - (System.nanoTime() - start) / 1000000L;
+			if (due > 0) {
+				Thread.sleep(due);
+			}
+		}
+	}
+}
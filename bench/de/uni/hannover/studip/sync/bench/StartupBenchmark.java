@@ -0,0 +1,187 @@
+package de.uni.hannover.studip.sync.bench;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import org.scribe.model.Token;
+
+import de.elanev.studip.android.app.backend.datamodel.User;
+import de.uni.hannover.studip.sync.models.Config;
+
+/**
+ * Cold start benchmark of the command line sync.
+ *
+ * Starts a StandInServer and a temporary home directory with a dummy account,
+ * runs one initial sync (build and download) and then measures the wall time of
+ * fresh jvm processes running a cron style --sync against the unchanged tree.
+ * One extra run with -verbose:class counts the loaded classes (and JavaFX classes).
+ *
+ * Usage: StartupBenchmark [-runs 10] [-documents 1000] [-main de.uni.hannover.studip.sync.Headless] [-keep]
+ *
+ * Use -main de.uni.hannover.studip.sync.Main to compare with the JavaFX entry point.
+ *
+ * @author Lennart Glauer
+ */
+public final class StartupBenchmark {
+
+	private static final long SEED = 42;
+
+	private int runs = 10;
+	private int documents = 1000;
+	private String mainClass = "de.uni.hannover.studip.sync.Headless";
+	private boolean keep;
+
+	private StartupBenchmark() {
+		// Use main.
+	}
+
+	public static void main(final String[] args) throws Exception {
+		final StartupBenchmark benchmark = new StartupBenchmark();
+		benchmark.parseArgs(args);
+
+		final Path home = Files.createTempDirectory("studip-sync-startup");
+		final Path rootDirectory = Files.createDirectory(home.resolve("sync"));
+
+		/* Must be set before the config singleton is initialized (the children use the same home). */
+		System.setProperty("user.home", home.toString());
+
+		int exitCode;
+		try (final StandInServer server = new StandInServer(SyntheticTree.generate(benchmark.documents, SEED), 4)) {
+			server.start();
+
+			/* Dummy account. */
+			final Config config = Config.getInstance();
+			config.setRootDirectory(rootDirectory.toString());
+			config.setAccessToken(new Token("bench", "bench"),
+					new User("00000000000000000000000000000000", "bench", "autor", "", "Bench", "User", "", "", "", "", "", "", "", "", 0));
+
+			exitCode = benchmark.run(home, server);
+
+		} finally {
+			if (benchmark.keep) {
+				System.out.println("Temporary files: " + home);
+			} else {
+				BenchmarkRunner.deleteRecursive(home);
+			}
+		}
+
+		System.exit(exitCode);
+	}
+
+	private void parseArgs(final String[] args) {
+		for (int i = 0; i < args.length; i++) {
+			switch (args[i]) {
+			case "-runs":
+				runs = Integer.parseInt(args[++i]);
+				break;
+			case "-documents":
+				documents = Integer.parseInt(args[++i]);
+				break;
+			case "-main":
+				mainClass = args[++i];
+				break;
+			case "-keep":
+				keep = true;
+				break;
+			default:
+				System.out.println("Invalid argument: " + args[i]);
+				System.exit(1);
+				break;
+			}
+		}
+	}
+
+	private int run(final Path home, final StandInServer server) throws IOException, InterruptedException {
+		final List<String> command = new ArrayList<String>();
+		command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+		command.add("-Duser.home=" + home);
+		command.add("-Dstudip.baseUrl=" + server.getBaseUrl());
+		command.add("-Dstudip.apiKey=bench");
+		command.add("-Dstudip.apiSecret=bench");
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+
+		/* Initial sync (build and download), not measured. */
+		final Process initial = start(command, mainClass, null);
+		final int initialExitCode = initial.waitFor();
+		if (initialExitCode != 0) {
+			System.out.println("Initial sync failed: " + initialExitCode);
+			return 1;
+		}
+
+		System.out.println(String.format(Locale.ROOT, "Main %s, %d documents, server %s",
+				mainClass, SyntheticTree.countDocuments(SyntheticTree.generate(documents, SEED)), server.getBaseUrl()));
+
+		final List<Double> times = new ArrayList<Double>();
+		for (int i = 0; i < runs; i++) {
+			final long start = System.nanoTime();
+			final int exitCode = start(command, mainClass, null).waitFor();
+			times.add((System.nanoTime() - start) / 1e6);
+
+			if (exitCode != 0) {
+				System.out.println("Sync failed: " + exitCode);
+				return 1;
+			}
+		}
+
+		Collections.sort(times);
+		double sum = 0;
+		for (final double time : times) {
+			sum += time;
+		}
+
+		System.out.println(String.format(Locale.ROOT, "%-10s %10s %10s %10s %10s", "Runs", "min ms", "median ms", "mean ms", "max ms"));
+		System.out.println(String.format(Locale.ROOT, "%-10d %10.1f %10.1f %10.1f %10.1f", runs,
+				times.get(0), times.get(times.size() / 2), sum / times.size(), times.get(times.size() - 1)));
+
+		/* Class loading of one run. */
+		final long[] classes = new long[2];
+		final Process verbose = start(command, mainClass, "-verbose:class");
+		try (final BufferedReader reader = new BufferedReader(new InputStreamReader(verbose.getInputStream(), StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				/* Java 8: "[Loaded x.y.Z from ...]", java 9+: "[...][class,load] x.y.Z source: ...". */
+				if (line.startsWith("[Loaded ") || line.contains("[class,load]")) {
+					classes[0]++;
+					if (line.contains(" javafx.") || line.contains(" com.sun.javafx.")) {
+						classes[1]++;
+					}
+				}
+			}
+		}
+		verbose.waitFor();
+
+		System.out.println(String.format(Locale.ROOT, "Loaded classes: %d (JavaFX: %d)", classes[0], classes[1]));
+		return 0;
+	}
+
+	/**
+	 * Start a sync child process, the output is discarded unless jvm options are given.
+	 */
+	private static Process start(final List<String> command, final String mainClass, final String option) throws IOException {
+		final List<String> args = new ArrayList<String>(command);
+		if (option != null) {
+			args.add(1, option);
+		}
+		args.addAll(Arrays.asList(mainClass, "--sync"));
+
+		final ProcessBuilder builder = new ProcessBuilder(args);
+		builder.redirectErrorStream(true);
+		if (option == null) {
+			builder.redirectOutput(new File(System.getProperty("os.name").startsWith("Windows") ? "NUL" : "/dev/null"));
+		}
+
+		return builder.start();
+	}
+}
@@ -0,0 +1,248 @@
+package de.uni.hannover.studip.sync.bench;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import de.elanev.studip.android.app.backend.datamodel.Document;
+import de.elanev.studip.android.app.backend.datamodel.DocumentFolder;
+import de.elanev.studip.android.app.backend.datamodel.DocumentFolders;
+import de.uni.hannover.studip.sync.datamodel.CourseTreeNode;
+import de.uni.hannover.studip.sync.datamodel.DocumentFolderTreeNode;
+import de.uni.hannover.studip.sync.datamodel.DocumentTreeNode;
+import de.uni.hannover.studip.sync.datamodel.SemesterTreeNode;
+import de.uni.hannover.studip.sync.datamodel.SemestersTreeNode;
+import de.uni.hannover.studip.sync.oauth.StudIPApiProvider;
+
+/**
+ * Deterministic synthetic tree generator.
+ *
+ * Every course has a default folder, topic folders with sub folders and about
+ * DOCUMENTS_PER_COURSE documents. Some filenames are repeated on purpose,
+ * so name conflicts have to be resolved like in real Stud.IP courses.
+ *
+ * @author Lennart Glauer
+ */
+public final class SyntheticTree {
+
+	public static final int DOCUMENTS_PER_COURSE = 200;
+	public static final int COURSES_PER_SEMESTER = 40;
+
+	private static final int TOPIC_FOLDERS = 4;
+	private static final int SUB_FOLDERS = 2;
+	private static final long SEMESTER_LENGTH = 183L * 24 * 60 * 60;
+	private static final long FIRST_SEMESTER = 1270080000L; /* 2010-04-01. */
+
+	private static final String[] LECTURES = {
+		"Analysis", "Lineare Algebra", "Programmieren", "Datenstrukturen und Algorithmen",
+		"Grundlagen der Theoretischen Informatik", "Rechnerstrukturen", "Betriebssysteme",
+		"Datenbanksysteme", "Software-Technik", "Numerische Mathematik", "Stochastik",
+		"Experimentalphysik", "Elektrotechnische Grundlagen der Informatik", "Logik und formale Systeme"
+	};
+
+	private static final String[] FILES = {
+		"Übungsblatt", "Lösung", "Vorlesung", "Folien", "Skript", "Klausur", "Probeklausur", "Literatur", "Beispiel"
+	};
+
+	private static final String[] EXTENSIONS = {
+		".pdf", ".pdf", ".pdf", ".zip", ".java", ".txt", ".mp4", ".png"
+	};
+
+	private SyntheticTree() {
+		// Utility class.
+	}
+
+	/**
+	 * Generate a tree with the given number of documents.
+	 *
+	 * @param documents Number of documents
+	 * @param seed Random seed
+	 * @return Tree root node (frozen)
+	 */
+	public static SemestersTreeNode generate(final int documents, final long seed) {
+		final Random random = new Random(seed);
+		final int courses = Math.max(1, (documents + DOCUMENTS_PER_COURSE - 1) / DOCUMENTS_PER_COURSE);
+		final int semesters = Math.max(1, (courses + COURSES_PER_SEMESTER - 1) / COURSES_PER_SEMESTER);
+
+		final List<SemesterTreeNode> semesterList = new ArrayList<SemesterTreeNode>(semesters);
+		int remaining = documents;
+		int courseCount = 0;
+
+		for (int s = 0; s < semesters; s++) {
+			final SemesterTreeNode semester = new SemesterTreeNode();
+			semester.semesterId = randomId(random);
+			semester.begin = FIRST_SEMESTER + s * SEMESTER_LENGTH;
+			semester.end = semester.begin + SEMESTER_LENGTH - 1;
+			semester.seminarsBegin = semester.begin + 14L * 24 * 60 * 60;
+			semester.seminarsEnd = semester.end - 42L * 24 * 60 * 60;
+			semester.title = (s % 2 == 0 ? "SoSe " : "WiSe ") + (2010 + s / 2);
+
+			final List<CourseTreeNode> courseList = new ArrayList<CourseTreeNode>();
+			while (courseList.size() < COURSES_PER_SEMESTER && courseCount < courses) {
+				final int n = Math.min(remaining, DOCUMENTS_PER_COURSE);
+				courseList.add(generateCourse(random, courseList.size(), semester.begin, n));
+				remaining -= n;
+				courseCount++;
+			}
+
+			semester.courses = courseList;
+			semesterList.add(semester);
+		}
+
+		final SemestersTreeNode rootNode = new SemestersTreeNode();
+		rootNode.semesters = semesterList;
+		rootNode.freeze();
+
+		return rootNode;
+	}
+
+	/**
+	 * Generate a folder listing (GET /documents/:course_id/folder/:folder_id) with the given number of entries.
+	 *
+	 * @param entries Number of documents (plus one folder per 20 documents)
+	 * @param seed Random seed
+	 * @return Folder listing
+	 */
+	public static DocumentFolders generateListing(final int entries, final long seed) {
+		final Random random = new Random(seed);
+		final DocumentFolders listing = new DocumentFolders();
+		final long now = FIRST_SEMESTER;
+
+		for (int i = 0; i < entries / 20; i++) {
+			final DocumentFolder.Permissions permissions = new DocumentFolder.Permissions();
+			permissions.visible = permissions.readable = Boolean.TRUE;
+			permissions.writable = permissions.extendable = Boolean.FALSE;
+
+			listing.folders.add(new DocumentFolder(randomId(random), randomId(random), "Ordner " + i,
+					Long.toString(now), now + i, "Beschreibung " + i, permissions));
+		}
+
+		for (int i = 0; i < entries; i++) {
+			final String fileName = randomFileName(random, i);
+			listing.documents.add(new Document(randomId(random), randomId(random), randomId(random),
+					fileName, "Beschreibung " + i, now + i, now + i, fileName,
+					(long) random.nextInt(1 << 24), random.nextInt(500), Boolean.FALSE, "application/pdf"));
+		}
+
+		return listing;
+	}
+
+	/**
+	 * Count all documents of a tree.
+	 *
+	 * @param rootNode Tree root node
+	 * @return Number of documents
+	 */
+	public static int countDocuments(final SemestersTreeNode rootNode) {
+		int count = 0;
+		for (final SemesterTreeNode semester : rootNode.semesters) {
+			for (final CourseTreeNode course : semester.courses) {
+				count += countDocuments(course.root);
+			}
+		}
+
+		return count;
+	}
+
+	private static int countDocuments(final DocumentFolderTreeNode folder) {
+		int count = folder.documents.size();
+		for (final DocumentFolderTreeNode child : folder.folders) {
+			count += countDocuments(child);
+		}
+
+		return count;
+	}
+
+	private static CourseTreeNode generateCourse(final Random random, final int index, final long begin, final int documents) {
+		final CourseTreeNode course = new CourseTreeNode();
+		course.courseId = randomId(random);
+		course.startTime = begin;
+		course.durationTime = 0L;
+		course.updateTime = begin;
+
+		/* Every third course is an exercise of the previous lecture. */
+		final String lecture = LECTURES[(index / 3) % LECTURES.length] + (index / (3 * LECTURES.length) > 0 ? " " + (index / (3 * LECTURES.length) + 1) : "");
+		if (index % 3 == 1) {
+			course.title = "Übung zu " + lecture;
+			course.type = 3;
+		} else if (index % 3 == 2) {
+			course.title = "Seminar " + lecture + " " + index;
+			course.type = 2;
+		} else {
+			course.title = lecture;
+			course.type = 1;
+		}
+
+		/* Folder structure: default folder + topic folders with sub folders. */
+		final List<DocumentFolderTreeNode> leafs = new ArrayList<DocumentFolderTreeNode>();
+		final List<DocumentFolderTreeNode> topics = new ArrayList<DocumentFolderTreeNode>();
+
+		final DocumentFolderTreeNode defaultFolder = newFolder(random, StudIPApiProvider.DEFAULT_FOLDER, begin);
+		topics.add(defaultFolder);
+		leafs.add(defaultFolder);
+
+		for (int t = 0; t < TOPIC_FOLDERS; t++) {
+			final DocumentFolderTreeNode topic = newFolder(random, "Thema " + (t + 1), begin);
+			final List<DocumentFolderTreeNode> subs = new ArrayList<DocumentFolderTreeNode>();
+			for (int f = 0; f < SUB_FOLDERS; f++) {
+				final DocumentFolderTreeNode sub = newFolder(random, f == 0 ? "Übungen" : "Lösungen", begin);
+				subs.add(sub);
+				leafs.add(sub);
+			}
+			topic.folders = subs;
+			topics.add(topic);
+			leafs.add(topic);
+		}
+
+		final List<List<DocumentTreeNode>> documentLists = new ArrayList<List<DocumentTreeNode>>(leafs.size());
+		for (int i = 0; i < leafs.size(); i++) {
+			documentLists.add(new ArrayList<DocumentTreeNode>());
+		}
+
+		for (int i = 0; i < documents; i++) {
+			final DocumentTreeNode document = new DocumentTreeNode();
+			document.documentId = randomId(random);
+			document.userId = randomId(random);
+			document.fileName = randomFileName(random, i);
+			document.name = document.fileName;
+			document.description = "";
+			document.mkDate = begin + i * 60L;
+			document.chDate = document.mkDate + random.nextInt(3600);
+			document.fileSize = (long) random.nextInt(1 << 24);
+			documentLists.get(random.nextInt(leafs.size())).add(document);
+		}
+
+		for (int i = 0; i < leafs.size(); i++) {
+			leafs.get(i).documents = documentLists.get(i);
+		}
+
+		course.root.folders = topics;
+		return course;
+	}
+
+	private static DocumentFolderTreeNode newFolder(final Random random, final String name, final long begin) {
+		final DocumentFolderTreeNode folder = new DocumentFolderTreeNode();
+		folder.folderId = randomId(random);
+		folder.userId = randomId(random);
+		folder.name = name;
+		folder.mkDate = Long.toString(begin);
+		folder.chDate = begin;
+		folder.folders = Collections.emptyList();
+
+		return folder;
+	}
+
+	/**
+	 * Mostly unique filenames, about 5% collide with another document.
+	 */
+	private static String randomFileName(final Random random, final int index) {
+		final int number = random.nextInt(20) == 0 ? random.nextInt(10) : index;
+
+		return FILES[random.nextInt(FILES.length)] + " " + number + EXTENSIONS[random.nextInt(EXTENSIONS.length)];
+	}
+
+	private static String randomId(final Random random) {
+		return String.format("%016x%016x", random.nextLong(), random.nextLong());
+	}
+}
@@ -0,0 +1,125 @@
+package de.uni.hannover.studip.sync.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.nio.charset.Charset;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.scribe.exceptions.OAuthConnectionException;
+import org.scribe.model.OAuthRequest;
+import org.scribe.model.Request;
+
+/**
+ * java.net.http transport.
+ *
+ * Requests to the same host are multiplexed over one HTTP/2 connection
+ * (or use the client's keep-alive pool if the server only speaks HTTP/1.1).
+ * Lives in the src-java11 source folder (built with --release 11 into the optional
+ * httpclient add-on jar) and is only loaded by Transports if the jar is on the classpath.
+ *
+ * @author Lennart Glauer
+ * @notice Thread safe
+ */
+final class HttpClientTransport implements Transport {
+
+	/**
+	 * Shared http client.
+	 */
+	private final HttpClient client;
+
+	/**
+	 * Constructor.
+	 */
+	HttpClientTransport() {
+		/* Bound the HTTP/1.1 fallback pool like the HttpURLConnection keep-alive cache. */
+		final String maxConnections = System.getProperty("http.maxConnections");
+		if (maxConnections != null && System.getProperty("jdk.httpclient.connectionPoolSize") == null) {
+			System.setProperty("jdk.httpclient.connectionPoolSize", maxConnections);
+		}
+
+		this.client = HttpClient.newBuilder()
+				.version(HttpClient.Version.HTTP_2)
+				.followRedirects(HttpClient.Redirect.NORMAL)
+				.connectTimeout(Duration.ofSeconds(CONNECT_TIMEOUT))
+				.build();
+	}
+
+	@Override
+	public HttpResponse send(final OAuthRequest request) {
+		final HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(request.getCompleteUrl()))
+				.timeout(Duration.ofSeconds(READ_TIMEOUT));
+
+		for (final Map.Entry<String, String> header : request.getHeaders().entrySet()) {
+			builder.header(header.getKey(), header.getValue());
+		}
+
+		switch (request.getVerb()) {
+		case GET:
+			builder.GET();
+			break;
+		case DELETE:
+			builder.DELETE();
+			break;
+		default:
+			final String body = request.getBodyContents();
+			if (body.isEmpty()) {
+				builder.method(request.getVerb().name(), HttpRequest.BodyPublishers.noBody());
+			} else {
+				if (!request.getHeaders().containsKey("Content-Type")) {
+					builder.header("Content-Type", Request.DEFAULT_CONTENT_TYPE);
+				}
+				builder.method(request.getVerb().name(), HttpRequest.BodyPublishers.ofString(body, Charset.forName(request.getCharset())));
+			}
+			break;
+		}
+
+		final java.net.http.HttpResponse<InputStream> response;
+		try {
+			response = client.send(builder.build(), java.net.http.HttpResponse.BodyHandlers.ofInputStream());
+
+		} catch (IOException e) {
+			throw new OAuthConnectionException(e);
+
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new OAuthConnectionException(e);
+		}
+
+		final Map<String, String> headers = new TreeMap<String, String>(String.CASE_INSENSITIVE_ORDER);
+		for (final Map.Entry<String, List<String>> header : response.headers().map().entrySet()) {
+			if (!header.getValue().isEmpty()) {
+				headers.put(header.getKey(), header.getValue().get(header.getValue().size() - 1));
+			}
+		}
+
+		return new HttpResponse() {
+			@Override
+			public int getCode() {
+				return response.statusCode();
+			}
+
+			@Override
+			public Map<String, String> getHeaders() {
+				return Collections.unmodifiableMap(headers);
+			}
+
+			@Override
+			public InputStream getStream() {
+				return response.body();
+			}
+		};
+	}
+
+	@Override
+	public String getName() {
+		return "httpclient";
+	}
+
+}
@@ -0,0 +1,201 @@
+package de.uni.hannover.studip.sync.metrics;
+
+import java.nio.file.Path;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Java Flight Recorder tracer.
+ *
+ * Lives in the src-jfr source folder (optional jfr add-on jar, needs jdk.jfr at compile time)
+ * and is only loaded by Trace if the jar is on the classpath and jdk.jfr is available.
+ *
+ * @author Lennart Glauer
+ * @notice Thread safe
+ */
+final class JfrTracer implements Tracer {
+
+	private static final String CATEGORY = "Stud.IP FileSync";
+
+	@Override
+	public TraceEvent job(final String job, final String semesterId, final String courseId, final String folderId, final String documentId) {
+		final JobEvent event = new JobEvent();
+		if (!event.isEnabled()) {
+			return TraceEvent.NOOP;
+		}
+
+		event.job = job;
+		event.semesterId = semesterId;
+		event.courseId = courseId;
+		event.folderId = folderId;
+		event.documentId = documentId;
+		event.begin();
+		return event;
+	}
+
+	@Override
+	public TraceEvent request(final String method, final String endpoint, final String url) {
+		final RequestEvent event = new RequestEvent();
+		if (!event.isEnabled()) {
+			return TraceEvent.NOOP;
+		}
+
+		event.method = method;
+		event.endpoint = endpoint;
+		event.url = url;
+		event.begin();
+		return event;
+	}
+
+	@Override
+	public TraceEvent sign(final String url) {
+		final SignEvent event = new SignEvent();
+		if (!event.isEnabled()) {
+			return TraceEvent.NOOP;
+		}
+
+		event.url = url;
+		event.begin();
+		return event;
+	}
+
+	@Override
+	public TraceEvent parse(final String datamodel) {
+		final ParseEvent event = new ParseEvent();
+		if (!event.isEnabled()) {
+			return TraceEvent.NOOP;
+		}
+
+		event.datamodel = datamodel;
+		event.begin();
+		return event;
+	}
+
+	@Override
+	public TraceEvent download(final String documentId, final Path file) {
+		final DownloadEvent event = new DownloadEvent();
+		if (!event.isEnabled()) {
+			return TraceEvent.NOOP;
+		}
+
+		event.documentId = documentId;
+		event.file = file.toString();
+		event.begin();
+		return event;
+	}
+
+	@Override
+	public TraceEvent tree(final String operation, final Path file) {
+		final TreeEvent event = new TreeEvent();
+		if (!event.isEnabled()) {
+			return TraceEvent.NOOP;
+		}
+
+		event.operation = operation;
+		event.file = file.toString();
+		event.begin();
+		return event;
+	}
+
+	@Name("de.uni.hannover.studip.sync.Job")
+	@Label("Sync Job")
+	@Description("Run of a build/update/download job")
+	@Category(CATEGORY)
+	static final class JobEvent extends Event implements TraceEvent {
+		@Label("Job")
+		String job;
+
+		@Label("Semester Id")
+		String semesterId;
+
+		@Label("Course Id")
+		String courseId;
+
+		@Label("Folder Id")
+		String folderId;
+
+		@Label("Document Id")
+		String documentId;
+	}
+
+	@Name("de.uni.hannover.studip.sync.Request")
+	@Label("Rest Api Request")
+	@Description("Request until the response header, including oauth signing and network wait")
+	@Category(CATEGORY)
+	static final class RequestEvent extends Event implements TraceEvent {
+		@Label("Method")
+		String method;
+
+		@Label("Endpoint")
+		String endpoint;
+
+		@Label("Url")
+		String url;
+
+		@Label("Status")
+		int status;
+
+		@Override
+		public TraceEvent setStatus(final int status) {
+			this.status = status;
+			return this;
+		}
+	}
+
+	@Name("de.uni.hannover.studip.sync.OAuthSign")
+	@Label("OAuth Signing")
+	@Description("Request signing, including the wait for the oauth lock")
+	@Category(CATEGORY)
+	static final class SignEvent extends Event implements TraceEvent {
+		@Label("Url")
+		String url;
+	}
+
+	@Name("de.uni.hannover.studip.sync.Parse")
+	@Label("Json Parsing")
+	@Description("Parsing of a json response")
+	@Category(CATEGORY)
+	static final class ParseEvent extends Event implements TraceEvent {
+		@Label("Datamodel")
+		String datamodel;
+	}
+
+	@Name("de.uni.hannover.studip.sync.Download")
+	@Label("Document Download")
+	@Description("Transfer of a document response body to disk")
+	@Category(CATEGORY)
+	static final class DownloadEvent extends Event implements TraceEvent {
+		@Label("Document Id")
+		String documentId;
+
+		@Label("File")
+		String file;
+
+		@Label("Bytes")
+		@DataAmount
+		long bytes;
+
+		@Override
+		public TraceEvent setBytes(final long bytes) {
+			this.bytes = bytes;
+			return this;
+		}
+	}
+
+	@Name("de.uni.hannover.studip.sync.Tree")
+	@Label("Tree Serialization")
+	@Description("Tree file read or write")
+	@Category(CATEGORY)
+	static final class TreeEvent extends Event implements TraceEvent {
+		@Label("Operation")
+		String operation;
+
+		@Label("File")
+		String file;
+	}
+}
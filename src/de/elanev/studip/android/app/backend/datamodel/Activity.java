@@ -14,6 +14,9 @@ public class Activity {
 	public String summary;
 	public String content;
 	public String category;
+
+	public Activity() {
+	}
 	
 	public Activity(String activity_id, String title, String author,
 			String author_id, String link, int updated, String summary,
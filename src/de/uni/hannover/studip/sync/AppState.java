@@ -0,0 +1,29 @@
+package de.uni.hannover.studip.sync;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Global app state shared by the gui and the headless entry point.
+ * 
+ * Must not depend on JavaFX, the headless sync path only loads this class.
+ * 
+ * @author Lennart Glauer
+ * @notice Thread safe
+ */
+public final class AppState {
+
+	/**
+	 * Global tree file lock.
+	 */
+	public static final ReentrantLock TREE_LOCK = new ReentrantLock();
+
+	/**
+	 * Global flag to signal graceful shutdown of worker threads on app exit.
+	 */
+	public static volatile boolean exitPending;
+
+	private AppState() {
+		// Utility class.
+	}
+
+}
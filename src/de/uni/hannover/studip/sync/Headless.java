@@ -0,0 +1,85 @@
+package de.uni.hannover.studip.sync;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.Arrays;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import de.uni.hannover.studip.sync.metrics.Metrics;
+import de.uni.hannover.studip.sync.utils.Cli;
+
+/**
+ * Headless entry point (e.g. cron driven --sync).
+ *
+ * Same command line as the app, but never loads JavaFX, so the jvm starts faster
+ * and runs without a display or JavaFX runtime.
+ *
+ * @author Lennart Glauer
+ */
+public final class Headless {
+
+	private static final Logger LOG = Logger.getLogger(Logger.GLOBAL_LOGGER_NAME);
+
+	@SuppressWarnings("unused")
+	private static ServerSocket globalAppMutex;
+
+	static {
+		/*
+		 * Default Uncaught Exception Handler.
+		 */
+		Thread.setDefaultUncaughtExceptionHandler((thread, throwable) -> {
+			throwable.printStackTrace();
+
+			// Signal worker threads to terminate gracefully.
+			AppState.exitPending = true;
+		});
+
+		/*
+		 * Global log level.
+		 */
+		LOG.setLevel(Level.WARNING);
+
+		/*
+		 * Force java to use tls 1.2 / 1.1 (see Main).
+		 */
+		System.setProperty("https.protocols", "TLSv1.1,TLSv1.2");
+	}
+
+	private Headless() {
+		// Use main.
+	}
+
+	/**
+	 * Main method.
+	 *
+	 * @param args
+	 */
+	public static void main(final String[] args) {
+		try {
+			// Acquire system wide app mutex, the app and the headless sync must not run at the same time.
+			globalAppMutex = new ServerSocket(9001, 10, InetAddress.getLoopbackAddress());
+
+		} catch (IOException e) {
+			System.out.println("FileSync läuft bereits.");
+			System.exit(1);
+		}
+
+		if (Arrays.asList(args).contains("--service")) {
+			/* Long running process. */
+			Metrics.registerMBean();
+		}
+
+		Cli.handleArgs(args);
+
+		/* No command given. */
+		System.out.println("Usage: --sync [--progress] [--metrics <file>]");
+		System.out.println("       --service <accounts dir> [--interval <minutes>] [--threads <n>] [--metrics <file>]");
+		System.out.println("       --report [--service <accounts dir>]");
+		System.out.println("       --search <query>");
+		System.out.println("       --refetch <course title|course id|document id>");
+		System.exit(1);
+	}
+
+}
@@ -4,10 +4,10 @@ import java.io.IOException;
 import java.net.InetAddress;
 import java.net.ServerSocket;
 import java.util.LinkedList;
-import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import de.uni.hannover.studip.sync.metrics.Metrics;
 import de.uni.hannover.studip.sync.utils.Cli;
 import de.uni.hannover.studip.sync.utils.SimpleAlert;
 import de.uni.hannover.studip.sync.views.AbstractController;
@@ -56,16 +56,6 @@ public class Main extends Application {
 	 */
 	private static final LinkedList<String> VIEW_HISTORY = new LinkedList<String>();
 
-	/**
-	 * Global tree file lock.
-	 */
-	public static final ReentrantLock TREE_LOCK = new ReentrantLock();
-
-	/**
-	 * Global flag to signal graceful shutdown of worker threads on app exit.
-	 */
-	public static volatile boolean exitPending;
-
 	private Stage primaryStage;
 	private BorderPane rootLayout;
 	private RootLayoutController rootLayoutController;
@@ -82,7 +72,7 @@ public class Main extends Application {
 			throwable.printStackTrace();
 
 			// Signal worker threads to terminate gracefully.
-			exitPending = true;
+			AppState.exitPending = true;
 
 			// Show stacktrace and terminate app.
 			Platform.runLater(() -> {
@@ -113,6 +103,8 @@ public class Main extends Application {
 			// Acquire system wide app mutex to allow only one running instance.
 			globalAppMutex = new ServerSocket(9001, 10, InetAddress.getLoopbackAddress());
 
+			Metrics.registerMBean();
+
 			Cli.handleArgs(args);
 			launch(args);
 
@@ -159,7 +151,7 @@ public class Main extends Application {
 
 			primaryStage.setOnCloseRequest(event -> {
 				// Signal worker threads to terminate gracefully.
-				exitPending = true;
+				AppState.exitPending = true;
 				Platform.exit();
 			});
 
@@ -0,0 +1,28 @@
+package de.uni.hannover.studip.sync.datamodel;
+
+/**
+ * Extracted document text record used for json object binding.
+ *
+ * @author Lennart Glauer
+ */
+public class ContentRecord {
+
+	public String documentId;
+
+	/* Change date of the indexed document version. */
+	public long chDate;
+
+	/* Distinct search terms, separated by spaces. */
+	public String terms;
+
+	public ContentRecord() {
+		// Needed for json object binding.
+	}
+
+	public ContentRecord(final String documentId, final long chDate, final String terms) {
+		this.documentId = documentId;
+		this.chDate = chDate;
+		this.terms = terms;
+	}
+
+}
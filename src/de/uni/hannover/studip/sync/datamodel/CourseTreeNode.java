@@ -36,6 +36,9 @@ public class CourseTreeNode {
 	/* Last update time used for request caching. */
 	public long updateTime;
 
+	/* Cached local path relative to the sync root directory. */
+	public String path;
+
 	/* Child nodes. */
 	public DocumentFolderTreeNode root = new DocumentFolderTreeNode();
 
@@ -10,7 +10,7 @@ import de.elanev.studip.android.app.backend.datamodel.DocumentFolder;
  * Folder tree node used for json object binding.
  * 
  * @author Lennart Glauer
- * @notice Thread safe
+ * @notice Child lists are immutable, modifications replace the list
  */
 public class DocumentFolderTreeNode {
 
@@ -20,9 +20,12 @@ public class DocumentFolderTreeNode {
 	public String mkDate;
 	public Long chDate;
 
+	/* Cached local path relative to the sync root directory. */
+	public String path;
+
 	/* Child nodes. */
-	public final List<DocumentFolderTreeNode> folders = Collections.synchronizedList(new ArrayList<DocumentFolderTreeNode>());
-	public final List<DocumentTreeNode> documents = Collections.synchronizedList(new ArrayList<DocumentTreeNode>());
+	public List<DocumentFolderTreeNode> folders = Collections.emptyList();
+	public List<DocumentTreeNode> documents = Collections.emptyList();
 
 	public DocumentFolderTreeNode() {
 		// Course root node.
@@ -36,4 +39,32 @@ public class DocumentFolderTreeNode {
 		this.chDate = folder.chdate;
 	}
 
+	/**
+	 * Freeze all child lists (recursive).
+	 */
+	public void freeze() {
+		folders = Collections.unmodifiableList(folders);
+		documents = Collections.unmodifiableList(documents);
+
+		for (final DocumentFolderTreeNode folder : folders) {
+			folder.freeze();
+		}
+	}
+
+	/**
+	 * Remove document node (copy on write).
+	 * 
+	 * @param document Document tree-node
+	 * @return True if document was removed
+	 */
+	public boolean removeDocument(final DocumentTreeNode document) {
+		final List<DocumentTreeNode> list = new ArrayList<DocumentTreeNode>(documents);
+		if (!list.remove(document)) {
+			return false;
+		}
+
+		documents = Collections.unmodifiableList(list);
+		return true;
+	}
+
 }
@@ -1,5 +1,7 @@
 package de.uni.hannover.studip.sync.datamodel;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 import de.elanev.studip.android.app.backend.datamodel.Document;
 
 /**
@@ -19,6 +21,13 @@ public class DocumentTreeNode {
 	public String fileName;
 	public Long fileSize;
 
+	/* Cached local path relative to the sync root directory. */
+	public String path;
+
+	/* True if the local file was deleted by the disk budget (not downloaded again until refetched). */
+	@JsonInclude(JsonInclude.Include.NON_NULL)
+	public Boolean evicted;
+
 	public DocumentTreeNode() {
 		// Needed for json object binding.
 	}
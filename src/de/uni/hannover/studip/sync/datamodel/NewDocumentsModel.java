@@ -1,88 +1,103 @@
 package de.uni.hannover.studip.sync.datamodel;
 
 import java.nio.file.Path;
-import java.text.SimpleDateFormat;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.Date;
 import java.util.Locale;
 
-import javafx.beans.property.SimpleObjectProperty;
-import javafx.beans.property.SimpleStringProperty;
-
 /**
  * New documents table datamodel.
- * 
+ *
+ * Plain fields only (no JavaFX properties), rows are created on a background thread.
+ *
  * @author Lennart Glauer
  * @notice Thread safe (immutable object)
  */
 public class NewDocumentsModel {
 
-	protected final SimpleDateFormat dateFormat = new SimpleDateFormat("dd.MM.yy HH:mm:ss", Locale.GERMANY);
+	/**
+	 * Shared date format (DateTimeFormatter is thread safe).
+	 */
+	protected static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("dd.MM.yy HH:mm:ss", Locale.GERMANY)
+			.withZone(ZoneId.systemDefault());
 
-	private final SimpleStringProperty semesterTitle;
-	private final SimpleStringProperty courseTitle;
-	private final SimpleObjectProperty<Date> documentChDate;
-	private final SimpleStringProperty documentName;
+	private final String documentId;
+	private final String semesterTitle;
+	private final String courseTitle;
+	private final Date documentChDate;
+	private final String documentName;
 	private final String documentDescription;
 	private final Path documentFile;
 
 	/**
-	 * 
-	 * @param courseNode
-	 * @param documentNode
-	 * @param file
+	 *
+	 * @param document Recency index entry
+	 * @param rootDirectory Sync root directory
 	 */
-	public NewDocumentsModel(final SemesterTreeNode semesterNode, final CourseTreeNode courseNode, final DocumentTreeNode documentNode, final Path file) {
-		semesterTitle = new SimpleStringProperty(semesterNode.title);
-		courseTitle = new SimpleStringProperty(courseNode.title);
+	public NewDocumentsModel(final RecentDocument document, final Path rootDirectory) {
+		documentId = document.documentId;
+		semesterTitle = document.semesterTitle;
+		courseTitle = document.courseTitle;
 
-		documentChDate = new SimpleObjectProperty<Date>(new Date(documentNode.chDate * 1000L) {
+		documentChDate = new Date(document.chDate * 1000L) {
 			private static final long serialVersionUID = 1L;
 
 			@Override
 			public String toString() {
-				return dateFormat.format(this);
+				return DATE_FORMAT.format(toInstant());
 			}
-		});
+		};
 
-		documentName = new SimpleStringProperty(documentNode.name);
-		documentDescription = documentNode.description.isEmpty() ? "Keine Beschreibung vorhanden" : documentNode.description;
-		documentFile = file;
+		documentName = document.name;
+		documentDescription = document.description == null || document.description.isEmpty()
+				? "Keine Beschreibung vorhanden"
+				: document.description;
+		documentFile = document.path == null ? null : rootDirectory.resolve(document.path);
 	}
 
 	/**
-	 * 
+	 *
+	 * @return
+	 */
+	public String getDocumentId() {
+		return documentId;
+	}
+
+	/**
+	 *
 	 * @return
 	 */
 	public String getSemesterTitle() {
-		return semesterTitle.get();
+		return semesterTitle;
 	}
 
 	/**
-	 * 
+	 *
 	 * @return
 	 */
 	public String getCourseTitle() {
-		return courseTitle.get();
+		return courseTitle;
 	}
 
 	/**
-	 * 
+	 *
 	 * @return
 	 */
 	public Date getDocumentChdate() {
-		return documentChDate.get();
+		return documentChDate;
 	}
 
 	/**
-	 * 
+	 *
 	 * @return
 	 */
 	public String getDocumentName() {
-		return documentName.get();
+		return documentName;
 	}
 
 	/**
-	 * 
+	 *
 	 * @return
 	 */
 	public String getDocumentDescription() {
@@ -90,10 +105,10 @@ public class NewDocumentsModel {
 	}
 
 	/**
-	 * 
-	 * @return
+	 *
+	 * @return Document file or null, if the path is unknown
 	 */
 	public Path getDocumentFile() {
 		return documentFile;
 	}
-}
\ No newline at end of file
+}
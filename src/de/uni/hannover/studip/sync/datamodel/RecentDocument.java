@@ -0,0 +1,37 @@
+package de.uni.hannover.studip.sync.datamodel;
+
+/**
+ * Recency and search index entry used for json object binding.
+ *
+ * @author Lennart Glauer
+ */
+public class RecentDocument {
+
+	public String documentId;
+	public String name;
+	public String fileName;
+	public String description;
+	public long chDate;
+
+	/* Local path relative to the sync root directory. */
+	public String path;
+
+	public String courseTitle;
+	public String semesterTitle;
+
+	public RecentDocument() {
+		// Needed for json object binding.
+	}
+
+	public RecentDocument(final SemesterTreeNode semester, final CourseTreeNode course, final DocumentTreeNode document) {
+		this.documentId = document.documentId;
+		this.name = document.name;
+		this.fileName = document.fileName;
+		this.description = document.description;
+		this.chDate = document.chDate == null ? 0 : document.chDate;
+		this.path = document.path;
+		this.courseTitle = course.title;
+		this.semesterTitle = semester.title;
+	}
+
+}
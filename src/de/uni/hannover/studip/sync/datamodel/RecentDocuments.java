@@ -0,0 +1,20 @@
+package de.uni.hannover.studip.sync.datamodel;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Recency index (most recently changed documents) used for json object binding.
+ *
+ * @author Lennart Glauer
+ */
+public class RecentDocuments {
+
+	/* Settings used to resolve the local paths (see SemestersTreeNode). */
+	public String folderStructure;
+	public Integer replaceWhitespaces;
+
+	/* Newest document first. */
+	public List<RecentDocument> documents = new ArrayList<RecentDocument>();
+
+}
@@ -0,0 +1,63 @@
+package de.uni.hannover.studip.sync.datamodel;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Sync run history record used for json object binding.
+ *
+ * @author Lennart Glauer
+ */
+public class RunRecord {
+
+	/**
+	 * Start time (unix time).
+	 */
+	public long time;
+
+	/**
+	 * gui, cli or service.
+	 */
+	public String mode;
+
+	/**
+	 * ok, aborted or failed.
+	 */
+	public String status;
+
+	/**
+	 * Phase durations in seconds (build, update, sync).
+	 */
+	public Map<String, Double> phases = new TreeMap<String, Double>();
+
+	/**
+	 * Number of requests per endpoint.
+	 */
+	public Map<String, Long> requests = new TreeMap<String, Long>();
+
+	/**
+	 * Connection errors and unexpected status codes.
+	 */
+	public long errors;
+
+	/**
+	 * Downloaded files.
+	 */
+	public long files;
+
+	/**
+	 * Downloaded bytes.
+	 */
+	public long bytes;
+
+	/**
+	 * Download throughput in bytes per second.
+	 */
+	public double throughput;
+
+	/**
+	 * Number of jobs.
+	 */
+	public long jobs;
+
+}
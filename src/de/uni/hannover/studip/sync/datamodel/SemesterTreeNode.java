@@ -10,7 +10,7 @@ import de.elanev.studip.android.app.backend.datamodel.Semester;
  * Semester tree node used for json object binding.
  * 
  * @author Lennart Glauer
- * @notice Thread safe
+ * @notice Child lists are immutable, modifications replace the list
  */
 public class SemesterTreeNode {
 
@@ -22,7 +22,7 @@ public class SemesterTreeNode {
 	public long seminarsEnd;
 
 	/* Child nodes. */
-	public final List<CourseTreeNode> courses = Collections.synchronizedList(new ArrayList<CourseTreeNode>());
+	public List<CourseTreeNode> courses = Collections.emptyList();
 
 	public SemesterTreeNode() {
 		// Needed for json object binding.
@@ -37,4 +37,31 @@ public class SemesterTreeNode {
 		this.seminarsEnd = semester.seminars_end;
 	}
 
+	/**
+	 * Freeze all child lists (recursive).
+	 */
+	public void freeze() {
+		courses = Collections.unmodifiableList(courses);
+
+		for (final CourseTreeNode course : courses) {
+			course.root.freeze();
+		}
+	}
+
+	/**
+	 * Remove course node (copy on write).
+	 * 
+	 * @param course Course tree-node
+	 * @return True if course was removed
+	 */
+	public boolean removeCourse(final CourseTreeNode course) {
+		final List<CourseTreeNode> list = new ArrayList<CourseTreeNode>(courses);
+		if (!list.remove(course)) {
+			return false;
+		}
+
+		courses = Collections.unmodifiableList(list);
+		return true;
+	}
+
 }
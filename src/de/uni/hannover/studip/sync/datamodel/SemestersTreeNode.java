@@ -1,6 +1,5 @@
 package de.uni.hannover.studip.sync.datamodel;
 
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
@@ -8,10 +7,29 @@ import java.util.List;
  * Semesters tree node used for json object binding.
  * 
  * @author Lennart Glauer
- * @notice Thread safe
+ * @notice Child lists are immutable, modifications replace the list
  */
 public class SemestersTreeNode {
 
-	public final List<SemesterTreeNode> semesters = Collections.synchronizedList(new ArrayList<SemesterTreeNode>());
+	public List<SemesterTreeNode> semesters = Collections.emptyList();
+
+	/* Settings used to resolve the cached local paths. */
+	public String folderStructure;
+	public Integer replaceWhitespaces;
+
+	/* Activity feed cursor (unix timestamp of the last activity query), 0 if unknown. */
+	public long activityTime;
+
+	/**
+	 * Freeze all child lists of the tree (recursive).
+	 * Must be called once after the tree was read from json.
+	 */
+	public void freeze() {
+		semesters = Collections.unmodifiableList(semesters);
+
+		for (final SemesterTreeNode semester : semesters) {
+			semester.freeze();
+		}
+	}
 
 }
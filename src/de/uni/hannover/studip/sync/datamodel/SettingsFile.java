@@ -1,5 +1,8 @@
 package de.uni.hannover.studip.sync.datamodel;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Config data model used for json object binding.
  * 
@@ -36,4 +39,16 @@ public class SettingsFile {
 	 */
 	public int replaceWhitespaces;
 
+	/**
+	 * Disk budget of the sync root directory in MB (0: unlimited).
+	 * If exceeded, the least recently accessed documents of past semesters are deleted.
+	 */
+	public int diskBudget;
+
+	/**
+	 * Selective sync rules, the first matching rule decides
+	 * if a document is downloaded (see SyncRule).
+	 */
+	public List<SyncRule> syncRules = new ArrayList<SyncRule>();
+
 }
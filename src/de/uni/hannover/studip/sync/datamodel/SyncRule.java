@@ -0,0 +1,50 @@
+package de.uni.hannover.studip.sync.datamodel;
+
+/**
+ * Selective sync rule used for json object binding.
+ *
+ * A rule matches a document if all given criteria match (unset criteria match everything).
+ * Title and folder patterns are case insensitive globs: * matches any characters except /,
+ * ** also matches / and ? matches a single character.
+ *
+ * @author Lennart Glauer
+ */
+public class SyncRule {
+
+	/**
+	 * If true matching documents are downloaded, otherwise they are skipped.
+	 */
+	public boolean include;
+
+	/**
+	 * Semester title pattern or semester id.
+	 */
+	public String semester;
+
+	/**
+	 * Course title pattern or course id.
+	 */
+	public String course;
+
+	/**
+	 * Stud.IP course type (see CourseTreeNode).
+	 */
+	public Integer courseType;
+
+	/**
+	 * Folder path pattern relative to the course directory (e.g. "Aufzeichnungen" or "Vorlesung/Video*"),
+	 * matches the folder and all of its sub folders.
+	 */
+	public String folder;
+
+	/**
+	 * Comma separated file extensions (e.g. "mp4,mkv").
+	 */
+	public String extension;
+
+	/**
+	 * Matches documents larger than this size in bytes.
+	 */
+	public Long largerThan;
+
+}
@@ -0,0 +1,218 @@
+package de.uni.hannover.studip.sync.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import de.uni.hannover.studip.sync.metrics.Counter;
+import de.uni.hannover.studip.sync.metrics.Metrics;
+
+/**
+ * Http transfer compression (gzip/deflate).
+ *
+ * Requests announce gzip and deflate, compressed responses are decoded while
+ * they are read, so Jackson and the download writer get the plain stream.
+ *
+ * @author Lennart Glauer
+ * @notice Thread safe
+ */
+public final class ContentEncoding {
+
+	/**
+	 * Accept-Encoding request header value.
+	 */
+	public static final String ACCEPT_ENCODING = "gzip, deflate";
+
+	private static final int BUFFER_SIZE = 8192;
+
+	private ContentEncoding() {
+		// Utility class.
+	}
+
+	/**
+	 * Get the decoded response stream.
+	 *
+	 * @param response Http response
+	 * @param endpoint Endpoint name for metrics
+	 * @return Decoded input stream
+	 */
+	public static InputStream decode(final HttpResponse response, final String endpoint) {
+		String encoding = response.getHeader("Content-Encoding");
+		if (encoding == null) {
+			return response.getStream();
+		}
+
+		encoding = encoding.trim().toLowerCase(Locale.ROOT);
+		switch (encoding) {
+		case "gzip":
+		case "x-gzip":
+		case "deflate":
+			Metrics.counter("studip_sync_compressed_responses_total", "Compressed responses by endpoint and encoding.",
+					"endpoint", endpoint, "encoding", encoding).inc();
+			return new DecodingInputStream(response.getStream(), !encoding.equals("deflate"),
+					Metrics.counter("studip_sync_compressed_wire_bytes_total", "Transferred bytes of compressed responses by endpoint.",
+							"endpoint", endpoint),
+					Metrics.counter("studip_sync_compression_saved_bytes_total", "Bytes saved by transfer compression by endpoint.",
+							"endpoint", endpoint));
+		default:
+			/* Identity or unknown encoding. */
+			return response.getStream();
+		}
+	}
+
+	/**
+	 * Counting input stream (wire bytes).
+	 */
+	private static final class CountingInputStream extends PushbackInputStream {
+		private long count;
+
+		CountingInputStream(final InputStream in) {
+			super(in, 2);
+		}
+
+		@Override
+		public int read() throws IOException {
+			final int b = super.read();
+			if (b >= 0) {
+				count++;
+			}
+			return b;
+		}
+
+		@Override
+		public int read(final byte[] b, final int off, final int len) throws IOException {
+			final int n = super.read(b, off, len);
+			if (n > 0) {
+				count += n;
+			}
+			return n;
+		}
+
+		@Override
+		public void unread(final byte[] b, final int off, final int len) throws IOException {
+			super.unread(b, off, len);
+			count -= len;
+		}
+	}
+
+	/**
+	 * Lazy decoding input stream.
+	 *
+	 * The decoder is created on the first read, so an unread (error) response does not fail.
+	 */
+	private static final class DecodingInputStream extends InputStream {
+		private final CountingInputStream raw;
+		private final boolean gzip;
+		private final Counter wireBytes;
+		private final Counter savedBytes;
+
+		private InputStream decoded;
+		private Inflater inflater;
+		private long decodedBytes;
+		private boolean closed;
+
+		DecodingInputStream(final InputStream raw, final boolean gzip, final Counter wireBytes, final Counter savedBytes) {
+			this.raw = new CountingInputStream(raw);
+			this.gzip = gzip;
+			this.wireBytes = wireBytes;
+			this.savedBytes = savedBytes;
+		}
+
+		private InputStream decoded() throws IOException {
+			if (decoded != null) {
+				return decoded;
+			}
+
+			final byte[] header = new byte[2];
+			int length = 0;
+			int n;
+			while (length < header.length && (n = raw.read(header, length, header.length - length)) > 0) {
+				length += n;
+			}
+			raw.unread(header, 0, length);
+
+			if (length == 0) {
+				/* Empty body. */
+				decoded = raw;
+
+			} else if (gzip) {
+				decoded = new GZIPInputStream(raw, BUFFER_SIZE);
+
+			} else {
+				/* Http deflate is zlib wrapped, but some servers send raw deflate data. */
+				final boolean zlib = length == 2 && (header[0] & 0x0f) == 8
+						&& (((header[0] & 0xff) << 8) | (header[1] & 0xff)) % 31 == 0;
+				inflater = new Inflater(!zlib);
+				decoded = new InflaterInputStream(raw, inflater, BUFFER_SIZE);
+			}
+
+			return decoded;
+		}
+
+		@Override
+		public int read() throws IOException {
+			final int b = decoded().read();
+			if (b >= 0) {
+				decodedBytes++;
+			} else {
+				drain();
+			}
+			return b;
+		}
+
+		@Override
+		public int read(final byte[] b, final int off, final int len) throws IOException {
+			final int n = decoded().read(b, off, len);
+			if (n > 0) {
+				decodedBytes += n;
+			} else if (n < 0) {
+				drain();
+			}
+			return n;
+		}
+
+		@Override
+		public int available() throws IOException {
+			return decoded == null ? 0 : decoded.available();
+		}
+
+		/**
+		 * Consume trailing bytes after the compressed data (connection reuse).
+		 */
+		private void drain() throws IOException {
+			final byte[] buffer = new byte[256];
+			while (raw.read(buffer, 0, buffer.length) >= 0) {
+				// Skip.
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (closed) {
+				return;
+			}
+
+			closed = true;
+			try {
+				if (decoded != null) {
+					decoded.close();
+				} else {
+					raw.close();
+				}
+
+			} finally {
+				if (inflater != null) {
+					inflater.end();
+				}
+
+				wireBytes.add(raw.count);
+				savedBytes.add(Math.max(0, decodedBytes - raw.count));
+			}
+		}
+	}
+
+}
@@ -0,0 +1,53 @@
+package de.uni.hannover.studip.sync.http;
+
+import java.io.InputStream;
+import java.util.Map;
+
+/**
+ * Http response of a transport.
+ *
+ * @author Lennart Glauer
+ * @see Transport
+ */
+public interface HttpResponse {
+
+	/**
+	 * Get response status code.
+	 *
+	 * @return Response HTTP status code
+	 */
+	int getCode();
+
+	/**
+	 * Get response headers.
+	 *
+	 * @return Response header map (last value of each header)
+	 */
+	Map<String, String> getHeaders();
+
+	/**
+	 * Get response header (case insensitive).
+	 *
+	 * @param name Header name
+	 * @return Header value or null
+	 */
+	default String getHeader(final String name) {
+		for (final Map.Entry<String, String> header : getHeaders().entrySet()) {
+			if (name.equalsIgnoreCase(header.getKey())) {
+				return header.getValue();
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Get response body stream (also for error responses), not decoded.
+	 *
+	 * @see ContentEncoding
+	 *
+	 * @return Response input stream
+	 */
+	InputStream getStream();
+
+}
@@ -0,0 +1,40 @@
+package de.uni.hannover.studip.sync.http;
+
+import org.scribe.model.OAuthRequest;
+
+/**
+ * Http transport for signed oauth requests.
+ *
+ * @author Lennart Glauer
+ * @notice Implementations must be thread safe
+ * @see Transports
+ */
+public interface Transport {
+
+	/**
+	 * Connect timeout in seconds.
+	 */
+	int CONNECT_TIMEOUT = 10;
+
+	/**
+	 * Read timeout (until the response header) in seconds.
+	 */
+	int READ_TIMEOUT = 30;
+
+	/**
+	 * Send a signed request.
+	 *
+	 * @param request Signed oauth request
+	 * @return Http response
+	 * @throws org.scribe.exceptions.OAuthConnectionException If the connection failed
+	 */
+	HttpResponse send(OAuthRequest request);
+
+	/**
+	 * Get transport name.
+	 *
+	 * @return Transport name
+	 */
+	String getName();
+
+}
@@ -0,0 +1,58 @@
+package de.uni.hannover.studip.sync.http;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Transport selection.
+ *
+ * The system property studip.transport selects the transport:
+ * auto (default, java.net.http if available), httpclient or urlconnection.
+ * The httpclient transport is not part of the java 8 build, it is loaded from
+ * the optional add-on jar (see src-java11).
+ *
+ * @author Lennart Glauer
+ * @notice Thread safe
+ */
+public final class Transports {
+
+	private static final Logger LOG = Logger.getLogger(Logger.GLOBAL_LOGGER_NAME);
+
+	private static final Transport INSTANCE = load();
+
+	private Transports() {
+		// Utility class.
+	}
+
+	/**
+	 * Get the transport shared by all accounts.
+	 *
+	 * @return Transport instance
+	 */
+	public static Transport get() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Load the configured transport.
+	 */
+	private static Transport load() {
+		final String name = System.getProperty("studip.transport", "auto");
+
+		if (!"urlconnection".equals(name)) {
+			try {
+				Class.forName("java.net.http.HttpClient");
+				return (Transport) Class.forName("de.uni.hannover.studip.sync.http.HttpClientTransport").newInstance();
+
+			} catch (ReflectiveOperationException | LinkageError e) {
+				/* No java.net.http support (java 8) or add-on jar missing. */
+				if ("httpclient".equals(name) && LOG.isLoggable(Level.WARNING)) {
+					LOG.warning("HttpClient transport requires java 11 and the httpclient add-on jar, using urlconnection.");
+				}
+			}
+		}
+
+		return new UrlConnectionTransport();
+	}
+
+}
@@ -0,0 +1,44 @@
+package de.uni.hannover.studip.sync.http;
+
+import java.io.InputStream;
+import java.util.Map;
+
+import org.scribe.model.OAuthRequest;
+import org.scribe.model.Response;
+
+/**
+ * Scribe transport (HttpURLConnection, one blocking connection per request with keep-alive).
+ *
+ * @author Lennart Glauer
+ * @notice Thread safe
+ */
+final class UrlConnectionTransport implements Transport {
+
+	@Override
+	public HttpResponse send(final OAuthRequest request) {
+		final Response response = request.send();
+
+		return new HttpResponse() {
+			@Override
+			public int getCode() {
+				return response.getCode();
+			}
+
+			@Override
+			public Map<String, String> getHeaders() {
+				return response.getHeaders();
+			}
+
+			@Override
+			public InputStream getStream() {
+				return response.getStream();
+			}
+		};
+	}
+
+	@Override
+	public String getName() {
+		return "urlconnection";
+	}
+
+}
@@ -0,0 +1,54 @@
+package de.uni.hannover.studip.sync.metrics;
+
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Monotonic counter.
+ *
+ * @author Lennart Glauer
+ * @notice Thread safe
+ */
+public final class Counter extends Metric {
+
+	private final LongAdder value = new LongAdder();
+
+	Counter() {
+		// Use Metrics.counter().
+	}
+
+	/**
+	 * Increment by one.
+	 */
+	public void inc() {
+		value.increment();
+	}
+
+	/**
+	 * Increment by the given amount.
+	 *
+	 * @param amount Non-negative amount
+	 */
+	public void add(final long amount) {
+		value.add(amount);
+	}
+
+	/**
+	 * Get current value.
+	 *
+	 * @return
+	 */
+	public long get() {
+		return value.sum();
+	}
+
+	@Override
+	void write(final StringBuilder out, final String name, final String labels) {
+		out.append(name).append(labels).append(' ').append(get()).append('\n');
+	}
+
+	@Override
+	void collect(final Map<String, Object> values, final String name, final String labels) {
+		values.put(name + labels, get());
+	}
+}
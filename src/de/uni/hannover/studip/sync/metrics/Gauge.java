@@ -0,0 +1,76 @@
+package de.uni.hannover.studip.sync.metrics;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Gauge (value that can go up and down).
+ *
+ * @author Lennart Glauer
+ * @notice Thread safe
+ */
+public final class Gauge extends Metric {
+
+	/**
+	 * Double value bits.
+	 */
+	private final AtomicLong bits = new AtomicLong(Double.doubleToLongBits(0));
+
+	Gauge() {
+		// Use Metrics.gauge().
+	}
+
+	/**
+	 * Set value.
+	 *
+	 * @param value
+	 */
+	public void set(final double value) {
+		bits.set(Double.doubleToLongBits(value));
+	}
+
+	/**
+	 * Add to value.
+	 *
+	 * @param amount Amount, may be negative
+	 */
+	public void add(final double amount) {
+		long current;
+		do {
+			current = bits.get();
+		} while (!bits.compareAndSet(current, Double.doubleToLongBits(Double.longBitsToDouble(current) + amount)));
+	}
+
+	/**
+	 * Increment by one.
+	 */
+	public void inc() {
+		add(1);
+	}
+
+	/**
+	 * Decrement by one.
+	 */
+	public void dec() {
+		add(-1);
+	}
+
+	/**
+	 * Get current value.
+	 *
+	 * @return
+	 */
+	public double get() {
+		return Double.longBitsToDouble(bits.get());
+	}
+
+	@Override
+	void write(final StringBuilder out, final String name, final String labels) {
+		out.append(name).append(labels).append(' ').append(format(get())).append('\n');
+	}
+
+	@Override
+	void collect(final Map<String, Object> values, final String name, final String labels) {
+		values.put(name + labels, get());
+	}
+}
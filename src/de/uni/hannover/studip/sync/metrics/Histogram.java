@@ -0,0 +1,116 @@
+package de.uni.hannover.studip.sync.metrics;
+
+import java.util.Map;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histogram with fixed buckets (seconds).
+ *
+ * @author Lennart Glauer
+ * @notice Thread safe
+ */
+public final class Histogram extends Metric {
+
+	/**
+	 * Upper bucket bounds in seconds (prometheus client defaults plus longer buckets for tree phases).
+	 */
+	private static final double[] BOUNDS = {0.001, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30, 60, 300};
+
+	/**
+	 * Upper bucket bounds in nanoseconds.
+	 */
+	private static final long[] BOUNDS_NANOS = new long[BOUNDS.length];
+
+	static {
+		for (int i = 0; i < BOUNDS.length; i++) {
+			BOUNDS_NANOS[i] = (long) (BOUNDS[i] * 1e9);
+		}
+	}
+
+	/**
+	 * Observations per bucket (not cumulative), the last bucket is +Inf.
+	 */
+	private final LongAdder[] buckets = new LongAdder[BOUNDS.length + 1];
+
+	/**
+	 * Sum of all observations in seconds.
+	 */
+	private final DoubleAdder sum = new DoubleAdder();
+
+	Histogram() {
+		for (int i = 0; i < buckets.length; i++) {
+			buckets[i] = new LongAdder();
+		}
+	}
+
+	/**
+	 * Record an observation.
+	 *
+	 * @param nanos Duration in nanoseconds
+	 */
+	public void observeNanos(final long nanos) {
+		int i = 0;
+		while (i < BOUNDS_NANOS.length && nanos > BOUNDS_NANOS[i]) {
+			i++;
+		}
+
+		buckets[i].increment();
+		sum.add(nanos / 1e9);
+	}
+
+	/**
+	 * Record the time elapsed since start.
+	 *
+	 * @param start Start time (System.nanoTime)
+	 */
+	public void observeSince(final long start) {
+		observeNanos(System.nanoTime() - start);
+	}
+
+	/**
+	 * Get number of observations.
+	 *
+	 * @return
+	 */
+	public long getCount() {
+		long count = 0;
+		for (final LongAdder bucket : buckets) {
+			count += bucket.sum();
+		}
+
+		return count;
+	}
+
+	/**
+	 * Get sum of all observations in seconds.
+	 *
+	 * @return
+	 */
+	public double getSum() {
+		return sum.sum();
+	}
+
+	@Override
+	void write(final StringBuilder out, final String name, final String labels) {
+		/* Merge the le label into the label set. */
+		final String prefix = labels.isEmpty() ? "{" : labels.substring(0, labels.length() - 1) + ',';
+
+		long count = 0;
+		for (int i = 0; i < buckets.length; i++) {
+			count += buckets[i].sum();
+			out.append(name).append("_bucket").append(prefix)
+					.append("le=\"").append(i < BOUNDS.length ? format(BOUNDS[i]) : "+Inf").append("\"} ")
+					.append(count).append('\n');
+		}
+
+		out.append(name).append("_sum").append(labels).append(' ').append(format(getSum())).append('\n');
+		out.append(name).append("_count").append(labels).append(' ').append(count).append('\n');
+	}
+
+	@Override
+	void collect(final Map<String, Object> values, final String name, final String labels) {
+		values.put(name + "_count" + labels, getCount());
+		values.put(name + "_sum" + labels, getSum());
+	}
+}
@@ -0,0 +1,41 @@
+package de.uni.hannover.studip.sync.metrics;
+
+import java.util.Map;
+
+/**
+ * Metric time series (one label set of a metric family).
+ *
+ * @author Lennart Glauer
+ * @notice Thread safe
+ */
+abstract class Metric {
+
+	/**
+	 * Append the series in prometheus text format.
+	 *
+	 * @param out Output buffer
+	 * @param name Metric family name
+	 * @param labels Label set, e.g. {endpoint="semesters"} or empty string
+	 */
+	abstract void write(StringBuilder out, String name, String labels);
+
+	/**
+	 * Put the current values into the map (jmx attributes).
+	 *
+	 * @param values Attribute map
+	 * @param name Metric family name
+	 * @param labels Label set, e.g. {endpoint="semesters"} or empty string
+	 */
+	abstract void collect(Map<String, Object> values, String name, String labels);
+
+	/**
+	 * Format a sample value.
+	 */
+	static String format(final double value) {
+		if (value == (long) value) {
+			return Long.toString((long) value);
+		}
+
+		return Double.toString(value);
+	}
+}
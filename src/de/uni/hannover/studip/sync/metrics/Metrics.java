@@ -0,0 +1,233 @@
+package de.uni.hannover.studip.sync.metrics;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Metrics registry.
+ *
+ * Metrics are grouped in families (name, help, type) with one series per label set.
+ * The registry is exposed as jmx mbean and can be written as prometheus text file
+ * (e.g. for the node exporter textfile collector after a cron sync).
+ *
+ * @author Lennart Glauer
+ * @notice Thread safe
+ */
+public final class Metrics {
+
+	private static final Logger LOG = Logger.getLogger(Logger.GLOBAL_LOGGER_NAME);
+
+	/**
+	 * Jmx object name.
+	 */
+	public static final String OBJECT_NAME = "de.uni.hannover.studip.sync:type=Metrics";
+
+	/**
+	 * Metric families by name.
+	 */
+	private static final ConcurrentHashMap<String, Family> FAMILIES = new ConcurrentHashMap<String, Family>();
+
+	private Metrics() {
+		// Utility class.
+	}
+
+	/**
+	 * Metric family.
+	 */
+	private static final class Family {
+		private final String help;
+		private final String type;
+		private final ConcurrentHashMap<String, Metric> series = new ConcurrentHashMap<String, Metric>();
+
+		private Family(final String help, final String type) {
+			this.help = help;
+			this.type = type;
+		}
+	}
+
+	/**
+	 * Get or create a counter.
+	 *
+	 * @param name Metric name
+	 * @param help Metric description
+	 * @param labels Label name/value pairs
+	 * @return Counter
+	 */
+	public static Counter counter(final String name, final String help, final String... labels) {
+		return get(name, help, "counter", labels, Counter::new);
+	}
+
+	/**
+	 * Get or create a gauge.
+	 *
+	 * @param name Metric name
+	 * @param help Metric description
+	 * @param labels Label name/value pairs
+	 * @return Gauge
+	 */
+	public static Gauge gauge(final String name, final String help, final String... labels) {
+		return get(name, help, "gauge", labels, Gauge::new);
+	}
+
+	/**
+	 * Get or create a histogram.
+	 *
+	 * @param name Metric name
+	 * @param help Metric description
+	 * @param labels Label name/value pairs
+	 * @return Histogram
+	 */
+	public static Histogram histogram(final String name, final String help, final String... labels) {
+		return get(name, help, "histogram", labels, Histogram::new);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T extends Metric> T get(final String name, final String help, final String type, final String[] labels, final Supplier<T> factory) {
+		final Family family = FAMILIES.computeIfAbsent(name, key -> new Family(help, type));
+		if (!family.type.equals(type)) {
+			throw new IllegalArgumentException("Metric " + name + " is a " + family.type + "!");
+		}
+
+		return (T) family.series.computeIfAbsent(formatLabels(labels), key -> factory.get());
+	}
+
+	/**
+	 * Format label pairs in prometheus syntax, e.g. {endpoint="semesters"}.
+	 */
+	private static String formatLabels(final String[] labels) {
+		if (labels.length == 0) {
+			return "";
+		}
+
+		if (labels.length % 2 != 0) {
+			throw new IllegalArgumentException("Labels must be name/value pairs!");
+		}
+
+		final StringBuilder sb = new StringBuilder("{");
+		for (int i = 0; i < labels.length; i += 2) {
+			if (i > 0) {
+				sb.append(',');
+			}
+
+			sb.append(labels[i]).append("=\"");
+			final String value = labels[i + 1];
+			for (int j = 0; j < value.length(); j++) {
+				final char c = value.charAt(j);
+				switch (c) {
+				case '\\':
+					sb.append("\\\\");
+					break;
+				case '"':
+					sb.append("\\\"");
+					break;
+				case '\n':
+					sb.append("\\n");
+					break;
+				default:
+					sb.append(c);
+					break;
+				}
+			}
+			sb.append('"');
+		}
+
+		return sb.append('}').toString();
+	}
+
+	/**
+	 * Get all metrics in prometheus text format, sorted by name and labels.
+	 *
+	 * @return Prometheus text exposition
+	 */
+	public static String toText() {
+		final StringBuilder out = new StringBuilder();
+
+		for (final Map.Entry<String, Family> entry : new TreeMap<String, Family>(FAMILIES).entrySet()) {
+			final String name = entry.getKey();
+			final Family family = entry.getValue();
+
+			out.append("# HELP ").append(name).append(' ').append(family.help.replace("\\", "\\\\").replace("\n", "\\n")).append('\n');
+			out.append("# TYPE ").append(name).append(' ').append(family.type).append('\n');
+
+			for (final Map.Entry<String, Metric> series : new TreeMap<String, Metric>(family.series).entrySet()) {
+				series.getValue().write(out, name, series.getKey());
+			}
+		}
+
+		return out.toString();
+	}
+
+	/**
+	 * Get current values of all series (counter/gauge values, histogram count and sum).
+	 *
+	 * @return Values sorted by series name
+	 */
+	public static Map<String, Object> getValues() {
+		final Map<String, Object> values = new TreeMap<String, Object>();
+
+		for (final Map.Entry<String, Family> entry : FAMILIES.entrySet()) {
+			for (final Map.Entry<String, Metric> series : entry.getValue().series.entrySet()) {
+				series.getValue().collect(values, entry.getKey(), series.getKey());
+			}
+		}
+
+		return values;
+	}
+
+	/**
+	 * Record the end of a cli/service run (last run gauges).
+	 *
+	 * @param start Start time (System.nanoTime)
+	 * @param exitCode Exit code
+	 */
+	public static void recordRun(final long start, final int exitCode) {
+		gauge("studip_sync_last_run_timestamp_seconds", "End time of the last run (unix time).").set(System.currentTimeMillis() / 1000L);
+		gauge("studip_sync_last_run_seconds", "Duration of the last run.").set((System.nanoTime() - start) / 1e9);
+		gauge("studip_sync_last_run_exit_code", "Exit code of the last run (0 = success).").set(exitCode);
+	}
+
+	/**
+	 * Write all metrics to a prometheus text file.
+	 * The file is replaced atomically, so the collector never reads a partial file.
+	 *
+	 * @param file Path to text file (should end with .prom)
+	 * @throws IOException
+	 */
+	public static void writeTextFile(final Path file) throws IOException {
+		final Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+		Files.write(tempFile, toText().getBytes(StandardCharsets.UTF_8));
+		Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Register the metrics mbean at the platform mbean server.
+	 */
+	public static void registerMBean() {
+		try {
+			final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			final ObjectName name = new ObjectName(OBJECT_NAME);
+			if (!server.isRegistered(name)) {
+				server.registerMBean(new MetricsMBean(), name);
+			}
+
+		} catch (JMException e) {
+			if (LOG.isLoggable(Level.WARNING)) {
+				LOG.warning("Could not register metrics mbean: " + e.getMessage());
+			}
+		}
+	}
+}
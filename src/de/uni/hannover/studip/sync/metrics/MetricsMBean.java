@@ -0,0 +1,76 @@
+package de.uni.hannover.studip.sync.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.ReflectionException;
+
+/**
+ * Read-only dynamic mbean with one attribute per metric series.
+ * The attribute set grows with the registry, so the info is built on each request.
+ *
+ * @author Lennart Glauer
+ * @notice Thread safe
+ */
+final class MetricsMBean implements DynamicMBean {
+
+	@Override
+	public Object getAttribute(final String attribute) throws AttributeNotFoundException {
+		final Object value = Metrics.getValues().get(attribute);
+		if (value == null) {
+			throw new AttributeNotFoundException(attribute);
+		}
+
+		return value;
+	}
+
+	@Override
+	public AttributeList getAttributes(final String[] attributes) {
+		final Map<String, Object> values = Metrics.getValues();
+		final AttributeList list = new AttributeList();
+
+		for (final String attribute : attributes) {
+			final Object value = values.get(attribute);
+			if (value != null) {
+				list.add(new Attribute(attribute, value));
+			}
+		}
+
+		return list;
+	}
+
+	@Override
+	public MBeanInfo getMBeanInfo() {
+		final List<MBeanAttributeInfo> attributes = new ArrayList<MBeanAttributeInfo>();
+		for (final Map.Entry<String, Object> entry : Metrics.getValues().entrySet()) {
+			attributes.add(new MBeanAttributeInfo(entry.getKey(), entry.getValue().getClass().getName(),
+					entry.getKey(), true, false, false));
+		}
+
+		return new MBeanInfo(getClass().getName(), "Stud.IP FileSync metrics",
+				attributes.toArray(new MBeanAttributeInfo[attributes.size()]), null, new MBeanOperationInfo[0], null);
+	}
+
+	@Override
+	public void setAttribute(final Attribute attribute) throws AttributeNotFoundException {
+		throw new AttributeNotFoundException("Metrics are read-only!");
+	}
+
+	@Override
+	public AttributeList setAttributes(final AttributeList attributes) {
+		return new AttributeList();
+	}
+
+	@Override
+	public Object invoke(final String actionName, final Object[] params, final String[] signature) throws ReflectionException {
+		throw new ReflectionException(new NoSuchMethodException(actionName));
+	}
+}
@@ -0,0 +1,118 @@
+package de.uni.hannover.studip.sync.metrics;
+
+import java.nio.file.Path;
+
+/**
+ * Trace event facade (Java Flight Recorder).
+ *
+ * Events are recorded as custom jfr events if the jfr add-on jar (see src-jfr) is on the classpath,
+ * the runtime supports jfr (jdk.jfr, JDK 8u272 or later) and a recording is running, e.g.
+ * -XX:StartFlightRecording=filename=sync.jfr. Otherwise all events are no-ops.
+ * Set -Dstudip.jfr=false to disable the events.
+ *
+ * @author Lennart Glauer
+ * @notice Thread safe
+ */
+public final class Trace {
+
+	private static final Tracer TRACER = load();
+
+	private Trace() {
+		// Utility class.
+	}
+
+	/**
+	 * Load the jfr tracer, if jfr is available.
+	 */
+	private static Tracer load() {
+		if (!Boolean.parseBoolean(System.getProperty("studip.jfr", "true"))) {
+			return null;
+		}
+
+		try {
+			Class.forName("jdk.jfr.Event");
+			return (Tracer) Class.forName("de.uni.hannover.studip.sync.metrics.JfrTracer").newInstance();
+
+		} catch (ReflectiveOperationException | LinkageError e) {
+			/* No jfr support or add-on jar missing. */
+			return null;
+		}
+	}
+
+	/**
+	 * Check if trace events are supported.
+	 *
+	 * @return True if jfr is available
+	 */
+	public static boolean isAvailable() {
+		return TRACER != null;
+	}
+
+	/**
+	 * Job run.
+	 *
+	 * @param job Job class name
+	 * @param semesterId Semester id or null
+	 * @param courseId Course id or null
+	 * @param folderId Folder id or null
+	 * @param documentId Document id or null
+	 * @return Started event
+	 */
+	public static TraceEvent job(final String job, final String semesterId, final String courseId, final String folderId, final String documentId) {
+		return TRACER == null ? TraceEvent.NOOP : TRACER.job(job, semesterId, courseId, folderId, documentId);
+	}
+
+	/**
+	 * Rest api request until the response header (signing and network wait).
+	 *
+	 * @param method Request method
+	 * @param endpoint Endpoint name
+	 * @param url Request url
+	 * @return Started event
+	 */
+	public static TraceEvent request(final String method, final String endpoint, final String url) {
+		return TRACER == null ? TraceEvent.NOOP : TRACER.request(method, endpoint, url);
+	}
+
+	/**
+	 * OAuth request signing (including the oauth lock).
+	 *
+	 * @param url Request url
+	 * @return Started event
+	 */
+	public static TraceEvent sign(final String url) {
+		return TRACER == null ? TraceEvent.NOOP : TRACER.sign(url);
+	}
+
+	/**
+	 * Json response parsing.
+	 *
+	 * @param datamodel Datamodel class name
+	 * @return Started event
+	 */
+	public static TraceEvent parse(final String datamodel) {
+		return TRACER == null ? TraceEvent.NOOP : TRACER.parse(datamodel);
+	}
+
+	/**
+	 * Document download (response body to disk).
+	 *
+	 * @param documentId Document id
+	 * @param file Destination file
+	 * @return Started event
+	 */
+	public static TraceEvent download(final String documentId, final Path file) {
+		return TRACER == null ? TraceEvent.NOOP : TRACER.download(documentId, file);
+	}
+
+	/**
+	 * Tree file serialization.
+	 *
+	 * @param operation read or write
+	 * @param file Tree file
+	 * @return Started event
+	 */
+	public static TraceEvent tree(final String operation, final Path file) {
+		return TRACER == null ? TraceEvent.NOOP : TRACER.tree(operation, file);
+	}
+}
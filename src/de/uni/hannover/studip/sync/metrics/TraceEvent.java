@@ -0,0 +1,45 @@
+package de.uni.hannover.studip.sync.metrics;
+
+/**
+ * Timed trace event, started on creation and recorded on commit.
+ *
+ * @author Lennart Glauer
+ * @see Trace
+ */
+public interface TraceEvent {
+
+	/**
+	 * Disabled event.
+	 */
+	TraceEvent NOOP = new TraceEvent() {
+		@Override
+		public void commit() {
+			// Nothing to record.
+		}
+	};
+
+	/**
+	 * Set response status code (request events).
+	 *
+	 * @param status Status code
+	 * @return This event
+	 */
+	default TraceEvent setStatus(final int status) {
+		return this;
+	}
+
+	/**
+	 * Set number of bytes (download events).
+	 *
+	 * @param bytes Number of bytes
+	 * @return This event
+	 */
+	default TraceEvent setBytes(final long bytes) {
+		return this;
+	}
+
+	/**
+	 * End and record the event.
+	 */
+	void commit();
+}
@@ -0,0 +1,24 @@
+package de.uni.hannover.studip.sync.metrics;
+
+import java.nio.file.Path;
+
+/**
+ * Trace event factory.
+ *
+ * @author Lennart Glauer
+ * @see Trace
+ */
+interface Tracer {
+
+	TraceEvent job(String job, String semesterId, String courseId, String folderId, String documentId);
+
+	TraceEvent request(String method, String endpoint, String url);
+
+	TraceEvent sign(String url);
+
+	TraceEvent parse(String datamodel);
+
+	TraceEvent download(String documentId, Path file);
+
+	TraceEvent tree(String operation, Path file);
+}
@@ -0,0 +1,121 @@
+package de.uni.hannover.studip.sync.models;
+
+import java.nio.file.Path;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Sync account (service mode).
+ *
+ * Every account has its own config directory (settings, oauth and tree file).
+ * While an account is bound to a thread, Config.getInstance() and OAuth.getInstance()
+ * return the instances of this account instead of the default (single user) instances.
+ *
+ * @author Lennart Glauer
+ * @notice Thread safe
+ */
+public final class Account {
+
+	/**
+	 * Account bound to the current thread.
+	 */
+	private static final ThreadLocal<Account> CURRENT = new ThreadLocal<Account>();
+
+	/**
+	 * Account name (name of the config directory).
+	 */
+	private final String name;
+
+	/**
+	 * Account config.
+	 */
+	private final Config config;
+
+	/**
+	 * Account oauth.
+	 */
+	private final OAuth oauth;
+
+	/**
+	 * Tree lock, an account must not be synced twice at the same time.
+	 */
+	private final ReentrantLock treeLock = new ReentrantLock();
+
+	/**
+	 * Open account.
+	 *
+	 * @param configDir Account config directory
+	 */
+	public Account(final Path configDir) {
+		name = configDir.getFileName().toString();
+		config = new Config(configDir);
+		oauth = new OAuth(config);
+	}
+
+	/**
+	 * Get the account bound to the current thread.
+	 *
+	 * @return Account or null if no account is bound (single user mode)
+	 */
+	public static Account current() {
+		return CURRENT.get();
+	}
+
+	/**
+	 * Wrap a task, so it runs with this account bound to the executing thread.
+	 *
+	 * @param task Task
+	 * @return Bound task
+	 */
+	public Runnable bind(final Runnable task) {
+		return () -> {
+			final Account previous = CURRENT.get();
+			CURRENT.set(this);
+			try {
+				task.run();
+
+			} finally {
+				if (previous == null) {
+					CURRENT.remove();
+				} else {
+					CURRENT.set(previous);
+				}
+			}
+		};
+	}
+
+	/**
+	 * Get account name.
+	 *
+	 * @return
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Get account config.
+	 *
+	 * @return
+	 */
+	public Config getConfig() {
+		return config;
+	}
+
+	/**
+	 * Get account oauth.
+	 *
+	 * @return
+	 */
+	public OAuth getOAuth() {
+		return oauth;
+	}
+
+	/**
+	 * Get account tree lock.
+	 *
+	 * @return
+	 */
+	public ReentrantLock getTreeLock() {
+		return treeLock;
+	}
+}
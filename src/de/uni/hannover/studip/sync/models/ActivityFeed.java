@@ -0,0 +1,83 @@
+package de.uni.hannover.studip.sync.models;
+
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import de.elanev.studip.android.app.backend.datamodel.Activities;
+import de.elanev.studip.android.app.backend.datamodel.Activity;
+
+/**
+ * Activity feed change detection.
+ *
+ * Finds the courses with file activity since the last activity query,
+ * so the update only requests new documents of these courses.
+ *
+ * @author Lennart Glauer
+ * @notice Thread safe
+ */
+public final class ActivityFeed {
+
+	/**
+	 * Stud.IP ids in activity links (e.g. folder.php?cid=...).
+	 */
+	private static final Pattern ID_PATTERN = Pattern.compile("[0-9a-f]{32}");
+
+	private ActivityFeed() {
+		// Utility class.
+	}
+
+	/**
+	 * Get the courses with file activity.
+	 *
+	 * @param activities Activity feed
+	 * @param since Unix timestamp, older activities are ignored
+	 * @param courseIds Ids of all known courses
+	 * @return Course ids or null, if a file activity could not be assigned to a course
+	 */
+	public static Set<String> getChangedCourses(final Activities activities, final long since, final Set<String> courseIds) {
+		final Set<String> result = new HashSet<String>();
+
+		for (final Activity activity : activities.activities) {
+			if (activity.updated <= since || !isFileActivity(activity)) {
+				continue;
+			}
+
+			/*
+			 * Ids of courses which are not in the tree (e.g. new courses) are ignored,
+			 * new courses are added by the next build.
+			 */
+			boolean found = false;
+			final Matcher matcher = ID_PATTERN.matcher(activity.link == null ? "" : activity.link);
+			while (matcher.find()) {
+				found = true;
+				if (courseIds.contains(matcher.group())) {
+					result.add(matcher.group());
+				}
+			}
+
+			if (!found) {
+				/* Unknown link format, we can not rely on the feed. */
+				return null;
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Check if the activity might be a file activity (activities without category are treated as file activity).
+	 */
+	private static boolean isFileActivity(final Activity activity) {
+		if (activity.category == null) {
+			return true;
+		}
+
+		final String category = activity.category.toLowerCase(Locale.ROOT);
+		return category.contains("document") || category.contains("dokument")
+				|| category.contains("file") || category.contains("datei");
+	}
+
+}
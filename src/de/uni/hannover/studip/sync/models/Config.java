@@ -21,24 +21,51 @@ import de.uni.hannover.studip.sync.datamodel.OAuthFile;
  */
 public final class Config {
 
-	private static final Config INSTANCE = new Config();
+	private static final String CONFIG_DIR = ".studip-sync";
+
 	private static final ObjectMapper MAPPER = new ObjectMapper();
 
-	private static final String CONFIG_DIR = ".studip-sync";
 	private static final String SETTINGS_FILE_NAME = "config.json";
 	private static final String OAUTH_FILE_NAME = "oauth.json";
 	private static final String TREE_FILE_NAME = "tree.json";
+	private static final String HISTORY_FILE_NAME = "history.jsonl";
+	private static final String SEARCH_CONTENT_FILE_NAME = "content.jsonl";
+
+	/**
+	 * Config directory (settings, oauth and tree file).
+	 */
+	private final Path configDir;
 
 	private final ConfigFile<SettingsFile> settings;
 	private final ConfigFile<OAuthFile> oauth;
 
+	/**
+	 * Default instance holder, the default config is loaded on first use (not in service mode).
+	 */
+	private static final class DefaultHolder {
+		private static final Config INSTANCE = new Config(Paths.get(System.getProperty("user.home"), CONFIG_DIR));
+	}
+
 	/**
 	 * Singleton instance getter.
 	 * 
+	 * In service mode the config of the account bound to the current thread is returned.
+	 * 
+	 * @see Account
 	 * @return
 	 */
 	public static Config getInstance() {
-		return INSTANCE;
+		final Account account = Account.current();
+		return account == null ? DefaultHolder.INSTANCE : account.getConfig();
+	}
+
+	/**
+	 * Default (single user) instance getter.
+	 * 
+	 * @return
+	 */
+	static Config getDefault() {
+		return DefaultHolder.INSTANCE;
 	}
 
 	/**
@@ -52,11 +79,15 @@ public final class Config {
 
 	/**
 	 * Constructor.
+	 * 
+	 * @param configDir Config directory
 	 */
-	private Config() {
+	Config(final Path configDir) {
+		this.configDir = configDir;
+
 		try {
-			settings = new ConfigFile<SettingsFile>(CONFIG_DIR, SETTINGS_FILE_NAME, SettingsFile.class);
-			oauth = new ConfigFile<OAuthFile>(CONFIG_DIR, OAUTH_FILE_NAME, OAuthFile.class);
+			settings = new ConfigFile<SettingsFile>(configDir, SETTINGS_FILE_NAME, SettingsFile.class);
+			oauth = new ConfigFile<OAuthFile>(configDir, OAUTH_FILE_NAME, OAuthFile.class);
 
 		} catch (IOException e) {
 			throw new IllegalStateException(e);
@@ -70,12 +101,45 @@ public final class Config {
 	 * @throws IOException
 	 */
 	public static Path openTreeFile() throws IOException {
-		final Path configDir = Paths.get(System.getProperty("user.home"), CONFIG_DIR);
+		return getInstance().getTreeFile();
+	}
+
+	/**
+	 * Get tree file of this config.
+	 * 
+	 * @return
+	 * @throws IOException
+	 */
+	public Path getTreeFile() throws IOException {
+		return resolve(TREE_FILE_NAME);
+	}
+
+	/**
+	 * Get run history file of this config.
+	 * 
+	 * @return
+	 * @throws IOException
+	 */
+	public Path getHistoryFile() throws IOException {
+		return resolve(HISTORY_FILE_NAME);
+	}
+
+	/**
+	 * Get extracted document text file of this config (search index).
+	 * 
+	 * @return
+	 * @throws IOException
+	 */
+	public Path getSearchContentFile() throws IOException {
+		return resolve(SEARCH_CONTENT_FILE_NAME);
+	}
+
+	private Path resolve(final String fileName) throws IOException {
 		if (!Files.isDirectory(configDir)) {
 			Files.createDirectory(configDir);
 		}
 
-		return configDir.resolve(TREE_FILE_NAME);
+		return configDir.resolve(fileName);
 	}
 
 	/**
@@ -204,6 +268,53 @@ public final class Config {
 		}
 	}
 
+	/**
+	 * Get disk budget setting.
+	 * 
+	 * @return Disk budget in MB (0: unlimited)
+	 */
+	public int getDiskBudget() {
+		settings.lock.readLock().lock();
+		try {
+			return settings.data.diskBudget;
+
+		} finally {
+			settings.lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Set disk budget setting.
+	 * 
+	 * @param value Disk budget in MB (0: unlimited)
+	 * @throws IOException 
+	 */
+	public void setDiskBudget(final int value) throws IOException {
+		settings.lock.writeLock().lock();
+		try {
+			settings.data.diskBudget = value;
+			settings.write();
+
+		} finally {
+			settings.lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Get selective sync rules.
+	 * 
+	 * @return Compiled rules
+	 */
+	public SyncRules getSyncRules() {
+		settings.lock.readLock().lock();
+		try {
+			return SyncRules.compile(settings.data.syncRules);
+
+		} finally {
+			settings.lock.readLock().unlock();
+		}
+	}
+
 	/**
 	 * Get replace whitespaces setting.
 	 */
@@ -4,7 +4,6 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import com.fasterxml.jackson.core.JsonParseException;
@@ -45,13 +44,12 @@ public final class ConfigFile<T> {
 	/**
 	 * Open and read config file.
 	 * 
-	 * @param dirName Directory name
+	 * @param dir Config directory
 	 * @param fileName File name
 	 * @param datamodelClass Datamodel class
 	 * @throws IOException
 	 */
-	public ConfigFile(final String dirName, final String fileName, final Class<T> datamodelClass) throws IOException {
-		final Path dir = Paths.get(System.getProperty("user.home"), dirName);
+	public ConfigFile(final Path dir, final String fileName, final Class<T> datamodelClass) throws IOException {
 		if (!Files.isDirectory(dir)) {
 			Files.createDirectory(dir);
 		}
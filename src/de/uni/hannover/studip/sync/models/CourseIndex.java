@@ -0,0 +1,138 @@
+package de.uni.hannover.studip.sync.models;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import de.uni.hannover.studip.sync.datamodel.DocumentFolderTreeNode;
+import de.uni.hannover.studip.sync.datamodel.DocumentTreeNode;
+
+/**
+ * Course index used for incremental tree updates.
+ * 
+ * The filename index is built once per update and maintained incrementally,
+ * so new documents can be added without rescanning the sibling folders.
+ * Folders and documents are looked up in the tree-wide index.
+ * Modified document lists are published by commit().
+ * 
+ * @author Lennart Glauer
+ * @notice Not thread safe
+ */
+public final class CourseIndex {
+
+	/**
+	 * Tree-wide document/folder index.
+	 */
+	private final TreeIndex treeIndex;
+
+	/**
+	 * Course root folder.
+	 */
+	private final DocumentFolderTreeNode root;
+
+	/**
+	 * Maps folder node to the filename index of its local directory (shared by merged folders).
+	 */
+	private final Map<DocumentFolderTreeNode, Set<String>> fileIndexes = new IdentityHashMap<DocumentFolderTreeNode, Set<String>>();
+
+	/**
+	 * Modified document lists, published by commit().
+	 */
+	private final Map<DocumentFolderTreeNode, Set<DocumentTreeNode>> modified = new IdentityHashMap<DocumentFolderTreeNode, Set<DocumentTreeNode>>();
+
+	/**
+	 * Build course index.
+	 * 
+	 * @param treeIndex Tree-wide index
+	 * @param root Course root folder
+	 */
+	public CourseIndex(final TreeIndex treeIndex, final DocumentFolderTreeNode root) {
+		this.treeIndex = treeIndex;
+		this.root = root;
+
+		TreeConflict.walkDirectories(root, (members, fileIndex, directoryDocuments) -> {
+			for (final DocumentFolderTreeNode member : members) {
+				fileIndexes.put(member, fileIndex);
+			}
+
+			for (final DocumentTreeNode document : directoryDocuments) {
+				fileIndex.add(TreeConflict.toIndexName(document.fileName));
+			}
+		});
+	}
+
+	/**
+	 * Get folder node.
+	 * 
+	 * @param folderId Stud.IP folder id
+	 * @return Folder tree-node or null if the folder does not exist in this course
+	 */
+	public DocumentFolderTreeNode getFolder(final String folderId) {
+		final DocumentFolderTreeNode folder = folderId == null ? root : treeIndex.getFolder(folderId);
+
+		return fileIndexes.containsKey(folder) ? folder : null;
+	}
+
+	/**
+	 * Remove document node if it exists.
+	 * 
+	 * @param documentId Stud.IP document id
+	 * @return True if document was removed
+	 */
+	public boolean removeDocument(final String documentId) {
+		final DocumentTreeNode document = treeIndex.getDocument(documentId);
+		final DocumentFolderTreeNode folder = treeIndex.getDocumentParent(documentId);
+		if (document == null || !fileIndexes.containsKey(folder)) {
+			return false;
+		}
+
+		getDocuments(folder).remove(document);
+		fileIndexes.get(folder).remove(TreeConflict.toIndexName(document.fileName));
+		treeIndex.removeDocument(documentId);
+
+		return true;
+	}
+
+	/**
+	 * Add document node and resolve file name conflicts.
+	 * 
+	 * @notice The document filename might be modified.
+	 * @param folder Parent folder tree-node
+	 * @param document Document tree-node
+	 */
+	public void addDocument(final DocumentFolderTreeNode folder, final DocumentTreeNode document) {
+		TreeConflict.resolveFileNameConflict(fileIndexes.get(folder), document);
+		PathBuilder.updatePath(folder, document);
+		getDocuments(folder).add(document);
+		treeIndex.putDocument(folder, document);
+	}
+
+	/**
+	 * Publish all modified document lists.
+	 */
+	public void commit() {
+		for (final Map.Entry<DocumentFolderTreeNode, Set<DocumentTreeNode>> entry : modified.entrySet()) {
+			entry.getKey().documents = Collections.unmodifiableList(new ArrayList<DocumentTreeNode>(entry.getValue()));
+		}
+
+		modified.clear();
+	}
+
+	/**
+	 * Get modifiable documents of a folder (copy on first write).
+	 * 
+	 * @param folder Folder tree-node
+	 * @return Ordered document set
+	 */
+	private Set<DocumentTreeNode> getDocuments(final DocumentFolderTreeNode folder) {
+		Set<DocumentTreeNode> set = modified.get(folder);
+		if (set == null) {
+			modified.put(folder, set = new LinkedHashSet<DocumentTreeNode>(folder.documents));
+		}
+
+		return set;
+	}
+}
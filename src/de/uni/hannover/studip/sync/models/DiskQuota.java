@@ -0,0 +1,197 @@
+package de.uni.hannover.studip.sync.models;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import de.uni.hannover.studip.sync.datamodel.CourseTreeNode;
+import de.uni.hannover.studip.sync.datamodel.DocumentFolderTreeNode;
+import de.uni.hannover.studip.sync.datamodel.DocumentTreeNode;
+import de.uni.hannover.studip.sync.datamodel.SemesterTreeNode;
+import de.uni.hannover.studip.sync.datamodel.SemestersTreeNode;
+
+/**
+ * Disk budget of the sync root directory.
+ *
+ * If the documents of the tree exceed the budget, the least recently accessed documents
+ * of past semesters are deleted and marked as evicted in the tree. Evicted documents are
+ * not downloaded again by the sync, until they are refetched (see TreeSync#refetch).
+ *
+ * @author Lennart Glauer
+ * @notice Not thread safe (call after all jobs are done)
+ */
+public final class DiskQuota {
+
+	private static final Logger LOG = Logger.getLogger(Logger.GLOBAL_LOGGER_NAME);
+
+	private static final long MB = 1024L * 1024L;
+
+	private DiskQuota() {
+		// Utility class.
+	}
+
+	/**
+	 * Eviction candidate.
+	 */
+	private static final class Candidate {
+		private final DocumentTreeNode document;
+		private final Path file;
+		private final long size;
+		private final long lastAccess;
+
+		Candidate(final DocumentTreeNode document, final Path file, final BasicFileAttributes attrs) {
+			this.document = document;
+			this.file = file;
+			this.size = attrs.size();
+			/* Access time if supported by the file system (otherwise the modification time). */
+			this.lastAccess = Math.max(attrs.lastAccessTime().toMillis(), attrs.lastModifiedTime().toMillis());
+		}
+	}
+
+	/**
+	 * Evict documents until the tree fits into the disk budget.
+	 *
+	 * @param rootDirectory Sync root directory
+	 * @param rootNode Tree root node (with resolved paths)
+	 * @param budget Disk budget in MB (0: unlimited)
+	 * @return Number of evicted documents
+	 * @throws IOException
+	 */
+	public static int enforce(final Path rootDirectory, final SemestersTreeNode rootNode, final int budget) throws IOException {
+		if (budget <= 0) {
+			return 0;
+		}
+
+		final long now = System.currentTimeMillis() / 1000L;
+		final List<Candidate> candidates = new ArrayList<Candidate>();
+		long total = 0;
+
+		for (final SemesterTreeNode semester : rootNode.semesters) {
+			/* Documents of the current (and future) semesters are never evicted. */
+			final boolean past = now >= semester.end;
+
+			for (final CourseTreeNode course : semester.courses) {
+				total += collect(rootDirectory, course.root, past ? candidates : null);
+			}
+		}
+
+		final long limit = budget * MB;
+		if (total <= limit) {
+			return 0;
+		}
+
+		/* Least recently accessed first. */
+		candidates.sort((a, b) -> Long.compare(a.lastAccess, b.lastAccess));
+
+		int evicted = 0;
+		long freed = 0;
+		for (final Candidate candidate : candidates) {
+			if (total - freed <= limit) {
+				break;
+			}
+
+			Files.deleteIfExists(candidate.file);
+			candidate.document.evicted = Boolean.TRUE;
+			freed += candidate.size;
+			evicted++;
+		}
+
+		if (total - freed > limit && LOG.isLoggable(Level.WARNING)) {
+			LOG.warning("Disk budget exceeded by documents of the current semester: " + (total - freed) / MB + " MB");
+		}
+
+		if (LOG.isLoggable(Level.INFO)) {
+			LOG.info("Evicted " + evicted + " documents (" + freed / MB + " MB)");
+		}
+
+		return evicted;
+	}
+
+	/**
+	 * Sum the size of all local documents of a folder (recursive).
+	 *
+	 * @param rootDirectory Sync root directory
+	 * @param folder Folder tree-node
+	 * @param candidates Eviction candidates or null
+	 * @return Bytes
+	 * @throws IOException
+	 */
+	private static long collect(final Path rootDirectory, final DocumentFolderTreeNode folder, final List<Candidate> candidates) throws IOException {
+		long total = 0;
+
+		for (final DocumentFolderTreeNode child : folder.folders) {
+			total += collect(rootDirectory, child, candidates);
+		}
+
+		for (final DocumentTreeNode document : folder.documents) {
+			if (document.evicted != null || document.path == null) {
+				continue;
+			}
+
+			final Path file = rootDirectory.resolve(document.path);
+			final BasicFileAttributes attrs;
+			try {
+				attrs = Files.readAttributes(file, BasicFileAttributes.class);
+
+			} catch (NoSuchFileException e) {
+				continue;
+			}
+
+			total += attrs.size();
+			if (candidates != null) {
+				candidates.add(new Candidate(document, file, attrs));
+			}
+		}
+
+		return total;
+	}
+
+	/**
+	 * Keep the evicted state of unchanged documents after a course was rebuilt.
+	 *
+	 * @param oldRoot Previous course root
+	 * @param newRoot Rebuilt course root
+	 */
+	public static void carryOver(final DocumentFolderTreeNode oldRoot, final DocumentFolderTreeNode newRoot) {
+		final Map<String, Long> evicted = new HashMap<String, Long>();
+		collectEvicted(oldRoot, evicted);
+
+		if (!evicted.isEmpty()) {
+			markEvicted(newRoot, evicted);
+		}
+	}
+
+	private static void collectEvicted(final DocumentFolderTreeNode folder, final Map<String, Long> evicted) {
+		for (final DocumentFolderTreeNode child : folder.folders) {
+			collectEvicted(child, evicted);
+		}
+
+		for (final DocumentTreeNode document : folder.documents) {
+			if (document.evicted != null) {
+				evicted.put(document.documentId, document.chDate);
+			}
+		}
+	}
+
+	private static void markEvicted(final DocumentFolderTreeNode folder, final Map<String, Long> evicted) {
+		for (final DocumentFolderTreeNode child : folder.folders) {
+			markEvicted(child, evicted);
+		}
+
+		for (final DocumentTreeNode document : folder.documents) {
+			final Long chDate = evicted.get(document.documentId);
+			if (chDate != null && chDate.equals(document.chDate)) {
+				document.evicted = Boolean.TRUE;
+			}
+		}
+	}
+
+}
@@ -0,0 +1,186 @@
+package de.uni.hannover.studip.sync.models;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import de.uni.hannover.studip.sync.datamodel.DocumentFolderTreeNode;
+import de.uni.hannover.studip.sync.datamodel.DocumentTreeNode;
+
+/**
+ * Streaming folder listing reader.
+ *
+ * Reads the DocumentFolders json of a folder listing token by token and emits
+ * each folder and document tree-node as soon as it is parsed, without
+ * materializing the listing datamodel.
+ *
+ * @author Lennart Glauer
+ * @notice Thread safe
+ */
+public final class DocumentFolderReader {
+
+	private DocumentFolderReader() {
+		// Utility class.
+	}
+
+	/**
+	 * Folder listing listener.
+	 */
+	public interface Listener {
+
+		/**
+		 * Folder parsed.
+		 *
+		 * @param folder Folder tree-node (without children)
+		 */
+		void folder(DocumentFolderTreeNode folder);
+
+		/**
+		 * Document parsed.
+		 *
+		 * @param document Document tree-node
+		 */
+		void document(DocumentTreeNode document);
+
+	}
+
+	/**
+	 * Read folder listing.
+	 *
+	 * @param parser Json parser positioned before the root object
+	 * @param listener Folder listing listener
+	 * @throws IOException
+	 */
+	public static void read(final JsonParser parser, final Listener listener) throws IOException {
+		if (parser.nextToken() != JsonToken.START_OBJECT) {
+			throw new IOException("Folder listing is not an object!");
+		}
+
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			final String field = parser.getCurrentName();
+			final JsonToken token = parser.nextToken();
+
+			if (token != JsonToken.START_ARRAY) {
+				/* Unknown field or null list. */
+				parser.skipChildren();
+
+			} else if ("folders".equals(field)) {
+				while (parser.nextToken() == JsonToken.START_OBJECT) {
+					listener.folder(readFolder(parser));
+				}
+
+			} else if ("documents".equals(field)) {
+				while (parser.nextToken() == JsonToken.START_OBJECT) {
+					listener.document(readDocument(parser));
+				}
+
+			} else {
+				parser.skipChildren();
+			}
+		}
+	}
+
+	/**
+	 * Read one folder object (see DocumentFolder).
+	 */
+	private static DocumentFolderTreeNode readFolder(final JsonParser parser) throws IOException {
+		final DocumentFolderTreeNode folder = new DocumentFolderTreeNode();
+
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			final String field = parser.getCurrentName();
+			parser.nextToken();
+
+			switch (field) {
+			case "folder_id":
+				folder.folderId = readString(parser);
+				break;
+			case "user_id":
+				folder.userId = readString(parser);
+				break;
+			case "name":
+				folder.name = readString(parser);
+				break;
+			case "mkdate":
+				folder.mkDate = readString(parser);
+				break;
+			case "chdate":
+				folder.chDate = readLong(parser);
+				break;
+			default:
+				parser.skipChildren();
+				break;
+			}
+		}
+
+		return folder;
+	}
+
+	/**
+	 * Read one document object (see Document).
+	 */
+	private static DocumentTreeNode readDocument(final JsonParser parser) throws IOException {
+		final DocumentTreeNode document = new DocumentTreeNode();
+
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			final String field = parser.getCurrentName();
+			parser.nextToken();
+
+			switch (field) {
+			case "document_id":
+				document.documentId = readString(parser);
+				break;
+			case "user_id":
+				document.userId = readString(parser);
+				break;
+			case "name":
+				document.name = readString(parser);
+				break;
+			case "description":
+				document.description = readString(parser);
+				break;
+			case "mkdate":
+				document.mkDate = readLong(parser);
+				break;
+			case "chdate":
+				document.chDate = readLong(parser);
+				break;
+			case "filename":
+				document.fileName = readString(parser);
+				break;
+			case "filesize":
+				document.fileSize = readLong(parser);
+				break;
+			default:
+				parser.skipChildren();
+				break;
+			}
+		}
+
+		return document;
+	}
+
+	/**
+	 * Current scalar value as string, null for json null.
+	 */
+	private static String readString(final JsonParser parser) throws IOException {
+		if (parser.getCurrentToken() == JsonToken.VALUE_NULL) {
+			return null;
+		}
+
+		parser.skipChildren();
+		return parser.getValueAsString();
+	}
+
+	/**
+	 * Current scalar value as long (numbers and numeric strings), null for json null.
+	 */
+	private static Long readLong(final JsonParser parser) throws IOException {
+		if (parser.getCurrentToken() == JsonToken.VALUE_NULL) {
+			return null;
+		}
+
+		parser.skipChildren();
+		return parser.getValueAsLong();
+	}
+}
@@ -0,0 +1,283 @@
+package de.uni.hannover.studip.sync.models;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Fair job scheduler shared by multiple accounts (service mode).
+ *
+ * Every account submits its jobs to its own queue and the worker threads take jobs
+ * from the non-empty queues in round-robin order. An account with many pending jobs
+ * (e.g. the initial build or sync) therefore cannot starve the other accounts.
+ *
+ * @author Lennart Glauer
+ * @notice Thread safe
+ */
+public final class FairScheduler implements AutoCloseable {
+
+	private static final Logger LOG = Logger.getLogger(Logger.GLOBAL_LOGGER_NAME);
+
+	/**
+	 * Lock for all queues.
+	 */
+	private final ReentrantLock lock = new ReentrantLock();
+
+	/**
+	 * Signaled if a queue becomes ready.
+	 */
+	private final Condition notEmpty = lock.newCondition();
+
+	/**
+	 * Signaled if a job finished or a queue was drained.
+	 */
+	private final Condition jobDone = lock.newCondition();
+
+	/**
+	 * Queues with pending jobs in round-robin order.
+	 */
+	private final ArrayDeque<Queue> ready = new ArrayDeque<Queue>();
+
+	/**
+	 * Worker threads.
+	 */
+	private final Thread[] workers;
+
+	/**
+	 * Flag to signal shutdown of the worker threads.
+	 */
+	private boolean shutdown;
+
+	/**
+	 * Start worker threads.
+	 *
+	 * @param threads Number of worker threads
+	 */
+	public FairScheduler(final int threads) {
+		workers = new Thread[threads];
+		for (int i = 0; i < threads; i++) {
+			workers[i] = new Thread(this::work, "sync-worker-" + i);
+			workers[i].setDaemon(true);
+			workers[i].start();
+		}
+	}
+
+	/**
+	 * Create a new job queue (one per account and run).
+	 *
+	 * Shutting down the returned executor service only affects the jobs of this queue,
+	 * the worker threads are shared and keep running.
+	 *
+	 * @return Executor service
+	 */
+	public ExecutorService newQueue() {
+		return new Queue();
+	}
+
+	/**
+	 * Stop worker threads, pending jobs are discarded.
+	 */
+	@Override
+	public void close() {
+		lock.lock();
+		try {
+			shutdown = true;
+			ready.clear();
+			notEmpty.signalAll();
+			jobDone.signalAll();
+
+		} finally {
+			lock.unlock();
+		}
+
+		for (final Thread worker : workers) {
+			worker.interrupt();
+		}
+	}
+
+	/**
+	 * Worker loop.
+	 */
+	private void work() {
+		while (true) {
+			final Queue queue;
+			final Runnable job;
+
+			lock.lock();
+			try {
+				while (!shutdown && ready.isEmpty()) {
+					notEmpty.awaitUninterruptibly();
+				}
+
+				if (shutdown) {
+					return;
+				}
+
+				/* Take one job and move the queue to the end of the round. */
+				queue = ready.poll();
+				job = queue.jobs.poll();
+				queue.running++;
+
+				if (queue.jobs.isEmpty()) {
+					queue.isReady = false;
+				} else {
+					ready.add(queue);
+				}
+
+			} finally {
+				lock.unlock();
+			}
+
+			try {
+				job.run();
+
+			} catch (RuntimeException | Error e) {
+				/* An unexpected job failure must not take down the shared worker. */
+				if (LOG.isLoggable(Level.SEVERE)) {
+					LOG.log(Level.SEVERE, "Job failed!", e);
+				}
+
+			} finally {
+				lock.lock();
+				try {
+					queue.running--;
+					jobDone.signalAll();
+
+				} finally {
+					lock.unlock();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Job queue of one account.
+	 */
+	private final class Queue extends AbstractExecutorService {
+
+		/**
+		 * Pending jobs.
+		 */
+		private final ArrayDeque<Runnable> jobs = new ArrayDeque<Runnable>();
+
+		/**
+		 * Number of running jobs.
+		 */
+		private int running;
+
+		/**
+		 * Flag if this queue is in the ready list.
+		 */
+		private boolean isReady;
+
+		/**
+		 * Flag if this queue accepts new jobs.
+		 */
+		private boolean isShutdown;
+
+		@Override
+		public void execute(final Runnable job) {
+			lock.lock();
+			try {
+				if (isShutdown || shutdown) {
+					throw new RejectedExecutionException("Queue is shut down!");
+				}
+
+				jobs.add(job);
+
+				if (!isReady) {
+					isReady = true;
+					ready.add(this);
+					notEmpty.signal();
+				}
+
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		@Override
+		public void shutdown() {
+			lock.lock();
+			try {
+				isShutdown = true;
+
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		@Override
+		public List<Runnable> shutdownNow() {
+			lock.lock();
+			try {
+				isShutdown = true;
+
+				final List<Runnable> pending = new ArrayList<Runnable>(jobs);
+				jobs.clear();
+
+				if (isReady) {
+					isReady = false;
+					ready.remove(this);
+				}
+
+				jobDone.signalAll();
+				return pending;
+
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		@Override
+		public boolean isShutdown() {
+			lock.lock();
+			try {
+				return isShutdown;
+
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		@Override
+		public boolean isTerminated() {
+			lock.lock();
+			try {
+				return isShutdown && jobs.isEmpty() && running == 0;
+
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		@Override
+		public boolean awaitTermination(final long timeout, final TimeUnit unit) throws InterruptedException {
+			long nanos = unit.toNanos(timeout);
+
+			lock.lock();
+			try {
+				while (!(isShutdown && jobs.isEmpty() && running == 0)) {
+					if (nanos <= 0 || shutdown) {
+						return false;
+					}
+
+					nanos = jobDone.awaitNanos(nanos);
+				}
+
+				return true;
+
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+}
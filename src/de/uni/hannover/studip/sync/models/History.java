@@ -0,0 +1,153 @@
+package de.uni.hannover.studip.sync.models;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import de.uni.hannover.studip.sync.AppState;
+import de.uni.hannover.studip.sync.datamodel.RunRecord;
+
+/**
+ * Sync run history store.
+ *
+ * One json record per line, appended after each run. The file is trimmed
+ * to the most recent records once it grows too large.
+ *
+ * @author Lennart Glauer
+ * @notice Thread safe
+ */
+public final class History {
+
+	private static final Logger LOG = Logger.getLogger(Logger.GLOBAL_LOGGER_NAME);
+	private static final ObjectMapper MAPPER = Config.getMapper();
+
+	/**
+	 * Trim the history file if it exceeds this size.
+	 */
+	private static final long MAX_FILE_SIZE = 1024 * 1024;
+
+	/**
+	 * Number of records kept when the history file is trimmed.
+	 */
+	private static final int TRIMMED_RECORDS = 1000;
+
+	/**
+	 * Lock for all history files (appends are rare).
+	 */
+	private static final Object LOCK = new Object();
+
+	private History() {
+		// Utility class.
+	}
+
+	/**
+	 * Append the record of a finished run to the history of the current config.
+	 * Failures are only logged, the history must never break a sync.
+	 *
+	 * @param tree Tree builder of the run
+	 * @param mode gui, cli or service
+	 * @param failed True if the run failed with an exception
+	 */
+	public static void record(final TreeBuilder tree, final String mode, final boolean failed) {
+		final String status = failed ? "failed" : (tree.stopPending || AppState.exitPending) ? "aborted" : "ok";
+
+		try {
+			append(Config.getInstance().getHistoryFile(), tree.getStats().toRecord(mode, status));
+
+		} catch (IOException e) {
+			if (LOG.isLoggable(Level.WARNING)) {
+				LOG.warning("Could not write history: " + e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Append a record.
+	 *
+	 * @param file Path to history file
+	 * @param record Run record
+	 * @throws IOException
+	 */
+	public static void append(final Path file, final RunRecord record) throws IOException {
+		final String line = MAPPER.writeValueAsString(record) + '\n';
+
+		synchronized (LOCK) {
+			Files.write(file, line.getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+
+			if (Files.size(file) > MAX_FILE_SIZE) {
+				trim(file);
+			}
+		}
+	}
+
+	/**
+	 * Read the most recent records, invalid lines are skipped.
+	 *
+	 * @param file Path to history file
+	 * @param limit Maximum number of records
+	 * @return Records in chronological order
+	 * @throws IOException
+	 */
+	public static List<RunRecord> read(final Path file, final int limit) throws IOException {
+		final ArrayDeque<String> lines = new ArrayDeque<String>(limit);
+
+		synchronized (LOCK) {
+			try (final BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					if (lines.size() == limit) {
+						lines.poll();
+					}
+					lines.add(line);
+				}
+
+			} catch (NoSuchFileException e) {
+				/* No runs yet. */
+				return new ArrayList<RunRecord>();
+			}
+		}
+
+		final List<RunRecord> records = new ArrayList<RunRecord>(lines.size());
+		for (final String line : lines) {
+			try {
+				records.add(MAPPER.readValue(line, RunRecord.class));
+
+			} catch (JsonProcessingException e) {
+				/* Partially written or foreign line. */
+			}
+		}
+
+		return records;
+	}
+
+	/**
+	 * Keep only the most recent records.
+	 */
+	private static void trim(final Path file) throws IOException {
+		final List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+		final Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+
+		try (final BufferedWriter writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+			for (final String line : lines.subList(Math.max(0, lines.size() - TRIMMED_RECORDS), lines.size())) {
+				writer.write(line);
+				writer.write('\n');
+			}
+		}
+
+		Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+}
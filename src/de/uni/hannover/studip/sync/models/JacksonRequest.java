@@ -4,15 +4,22 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.Map;
 
-import org.scribe.model.Response;
+import org.scribe.exceptions.OAuthConnectionException;
 import org.scribe.model.Verb;
 
 import com.fasterxml.jackson.annotation.JsonRootName;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonParser.Feature;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectReader;
 
+import de.uni.hannover.studip.sync.http.ContentEncoding;
+import de.uni.hannover.studip.sync.http.HttpResponse;
+import de.uni.hannover.studip.sync.metrics.Metrics;
+import de.uni.hannover.studip.sync.metrics.Trace;
+import de.uni.hannover.studip.sync.metrics.TraceEvent;
+
 /**
  * Jackson request.
  * 
@@ -22,7 +29,6 @@ import com.fasterxml.jackson.databind.ObjectReader;
  */
 public class JacksonRequest<T> {
 
-	private static final OAuth OAUTH = OAuth.getInstance();
 	private static final ObjectMapper MAPPER = Config.getMapper();
 
 	/**
@@ -35,15 +41,20 @@ public class JacksonRequest<T> {
 	 */
 	private final String url;
 
+	/**
+	 * Endpoint name for metrics.
+	 */
+	private final String endpoint;
+
 	/**
 	 * Request data model.
 	 */
 	private final Class<T> datamodel;
 
 	/**
-	 * OAuth response.
+	 * Http response.
 	 */
-	private final Response response;
+	private final HttpResponse response;
 
 	/**
 	 * Send jackson request.
@@ -53,12 +64,55 @@ public class JacksonRequest<T> {
 	 * @param datamodel Datamodel class
 	 */
 	public JacksonRequest(final Verb method, final String url, final Class<T> datamodel) {
+		this(method, url, "other", datamodel);
+	}
+
+	/**
+	 * Send jackson request.
+	 * 
+	 * @param method Request method
+	 * @param url Request url
+	 * @param endpoint Endpoint name for metrics (without ids)
+	 * @param datamodel Datamodel class
+	 */
+	public JacksonRequest(final Verb method, final String url, final String endpoint, final Class<T> datamodel) {
 		this.method = method;
 		this.url = url;
+		this.endpoint = endpoint;
 		this.datamodel = datamodel;
 
 		/* Send rest api request using oauth service. */
-		this.response = OAUTH.sendRequest(method, url);
+		final RunStats stats = RunStats.current();
+		if (stats != null) {
+			stats.addRequest(endpoint);
+		}
+
+		final TraceEvent event = Trace.request(method.name(), endpoint, url);
+		final long start = System.nanoTime();
+		try {
+			this.response = OAuth.getInstance().sendRequest(method, url);
+			event.setStatus(response.getCode());
+
+		} catch (OAuthConnectionException e) {
+			Metrics.counter("studip_sync_request_errors_total", "Failed requests (connection errors) by endpoint.",
+					"endpoint", endpoint).inc();
+			if (stats != null) {
+				stats.addError();
+			}
+			throw e;
+
+		} finally {
+			event.commit();
+		}
+
+		if (stats != null && response.getCode() >= 500) {
+			stats.addError();
+		}
+
+		Metrics.histogram("studip_sync_request_seconds", "Request latency until the response header by endpoint.",
+				"endpoint", endpoint).observeSince(start);
+		Metrics.counter("studip_sync_responses_total", "Responses by endpoint and status code.",
+				"endpoint", endpoint, "code", Integer.toString(response.getCode())).inc();
 	}
 
 	/**
@@ -69,12 +123,25 @@ public class JacksonRequest<T> {
 	 * @throws IOException
 	 */
 	public T parseResponse() throws IOException {
+		return parse(getStream(), datamodel);
+	}
+
+	/**
+	 * Parse json stream into data model object and close the stream.
+	 * 
+	 * @param stream Json input stream
+	 * @param datamodel Datamodel class
+	 * @return Datamodel object
+	 * @throws IOException
+	 */
+	public static <T> T parse(final InputStream stream, final Class<T> datamodel) throws IOException {
 		ObjectReader reader = MAPPER.readerFor(datamodel).without(Feature.AUTO_CLOSE_SOURCE);
 		if (datamodel.isAnnotationPresent(JsonRootName.class)) {
 			reader = reader.with(DeserializationFeature.UNWRAP_ROOT_VALUE);
 		}
 
-		try (final InputStream is = response.getStream()) {
+		final TraceEvent event = Trace.parse(datamodel.getSimpleName());
+		try (final InputStream is = stream) {
 			final T result = reader.readValue(is);
 
 			/*
@@ -85,6 +152,57 @@ public class JacksonRequest<T> {
 			is.skip(Long.MAX_VALUE);
 
 			return result;
+
+		} finally {
+			event.commit();
+		}
+	}
+
+	/**
+	 * Streaming json reader.
+	 */
+	@FunctionalInterface
+	public interface StreamReader {
+
+		/**
+		 * Read the json response.
+		 * 
+		 * @param parser Json parser positioned before the root element
+		 * @throws IOException
+		 */
+		void read(JsonParser parser) throws IOException;
+
+	}
+
+	/**
+	 * Parse response with a streaming json reader.
+	 * 
+	 * @param reader Streaming json reader
+	 * @throws IOException
+	 */
+	public void streamResponse(final StreamReader reader) throws IOException {
+		stream(getStream(), datamodel, reader);
+	}
+
+	/**
+	 * Parse json stream with a streaming json reader and close the stream.
+	 * 
+	 * @param stream Json input stream
+	 * @param datamodel Datamodel class of the json document
+	 * @param reader Streaming json reader
+	 * @throws IOException
+	 */
+	public static void stream(final InputStream stream, final Class<?> datamodel, final StreamReader reader) throws IOException {
+		final TraceEvent event = Trace.parse(datamodel.getSimpleName());
+		try (final InputStream is = stream;
+				final JsonParser parser = MAPPER.getFactory().createParser(is).disable(Feature.AUTO_CLOSE_SOURCE)) {
+			reader.read(parser);
+
+			/* Skip everything after the json root element (see parse). */
+			is.skip(Long.MAX_VALUE);
+
+		} finally {
+			event.commit();
 		}
 	}
 
@@ -125,11 +243,11 @@ public class JacksonRequest<T> {
 	}
 
 	/**
-	 * Get input stream.
+	 * Get input stream (gzip/deflate decoded).
 	 * 
 	 * @return Response input stream
 	 */
 	public InputStream getStream() {
-		return response.getStream();
+		return ContentEncoding.decode(response, endpoint);
 	}
 }
\ No newline at end of file
@@ -0,0 +1,150 @@
+package de.uni.hannover.studip.sync.models;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import de.uni.hannover.studip.sync.datamodel.CourseTreeNode;
+import de.uni.hannover.studip.sync.datamodel.SemesterTreeNode;
+import de.uni.hannover.studip.sync.utils.FileBrowser;
+
+/**
+ * Lecture index used to match exercises with lectures.
+ *
+ * The course titles of a semester are sanitized and lower-cased once and stored in a trie,
+ * so all lectures contained in an exercise title are found in a single pass over the title.
+ * If multiple lectures match, the first one in semester order wins.
+ *
+ * @author Lennart Glauer
+ * @notice Not thread safe
+ */
+public final class LectureIndex {
+
+	/**
+	 * Trie node.
+	 */
+	private static final class Node {
+		private final Map<Character, Node> children = new HashMap<Character, Node>(4);
+
+		/* The two smallest course positions with this title, -1 if none. */
+		private int first = -1;
+		private int second = -1;
+	}
+
+	/**
+	 * Maps course node to its position in the semester.
+	 */
+	private final Map<CourseTreeNode, Integer> positions = new IdentityHashMap<CourseTreeNode, Integer>();
+
+	/**
+	 * Sanitized course titles.
+	 */
+	private final String[] titles;
+
+	/**
+	 * Sanitized and lower-cased course titles.
+	 */
+	private final String[] lowerCaseTitles;
+
+	/**
+	 * Trie root.
+	 */
+	private final Node root = new Node();
+
+	/**
+	 * Build lecture index.
+	 *
+	 * @param semester Semester tree-node
+	 */
+	public LectureIndex(final SemesterTreeNode semester) {
+		final List<CourseTreeNode> courses = semester.courses;
+		titles = new String[courses.size()];
+		lowerCaseTitles = new String[courses.size()];
+
+		for (int i = 0; i < titles.length; i++) {
+			final CourseTreeNode course = courses.get(i);
+			positions.put(course, i);
+			titles[i] = FileBrowser.removeIllegalCharacters(course.title);
+			lowerCaseTitles[i] = titles[i].toLowerCase(Locale.GERMANY);
+
+			Node node = root;
+			for (int j = 0; j < lowerCaseTitles[i].length(); j++) {
+				final Character c = lowerCaseTitles[i].charAt(j);
+				Node child = node.children.get(c);
+				if (child == null) {
+					node.children.put(c, child = new Node());
+				}
+				node = child;
+			}
+
+			if (node.first == -1) {
+				node.first = i;
+			} else if (node.second == -1) {
+				node.second = i;
+			}
+		}
+	}
+
+	/**
+	 * Get the sanitized course title.
+	 *
+	 * @param course Course tree-node
+	 * @return Course title
+	 */
+	public String getTitle(final CourseTreeNode course) {
+		final Integer position = positions.get(course);
+
+		return position == null
+				? FileBrowser.removeIllegalCharacters(course.title)
+				: titles[position];
+	}
+
+	/**
+	 * Match exercises with lectures and return course title.
+	 *
+	 * @param course Course tree-node
+	 * @return Lecture title if the course is an exercise of a lecture, otherwise the course title
+	 */
+	public String getCourseTitle(final CourseTreeNode course) {
+		final Integer position = positions.get(course);
+		final int self = position == null ? -1 : position;
+		final String courseTitle = getTitle(course);
+		final String courseTitleLowerCase = position == null
+				? courseTitle.toLowerCase(Locale.GERMANY)
+				: lowerCaseTitles[self];
+
+		if (course.type == 3 || courseTitleLowerCase.contains("übung") || courseTitleLowerCase.contains("uebung")) {
+			/* Find the first lecture whose title is a substring of the exercise title. */
+			int lecture = match(root, self, Integer.MAX_VALUE);
+
+			for (int i = 0; i < courseTitleLowerCase.length(); i++) {
+				Node node = root;
+				for (int j = i; j < courseTitleLowerCase.length(); j++) {
+					node = node.children.get(courseTitleLowerCase.charAt(j));
+					if (node == null) {
+						break;
+					}
+
+					lecture = match(node, self, lecture);
+				}
+			}
+
+			if (lecture != Integer.MAX_VALUE) {
+				return titles[lecture];
+			}
+		}
+
+		return courseTitle;
+	}
+
+	/**
+	 * Return the smaller of the given position and the first lecture of the node, excluding the course itself.
+	 */
+	private static int match(final Node node, final int self, final int lecture) {
+		final int candidate = node.first == self ? node.second : node.first;
+
+		return candidate != -1 && candidate < lecture ? candidate : lecture;
+	}
+}
@@ -6,12 +6,17 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.scribe.builder.ServiceBuilder;
 import org.scribe.model.OAuthRequest;
-import org.scribe.model.Response;
 import org.scribe.model.Token;
 import org.scribe.model.Verb;
 import org.scribe.model.Verifier;
 import org.scribe.oauth.OAuthService;
 
+import de.uni.hannover.studip.sync.http.ContentEncoding;
+import de.uni.hannover.studip.sync.http.HttpResponse;
+import de.uni.hannover.studip.sync.http.Transport;
+import de.uni.hannover.studip.sync.http.Transports;
+import de.uni.hannover.studip.sync.metrics.Trace;
+import de.uni.hannover.studip.sync.metrics.TraceEvent;
 import de.uni.hannover.studip.sync.oauth.StudIPApiProvider;
 
 /**
@@ -22,8 +27,10 @@ import de.uni.hannover.studip.sync.oauth.StudIPApiProvider;
  */
 public final class OAuth {
 
-	private static final OAuth INSTANCE = new OAuth();
-	private static final Config CONFIG = Config.getInstance();
+	/**
+	 * Config of this account.
+	 */
+	private final Config config;
 
 	/**
 	 * Service object.
@@ -50,13 +57,24 @@ public final class OAuth {
 	 */
 	private OAuthState state;
 
+	/**
+	 * Default instance holder, the default instance is created on first use (not in service mode).
+	 */
+	private static final class DefaultHolder {
+		private static final OAuth INSTANCE = new OAuth(Config.getDefault());
+	}
+
 	/**
 	 * Singleton instance getter.
 	 * 
+	 * In service mode the instance of the account bound to the current thread is returned.
+	 * 
+	 * @see Account
 	 * @return OAuth instance
 	 */
 	public static OAuth getInstance() {
-		return INSTANCE;
+		final Account account = Account.current();
+		return account == null ? DefaultHolder.INSTANCE : account.getOAuth();
 	}
 
 	/**
@@ -70,8 +88,11 @@ public final class OAuth {
 
 	/**
 	 * Step 1: Create the OAuthService object.
+	 * 
+	 * @param config Config of this account
 	 */
-	private OAuth() {
+	OAuth(final Config config) {
+		this.config = config;
 		service = new ServiceBuilder()
 			.provider(StudIPApiProvider.class)
 			.apiKey(StudIPApiProvider.API_KEY)
@@ -141,16 +162,21 @@ public final class OAuth {
 	/**
 	 * Step 5: Sign and send request.
 	 * 
+	 * The signed request is sent with the shared transport.
+	 * 
+	 * @see Transports
 	 * @param verb Request method
 	 * @param url Request url
-	 * @return OAuth response
+	 * @return Http response
 	 */
-	public Response sendRequest(final Verb method, final String url) {
+	public HttpResponse sendRequest(final Verb method, final String url) {
 		final OAuthRequest request = new OAuthRequest(method, url);
-		request.setConnectTimeout(10, TimeUnit.SECONDS);
-		request.setReadTimeout(30, TimeUnit.SECONDS);
+		request.setConnectTimeout(Transport.CONNECT_TIMEOUT, TimeUnit.SECONDS);
+		request.setReadTimeout(Transport.READ_TIMEOUT, TimeUnit.SECONDS);
 		request.setConnectionKeepAlive(true);
+		request.addHeader("Accept-Encoding", ContentEncoding.ACCEPT_ENCODING);
 
+		final TraceEvent event = Trace.sign(url);
 		lock.readLock().lock();
 		try {
 			if (state != OAuthState.READY) {
@@ -161,9 +187,10 @@ public final class OAuth {
 
 		} finally {
 			lock.readLock().unlock();
+			event.commit();
 		}
 
-		return request.send();
+		return Transports.get().send(request);
 	}
 
 	/**
@@ -175,7 +202,7 @@ public final class OAuth {
 		lock.writeLock().lock();
 		try {
 			if (state != OAuthState.READY) {
-				accessToken = CONFIG.getAccessToken();
+				accessToken = config.getAccessToken();
 				state = OAuthState.READY;
 			}
 
@@ -195,7 +222,7 @@ public final class OAuth {
 	 */
 	public void removeAccessToken() {
 		try {
-			CONFIG.initOAuthFile();
+			config.initOAuthFile();
 
 		} catch (IOException e) {
 			throw new IllegalStateException(e);
@@ -6,7 +6,10 @@ import java.util.Locale;
 import java.util.StringTokenizer;
 
 import de.uni.hannover.studip.sync.datamodel.CourseTreeNode;
+import de.uni.hannover.studip.sync.datamodel.DocumentFolderTreeNode;
+import de.uni.hannover.studip.sync.datamodel.DocumentTreeNode;
 import de.uni.hannover.studip.sync.datamodel.SemesterTreeNode;
+import de.uni.hannover.studip.sync.datamodel.SemestersTreeNode;
 import de.uni.hannover.studip.sync.utils.FileBrowser;
 
 /**
@@ -36,31 +39,6 @@ public final class PathBuilder {
 		return str.toString();
 	}
 
-	/**
-	 * Match exercises with lectures and return course title.
-	 * 
-	 * @return
-	 */
-	private static String getCourseTitle(final SemesterTreeNode semester, final CourseTreeNode course) {
-		final String courseTitle = FileBrowser.removeIllegalCharacters(course.title);
-		final String courseTitleLowerCase = courseTitle.toLowerCase(Locale.GERMANY);
-
-		if (course.type == 3 || courseTitleLowerCase.contains("übung") || courseTitleLowerCase.contains("uebung")) {
-			// Search lecture for this exercise.
-			for (final CourseTreeNode lecture : semester.courses) {
-				final String lectureTitle = FileBrowser.removeIllegalCharacters(lecture.title);
-				final String lectureTitleLowerCase = lectureTitle.toLowerCase(Locale.GERMANY);
-
-				if (!course.courseId.equals(lecture.courseId)
-						&& courseTitleLowerCase.contains(lectureTitleLowerCase)) {
-					return lectureTitle;
-				}
-			}
-		}
-
-		return courseTitle;
-	}
-
 	/**
 	 * Get course type.
 	 * 
@@ -99,6 +77,19 @@ public final class PathBuilder {
 	}
 
 	public static String toString(final String template, final SemesterTreeNode semester, final CourseTreeNode course) {
+		return toString(template, semester, course, null);
+	}
+
+	/**
+	 * Resolve the course path template.
+	 * 
+	 * @param template Folder structure template
+	 * @param semester Semester tree-node
+	 * @param course Course tree-node
+	 * @param lectures Lecture index of the semester, if null the index is built on demand
+	 * @return Relative course path
+	 */
+	public static String toString(final String template, final SemesterTreeNode semester, final CourseTreeNode course, final LectureIndex lectures) {
 		final StringBuilder str = new StringBuilder();
 		final StringTokenizer tokens = new StringTokenizer(template, "/");
 
@@ -108,13 +99,13 @@ public final class PathBuilder {
 				str.append(FileBrowser.removeIllegalCharacters(semester.title));
 				break;
 			case ":course":
-				str.append(FileBrowser.removeIllegalCharacters(course.title));
+				str.append(lectures == null ? FileBrowser.removeIllegalCharacters(course.title) : lectures.getTitle(course));
 				break;
 			case ":sem":
 				str.append(getSemesterShortTitle(semester));
 				break;
 			case ":lecture":
-				str.append(getCourseTitle(semester, course));
+				str.append((lectures == null ? new LectureIndex(semester) : lectures).getCourseTitle(course));
 				break;
 			case ":type":
 				str.append(getCourseType(course));
@@ -131,4 +122,99 @@ public final class PathBuilder {
 	public static Path toPath(final String template, final Path rootDir, final SemesterTreeNode semester, final CourseTreeNode course) {
 		return rootDir.resolve(toString(template, semester, course));
 	}
+
+	public static Path toPath(final String template, final Path rootDir, final SemesterTreeNode semester, final CourseTreeNode course, final LectureIndex lectures) {
+		return rootDir.resolve(toString(template, semester, course, lectures));
+	}
+
+	/**
+	 * Update the cached local paths of all tree nodes,
+	 * if the folder structure or whitespace settings changed since the paths were resolved.
+	 * 
+	 * @param rootNode Tree root node
+	 * @return True if the paths were updated
+	 */
+	public static boolean updatePaths(final SemestersTreeNode rootNode) {
+		final Config config = Config.getInstance();
+		final String folderStructure = config.getFolderStructure();
+		final int replaceWhitespaces = config.getReplaceWhitespaces();
+
+		if (folderStructure.equals(rootNode.folderStructure)
+				&& rootNode.replaceWhitespaces != null && rootNode.replaceWhitespaces == replaceWhitespaces) {
+			return false;
+		}
+
+		for (final SemesterTreeNode semester : rootNode.semesters) {
+			updatePaths(folderStructure, replaceWhitespaces, semester);
+		}
+
+		rootNode.folderStructure = folderStructure;
+		rootNode.replaceWhitespaces = replaceWhitespaces;
+		return true;
+	}
+
+	/**
+	 * Update the cached local paths of all semester courses (e.g. after a course was removed).
+	 * 
+	 * @param semester Semester tree-node
+	 */
+	public static void updatePaths(final SemesterTreeNode semester) {
+		final Config config = Config.getInstance();
+		updatePaths(config.getFolderStructure(), config.getReplaceWhitespaces(), semester);
+	}
+
+	/**
+	 * Update the cached local paths of a course (e.g. after the course folders were rebuilt).
+	 * 
+	 * @param semester Semester tree-node
+	 * @param course Course tree-node
+	 */
+	public static void updatePaths(final SemesterTreeNode semester, final CourseTreeNode course) {
+		final Config config = Config.getInstance();
+		updatePaths(config.getFolderStructure(), config.getReplaceWhitespaces(), semester, course, null);
+	}
+
+	/**
+	 * Update the cached local path of a new document.
+	 * 
+	 * @param folder Parent folder tree-node
+	 * @param document Document tree-node
+	 */
+	public static void updatePath(final DocumentFolderTreeNode folder, final DocumentTreeNode document) {
+		document.path = folder.path + FileBrowser.removeIllegalCharacters(document.fileName, Config.getInstance().getReplaceWhitespaces());
+	}
+
+	private static void updatePaths(final String folderStructure, final int replaceWhitespaces, final SemesterTreeNode semester) {
+		/* Build the lecture index once per semester. */
+		final LectureIndex lectures = new LectureIndex(semester);
+
+		for (final CourseTreeNode course : semester.courses) {
+			updatePaths(folderStructure, replaceWhitespaces, semester, course, lectures);
+		}
+	}
+
+	private static void updatePaths(final String folderStructure, final int replaceWhitespaces, final SemesterTreeNode semester, final CourseTreeNode course, final LectureIndex lectures) {
+		course.path = toString(folderStructure, semester, course, lectures);
+		course.root.path = course.path;
+
+		updatePaths(replaceWhitespaces, course.root);
+	}
+
+	/**
+	 * Resolve child paths relative to the folder path (recursive).
+	 * Default folders are merged with their parent.
+	 */
+	private static void updatePaths(final int replaceWhitespaces, final DocumentFolderTreeNode folder) {
+		for (final DocumentFolderTreeNode child : folder.folders) {
+			child.path = TreeConflict.isDefaultFolder(child)
+					? folder.path
+					: folder.path + FileBrowser.removeIllegalCharacters(child.name, replaceWhitespaces) + '/';
+
+			updatePaths(replaceWhitespaces, child);
+		}
+
+		for (final DocumentTreeNode document : folder.documents) {
+			document.path = folder.path + FileBrowser.removeIllegalCharacters(document.fileName, replaceWhitespaces);
+		}
+	}
 }
@@ -0,0 +1,39 @@
+package de.uni.hannover.studip.sync.models;
+
+/**
+ * Build/update/sync progress listener (e.g. gui progress indicator).
+ * 
+ * @author Lennart Glauer
+ * @see TreeBuilder#setProgressListener(ProgressListener)
+ */
+public interface ProgressListener {
+
+	/**
+	 * A phase was started (build, update or sync).
+	 * 
+	 * Worker threads never call the listener, the listener samples the progress
+	 * at its own rate until the snapshot is done (the same instance is reused for the next phase).
+	 * 
+	 * @param progress Progress aggregator
+	 */
+	void started(SyncProgress progress);
+
+	/**
+	 * All jobs of the phase are done (called by the waiting caller).
+	 * 
+	 * @param progress Progress aggregator
+	 */
+	default void finished(final SyncProgress progress) {
+		// Sampled by the listener.
+	}
+
+	/**
+	 * Run a state change on the listener thread (e.g. the gui thread).
+	 * 
+	 * @param task State change
+	 */
+	default void runLater(final Runnable task) {
+		task.run();
+	}
+
+}
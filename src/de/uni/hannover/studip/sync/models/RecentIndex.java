@@ -0,0 +1,180 @@
+package de.uni.hannover.studip.sync.models;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import de.uni.hannover.studip.sync.datamodel.CourseTreeNode;
+import de.uni.hannover.studip.sync.datamodel.DocumentFolderTreeNode;
+import de.uni.hannover.studip.sync.datamodel.DocumentTreeNode;
+import de.uni.hannover.studip.sync.datamodel.RecentDocument;
+import de.uni.hannover.studip.sync.datamodel.RecentDocuments;
+import de.uni.hannover.studip.sync.datamodel.SemesterTreeNode;
+import de.uni.hannover.studip.sync.datamodel.SemestersTreeNode;
+
+/**
+ * Persistent recency index (new documents view).
+ *
+ * Keeps the most recently changed documents (top-k by chdate) in a small file next
+ * to the tree file, so the view does not have to read and sort the whole tree.
+ * The index is rewritten with every tree write.
+ *
+ * @author Lennart Glauer
+ * @notice Thread safe
+ */
+public final class RecentIndex {
+
+	private static final Logger LOG = Logger.getLogger(Logger.GLOBAL_LOGGER_NAME);
+	private static final ObjectMapper MAPPER = Config.getMapper();
+
+	/**
+	 * Index file name (next to the tree file).
+	 */
+	private static final String FILE_NAME = "recent.json";
+
+	/**
+	 * Maximum number of indexed documents.
+	 */
+	public static final int SIZE = 1000;
+
+	/**
+	 * Oldest document first (heap order).
+	 */
+	private static final Comparator<RecentDocument> OLDEST_FIRST = (a, b) -> {
+		final int result = Long.compare(a.chDate, b.chDate);
+		return result != 0 || a.documentId == null || b.documentId == null
+				? result
+				: a.documentId.compareTo(b.documentId);
+	};
+
+	private RecentIndex() {
+		// Utility class.
+	}
+
+	/**
+	 * Get the index file of a tree file.
+	 *
+	 * @param tree Path to tree file
+	 * @return Path to index file
+	 */
+	public static Path getFile(final Path tree) {
+		return tree.resolveSibling(FILE_NAME);
+	}
+
+	/**
+	 * Build the index of the most recently changed documents.
+	 *
+	 * @param rootNode Tree root node
+	 * @param limit Maximum number of documents
+	 * @return Recency index, newest document first
+	 */
+	public static RecentDocuments build(final SemestersTreeNode rootNode, final int limit) {
+		/* Min-heap of the newest documents, O(n log k). */
+		final PriorityQueue<RecentDocument> heap = new PriorityQueue<RecentDocument>(Math.max(1, limit), OLDEST_FIRST);
+
+		for (final SemesterTreeNode semester : rootNode.semesters) {
+			for (final CourseTreeNode course : semester.courses) {
+				collect(semester, course, course.root, heap, limit);
+			}
+		}
+
+		final RecentDocuments index = new RecentDocuments();
+		index.folderStructure = rootNode.folderStructure;
+		index.replaceWhitespaces = rootNode.replaceWhitespaces;
+		index.documents = new ArrayList<RecentDocument>(heap);
+		Collections.sort(index.documents, OLDEST_FIRST.reversed());
+
+		return index;
+	}
+
+	private static void collect(final SemesterTreeNode semester, final CourseTreeNode course, final DocumentFolderTreeNode folder,
+			final PriorityQueue<RecentDocument> heap, final int limit) {
+		for (final DocumentFolderTreeNode child : folder.folders) {
+			collect(semester, course, child, heap, limit);
+		}
+
+		for (final DocumentTreeNode document : folder.documents) {
+			final long chDate = document.chDate == null ? 0 : document.chDate;
+			if (heap.size() < limit) {
+				heap.add(new RecentDocument(semester, course, document));
+
+			} else if (limit > 0 && chDate > heap.peek().chDate) {
+				/* Only documents newer than the oldest indexed document are materialized. */
+				heap.poll();
+				heap.add(new RecentDocument(semester, course, document));
+			}
+		}
+	}
+
+	/**
+	 * Rebuild and store the index of a tree.
+	 *
+	 * @param tree Path to tree file
+	 * @param rootNode Tree root node
+	 * @throws IOException
+	 */
+	public static void write(final Path tree, final SemestersTreeNode rootNode) throws IOException {
+		try (final OutputStream out = Files.newOutputStream(getFile(tree))) {
+			MAPPER.writerFor(RecentDocuments.class).writeValue(out, build(rootNode, SIZE));
+		}
+	}
+
+	/**
+	 * Read the index of a tree.
+	 *
+	 * If the index is missing, invalid or the paths are outdated (e.g. the folder
+	 * structure setting changed), the index is rebuilt from the tree file.
+	 *
+	 * @param tree Path to tree file
+	 * @return Recency index, newest document first
+	 * @throws IOException If the tree file does not exist or is invalid
+	 */
+	public static RecentDocuments read(final Path tree) throws IOException {
+		final Config config = Config.getInstance();
+
+		try (final InputStream in = Files.newInputStream(getFile(tree))) {
+			final RecentDocuments index = MAPPER.readerFor(RecentDocuments.class).readValue(in);
+
+			if (config.getFolderStructure().equals(index.folderStructure)
+					&& index.replaceWhitespaces != null && index.replaceWhitespaces == config.getReplaceWhitespaces()) {
+				return index;
+			}
+
+		} catch (NoSuchFileException | JsonParseException | JsonMappingException e) {
+			if (LOG.isLoggable(Level.INFO)) {
+				LOG.info("Rebuilding recency index: " + e.getMessage());
+			}
+		}
+
+		/* Rebuild. */
+		final SemestersTreeNode rootNode = TreeBuilder.readTree(tree);
+		PathBuilder.updatePaths(rootNode);
+
+		final RecentDocuments index = build(rootNode, SIZE);
+		try (final OutputStream out = Files.newOutputStream(getFile(tree))) {
+			MAPPER.writerFor(RecentDocuments.class).writeValue(out, index);
+
+		} catch (IOException e) {
+			/* The index is only a cache. */
+			if (LOG.isLoggable(Level.WARNING)) {
+				LOG.warning("Could not write recency index: " + e.getMessage());
+			}
+		}
+
+		return index;
+	}
+
+}
@@ -2,13 +2,20 @@ package de.uni.hannover.studip.sync.models;
 
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.function.LongConsumer;
 
 import org.scribe.model.Verb;
 
 import de.elanev.studip.android.app.backend.datamodel.*;
 import de.uni.hannover.studip.sync.exceptions.*;
+import de.uni.hannover.studip.sync.metrics.Counter;
+import de.uni.hannover.studip.sync.metrics.Histogram;
+import de.uni.hannover.studip.sync.metrics.Metrics;
+import de.uni.hannover.studip.sync.metrics.Trace;
+import de.uni.hannover.studip.sync.metrics.TraceEvent;
 import de.uni.hannover.studip.sync.oauth.StudIPApiProvider;
 import de.uni.hannover.studip.sync.utils.FileDownload;
+import de.uni.hannover.studip.sync.utils.StudIPId;
 
 /**
  * Rest.Api utility class.
@@ -20,10 +27,10 @@ import de.uni.hannover.studip.sync.utils.FileDownload;
  */
 public final class RestApi {
 
-	/**
-	 * Regex for studip id (MD5) validation.
-	 */
-	private static final String STUDIP_ID_REGEX = "^[a-f0-9]{32}$";
+	private static final Histogram DOWNLOAD_SECONDS = Metrics.histogram("studip_sync_download_seconds",
+			"Document download time (response body).");
+	private static final Counter DOWNLOAD_BYTES = Metrics.counter("studip_sync_download_bytes_total",
+			"Downloaded document bytes.");
 
 	private RestApi() {
 		// Utility class.
@@ -38,12 +45,12 @@ public final class RestApi {
 	 * @throws IOException 
 	 */
 	public static Courses getAllCoursesBySemesterId(final String semesterId) throws UnauthorizedException, NotFoundException, IOException {
-		if (!semesterId.matches(STUDIP_ID_REGEX)) {
+		if (!StudIPId.isValid(semesterId)) {
 			throw new IllegalArgumentException("Invalid semester id!");
 		}
 
 		final JacksonRequest<Courses> request = new JacksonRequest<Courses>(Verb.GET,
-				StudIPApiProvider.BASE_URL + "/courses/semester/" + semesterId, Courses.class);
+				StudIPApiProvider.BASE_URL + "/courses/semester/" + semesterId, "courses/semester/:semester_id", Courses.class);
 
 		switch (request.getCode()) {
 		case 200:
@@ -57,6 +64,33 @@ public final class RestApi {
 		}
 	}
 
+	/**
+	 * Liefert die Aktivitäten der Veranstaltungen des Nutzers zurück.
+	 * 
+	 * @return
+	 * @throws UnauthorizedException 
+	 * @throws ForbiddenException 
+	 * @throws NotFoundException Activity feed not available
+	 * @throws IOException 
+	 */
+	public static Activities getActivities() throws UnauthorizedException, ForbiddenException, NotFoundException, IOException {
+		final JacksonRequest<Activities> request = new JacksonRequest<Activities>(Verb.GET,
+				StudIPApiProvider.BASE_URL + "/activities", "activities", Activities.class);
+
+		switch (request.getCode()) {
+		case 200:
+			return request.parseResponse();
+		case 401:
+			throw new UnauthorizedException("Unauthorized!");
+		case 403:
+			throw new ForbiddenException("Forbidden!");
+		case 404:
+			throw new NotFoundException("Not found!");
+		default:
+			throw new IllegalStateException("Statuscode: " + request.getCode());
+		}
+	}
+
 	/**
 	 * Liefert die neuen Dateien einer Veranstaltung zurück. 
 	 * 
@@ -67,12 +101,12 @@ public final class RestApi {
 	 * @throws IOException 
 	 */
 	public static Documents getNewDocumentsByCourseId(final String courseId, final long timestamp) throws UnauthorizedException, ForbiddenException, NotFoundException, IOException {
-		if (!courseId.matches(STUDIP_ID_REGEX)) {
+		if (!StudIPId.isValid(courseId)) {
 			throw new IllegalArgumentException("Invalid range id!");
 		}
 
 		final JacksonRequest<Documents> request = new JacksonRequest<Documents>(Verb.GET,
-				StudIPApiProvider.BASE_URL + "/documents/" + courseId + "/new/" + timestamp, Documents.class);
+				StudIPApiProvider.BASE_URL + "/documents/" + courseId + "/new/" + timestamp, "documents/:range_id/new/:timestamp", Documents.class);
 
 		switch (request.getCode()) {
 		case 200:
@@ -89,31 +123,35 @@ public final class RestApi {
 	}
 
 	/**
-	 * Liefert die Dateien und Ordner eines angegebenen Ordners einer Veranstaltung zurück. 
+	 * Liefert die Dateien und Ordner eines angegebenen Ordners einer Veranstaltung zurück,
+	 * jeder Ordner und jede Datei wird direkt beim Parsen an den Listener übergeben.
 	 * 
-	 * @return
+	 * @param rangeId Course id
+	 * @param folderId Folder id or null for the course root folder
+	 * @param listener Folder listing listener
 	 * @throws UnauthorizedException 
 	 * @throws ForbiddenException 
 	 * @throws NotFoundException 
 	 * @throws IOException 
 	 */
-	public static DocumentFolders getAllDocumentsByRangeAndFolderId(final String rangeId, final String folderId) throws UnauthorizedException, ForbiddenException, NotFoundException, IOException {
-		if (!rangeId.matches(STUDIP_ID_REGEX)) {
+	public static void getAllDocumentsByRangeAndFolderId(final String rangeId, final String folderId, final DocumentFolderReader.Listener listener) throws UnauthorizedException, ForbiddenException, NotFoundException, IOException {
+		if (!StudIPId.isValid(rangeId)) {
 			throw new IllegalArgumentException("Invalid range id!");
 		}
 
-		if (folderId != null && !folderId.matches(STUDIP_ID_REGEX)) {
+		if (folderId != null && !StudIPId.isValid(folderId)) {
 			throw new IllegalArgumentException("Invalid folder id!");
 		}
 
 		final JacksonRequest<DocumentFolders> request = new JacksonRequest<DocumentFolders>(Verb.GET,
-				StudIPApiProvider.BASE_URL + "/documents/" + rangeId + "/folder" + (folderId == null ? "" : "/" + folderId), DocumentFolders.class);
+				StudIPApiProvider.BASE_URL + "/documents/" + rangeId + "/folder" + (folderId == null ? "" : "/" + folderId), "documents/:range_id/folder/:folder_id", DocumentFolders.class);
 
 		switch (request.getCode()) {
 		case 200:
-			return request.parseResponse();
+			request.streamResponse(parser -> DocumentFolderReader.read(parser, listener));
+			break;
 		case 400: /* Range has no documents. */
-			return new DocumentFolders();
+			break;
 		case 401:
 			throw new UnauthorizedException("Unauthorized!");
 		case 403:
@@ -135,16 +173,41 @@ public final class RestApi {
 	 * @throws IOException 
 	 */
 	public static long downloadDocumentById(final String documentId, final Path documentFile) throws UnauthorizedException, ForbiddenException, NotFoundException, IOException {
-		if (!documentId.matches(STUDIP_ID_REGEX)) {
+		return downloadDocumentById(documentId, documentFile, null);
+	}
+
+	/**
+	 * Liefert das Dokument als solches zurück und meldet den Fortschritt.
+	 * 
+	 * @param progress Called with the number of bytes after each write or null
+	 * @return
+	 * @throws UnauthorizedException 
+	 * @throws ForbiddenException 
+	 * @throws NotFoundException 
+	 * @throws IOException 
+	 */
+	public static long downloadDocumentById(final String documentId, final Path documentFile, final LongConsumer progress) throws UnauthorizedException, ForbiddenException, NotFoundException, IOException {
+		if (!StudIPId.isValid(documentId)) {
 			throw new IllegalArgumentException("Invalid document id!");
 		}
 
 		final JacksonRequest<Object> request = new JacksonRequest<Object>(Verb.GET,
-				StudIPApiProvider.BASE_URL + "/documents/" + documentId + "/download", Object.class);
+				StudIPApiProvider.BASE_URL + "/documents/" + documentId + "/download", "documents/:document_id/download", Object.class);
 
 		switch (request.getCode()) {
 		case 200:
-			return FileDownload.get(request.getStream(), documentFile);
+			final TraceEvent event = Trace.download(documentId, documentFile);
+			final long start = System.nanoTime();
+			try {
+				final long bytes = FileDownload.get(request.getStream(), documentFile, progress);
+				DOWNLOAD_SECONDS.observeSince(start);
+				DOWNLOAD_BYTES.add(bytes);
+				event.setBytes(bytes);
+				return bytes;
+
+			} finally {
+				event.commit();
+			}
 		case 401:
 			throw new UnauthorizedException("Unauthorized!");
 		case 403:
@@ -165,7 +228,7 @@ public final class RestApi {
 	 */
 	public static Semesters getAllSemesters() throws UnauthorizedException, IOException {
 		final JacksonRequest<Semesters> request = new JacksonRequest<Semesters>(Verb.GET,
-				StudIPApiProvider.BASE_URL + "/courses/semester", Semesters.class);
+				StudIPApiProvider.BASE_URL + "/courses/semester", "courses/semester", Semesters.class);
 
 		switch (request.getCode()) {
 		case 200:
@@ -186,12 +249,12 @@ public final class RestApi {
 	 * @throws IOException 
 	 */
 	public static User getUserById(final String userId) throws UnauthorizedException, NotFoundException, IOException {
-		if (userId != null && !userId.matches(STUDIP_ID_REGEX)) {
+		if (userId != null && !StudIPId.isValid(userId)) {
 			throw new IllegalArgumentException("Invalid user id!");
 		}
 
 		final JacksonRequest<User> request = new JacksonRequest<User>(Verb.GET,
-				StudIPApiProvider.BASE_URL + "/user" + (userId == null ? "" : "/" + userId), User.class);
+				StudIPApiProvider.BASE_URL + "/user" + (userId == null ? "" : "/" + userId), "user/:user_id", User.class);
 
 		switch (request.getCode()) {
 		case 200:
@@ -0,0 +1,146 @@
+package de.uni.hannover.studip.sync.models;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import de.uni.hannover.studip.sync.datamodel.RunRecord;
+
+/**
+ * Statistics of one sync run (one TreeBuilder/TreeSync instance).
+ *
+ * Jobs run with the stats of their builder bound to the worker thread, so requests
+ * are attributed to the right run even if several accounts sync at the same time.
+ *
+ * @author Lennart Glauer
+ * @notice Thread safe
+ */
+public final class RunStats {
+
+	/**
+	 * Stats bound to the current thread.
+	 */
+	private static final ThreadLocal<RunStats> CURRENT = new ThreadLocal<RunStats>();
+
+	/**
+	 * Start time (unix time).
+	 */
+	private final long time = System.currentTimeMillis() / 1000L;
+
+	private final ConcurrentHashMap<String, Double> phases = new ConcurrentHashMap<String, Double>();
+	private final ConcurrentHashMap<String, LongAdder> requests = new ConcurrentHashMap<String, LongAdder>();
+	private final LongAdder errors = new LongAdder();
+	private final LongAdder files = new LongAdder();
+	private final LongAdder bytes = new LongAdder();
+	private final LongAdder jobs = new LongAdder();
+	private volatile double throughput;
+
+	/**
+	 * Get the stats bound to the current thread.
+	 *
+	 * @return Stats or null if the current thread is not a job
+	 */
+	public static RunStats current() {
+		return CURRENT.get();
+	}
+
+	/**
+	 * Wrap a job, so it runs with these stats bound to the executing thread.
+	 *
+	 * @param job Job
+	 * @return Bound job
+	 */
+	Runnable bind(final Runnable job) {
+		return () -> {
+			final RunStats previous = CURRENT.get();
+			CURRENT.set(this);
+			try {
+				job.run();
+
+			} finally {
+				if (previous == null) {
+					CURRENT.remove();
+				} else {
+					CURRENT.set(previous);
+				}
+			}
+		};
+	}
+
+	/**
+	 * Add phase duration.
+	 *
+	 * @param phase Phase name
+	 * @param nanos Duration in nanoseconds
+	 */
+	public void addPhase(final String phase, final long nanos) {
+		phases.merge(phase, nanos / 1e9, Double::sum);
+	}
+
+	/**
+	 * Count a request.
+	 *
+	 * @param endpoint Endpoint name
+	 */
+	public void addRequest(final String endpoint) {
+		requests.computeIfAbsent(endpoint, key -> new LongAdder()).increment();
+	}
+
+	/**
+	 * Count a connection error or unexpected status code.
+	 */
+	public void addError() {
+		errors.increment();
+	}
+
+	/**
+	 * Count a downloaded file.
+	 *
+	 * @param size Number of bytes
+	 */
+	public void addDownload(final long size) {
+		files.increment();
+		bytes.add(size);
+	}
+
+	/**
+	 * Count a job.
+	 */
+	public void addJob() {
+		jobs.increment();
+	}
+
+	/**
+	 * Set download throughput.
+	 *
+	 * @param bytesPerSecond
+	 */
+	public void setThroughput(final double bytesPerSecond) {
+		throughput = bytesPerSecond;
+	}
+
+	/**
+	 * Create history record.
+	 *
+	 * @param mode gui, cli or service
+	 * @param status ok, aborted or failed
+	 * @return Run record
+	 */
+	public RunRecord toRecord(final String mode, final String status) {
+		final RunRecord record = new RunRecord();
+		record.time = time;
+		record.mode = mode;
+		record.status = status;
+		record.phases.putAll(phases);
+		for (final Map.Entry<String, LongAdder> entry : requests.entrySet()) {
+			record.requests.put(entry.getKey(), entry.getValue().sum());
+		}
+		record.errors = errors.sum();
+		record.files = files.sum();
+		record.bytes = bytes.sum();
+		record.throughput = throughput;
+		record.jobs = jobs.sum();
+
+		return record;
+	}
+}
@@ -0,0 +1,210 @@
+package de.uni.hannover.studip.sync.models;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import de.uni.hannover.studip.sync.datamodel.ContentRecord;
+import de.uni.hannover.studip.sync.datamodel.DocumentTreeNode;
+
+/**
+ * Extracted document text store (search index).
+ *
+ * The terms of downloaded plain text documents are extracted once after the download
+ * and appended to the content file of the config, one json record per line.
+ * Binary formats (e.g. pdf) are only indexed by their metadata.
+ * Disable with the system property studip.searchContent=false.
+ *
+ * @author Lennart Glauer
+ * @notice Thread safe
+ */
+public final class SearchContent {
+
+	private static final Logger LOG = Logger.getLogger(Logger.GLOBAL_LOGGER_NAME);
+	private static final ObjectMapper MAPPER = Config.getMapper();
+
+	private static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("studip.searchContent", "true"));
+
+	/**
+	 * Plain text file extensions.
+	 */
+	private static final Set<String> TEXT_EXTENSIONS = new HashSet<String>(Arrays.asList(
+			"txt", "md", "csv", "tex", "bib", "html", "htm", "xml", "json",
+			"java", "c", "h", "cpp", "hpp", "cs", "py", "js", "sql", "m", "r", "sh", "hs", "pl"));
+
+	/**
+	 * Larger files are not indexed.
+	 */
+	private static final long MAX_FILE_SIZE = 1024 * 1024;
+
+	/**
+	 * Maximum number of distinct terms per document.
+	 */
+	private static final int MAX_TERMS = 5000;
+
+	/**
+	 * Shorter and longer terms are not indexed (metadata terms are not limited).
+	 */
+	private static final int MIN_TERM_LENGTH = 3;
+	private static final int MAX_TERM_LENGTH = 32;
+
+	/**
+	 * Compact the content file on read if it has more outdated than current records.
+	 */
+	private static final int MIN_COMPACT_RECORDS = 1000;
+
+	/**
+	 * Lock for all content files (appends are rare).
+	 */
+	private static final Object LOCK = new Object();
+
+	private SearchContent() {
+		// Utility class.
+	}
+
+	/**
+	 * Content key of a document version.
+	 *
+	 * @param documentId Document id
+	 * @param chDate Change date
+	 * @return Key
+	 */
+	public static String key(final String documentId, final long chDate) {
+		return documentId + ':' + chDate;
+	}
+
+	/**
+	 * Extract and store the terms of a downloaded document of the current config.
+	 * Failures are only logged, the search index must never break a sync.
+	 *
+	 * @param document Document tree-node
+	 * @param file Downloaded file
+	 */
+	public static void extract(final DocumentTreeNode document, final Path file) {
+		if (!ENABLED || !isText(document.fileName)) {
+			return;
+		}
+
+		try {
+			if (Files.size(file) > MAX_FILE_SIZE) {
+				return;
+			}
+
+			/* Invalid utf-8 sequences are replaced. */
+			final String text = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+			final Set<String> terms = new LinkedHashSet<String>();
+			for (final String term : SearchIndex.tokenize(text, true)) {
+				if (term.length() >= MIN_TERM_LENGTH && term.length() <= MAX_TERM_LENGTH) {
+					terms.add(term);
+					if (terms.size() >= MAX_TERMS) {
+						break;
+					}
+				}
+			}
+
+			if (terms.isEmpty()) {
+				return;
+			}
+
+			final ContentRecord record = new ContentRecord(document.documentId,
+					document.chDate == null ? 0 : document.chDate, String.join(" ", terms));
+			final String line = MAPPER.writeValueAsString(record) + '\n';
+
+			final Path contentFile = Config.getInstance().getSearchContentFile();
+			synchronized (LOCK) {
+				Files.write(contentFile, line.getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+			}
+
+		} catch (IOException e) {
+			if (LOG.isLoggable(Level.WARNING)) {
+				LOG.warning("Could not index " + file + ": " + e.getMessage());
+			}
+		}
+	}
+
+	private static boolean isText(final String fileName) {
+		if (fileName == null) {
+			return false;
+		}
+
+		final int dot = fileName.lastIndexOf('.');
+		return dot >= 0 && TEXT_EXTENSIONS.contains(fileName.substring(dot + 1).toLowerCase(Locale.ROOT));
+	}
+
+	/**
+	 * Read all extracted terms, later records of a document replace earlier ones.
+	 *
+	 * @param file Path to content file
+	 * @return Terms by content key
+	 * @throws IOException
+	 */
+	public static Map<String, String> read(final Path file) throws IOException {
+		final Map<String, ContentRecord> records = new HashMap<String, ContentRecord>();
+		int lines = 0;
+
+		synchronized (LOCK) {
+			try (final BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					lines++;
+					try {
+						final ContentRecord record = MAPPER.readValue(line, ContentRecord.class);
+						records.put(record.documentId, record);
+
+					} catch (JsonProcessingException e) {
+						/* Partially written line. */
+					}
+				}
+
+			} catch (NoSuchFileException e) {
+				/* Nothing indexed yet. */
+			}
+
+			if (lines >= MIN_COMPACT_RECORDS && lines > 2 * records.size()) {
+				compact(file, records);
+			}
+		}
+
+		final Map<String, String> content = new HashMap<String, String>(records.size() * 2);
+		for (final ContentRecord record : records.values()) {
+			content.put(key(record.documentId, record.chDate), record.terms);
+		}
+
+		return content;
+	}
+
+	/**
+	 * Keep only the latest record of each document.
+	 */
+	private static void compact(final Path file, final Map<String, ContentRecord> records) throws IOException {
+		final Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+
+		try (final BufferedWriter writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+			for (final ContentRecord record : records.values()) {
+				writer.write(MAPPER.writeValueAsString(record));
+				writer.write('\n');
+			}
+		}
+
+		Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+}
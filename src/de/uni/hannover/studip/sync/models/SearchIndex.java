@@ -0,0 +1,570 @@
+package de.uni.hannover.studip.sync.models;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+import de.uni.hannover.studip.sync.datamodel.CourseTreeNode;
+import de.uni.hannover.studip.sync.datamodel.DocumentFolderTreeNode;
+import de.uni.hannover.studip.sync.datamodel.DocumentTreeNode;
+import de.uni.hannover.studip.sync.datamodel.RecentDocument;
+import de.uni.hannover.studip.sync.datamodel.SemesterTreeNode;
+import de.uni.hannover.studip.sync.datamodel.SemestersTreeNode;
+
+/**
+ * Inverted document search index.
+ *
+ * Indexes document names, filenames, descriptions, course and semester titles
+ * and the extracted text of downloaded documents (see SearchContent).
+ * Terms are lower case without diacritics, German umlauts are indexed spelled out
+ * (ae, oe, ue, ss) and without dots, so "übung", "uebung" and "ubung" find each other.
+ * Every query term matches as prefix and all query terms must match.
+ *
+ * The index is stored next to the tree file together with the version of the tree
+ * and content file, and reused until one of them changes.
+ *
+ * @author Lennart Glauer
+ * @notice Thread safe (immutable object)
+ */
+public final class SearchIndex {
+
+	private static final Logger LOG = Logger.getLogger(Logger.GLOBAL_LOGGER_NAME);
+
+	/**
+	 * Index file name (next to the tree file).
+	 */
+	private static final String FILE_NAME = "search.idx";
+
+	/**
+	 * Index file format, increase if the format or the tokenizer changes.
+	 */
+	private static final int FILE_FORMAT = 1;
+
+	/**
+	 * Last loaded index.
+	 */
+	private static volatile Loaded loaded;
+
+	/**
+	 * Diacritical marks (after NFD normalization).
+	 */
+	private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+
+	/**
+	 * Term separators.
+	 */
+	private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+	/**
+	 * Documents, newest first (the document number is the rank).
+	 */
+	private final RecentDocument[] documents;
+
+	/**
+	 * Sorted terms.
+	 */
+	private final String[] terms;
+
+	/**
+	 * Ascending document numbers per term.
+	 */
+	private final int[][] postings;
+
+	private SearchIndex(final RecentDocument[] documents, final String[] terms, final int[][] postings) {
+		this.documents = documents;
+		this.terms = terms;
+		this.postings = postings;
+	}
+
+	/**
+	 * Loaded index and the version of its source files.
+	 */
+	private static final class Loaded {
+		private final String version;
+		private final SearchIndex index;
+
+		Loaded(final String version, final SearchIndex index) {
+			this.version = version;
+			this.index = index;
+		}
+	}
+
+	/**
+	 * Get the index file of a tree file.
+	 *
+	 * @param tree Path to tree file
+	 * @return Path to index file
+	 */
+	public static Path getFile(final Path tree) {
+		return tree.resolveSibling(FILE_NAME);
+	}
+
+	/**
+	 * Load the index of the tree and the extracted text of the current config.
+	 *
+	 * The last loaded index or the index file is reused, if the tree file, the content file
+	 * and the path settings did not change. Otherwise the index is rebuilt and stored.
+	 *
+	 * @param tree Path to tree file
+	 * @return Search index
+	 * @throws IOException If the tree file does not exist or is invalid
+	 */
+	public static SearchIndex load(final Path tree) throws IOException {
+		final Config config = Config.getInstance();
+		final Path contentFile = config.getSearchContentFile();
+		final String version = getVersion(config, tree, contentFile);
+
+		final Loaded last = loaded;
+		if (last != null && last.version.equals(version)) {
+			return last.index;
+		}
+
+		final Path file = getFile(tree);
+		SearchIndex index = read(file, version);
+		String indexVersion = version;
+
+		if (index == null) {
+			final SemestersTreeNode rootNode = TreeBuilder.readTree(tree);
+			PathBuilder.updatePaths(rootNode);
+			index = build(rootNode, SearchContent.read(contentFile));
+
+			/* Reading the content file may have compacted it. */
+			indexVersion = getVersion(config, tree, contentFile);
+			write(file, indexVersion, index);
+		}
+
+		loaded = new Loaded(indexVersion, index);
+		return index;
+	}
+
+	/**
+	 * Version of the index sources (tree file, content file and path settings).
+	 */
+	private static String getVersion(final Config config, final Path tree, final Path contentFile) throws IOException {
+		final BasicFileAttributes treeAttrs = Files.readAttributes(tree, BasicFileAttributes.class);
+
+		long contentSize = -1;
+		long contentModified = 0;
+		try {
+			final BasicFileAttributes contentAttrs = Files.readAttributes(contentFile, BasicFileAttributes.class);
+			contentSize = contentAttrs.size();
+			contentModified = contentAttrs.lastModifiedTime().toMillis();
+
+		} catch (NoSuchFileException e) {
+			/* Nothing extracted yet. */
+		}
+
+		return FILE_FORMAT + ":" + tree.toAbsolutePath() + ':' + treeAttrs.size() + ':' + treeAttrs.lastModifiedTime().toMillis()
+				+ ':' + contentSize + ':' + contentModified
+				+ ':' + config.getFolderStructure() + ':' + config.getReplaceWhitespaces();
+	}
+
+	/**
+	 * Read the index file.
+	 *
+	 * @param file Path to index file
+	 * @param version Expected version
+	 * @return Search index or null if the file is missing, outdated or invalid
+	 */
+	private static SearchIndex read(final Path file, final String version) {
+		try (final DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+			if (!version.equals(readString(in))) {
+				return null;
+			}
+
+			final RecentDocument[] documents = new RecentDocument[in.readInt()];
+			for (int i = 0; i < documents.length; i++) {
+				final RecentDocument document = new RecentDocument();
+				document.documentId = readString(in);
+				document.name = readString(in);
+				document.fileName = readString(in);
+				document.description = readString(in);
+				document.chDate = in.readLong();
+				document.path = readString(in);
+				document.courseTitle = readString(in);
+				document.semesterTitle = readString(in);
+				documents[i] = document;
+			}
+
+			final String[] terms = new String[in.readInt()];
+			final int[][] postings = new int[terms.length][];
+			for (int i = 0; i < terms.length; i++) {
+				terms[i] = readString(in);
+				postings[i] = new int[in.readInt()];
+				for (int j = 0; j < postings[i].length; j++) {
+					postings[i][j] = in.readInt();
+				}
+			}
+
+			return new SearchIndex(documents, terms, postings);
+
+		} catch (NoSuchFileException e) {
+			return null;
+
+		} catch (IOException | RuntimeException e) {
+			/* Partially written or corrupt file (e.g. negative array size). */
+			if (LOG.isLoggable(Level.INFO)) {
+				LOG.info("Rebuilding search index: " + e);
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * Store the index file, failures are only logged (the file is only a cache).
+	 *
+	 * @param file Path to index file
+	 * @param version Version of the index sources
+	 * @param index Search index
+	 */
+	private static void write(final Path file, final String version, final SearchIndex index) {
+		final Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+
+		try {
+			try (final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile), 1 << 16))) {
+				writeString(out, version);
+
+				out.writeInt(index.documents.length);
+				for (final RecentDocument document : index.documents) {
+					writeString(out, document.documentId);
+					writeString(out, document.name);
+					writeString(out, document.fileName);
+					writeString(out, document.description);
+					out.writeLong(document.chDate);
+					writeString(out, document.path);
+					writeString(out, document.courseTitle);
+					writeString(out, document.semesterTitle);
+				}
+
+				out.writeInt(index.terms.length);
+				for (int i = 0; i < index.terms.length; i++) {
+					writeString(out, index.terms[i]);
+					out.writeInt(index.postings[i].length);
+					for (final int document : index.postings[i]) {
+						out.writeInt(document);
+					}
+				}
+			}
+
+			Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+		} catch (IOException e) {
+			if (LOG.isLoggable(Level.WARNING)) {
+				LOG.warning("Could not write search index: " + e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Write a nullable utf-8 string (DataOutput#writeUTF is limited to 64 KB).
+	 */
+	private static void writeString(final DataOutputStream out, final String value) throws IOException {
+		if (value == null) {
+			out.writeInt(-1);
+			return;
+		}
+
+		final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(final DataInputStream in) throws IOException {
+		final int length = in.readInt();
+		if (length < 0) {
+			return null;
+		}
+
+		final byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Build the index.
+	 *
+	 * @param rootNode Tree root node
+	 * @param content Extracted terms by document id and change date (see SearchContent#key) or empty
+	 * @return Search index
+	 */
+	public static SearchIndex build(final SemestersTreeNode rootNode, final Map<String, String> content) {
+		final List<RecentDocument> list = new ArrayList<RecentDocument>();
+		for (final SemesterTreeNode semester : rootNode.semesters) {
+			for (final CourseTreeNode course : semester.courses) {
+				collect(semester, course, course.root, list);
+			}
+		}
+
+		final RecentDocument[] documents = list.toArray(new RecentDocument[list.size()]);
+		Arrays.sort(documents, (a, b) -> Long.compare(b.chDate, a.chDate));
+
+		/* Term -> posting list (documents are added in ascending order). */
+		final Map<String, Posting> lists = new HashMap<String, Posting>();
+		final Set<String> documentTerms = new LinkedHashSet<String>();
+
+		for (int i = 0; i < documents.length; i++) {
+			final RecentDocument document = documents[i];
+			documentTerms.clear();
+			addTerms(documentTerms, document.name);
+			addTerms(documentTerms, document.fileName);
+			addTerms(documentTerms, document.description);
+			addTerms(documentTerms, document.courseTitle);
+			addTerms(documentTerms, document.semesterTitle);
+
+			final String text = content.get(SearchContent.key(document.documentId, document.chDate));
+			if (text != null) {
+				Collections.addAll(documentTerms, text.split(" "));
+			}
+
+			for (final String term : documentTerms) {
+				if (!term.isEmpty()) {
+					lists.computeIfAbsent(term, key -> new Posting()).add(i);
+				}
+			}
+		}
+
+		final String[] terms = lists.keySet().toArray(new String[lists.size()]);
+		Arrays.sort(terms);
+
+		final int[][] postings = new int[terms.length][];
+		for (int i = 0; i < terms.length; i++) {
+			final Posting posting = lists.get(terms[i]);
+			postings[i] = Arrays.copyOf(posting.documents, posting.size);
+		}
+
+		return new SearchIndex(documents, terms, postings);
+	}
+
+	/**
+	 * Growing posting list.
+	 */
+	private static final class Posting {
+		private int[] documents = new int[2];
+		private int size;
+
+		void add(final int document) {
+			if (size == documents.length) {
+				documents = Arrays.copyOf(documents, size * 2);
+			}
+			documents[size++] = document;
+		}
+	}
+
+	private static void collect(final SemesterTreeNode semester, final CourseTreeNode course, final DocumentFolderTreeNode folder,
+			final List<RecentDocument> list) {
+		for (final DocumentFolderTreeNode child : folder.folders) {
+			collect(semester, course, child, list);
+		}
+
+		for (final DocumentTreeNode document : folder.documents) {
+			list.add(new RecentDocument(semester, course, document));
+		}
+	}
+
+	private static void addTerms(final Set<String> set, final String text) {
+		if (text != null) {
+			Collections.addAll(set, tokenize(text, true));
+		}
+	}
+
+	/**
+	 * Split a text into search terms (lower case, umlauts spelled out, without diacritics).
+	 *
+	 * @param text Text
+	 * @return Terms (may contain an empty leading term)
+	 */
+	public static String[] tokenize(final String text) {
+		return SEPARATORS.split(normalize(text, true));
+	}
+
+	/**
+	 * Split a text into search terms.
+	 *
+	 * @param text Text
+	 * @param variants If true terms with umlauts are also returned without dots (e.g. "uebung" and "ubung")
+	 * @return Terms (may contain empty terms)
+	 */
+	public static String[] tokenize(final String text, final boolean variants) {
+		final String[] terms = tokenize(text);
+		if (!variants || !hasUmlauts(text)) {
+			return terms;
+		}
+
+		final String[] stripped = SEPARATORS.split(normalize(text, false));
+		final String[] result = Arrays.copyOf(terms, terms.length + stripped.length);
+		System.arraycopy(stripped, 0, result, terms.length, stripped.length);
+		return result;
+	}
+
+	/**
+	 * Normalize a text (lower case, without diacritics).
+	 *
+	 * @param text Text
+	 * @param fold If true umlauts are spelled out (ä -> ae, ö -> oe, ü -> ue, ß -> ss)
+	 * @return Normalized text
+	 */
+	private static String normalize(final String text, final boolean fold) {
+		final String lower = text.toLowerCase(Locale.ROOT);
+		if (isAscii(lower)) {
+			return lower;
+		}
+
+		String composed = Normalizer.normalize(lower, Normalizer.Form.NFC);
+		if (fold) {
+			composed = foldUmlauts(composed);
+		}
+
+		return DIACRITICS.matcher(Normalizer.normalize(composed, Normalizer.Form.NFD)).replaceAll("").replace("ß", "ss");
+	}
+
+	private static String foldUmlauts(final String text) {
+		final StringBuilder sb = new StringBuilder(text.length() + 8);
+		for (int i = 0; i < text.length(); i++) {
+			final char c = text.charAt(i);
+			switch (c) {
+			case 'ä':
+				sb.append("ae");
+				break;
+			case 'ö':
+				sb.append("oe");
+				break;
+			case 'ü':
+				sb.append("ue");
+				break;
+			case 'ß':
+				sb.append("ss");
+				break;
+			default:
+				sb.append(c);
+				break;
+			}
+		}
+
+		return sb.toString();
+	}
+
+	private static boolean hasUmlauts(final String text) {
+		if (isAscii(text)) {
+			return false;
+		}
+
+		final String composed = Normalizer.normalize(text.toLowerCase(Locale.ROOT), Normalizer.Form.NFC);
+		return composed.indexOf('ä') >= 0 || composed.indexOf('ö') >= 0 || composed.indexOf('ü') >= 0;
+	}
+
+	private static boolean isAscii(final String text) {
+		for (int i = 0; i < text.length(); i++) {
+			if (text.charAt(i) >= 128) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Find documents which match all query terms (as prefix).
+	 *
+	 * @param query Search query
+	 * @param limit Maximum number of results
+	 * @return Matching documents, newest first
+	 */
+	public List<RecentDocument> search(final String query, final int limit) {
+		BitSet result = null;
+
+		/* Same separators, so the query words of both forms are aligned. */
+		final String[] folded = tokenize(query);
+		final String[] stripped = hasUmlauts(query) ? SEPARATORS.split(normalize(query, false)) : folded;
+
+		for (int word = 0; word < folded.length; word++) {
+			final String term = folded[word];
+			if (term.isEmpty()) {
+				continue;
+			}
+
+			final BitSet matches = new BitSet(documents.length);
+			addPrefixMatches(matches, term);
+
+			/* Also find "ubung" for "übung" (e.g. filenames typed without umlauts). */
+			if (word < stripped.length && !term.equals(stripped[word])) {
+				addPrefixMatches(matches, stripped[word]);
+			}
+
+			if (result == null) {
+				result = matches;
+			} else {
+				result.and(matches);
+			}
+
+			if (result.isEmpty()) {
+				break;
+			}
+		}
+
+		final List<RecentDocument> list = new ArrayList<RecentDocument>();
+		if (result != null) {
+			for (int i = result.nextSetBit(0); i >= 0 && list.size() < limit; i = result.nextSetBit(i + 1)) {
+				list.add(documents[i]);
+			}
+		}
+
+		return list;
+	}
+
+	/**
+	 * Add all documents with a term starting with the prefix.
+	 */
+	private void addPrefixMatches(final BitSet matches, final String prefix) {
+		int i = Arrays.binarySearch(terms, prefix);
+		if (i < 0) {
+			i = -i - 1;
+		}
+
+		for (; i < terms.length && terms[i].startsWith(prefix); i++) {
+			for (final int document : postings[i]) {
+				matches.set(document);
+			}
+		}
+	}
+
+	/**
+	 * Get number of indexed documents.
+	 *
+	 * @return
+	 */
+	public int getDocumentCount() {
+		return documents.length;
+	}
+
+	/**
+	 * Get number of distinct terms.
+	 *
+	 * @return
+	 */
+	public int getTermCount() {
+		return terms.length;
+	}
+
+}
@@ -0,0 +1,136 @@
+package de.uni.hannover.studip.sync.models;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import de.uni.hannover.studip.sync.datamodel.DocumentTreeNode;
+import de.uni.hannover.studip.sync.exceptions.ForbiddenException;
+import de.uni.hannover.studip.sync.exceptions.NotFoundException;
+import de.uni.hannover.studip.sync.exceptions.UnauthorizedException;
+import de.uni.hannover.studip.sync.metrics.Counter;
+import de.uni.hannover.studip.sync.metrics.Metrics;
+
+/**
+ * Cross-account download deduplication (service mode).
+ *
+ * A document is identified by its document id and change date. The first account
+ * downloads the document, all other accounts copy the local file of the first account.
+ * Accounts which need a document that is currently downloaded wait for the download.
+ *
+ * @author Lennart Glauer
+ * @notice Thread safe
+ */
+public final class SharedDownloads {
+
+	private static final Logger LOG = Logger.getLogger(Logger.GLOBAL_LOGGER_NAME);
+
+	private static final Counter COPIES = Metrics.counter("studip_sync_download_copies_total",
+			"Downloads served by copying the file of another account.");
+	private static final Counter FALLBACKS = Metrics.counter("studip_sync_download_fallbacks_total",
+			"Shared downloads that failed and were downloaded again by a waiting account.");
+
+	/**
+	 * Downloads of the current run (document id and change date -> downloaded file).
+	 */
+	private final ConcurrentHashMap<String, CompletableFuture<Download>> downloads = new ConcurrentHashMap<String, CompletableFuture<Download>>();
+
+	/**
+	 * Downloaded file.
+	 */
+	private static final class Download {
+		private final Path file;
+		private final long size;
+
+		private Download(final Path file, final long size) {
+			this.file = file;
+			this.size = size;
+		}
+	}
+
+	/**
+	 * Download a document or copy it from another account.
+	 *
+	 * @param document Document tree-node
+	 * @param documentFile Path to document file destination
+	 * @param progress Called with the number of written bytes or null
+	 * @return Number of bytes written
+	 * @throws UnauthorizedException
+	 * @throws ForbiddenException
+	 * @throws NotFoundException
+	 * @throws IOException
+	 */
+	public long download(final DocumentTreeNode document, final Path documentFile, final LongConsumer progress) throws UnauthorizedException, ForbiddenException, NotFoundException, IOException {
+		final String key = document.documentId + ':' + document.chDate;
+		final CompletableFuture<Download> future = new CompletableFuture<Download>();
+		final CompletableFuture<Download> existing = downloads.putIfAbsent(key, future);
+
+		if (existing != null) {
+			/* Wait for the download of the other account, null if it failed. */
+			final Download download = existing.join();
+			if (download != null && copy(download, documentFile)) {
+				if (LOG.isLoggable(Level.INFO)) {
+					LOG.info("Copied " + download.file + " to " + documentFile);
+				}
+
+				COPIES.inc();
+				if (progress != null) {
+					progress.accept(download.size);
+				}
+				return download.size;
+			}
+
+			FALLBACKS.inc();
+			return RestApi.downloadDocumentById(document.documentId, documentFile, progress);
+		}
+
+		Download download = null;
+		try {
+			final long size = RestApi.downloadDocumentById(document.documentId, documentFile, progress);
+			download = new Download(documentFile, size);
+			return size;
+
+		} finally {
+			if (download == null) {
+				/* Waiting accounts download the document themselves, e.g. they may have the permission. */
+				downloads.remove(key, future);
+			}
+
+			/* Always complete the future (also on errors), otherwise waiting accounts block forever. */
+			future.complete(download);
+		}
+	}
+
+	/**
+	 * Forget all downloads, should be called after each run.
+	 * The files of the previous run may have been moved or modified since.
+	 */
+	public void clear() {
+		downloads.clear();
+	}
+
+	/**
+	 * Copy a downloaded file, if it is still intact.
+	 *
+	 * @return True if the file was copied
+	 */
+	private static boolean copy(final Download download, final Path documentFile) {
+		try {
+			if (!Files.isRegularFile(download.file) || Files.size(download.file) != download.size) {
+				return false;
+			}
+
+			Files.copy(download.file, documentFile, StandardCopyOption.REPLACE_EXISTING);
+			return Files.size(documentFile) == download.size;
+
+		} catch (IOException e) {
+			return false;
+		}
+	}
+}
@@ -0,0 +1,177 @@
+package de.uni.hannover.studip.sync.models;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Build/update/sync progress aggregator.
+ *
+ * Worker threads only increment counters and replace the current item (lock-free, no gui calls),
+ * listeners sample a snapshot at their own rate (e.g. each gui frame or once per second).
+ *
+ * @author Lennart Glauer
+ * @notice Thread safe
+ */
+public final class SyncProgress {
+
+	private final LongAdder jobsTotal = new LongAdder();
+	private final LongAdder jobsDone = new LongAdder();
+	private final LongAdder bytesTotal = new LongAdder();
+	private final LongAdder bytesDone = new LongAdder();
+
+	/**
+	 * Last processed item (e.g. course title or document name).
+	 */
+	private volatile String current;
+
+	/**
+	 * Phase name (build, update or sync).
+	 */
+	private volatile String phase;
+
+	private volatile long startTime;
+	private volatile boolean done;
+
+	/**
+	 * Start a new phase, all counters are reset.
+	 *
+	 * @param name Phase name
+	 */
+	public void start(final String name) {
+		jobsTotal.reset();
+		jobsDone.reset();
+		bytesTotal.reset();
+		bytesDone.reset();
+		current = null;
+		phase = name;
+		startTime = System.nanoTime();
+		done = false;
+	}
+
+	/**
+	 * All jobs of the phase are done (or the phase was aborted).
+	 */
+	public void finish() {
+		done = true;
+	}
+
+	/**
+	 * A job was submitted.
+	 */
+	public void addJob() {
+		jobsTotal.increment();
+	}
+
+	/**
+	 * A job is done.
+	 */
+	public void jobDone() {
+		jobsDone.increment();
+	}
+
+	/**
+	 * Bytes which will be downloaded in this phase.
+	 *
+	 * @param bytes Expected bytes (e.g. document file size)
+	 */
+	public void addExpectedBytes(final long bytes) {
+		bytesTotal.add(bytes);
+	}
+
+	/**
+	 * Bytes were downloaded.
+	 *
+	 * @param bytes Downloaded bytes
+	 */
+	public void addBytes(final long bytes) {
+		bytesDone.add(bytes);
+	}
+
+	/**
+	 * Set the current item.
+	 *
+	 * @param item Item name
+	 */
+	public void setCurrent(final String item) {
+		current = item;
+	}
+
+	/**
+	 * Get a consistent enough view of the counters (the sums are not atomic).
+	 *
+	 * @return Snapshot
+	 */
+	public Snapshot snapshot() {
+		return new Snapshot(phase, jobsDone.sum(), jobsTotal.sum(), bytesDone.sum(), bytesTotal.sum(),
+				current, System.nanoTime() - startTime, done);
+	}
+
+	/**
+	 * Progress snapshot.
+	 *
+	 * @notice Thread safe (immutable object)
+	 */
+	public static final class Snapshot {
+
+		public final String phase;
+		public final long jobsDone;
+		public final long jobsTotal;
+		public final long bytesDone;
+		public final long bytesTotal;
+		public final String current;
+		public final long elapsedNanos;
+		public final boolean done;
+
+		Snapshot(final String phase, final long jobsDone, final long jobsTotal, final long bytesDone, final long bytesTotal,
+				final String current, final long elapsedNanos, final boolean done) {
+			this.phase = phase;
+			this.jobsDone = Math.min(jobsDone, jobsTotal);
+			this.jobsTotal = jobsTotal;
+			this.bytesDone = bytesDone;
+			this.bytesTotal = bytesTotal;
+			this.current = current;
+			this.elapsedNanos = elapsedNanos;
+			this.done = done;
+		}
+
+		/**
+		 * Progress between 0 and 1, by bytes if downloads are expected, otherwise by jobs.
+		 *
+		 * @return Progress
+		 */
+		public double getFraction() {
+			if (done) {
+				return 1;
+			}
+
+			if (bytesTotal > 0) {
+				return Math.min(1, (double) bytesDone / bytesTotal);
+			}
+
+			return jobsTotal == 0 ? 0 : (double) jobsDone / jobsTotal;
+		}
+
+		/**
+		 * Average download throughput of the phase.
+		 *
+		 * @return Bytes per second
+		 */
+		public double getBytesPerSecond() {
+			return elapsedNanos <= 0 ? 0 : bytesDone / (elapsedNanos / 1e9);
+		}
+
+		/**
+		 * Estimated remaining time, extrapolated from the progress of the phase.
+		 *
+		 * @return Remaining seconds or -1 if unknown
+		 */
+		public long getEtaSeconds() {
+			final double fraction = getFraction();
+			if (done || fraction <= 0) {
+				return done ? 0 : -1;
+			}
+
+			return Math.round(elapsedNanos / 1e9 * (1 - fraction) / fraction);
+		}
+	}
+
+}
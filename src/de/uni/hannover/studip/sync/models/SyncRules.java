@@ -0,0 +1,263 @@
+package de.uni.hannover.studip.sync.models;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import de.uni.hannover.studip.sync.datamodel.CourseTreeNode;
+import de.uni.hannover.studip.sync.datamodel.DocumentTreeNode;
+import de.uni.hannover.studip.sync.datamodel.SemesterTreeNode;
+import de.uni.hannover.studip.sync.datamodel.SyncRule;
+
+/**
+ * Compiled selective sync rules.
+ *
+ * Rules are evaluated in order, the first matching rule decides if a document is downloaded.
+ * Documents which match no rule are downloaded. Whole courses and folders are skipped
+ * during the tree traversal, if no document below them can be included.
+ *
+ * @author Lennart Glauer
+ * @notice Thread safe (immutable object)
+ */
+public final class SyncRules {
+
+	/**
+	 * Download everything.
+	 */
+	public static final SyncRules NONE = new SyncRules(new Rule[0]);
+
+	private final Rule[] rules;
+
+	private SyncRules(final Rule[] rules) {
+		this.rules = rules;
+	}
+
+	/**
+	 * Compile the rules of the settings file.
+	 *
+	 * @param syncRules Rules or null
+	 * @return Compiled rules
+	 */
+	public static SyncRules compile(final List<SyncRule> syncRules) {
+		if (syncRules == null || syncRules.isEmpty()) {
+			return NONE;
+		}
+
+		final Rule[] rules = new Rule[syncRules.size()];
+		for (int i = 0; i < rules.length; i++) {
+			rules[i] = new Rule(syncRules.get(i));
+		}
+
+		return new SyncRules(rules);
+	}
+
+	/**
+	 * Check if there are no rules.
+	 *
+	 * @return True if all documents are downloaded
+	 */
+	public boolean isEmpty() {
+		return rules.length == 0;
+	}
+
+	/**
+	 * Check if all documents of a course are skipped.
+	 *
+	 * @param semester Semester tree-node
+	 * @param course Course tree-node
+	 * @return True if the course is skipped
+	 */
+	public boolean skipsCourse(final SemesterTreeNode semester, final CourseTreeNode course) {
+		return skipsFolder(semester, course, null);
+	}
+
+	/**
+	 * Check if all documents of a folder (including sub folders) are skipped.
+	 *
+	 * @param semester Semester tree-node
+	 * @param course Course tree-node
+	 * @param folderPath Folder path relative to the course directory ("" for the course root) or null for the course
+	 * @return True if the folder is skipped
+	 */
+	public boolean skipsFolder(final SemesterTreeNode semester, final CourseTreeNode course, final String folderPath) {
+		for (final Rule rule : rules) {
+			if (!rule.matchesCourse(semester, course)) {
+				continue;
+			}
+
+			final boolean folderMatches = rule.folder == null || folderPath != null && rule.matchesFolder(folderPath);
+			if (folderMatches && !rule.hasFileCriteria()) {
+				/* The rule decides all documents below. */
+				return !rule.include;
+			}
+
+			if (rule.include) {
+				/* The rule may include some documents below. */
+				return false;
+			}
+
+			/* The rule may exclude some documents below, the next rules decide the rest. */
+		}
+
+		return false;
+	}
+
+	/**
+	 * Check if a document is skipped.
+	 *
+	 * @param semester Semester tree-node
+	 * @param course Course tree-node
+	 * @param folderPath Folder path relative to the course directory ("" for the course root)
+	 * @param document Document tree-node
+	 * @return True if the document is not downloaded
+	 */
+	public boolean skipsDocument(final SemesterTreeNode semester, final CourseTreeNode course, final String folderPath,
+			final DocumentTreeNode document) {
+		for (final Rule rule : rules) {
+			if (rule.matchesCourse(semester, course)
+					&& (rule.folder == null || rule.matchesFolder(folderPath))
+					&& rule.matchesFile(document)) {
+				return !rule.include;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Convert a glob to a case insensitive regex.
+	 *
+	 * @param glob Glob pattern
+	 * @param path If true * does not match /
+	 * @return Pattern
+	 */
+	static Pattern toPattern(final String glob, final boolean path) {
+		final StringBuilder regex = new StringBuilder(glob.length() + 16);
+		final StringBuilder literal = new StringBuilder();
+
+		for (int i = 0; i < glob.length(); i++) {
+			final char c = glob.charAt(i);
+			if (c != '*' && c != '?') {
+				literal.append(c);
+				continue;
+			}
+
+			if (literal.length() > 0) {
+				regex.append(Pattern.quote(literal.toString()));
+				literal.setLength(0);
+			}
+
+			if (c == '?') {
+				regex.append(path ? "[^/]" : ".");
+			} else if (i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+				regex.append(".*");
+				i++;
+			} else {
+				regex.append(path ? "[^/]*" : ".*");
+			}
+		}
+
+		if (literal.length() > 0) {
+			regex.append(Pattern.quote(literal.toString()));
+		}
+
+		return Pattern.compile(regex.toString(), Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+	}
+
+	/**
+	 * Compiled rule.
+	 */
+	private static final class Rule {
+		private final boolean include;
+		private final String semesterId;
+		private final Pattern semester;
+		private final String courseId;
+		private final Pattern course;
+		private final Integer courseType;
+		private final Pattern folder;
+		private final Set<String> extensions;
+		private final Long largerThan;
+
+		Rule(final SyncRule rule) {
+			this.include = rule.include;
+			this.semesterId = rule.semester;
+			this.semester = rule.semester == null ? null : toPattern(rule.semester, false);
+			this.courseId = rule.course;
+			this.course = rule.course == null ? null : toPattern(rule.course, false);
+			this.courseType = rule.courseType;
+			this.folder = rule.folder == null ? null : toPattern(trimSlashes(rule.folder), true);
+			this.largerThan = rule.largerThan;
+
+			if (rule.extension == null) {
+				this.extensions = null;
+			} else {
+				this.extensions = new HashSet<String>();
+				for (final String extension : rule.extension.split(",")) {
+					final String trimmed = extension.trim();
+					if (!trimmed.isEmpty()) {
+						extensions.add((trimmed.charAt(0) == '.' ? trimmed.substring(1) : trimmed).toLowerCase(Locale.ROOT));
+					}
+				}
+			}
+		}
+
+		private static String trimSlashes(final String path) {
+			int begin = 0;
+			int end = path.length();
+			while (begin < end && path.charAt(begin) == '/') {
+				begin++;
+			}
+			while (end > begin && path.charAt(end - 1) == '/') {
+				end--;
+			}
+
+			return path.substring(begin, end);
+		}
+
+		boolean hasFileCriteria() {
+			return extensions != null || largerThan != null;
+		}
+
+		boolean matchesCourse(final SemesterTreeNode semesterNode, final CourseTreeNode courseNode) {
+			return (semester == null || semesterId.equals(semesterNode.semesterId) || semester.matcher(semesterNode.title).matches())
+					&& (course == null || courseId.equals(courseNode.courseId) || course.matcher(courseNode.title).matches())
+					&& (courseType == null || courseType == courseNode.type);
+		}
+
+		/**
+		 * Match the folder or one of its parent folders.
+		 */
+		boolean matchesFolder(final String folderPath) {
+			String path = folderPath;
+			while (true) {
+				if (folder.matcher(path).matches()) {
+					return true;
+				}
+
+				final int slash = path.lastIndexOf('/');
+				if (slash < 0) {
+					return false;
+				}
+
+				path = path.substring(0, slash);
+			}
+		}
+
+		boolean matchesFile(final DocumentTreeNode document) {
+			if (largerThan != null && (document.fileSize == null || document.fileSize <= largerThan)) {
+				return false;
+			}
+
+			if (extensions != null) {
+				final String fileName = document.fileName == null ? "" : document.fileName;
+				final int dot = fileName.lastIndexOf('.');
+				return dot >= 0 && extensions.contains(fileName.substring(dot + 1).toLowerCase(Locale.ROOT));
+			}
+
+			return true;
+		}
+	}
+
+}
@@ -2,25 +2,37 @@ package de.uni.hannover.studip.sync.models;
 
 import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Phaser;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import javafx.animation.AnimationTimer;
-import javafx.application.Platform;
-import javafx.scene.control.Label;
-import javafx.scene.control.ProgressIndicator;
-
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
-import de.uni.hannover.studip.sync.Main;
+import de.uni.hannover.studip.sync.AppState;
 import de.uni.hannover.studip.sync.datamodel.*;
+import de.uni.hannover.studip.sync.metrics.Counter;
+import de.uni.hannover.studip.sync.metrics.Gauge;
+import de.uni.hannover.studip.sync.metrics.Histogram;
+import de.uni.hannover.studip.sync.metrics.Metrics;
+import de.uni.hannover.studip.sync.metrics.Trace;
+import de.uni.hannover.studip.sync.metrics.TraceEvent;
 import de.uni.hannover.studip.sync.oauth.StudIPApiProvider;
 import de.uni.hannover.studip.sync.models.jobs.BuildSemestersJob;
-import de.uni.hannover.studip.sync.models.jobs.UpdateDocumentsJob;
+import de.uni.hannover.studip.sync.models.jobs.UpdateActivitiesJob;
 
 /**
  * Semester/Course/Folder/Document tree builder.
@@ -32,6 +44,12 @@ public class TreeBuilder implements AutoCloseable {
 	protected static final Logger LOG = Logger.getLogger(Logger.GLOBAL_LOGGER_NAME);
 	protected static final ObjectMapper MAPPER = Config.getMapper();
 
+	private static final Histogram TREE_READ_SECONDS = Metrics.histogram("studip_sync_tree_read_seconds", "Tree file load time.");
+	private static final Histogram TREE_WRITE_SECONDS = Metrics.histogram("studip_sync_tree_write_seconds", "Tree file save time.");
+	private static final Gauge JOBS_QUEUED = Metrics.gauge("studip_sync_jobs_queued", "Jobs waiting for a worker thread.");
+	private static final Gauge JOBS_RUNNING = Metrics.gauge("studip_sync_jobs_running", "Jobs running on a worker thread.");
+	private static final Counter JOBS_TOTAL = Metrics.counter("studip_sync_jobs_total", "Submitted jobs.");
+
 	/**
 	 * Thread pool.
 	 */
@@ -48,20 +66,45 @@ public class TreeBuilder implements AutoCloseable {
 	public volatile boolean isDirty;
 
 	/**
-	 * Gui progress indicator.
+	 * Document/folder index of the current tree (update and sync only).
+	 */
+	protected volatile TreeIndex index;
+
+	/**
+	 * Statistics of this run (run history).
 	 */
-	private ProgressIndicator progressIndicator;
+	protected final RunStats stats = new RunStats();
 
 	/**
-	 * Gui progress label.
+	 * Tree modifications which are applied after all jobs are done.
 	 */
-	private Label progressLabel;
+	private final Queue<Runnable> modifications = new ConcurrentLinkedQueue<Runnable>();
+
+	/**
+	 * Progress of the current phase (jobs, bytes and current item).
+	 */
+	protected final SyncProgress progress = new SyncProgress();
+
+	/**
+	 * Progress listener (gui or console) or null.
+	 */
+	private volatile ProgressListener progressListener;
 
 	/**
 	 * Start threadpool.
 	 */
 	protected TreeBuilder() {
-		threadPool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+		this(Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors()));
+	}
+
+	/**
+	 * Use the given threadpool (e.g. a FairScheduler queue in service mode).
+	 * The threadpool is shut down on close.
+	 * 
+	 * @param threadPool Thread pool
+	 */
+	protected TreeBuilder(final ExecutorService threadPool) {
+		this.threadPool = threadPool;
 	}
 
 	/**
@@ -69,7 +112,152 @@ public class TreeBuilder implements AutoCloseable {
 	 */
 	@Override
 	public void close() {
-		threadPool.shutdownNow();
+		shutdownNow();
+		progress.finish();
+	}
+
+	/**
+	 * Read the tree file and freeze all child lists.
+	 * 
+	 * @param tree Path to tree file
+	 * @return Tree root node
+	 * @throws IOException
+	 */
+	public static SemestersTreeNode readTree(final Path tree) throws IOException {
+		final TraceEvent event = Trace.tree("read", tree);
+		final long start = System.nanoTime();
+		try {
+			final SemestersTreeNode rootNode = MAPPER.readerFor(SemestersTreeNode.class)
+					.readValue(Files.newInputStream(tree));
+			rootNode.freeze();
+			TREE_READ_SECONDS.observeSince(start);
+
+			return rootNode;
+
+		} finally {
+			event.commit();
+		}
+	}
+
+	/**
+	 * Serialize the tree to json and store it in the tree file (and update the recency index, failures are only logged).
+	 * 
+	 * @param tree Path to tree file
+	 * @param rootNode Tree root node
+	 * @throws IOException
+	 */
+	public static void writeTree(final Path tree, final SemestersTreeNode rootNode) throws IOException {
+		final TraceEvent event = Trace.tree("write", tree);
+		final long start = System.nanoTime();
+		try {
+			MAPPER.writerFor(SemestersTreeNode.class)
+					.writeValue(Files.newOutputStream(tree), rootNode);
+			TREE_WRITE_SECONDS.observeSince(start);
+
+			/* Keep the recency index (new documents view) in sync with the tree. */
+			try {
+				RecentIndex.write(tree, rootNode);
+
+			} catch (IOException e) {
+				/* Only a cache, the new documents view rebuilds a missing or invalid index from the tree. */
+				if (LOG.isLoggable(Level.WARNING)) {
+					LOG.warning("Could not write recency index: " + e.getMessage());
+				}
+
+				/* Do not leave an outdated index behind. */
+				try {
+					Files.deleteIfExists(RecentIndex.getFile(tree));
+				} catch (IOException e2) {
+					/* Ignore. */
+				}
+			}
+
+		} finally {
+			event.commit();
+		}
+	}
+
+	/**
+	 * Get the backup of a tree file, which is kept until the tree was rebuilt.
+	 * 
+	 * @param tree Path to tree file
+	 * @return Path to backup file
+	 */
+	public static Path getBackupFile(final Path tree) {
+		return tree.resolveSibling(tree.getFileName() + ".old");
+	}
+
+	/**
+	 * Force a rebuild of the tree on the next sync.
+	 * The tree file is moved to its backup, so the rebuild keeps the local state (e.g. evicted documents).
+	 * 
+	 * @param tree Path to tree file
+	 * @throws IOException
+	 */
+	public static void invalidateTree(final Path tree) throws IOException {
+		if (Files.exists(tree)) {
+			Files.move(tree, getBackupFile(tree), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * Read the tree which is replaced by a rebuild (tree file or its backup).
+	 * 
+	 * @param tree Path to tree file
+	 * @return Root node or null if there is no valid tree
+	 * @throws IOException
+	 */
+	private static SemestersTreeNode readPreviousTree(final Path tree) throws IOException {
+		for (final Path file : new Path[] { tree, getBackupFile(tree) }) {
+			try {
+				return readTree(file);
+
+			} catch (NoSuchFileException | JsonProcessingException e) {
+				/* Missing or invalid tree file. */
+				if (LOG.isLoggable(Level.FINE)) {
+					LOG.fine("No previous tree: " + file);
+				}
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Keep the local state of the previous tree in the rebuilt courses.
+	 * 
+	 * @param oldRootNode Previous root node
+	 * @param rootNode Rebuilt root node
+	 */
+	private static void carryOver(final SemestersTreeNode oldRootNode, final SemestersTreeNode rootNode) {
+		final Map<String, CourseTreeNode> oldCourses = new HashMap<String, CourseTreeNode>();
+		for (final SemesterTreeNode semester : oldRootNode.semesters) {
+			for (final CourseTreeNode course : semester.courses) {
+				oldCourses.put(course.courseId, course);
+			}
+		}
+
+		for (final SemesterTreeNode semester : rootNode.semesters) {
+			for (final CourseTreeNode course : semester.courses) {
+				final CourseTreeNode oldCourse = oldCourses.get(course.courseId);
+				if (oldCourse != null) {
+					DiskQuota.carryOver(oldCourse.root, course.root);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Record the duration of a build/update/sync phase.
+	 * 
+	 * @param phase Phase name
+	 * @param start Start time (System.nanoTime)
+	 */
+	protected void observePhase(final String phase, final long start) {
+		final long nanos = System.nanoTime() - start;
+		Metrics.histogram("studip_sync_phase_seconds", "Build/update/sync duration including all jobs.",
+				"phase", phase).observeNanos(nanos);
+		stats.addPhase(phase, nanos);
 	}
 
 	/**
@@ -81,30 +269,46 @@ public class TreeBuilder implements AutoCloseable {
 	 * @throws IOException
 	 */
 	public synchronized int build(final Path tree) throws IOException {
-		if (stopPending || Main.exitPending) {
+		if (stopPending || AppState.exitPending) {
 			return 0;
 		}
 
-		/* Create empty root node. */
+		final long start = System.nanoTime();
+
+		/* Previous tree (if any), before it is replaced. */
+		final SemestersTreeNode oldRootNode = readPreviousTree(tree);
+
+		startProgress("build");
+
+		/* Create empty root node, changes after this point are reported by the activity feed. */
 		final SemestersTreeNode rootNode = new SemestersTreeNode();
+		rootNode.activityTime = System.currentTimeMillis() / 1000L;
 		final Phaser phaser = new Phaser(2); /* = self + first job. */
 
 		/* Build tree with multiple threads. */
-		threadPool.execute(new BuildSemestersJob(this, phaser, rootNode));
-
-		startProgressAnimation(phaser);
+		execute(new BuildSemestersJob(this, phaser, rootNode));
 
 		/* Wait until all jobs are done. */
 		phaser.arriveAndAwaitAdvance();
+		finishProgress();
+		applyModifications();
 
-		if (!stopPending && !Main.exitPending) {
-			/* Serialize the tree to json and store it in the tree file. */
-			MAPPER.writerFor(SemestersTreeNode.class)
-					.writeValue(Files.newOutputStream(tree), rootNode);
+		/* Resolve local paths once after all name conflicts are resolved. */
+		PathBuilder.updatePaths(rootNode);
+
+		if (oldRootNode != null) {
+			carryOver(oldRootNode, rootNode);
+		}
+
+		if (!stopPending && !AppState.exitPending) {
+			writeTree(tree, rootNode);
+			Files.deleteIfExists(getBackupFile(tree));
 
 			LOG.info("Build done!");
 		}
 
+		observePhase("build", start);
+
 		return phaser.getRegisteredParties() - 1;
 	}
 	
@@ -116,23 +320,29 @@ public class TreeBuilder implements AutoCloseable {
 	 * @throws IOException
 	 */
 	public synchronized int update(final Path tree) throws IOException {
-		if (stopPending || Main.exitPending) {
+		if (stopPending || AppState.exitPending) {
 			return 0;
 		}
 
+		final long start = System.nanoTime();
+
 		/* Read existing tree. */
-		final SemestersTreeNode rootNode = MAPPER.readerFor(SemestersTreeNode.class)
-				.readValue(Files.newInputStream(tree));
+		final SemestersTreeNode rootNode = readTree(tree);
 
 		if (rootNode.semesters.isEmpty()) {
 			throw new JsonMappingException("No semesters found!");
 		}
 
+		startProgress("update");
+
+		index = new TreeIndex(rootNode);
+
 		final Phaser phaser = new Phaser(1); /* = self. */
 		final long now = System.currentTimeMillis() / 1000L;
 
 		/* Update tree with multiple threads. */
-		isDirty = false;
+		isDirty = PathBuilder.updatePaths(rootNode);
+		final Set<CourseTreeNode> expiredCourses = new HashSet<CourseTreeNode>();
 		for (final SemesterTreeNode semester : rootNode.semesters) {
 			final int timeDelta = (now > semester.begin && now < semester.end)
 					? StudIPApiProvider.CACHE_TIME /* Current semester. */
@@ -141,90 +351,190 @@ public class TreeBuilder implements AutoCloseable {
 			for (final CourseTreeNode course : semester.courses) {
 				/* Request caching. */
 				if (now - course.updateTime > timeDelta) {
-					phaser.register();
-					threadPool.execute(new UpdateDocumentsJob(this, phaser, semester, course, now));
+					expiredCourses.add(course);
 				}
 			}
 		}
 
-		startProgressAnimation(phaser);
+		/* Check the activity feed first, it starts the update jobs of the changed courses. */
+		if (!expiredCourses.isEmpty()) {
+			phaser.register();
+			execute(new UpdateActivitiesJob(this, phaser, rootNode, expiredCourses, now));
+		}
 
 		/* Wait until all jobs are done. */
 		phaser.arriveAndAwaitAdvance();
+		finishProgress();
+		applyModifications();
 
-		if (!stopPending && !Main.exitPending) {
+		if (!stopPending && !AppState.exitPending) {
 			if (isDirty) {
-				/* Serialize the tree to json and store it in the tree file. */
-				MAPPER.writerFor(SemestersTreeNode.class)
-						.writeValue(Files.newOutputStream(tree), rootNode);
+				writeTree(tree, rootNode);
 			}
 
 			LOG.info("Update done!");
 		}
 
+		observePhase("update", start);
+
 		return phaser.getRegisteredParties() - 1;
 	}
 
+	/**
+	 * Defer a tree modification until all jobs are done.
+	 * 
+	 * Jobs run concurrently and must not modify child lists which are shared with other jobs
+	 * (e.g. the course list of a semester or the document list of a folder during sync).
+	 * 
+	 * @param modification Tree modification
+	 */
+	public void modifyLater(final Runnable modification) {
+		modifications.add(modification);
+		isDirty = true;
+	}
+
+	/**
+	 * Apply all deferred tree modifications.
+	 * Must only be called after all jobs are done.
+	 */
+	protected void applyModifications() {
+		Runnable modification;
+		while ((modification = modifications.poll()) != null) {
+			modification.run();
+		}
+	}
+
+	/**
+	 * Get statistics of this run.
+	 * 
+	 * @return Run stats
+	 */
+	public RunStats getStats() {
+		return stats;
+	}
+
+	/**
+	 * Get document/folder index of the current tree.
+	 * 
+	 * @return Tree index
+	 */
+	public TreeIndex getIndex() {
+		return index;
+	}
+
+	/**
+	 * Submit a job to the threadpool.
+	 * 
+	 * In service mode the job runs with the account of the submitting thread.
+	 * An unexpected job failure only aborts the run of this account.
+	 * 
+	 * @param job Job
+	 */
 	public void execute(final Runnable job) {
-		threadPool.execute(job);
+		final Account account = Account.current();
+		final Runnable task = () -> {
+			JOBS_QUEUED.dec();
+			JOBS_RUNNING.inc();
+			try {
+				job.run();
+
+			} catch (RuntimeException e) {
+				if (account != null) {
+					stopPending = true;
+				}
+				throw e;
+
+			} finally {
+				JOBS_RUNNING.dec();
+				progress.jobDone();
+			}
+		};
+
+		JOBS_TOTAL.inc();
+		progress.addJob();
+		JOBS_QUEUED.inc();
+		stats.addJob();
+		try {
+			threadPool.execute(account == null ? stats.bind(task) : account.bind(stats.bind(task)));
+
+		} catch (RejectedExecutionException e) {
+			JOBS_QUEUED.dec();
+			throw e;
+		}
 	}
 
+	/**
+	 * Remove the invalid access token of the current account.
+	 * In single user mode the token is removed on the listener (gui) thread.
+	 */
+	public void removeAccessToken() {
+		final OAuth oauth = OAuth.getInstance();
+		final ProgressListener listener = progressListener;
+		if (Account.current() == null && listener != null) {
+			listener.runLater(() -> oauth.removeAccessToken());
+		} else {
+			oauth.removeAccessToken();
+		}
+	}
+
+	/**
+	 * Stop threadpool, pending jobs are discarded.
+	 */
 	public void shutdownNow() {
-		threadPool.shutdownNow();
+		final int discarded = threadPool.shutdownNow().size();
+		JOBS_QUEUED.add(-discarded);
+	}
+
+	/**
+	 * Set progress listener.
+	 * 
+	 * @param listener Progress listener or null
+	 */
+	public void setProgressListener(final ProgressListener listener) {
+		progressListener = listener;
 	}
 
 	/**
-	 * Set gui progress indicator and label.
+	 * Get progress of the current phase.
 	 * 
-	 * @param progress Progress indicator
-	 * @param label Progress label
+	 * @return Progress aggregator
 	 */
-	public void setProgress(final ProgressIndicator progress, final Label label) {
-		progressIndicator = progress;
-		progressLabel = label;
+	public SyncProgress getProgress() {
+		return progress;
 	}
 
 	/**
-	 * Update gui progress label.
+	 * Update the current progress item (sampled by the listener, no gui call per job).
 	 * 
 	 * @param text Progress status
 	 */
 	public void updateProgressLabel(final String text) {
-		if (progressLabel != null) {
-			Platform.runLater(() -> progressLabel.setText(text));
-		}
+		progress.setCurrent(text);
 	}
 
 	/**
-	 * Start gui progress animation.
+	 * Start progress of a new phase.
 	 * 
-	 * @param phaser
+	 * @param phase Phase name
 	 */
-	protected void startProgressAnimation(final Phaser phaser) {
-		if (progressIndicator != null) {
-			if (phaser.getRegisteredParties() < 2) {
-				progressIndicator.setProgress(1);
+	protected void startProgress(final String phase) {
+		progress.start(phase);
 
-			} else {
-				(new AnimationTimer() {
-					private double y;
-
-					@Override
-					public void handle(final long now) {
-						final int a = phaser.getArrivedParties() - 1;
-						final int r = phaser.getRegisteredParties() - 1;
-						final double x = phaser.getPhase() == 0 ? Math.min(0.02 * a * a, (double) a / r) : 1.2;
+		final ProgressListener listener = progressListener;
+		if (listener != null) {
+			listener.started(progress);
+		}
+	}
 
-						if (y <= x) {
-							progressIndicator.setProgress(y += 0.1 * (x - y));
-						}
+	/**
+	 * Finish progress of the current phase (all jobs are done).
+	 */
+	protected void finishProgress() {
+		progress.finish();
 
-						if (y >= 1.0) {
-							stop();
-						}
-					}
-				}).start();
-			}
+		final ProgressListener listener = progressListener;
+		if (listener != null) {
+			listener.finished(progress);
 		}
 	}
-}
\ No newline at end of file
+}
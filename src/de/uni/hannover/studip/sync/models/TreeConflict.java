@@ -1,16 +1,21 @@
 package de.uni.hannover.studip.sync.models;
 
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import de.elanev.studip.android.app.backend.datamodel.Document;
-import de.elanev.studip.android.app.backend.datamodel.DocumentFolder;
+import de.uni.hannover.studip.sync.datamodel.DocumentFolderTreeNode;
+import de.uni.hannover.studip.sync.datamodel.DocumentTreeNode;
 import de.uni.hannover.studip.sync.oauth.StudIPApiProvider;
 import de.uni.hannover.studip.sync.utils.FileBrowser;
 
@@ -18,102 +23,194 @@ public final class TreeConflict {
 
 	private static final Logger LOG = Logger.getLogger(Logger.GLOBAL_LOGGER_NAME);
 
+	/**
+	 * Order in which conflicting documents claim their filename.
+	 * Older documents keep their filename, so the result does not depend on the crawl order.
+	 * Only immutable fields are used, so a modified document does not swap names with another one.
+	 */
+	private static final Comparator<DocumentTreeNode> DOCUMENT_ORDER = Comparator
+			.comparing((DocumentTreeNode document) -> document.mkDate, Comparator.nullsFirst(Comparator.<Long>naturalOrder()))
+			.thenComparing(document -> document.documentId, Comparator.nullsFirst(Comparator.<String>naturalOrder()));
+
 	private TreeConflict() {
 		// Utility class.
 	}
 
 	/**
-	 * Resolve folder name conflicts.
+	 * Check if the folder is a Stud.IP default folder (merged with parent).
+	 * 
+	 * @param folder Folder tree-node
+	 * @return True if default folder
+	 */
+	public static boolean isDefaultFolder(final DocumentFolderTreeNode folder) {
+		return StudIPApiProvider.DEFAULT_FOLDER.equals(folder.name.trim());
+	}
+
+	/**
+	 * Get file index name.
+	 * Use lowercase name because Windows and MacOS filesystems are case insensitive.
+	 * 
+	 * @param name Folder or file name
+	 * @return File index name
+	 */
+	public static String toIndexName(final String name) {
+		return FileBrowser.removeIllegalCharacters(name).toLowerCase(Locale.GERMANY);
+	}
+
+	/**
+	 * Local directory visitor.
+	 */
+	@FunctionalInterface
+	public interface DirectoryVisitor {
+
+		/**
+		 * Visit one local directory.
+		 * 
+		 * @param members Folder tree-nodes stored in this directory
+		 * @param fileIndex Filename index of this directory (contains all folder names)
+		 * @param documents Documents stored in this directory
+		 */
+		void visit(List<DocumentFolderTreeNode> members, Set<String> fileIndex, List<DocumentTreeNode> documents);
+
+	}
+
+	/**
+	 * Visit all local directories of a course (recursive).
+	 * 
+	 * Default folders are merged with their parent and folders with the same name are merged,
+	 * so one local directory might contain multiple folder tree-nodes.
+	 * 
+	 * @param root Course root folder
+	 * @param visitor Directory visitor
+	 */
+	public static void walkDirectories(final DocumentFolderTreeNode root, final DirectoryVisitor visitor) {
+		walkDirectories(Collections.singletonList(root), visitor);
+	}
+
+	/**
+	 * Visit one local directory and its sub directories (recursive).
 	 * 
-	 * @notice The folder name might be modified.
-	 * @param fileIndex Parent folder's filename index.
-	 * @param fileIndexMap Maps folder name to filename index.
-	 * @param folder Current folder.
+	 * @param directory Folder tree-nodes stored in the same local directory
+	 * @param visitor Directory visitor
 	 */
-	public static Set<String> resolveFolderNameConflict(final Set<String> fileIndex, final Map<String, Set<String>> fileIndexMap, final DocumentFolder folder) {
-		if (StudIPApiProvider.DEFAULT_FOLDER.equals(folder.name.trim())) {
-			/* Merge default folder with parent. */
-			return fileIndex;
+	private static void walkDirectories(final List<DocumentFolderTreeNode> directory, final DirectoryVisitor visitor) {
+		final List<DocumentFolderTreeNode> members = new ArrayList<DocumentFolderTreeNode>();
+		for (final DocumentFolderTreeNode folder : directory) {
+			addDirectoryMembers(members, folder);
 		}
 
-		/* Use lowercase name because Windows and MacOS filesystems are case insensitive. */
-		String folderName = FileBrowser.removeIllegalCharacters(folder.name).toLowerCase(Locale.GERMANY);
-		if (!fileIndexMap.containsKey(folderName)) {
-			/* Folder does not exist yet. */
-			synchronized (fileIndex) {
-				if (fileIndex.contains(folderName)) {
-					/* Resolve file name conflict. */
-					if (LOG.isLoggable(Level.WARNING)) {
-						LOG.warning("Folder/file name conflict: " + folderName);
-					}
-
-					folder.name = FileBrowser.appendFilename(folder.name, "_" + folder.folder_id);
-					folderName = FileBrowser.removeIllegalCharacters(folder.name).toLowerCase(Locale.GERMANY);
+		final Set<String> fileIndex = new HashSet<String>();
+		final Map<String, List<DocumentFolderTreeNode>> subDirectories = new LinkedHashMap<String, List<DocumentFolderTreeNode>>();
+		final List<DocumentTreeNode> documents = new ArrayList<DocumentTreeNode>();
+
+		for (final DocumentFolderTreeNode member : members) {
+			for (final DocumentFolderTreeNode folder : member.folders) {
+				if (isDefaultFolder(folder)) {
+					/* Already merged with parent. */
+					continue;
 				}
 
-				/* Mark name as used. */
-				fileIndex.add(folderName);
+				final String folderName = toIndexName(folder.name);
+				List<DocumentFolderTreeNode> subDirectory = subDirectories.get(folderName);
+				if (subDirectory == null) {
+					/* Mark name as used. */
+					fileIndex.add(folderName);
+					subDirectories.put(folderName, subDirectory = new ArrayList<DocumentFolderTreeNode>());
+				}
+
+				subDirectory.add(folder);
 			}
 
-			/* Create folder filename index. */
-			fileIndexMap.put(folderName, new HashSet<String>());
+			documents.addAll(member.documents);
+		}
+
+		visitor.visit(members, fileIndex, documents);
 
-		} else {
-			/* Merge folders. */
-			if (LOG.isLoggable(Level.WARNING)) {
-				LOG.warning("Merge folders: " + folderName);
+		for (final List<DocumentFolderTreeNode> subDirectory : subDirectories.values()) {
+			walkDirectories(subDirectory, visitor);
+		}
+	}
+
+	/**
+	 * Add folder and its default folders (merged with parent) to the directory members.
+	 * 
+	 * @param members Directory members
+	 * @param folder Folder tree-node
+	 */
+	private static void addDirectoryMembers(final List<DocumentFolderTreeNode> members, final DocumentFolderTreeNode folder) {
+		members.add(folder);
+
+		for (final DocumentFolderTreeNode child : folder.folders) {
+			if (isDefaultFolder(child)) {
+				addDirectoryMembers(members, child);
 			}
 		}
+	}
+
+	/**
+	 * Resolve all folder/file name conflicts of a course.
+	 * 
+	 * Must be called once after the course folders were built (not thread safe).
+	 * Folders with the same name are merged and keep their name, conflicting documents
+	 * are resolved in document order (creation date, document id). Folder names are reserved
+	 * before any document name, so folders never need to be renamed.
+	 * 
+	 * @notice The document filenames might be modified.
+	 * @param root Course root folder
+	 */
+	public static void resolveNameConflicts(final DocumentFolderTreeNode root) {
+		walkDirectories(root, (members, fileIndex, documents) -> {
+			documents.sort(DOCUMENT_ORDER);
 
-		return fileIndexMap.get(folderName);
+			for (final DocumentTreeNode document : documents) {
+				resolveFileNameConflict(fileIndex, document);
+			}
+		});
 	}
 
 	/**
 	 * Resolve file name conflicts.
 	 * 
 	 * @notice The document filename might be modified.
-	 * @param fileIndex Folder filename index.
-	 * @param document Folder document.
+	 * @param fileIndex Folder filename index (not thread safe)
+	 * @param document Folder document
 	 */
-	public static void resolveFileNameConflict(final Set<String> fileIndex, final Document document) {
-		/* Use lowercase name because Windows and MacOS filesystems are case insensitive. */
-		String fileName = FileBrowser.removeIllegalCharacters(document.filename).toLowerCase(Locale.GERMANY);
+	public static void resolveFileNameConflict(final Set<String> fileIndex, final DocumentTreeNode document) {
+		String fileName = toIndexName(document.fileName);
+
+		if (fileIndex.contains(fileName)) {
+			/* File name already exists. */
+			if (LOG.isLoggable(Level.WARNING)) {
+				LOG.warning("File name conflict: " + fileName);
+			}
+
+			/* 1. Append Stud.IP name. */
+			if (!document.name.isEmpty() && !document.name.equals(document.fileName)) {
+				document.fileName = FileBrowser.appendFilename(document.fileName, "_(" + document.name + ")");
+				fileName = toIndexName(document.fileName);
+			}
 
-		synchronized (fileIndex) {
 			if (fileIndex.contains(fileName)) {
-				/* File name already exists. */
-				if (LOG.isLoggable(Level.WARNING)) {
-					LOG.warning("File name conflict: " + fileName);
-				}
+				final Date chDate = new Date(document.chDate * 1000L);
+				final SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd_HH-mm-ss", Locale.GERMANY);
 
-				/* 1. Append Stud.IP name. */
-				if (!document.name.isEmpty() && !document.name.equals(document.filename)) {
-					document.filename = FileBrowser.appendFilename(document.filename, "_(" + document.name + ")");
-					fileName = FileBrowser.removeIllegalCharacters(document.filename).toLowerCase(Locale.GERMANY);
-				}
+				/* 2. Append change date.*/
+				document.fileName = FileBrowser.appendFilename(document.fileName, "_" + format.format(chDate));
+				fileName = toIndexName(document.fileName);
 
 				if (fileIndex.contains(fileName)) {
-					final Date chDate = new Date(document.chdate * 1000L);
-					final SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd_HH-mm-ss", Locale.GERMANY);
-
-					/* 2. Append change date.*/
-					document.filename = FileBrowser.appendFilename(document.filename, "_" + format.format(chDate));
-					fileName = FileBrowser.removeIllegalCharacters(document.filename).toLowerCase(Locale.GERMANY);
-
-					if (fileIndex.contains(fileName)) {
-						/* 3. Append Stud.IP document id. */
-						document.filename = FileBrowser.appendFilename(document.filename, "_" + document.document_id);
-						fileName = FileBrowser.removeIllegalCharacters(document.filename).toLowerCase(Locale.GERMANY);
-					}
-				}
-
-				if (LOG.isLoggable(Level.WARNING)) {
-					LOG.warning("Resolved to: " + fileName);
+					/* 3. Append Stud.IP document id. */
+					document.fileName = FileBrowser.appendFilename(document.fileName, "_" + document.documentId);
+					fileName = toIndexName(document.fileName);
 				}
 			}
 
-			/* Mark name as used. */
-			fileIndex.add(fileName);
+			if (LOG.isLoggable(Level.WARNING)) {
+				LOG.warning("Resolved to: " + fileName);
+			}
 		}
+
+		/* Mark name as used. */
+		fileIndex.add(fileName);
 	}
 }
@@ -0,0 +1,272 @@
+package de.uni.hannover.studip.sync.models;
+
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import de.uni.hannover.studip.sync.datamodel.CourseTreeNode;
+import de.uni.hannover.studip.sync.datamodel.DocumentFolderTreeNode;
+import de.uni.hannover.studip.sync.datamodel.DocumentTreeNode;
+import de.uni.hannover.studip.sync.datamodel.SemesterTreeNode;
+import de.uni.hannover.studip.sync.datamodel.SemestersTreeNode;
+import de.uni.hannover.studip.sync.utils.IdMap;
+import de.uni.hannover.studip.sync.utils.StudIPId;
+
+/**
+ * Tree-wide document/folder index.
+ * 
+ * Maps Stud.IP ids (packed into 128 bit) to tree nodes and their parent folders.
+ * The index is built once when the tree is loaded and must be maintained with the tree.
+ * 
+ * @author Lennart Glauer
+ * @notice Thread safe
+ */
+public final class TreeIndex {
+
+	/**
+	 * Maps document id to document node.
+	 */
+	private final IdMap<DocumentTreeNode> documents;
+
+	/**
+	 * Maps document id to parent folder node.
+	 */
+	private final IdMap<DocumentFolderTreeNode> documentParents;
+
+	/**
+	 * Maps folder id to folder node.
+	 */
+	private final IdMap<DocumentFolderTreeNode> folders;
+
+	/**
+	 * Maps folder id to parent folder node.
+	 */
+	private final IdMap<DocumentFolderTreeNode> folderParents;
+
+	/**
+	 * Reentrant read/write lock.
+	 */
+	private final ReentrantReadWriteLock lock;
+
+	/**
+	 * Build tree index.
+	 * 
+	 * @param rootNode Tree root node
+	 */
+	public TreeIndex(final SemestersTreeNode rootNode) {
+		documents = new IdMap<DocumentTreeNode>();
+		documentParents = new IdMap<DocumentFolderTreeNode>();
+		folders = new IdMap<DocumentFolderTreeNode>();
+		folderParents = new IdMap<DocumentFolderTreeNode>();
+		lock = new ReentrantReadWriteLock();
+
+		for (final SemesterTreeNode semester : rootNode.semesters) {
+			for (final CourseTreeNode course : semester.courses) {
+				addFolder(null, course.root);
+			}
+		}
+	}
+
+	/**
+	 * Get document node.
+	 * 
+	 * @param documentId Stud.IP document id
+	 * @return Document tree-node or null
+	 */
+	public DocumentTreeNode getDocument(final String documentId) {
+		return get(documents, documentId);
+	}
+
+	/**
+	 * Get parent folder node of a document.
+	 * 
+	 * @param documentId Stud.IP document id
+	 * @return Folder tree-node or null
+	 */
+	public DocumentFolderTreeNode getDocumentParent(final String documentId) {
+		return get(documentParents, documentId);
+	}
+
+	/**
+	 * Get folder node.
+	 * 
+	 * @param folderId Stud.IP folder id
+	 * @return Folder tree-node or null
+	 */
+	public DocumentFolderTreeNode getFolder(final String folderId) {
+		return get(folders, folderId);
+	}
+
+	/**
+	 * Get parent folder node of a folder.
+	 * 
+	 * @param folderId Stud.IP folder id
+	 * @return Folder tree-node or null (course root folder)
+	 */
+	public DocumentFolderTreeNode getFolderParent(final String folderId) {
+		return get(folderParents, folderId);
+	}
+
+	/**
+	 * Add document to the index.
+	 * 
+	 * @param parent Parent folder tree-node
+	 * @param document Document tree-node
+	 */
+	public void putDocument(final DocumentFolderTreeNode parent, final DocumentTreeNode document) {
+		if (!StudIPId.isValid(document.documentId)) {
+			return;
+		}
+
+		final long high = StudIPId.high(document.documentId);
+		final long low = StudIPId.low(document.documentId);
+
+		lock.writeLock().lock();
+		try {
+			documents.put(high, low, document);
+			documentParents.put(high, low, parent);
+
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Remove document from the index.
+	 * 
+	 * @param documentId Stud.IP document id
+	 */
+	public void removeDocument(final String documentId) {
+		if (!StudIPId.isValid(documentId)) {
+			return;
+		}
+
+		final long high = StudIPId.high(documentId);
+		final long low = StudIPId.low(documentId);
+
+		lock.writeLock().lock();
+		try {
+			documents.remove(high, low);
+			documentParents.remove(high, low);
+
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Add folder and all child nodes to the index (recursive).
+	 * 
+	 * @param parent Parent folder tree-node or null (course root folder)
+	 * @param folder Folder tree-node
+	 */
+	public void putFolder(final DocumentFolderTreeNode parent, final DocumentFolderTreeNode folder) {
+		lock.writeLock().lock();
+		try {
+			addFolder(parent, folder);
+
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Remove folder and all child nodes from the index (recursive).
+	 * 
+	 * @param folder Folder tree-node
+	 */
+	public void removeFolder(final DocumentFolderTreeNode folder) {
+		lock.writeLock().lock();
+		try {
+			dropFolder(folder);
+
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Get number of indexed documents.
+	 * 
+	 * @return Number of documents
+	 */
+	public int getDocumentCount() {
+		lock.readLock().lock();
+		try {
+			return documents.size();
+
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Lookup id (read locked).
+	 */
+	private <V> V get(final IdMap<V> map, final String id) {
+		if (!StudIPId.isValid(id)) {
+			return null;
+		}
+
+		final long high = StudIPId.high(id);
+		final long low = StudIPId.low(id);
+
+		lock.readLock().lock();
+		try {
+			return map.get(high, low);
+
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Add folder (recursive, caller must hold the write lock or own the index).
+	 */
+	private void addFolder(final DocumentFolderTreeNode parent, final DocumentFolderTreeNode folder) {
+		if (StudIPId.isValid(folder.folderId)) {
+			final long high = StudIPId.high(folder.folderId);
+			final long low = StudIPId.low(folder.folderId);
+			folders.put(high, low, folder);
+			if (parent != null) {
+				folderParents.put(high, low, parent);
+			}
+		}
+
+		for (final DocumentTreeNode document : folder.documents) {
+			if (StudIPId.isValid(document.documentId)) {
+				final long high = StudIPId.high(document.documentId);
+				final long low = StudIPId.low(document.documentId);
+				documents.put(high, low, document);
+				documentParents.put(high, low, folder);
+			}
+		}
+
+		for (final DocumentFolderTreeNode child : folder.folders) {
+			addFolder(folder, child);
+		}
+	}
+
+	/**
+	 * Remove folder (recursive, caller must hold the write lock).
+	 */
+	private void dropFolder(final DocumentFolderTreeNode folder) {
+		for (final DocumentFolderTreeNode child : folder.folders) {
+			dropFolder(child);
+		}
+
+		for (final DocumentTreeNode document : folder.documents) {
+			if (StudIPId.isValid(document.documentId)) {
+				final long high = StudIPId.high(document.documentId);
+				final long low = StudIPId.low(document.documentId);
+				documents.remove(high, low);
+				documentParents.remove(high, low);
+			}
+		}
+
+		if (StudIPId.isValid(folder.folderId)) {
+			final long high = StudIPId.high(folder.folderId);
+			final long low = StudIPId.low(folder.folderId);
+			folders.remove(high, low);
+			folderParents.remove(high, low);
+		}
+	}
+}
@@ -3,13 +3,22 @@ package de.uni.hannover.studip.sync.models;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Phaser;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.logging.Level;
+import java.util.regex.Pattern;
 
-import de.uni.hannover.studip.sync.Main;
+import de.uni.hannover.studip.sync.AppState;
 import de.uni.hannover.studip.sync.datamodel.*;
+import de.uni.hannover.studip.sync.exceptions.ForbiddenException;
+import de.uni.hannover.studip.sync.exceptions.NotFoundException;
+import de.uni.hannover.studip.sync.exceptions.UnauthorizedException;
+import de.uni.hannover.studip.sync.metrics.Counter;
+import de.uni.hannover.studip.sync.metrics.Gauge;
+import de.uni.hannover.studip.sync.metrics.Histogram;
+import de.uni.hannover.studip.sync.metrics.Metrics;
 import de.uni.hannover.studip.sync.models.jobs.DownloadDocumentJob;
-import de.uni.hannover.studip.sync.oauth.StudIPApiProvider;
 import de.uni.hannover.studip.sync.utils.FileBrowser;
 
 /**
@@ -19,13 +28,30 @@ import de.uni.hannover.studip.sync.utils.FileBrowser;
  */
 public class TreeSync extends TreeBuilder {
 
-	private static final Config CONFIG = Config.getInstance();
+	private static final Histogram TRAVERSAL_SECONDS = Metrics.histogram("studip_sync_traversal_seconds",
+			"Sync tree traversal time (local file checks, without downloads).");
+	private static final Gauge DOWNLOAD_THROUGHPUT = Metrics.gauge("studip_sync_download_throughput_bytes_per_second",
+			"Download throughput of the last sync.");
+	private static final Counter DOCUMENTS_NEW = Metrics.counter("studip_sync_documents_total",
+			"Documents queued for download by state.", "state", "new");
+	private static final Counter DOCUMENTS_MODIFIED = Metrics.counter("studip_sync_documents_total",
+			"Documents queued for download by state.", "state", "modified");
+
+	/**
+	 * Bytes downloaded by the current sync.
+	 */
+	private final LongAdder downloadedBytes = new LongAdder();
 
 	/**
 	 * The sync root directory.
 	 */
 	private final Path rootDirectory;
 
+	/**
+	 * Cross-account download deduplication (service mode only).
+	 */
+	private final SharedDownloads sharedDownloads;
+
 	/**
 	 * Constructor.
 	 * 
@@ -40,6 +66,48 @@ public class TreeSync extends TreeBuilder {
 		}
 
 		this.rootDirectory = rootDirectory;
+		this.sharedDownloads = null;
+	}
+
+	/**
+	 * Constructor (service mode).
+	 * 
+	 * @param rootDirectory Path to sync root directory
+	 * @param threadPool Thread pool
+	 * @param sharedDownloads Cross-account download deduplication
+	 */
+	public TreeSync(final Path rootDirectory, final ExecutorService threadPool, final SharedDownloads sharedDownloads) {
+		super(threadPool);
+
+		if (!Files.isDirectory(rootDirectory)) {
+			threadPool.shutdownNow();
+			throw new IllegalStateException("Root directory does not exist!");
+		}
+
+		this.rootDirectory = rootDirectory;
+		this.sharedDownloads = sharedDownloads;
+	}
+
+	/**
+	 * Download a document.
+	 * In service mode identical documents are only downloaded once for all accounts.
+	 * 
+	 * @param documentNode Document tree-node
+	 * @param documentFile Path to document file destination
+	 * @return Number of bytes written
+	 * @throws UnauthorizedException
+	 * @throws ForbiddenException
+	 * @throws NotFoundException
+	 * @throws IOException
+	 */
+	public long download(final DocumentTreeNode documentNode, final Path documentFile) throws UnauthorizedException, ForbiddenException, NotFoundException, IOException {
+		final long bytes = sharedDownloads == null
+				? RestApi.downloadDocumentById(documentNode.documentId, documentFile, progress::addBytes)
+				: sharedDownloads.download(documentNode, documentFile, progress::addBytes);
+
+		downloadedBytes.add(bytes);
+		stats.addDownload(bytes);
+		return bytes;
 	}
 
 	/**
@@ -50,99 +118,242 @@ public class TreeSync extends TreeBuilder {
 	 * @throws IOException
 	 */
 	public synchronized int sync(final Path tree, final boolean doAllSemesters) throws IOException {
-		if (stopPending || Main.exitPending) {
+		if (stopPending || AppState.exitPending) {
 			return 0;
 		}
 
+		final long start = System.nanoTime();
+
 		/* Read existing tree. */
-		final SemestersTreeNode rootNode = MAPPER.readerFor(SemestersTreeNode.class)
-				.readValue(Files.newInputStream(tree));
+		final SemestersTreeNode rootNode = readTree(tree);
+		index = new TreeIndex(rootNode);
+		startProgress("sync");
 
+		final SyncRules rules = Config.getInstance().getSyncRules();
 		final Phaser phaser = new Phaser(1); /* = self. */
 		final long now = System.currentTimeMillis() / 1000L;
-		final String folderStructure = CONFIG.getFolderStructure();
+		final long traversalStart = System.nanoTime();
+		downloadedBytes.reset();
 
 		/* Sync tree with multiple threads. */
-		isDirty = false;
+		isDirty = PathBuilder.updatePaths(rootNode);
 		for (final SemesterTreeNode semester : rootNode.semesters) {
 			/* If doAllSemesters is false we will only sync the current semester. */
 			if (doAllSemesters || (now > semester.begin && now < semester.end)) {
 				for (final CourseTreeNode course : semester.courses) {
-					final Path courseDirectory = PathBuilder.toPath(folderStructure, rootDirectory, semester, course);
+					/* Selective sync rules are evaluated before any download is queued. */
+					if (rules.skipsCourse(semester, course)) {
+						if (LOG.isLoggable(Level.FINE)) {
+							LOG.fine("Skipped course: " + course.title);
+						}
+						continue;
+					}
+
+					final Path courseDirectory = rootDirectory.resolve(course.path);
 					if (!Files.isDirectory(courseDirectory)) {
 						Files.createDirectories(courseDirectory);
 					}
 
-					doFolder(phaser, course.root, courseDirectory);
+					doFolder(phaser, rules, semester, course, course.root);
 				}
 			}
 		}
 
-		startProgressAnimation(phaser);
+		TRAVERSAL_SECONDS.observeSince(traversalStart);
 
 		/* Wait until all jobs are done. */
 		phaser.arriveAndAwaitAdvance();
+		finishProgress();
+		applyModifications();
+
+		/* Delete the least recently accessed documents of past semesters, if the disk budget is exceeded. */
+		if (!stopPending && !AppState.exitPending && DiskQuota.enforce(rootDirectory, rootNode, Config.getInstance().getDiskBudget()) > 0) {
+			isDirty = true;
+		}
+
+		/* Throughput of this sync, from the first queued download until all jobs are done. */
+		final long bytes = downloadedBytes.sum();
+		if (bytes > 0) {
+			final double throughput = bytes / ((System.nanoTime() - traversalStart) / 1e9);
+			DOWNLOAD_THROUGHPUT.set(throughput);
+			stats.setThroughput(throughput);
+		}
 
-		if (!stopPending && !Main.exitPending) {
+		if (!stopPending && !AppState.exitPending) {
 			if (isDirty) {
-				/* Serialize the tree to json and store it in the tree file. */
-				MAPPER.writerFor(SemestersTreeNode.class)
-						.writeValue(Files.newOutputStream(tree), rootNode);
+				writeTree(tree, rootNode);
 			}
 
 			LOG.info("Sync done!");
 		}
 
+		observePhase("sync", start);
+
 		return phaser.getRegisteredParties() - 1;
 	}
 
+	/**
+	 * Download the missing (e.g. evicted) documents of a course or a single document on demand,
+	 * independent of the semester setting and sync rules.
+	 * 
+	 * @param tree Path to tree file
+	 * @param query Course id, course title pattern or document id
+	 * @return Number of downloaded documents
+	 * @throws IOException
+	 */
+	public synchronized int refetch(final Path tree, final String query) throws IOException {
+		if (stopPending || AppState.exitPending) {
+			return 0;
+		}
+
+		final long start = System.nanoTime();
+
+		/* Read existing tree. */
+		final SemestersTreeNode rootNode = readTree(tree);
+		index = new TreeIndex(rootNode);
+		startProgress("refetch");
+
+		final Phaser phaser = new Phaser(1); /* = self. */
+		final Pattern title = SyncRules.toPattern(query, false);
+
+		isDirty = PathBuilder.updatePaths(rootNode);
+		for (final SemesterTreeNode semester : rootNode.semesters) {
+			for (final CourseTreeNode course : semester.courses) {
+				final boolean all = query.equals(course.courseId) || title.matcher(course.title).matches();
+				refetchFolder(phaser, course.root, all, query);
+			}
+		}
+
+		/* Wait until all jobs are done. */
+		phaser.arriveAndAwaitAdvance();
+		finishProgress();
+		applyModifications();
+
+		if (!stopPending && !AppState.exitPending && isDirty) {
+			writeTree(tree, rootNode);
+		}
+
+		observePhase("refetch", start);
+
+		return phaser.getRegisteredParties() - 1;
+	}
+
+	/**
+	 * Refetch folder handler.
+	 * 
+	 * @param phaser
+	 * @param folderNode Folder tree-node
+	 * @param all True if all documents of the folder are refetched
+	 * @param documentId Document id
+	 * @throws IOException
+	 */
+	private void refetchFolder(final Phaser phaser, final DocumentFolderTreeNode folderNode, final boolean all, final String documentId) throws IOException {
+		for (final DocumentFolderTreeNode folder : folderNode.folders) {
+			refetchFolder(phaser, folder, all, documentId);
+		}
+
+		for (final DocumentTreeNode document : folderNode.documents) {
+			if (all || documentId.equals(document.documentId)) {
+				if (document.evicted != null) {
+					document.evicted = null;
+					isDirty = true;
+				}
+
+				final Path folderDirectory = rootDirectory.resolve(folderNode.path);
+				if (!Files.isDirectory(folderDirectory)) {
+					Files.createDirectories(folderDirectory);
+				}
+
+				doDocument(phaser, document);
+			}
+		}
+	}
+
 	/**
 	 * Folder node handler.
 	 * 
 	 * @param phaser
+	 * @param rules Selective sync rules
+	 * @param semester Semester tree-node
+	 * @param course Course tree-node
 	 * @param folderNode Folder tree-node
-	 * @param parentDirectory Path to parent directory
 	 * @throws IOException 
 	 */
-	private void doFolder(final Phaser phaser, final DocumentFolderTreeNode folderNode, final Path parentDirectory) throws IOException {
+	private void doFolder(final Phaser phaser, final SyncRules rules, final SemesterTreeNode semester, final CourseTreeNode course,
+			final DocumentFolderTreeNode folderNode) throws IOException {
 		/* Traverse folder structure (recursive). */
 		for (final DocumentFolderTreeNode folder : folderNode.folders) {
-			if (StudIPApiProvider.DEFAULT_FOLDER.equals(folder.name.trim())) {
-				/* Merge default folder with parent. */
-				doFolder(phaser, folder, parentDirectory);
+			if (!rules.isEmpty() && rules.skipsFolder(semester, course, getFolderPath(course, folder))) {
+				if (LOG.isLoggable(Level.FINE)) {
+					LOG.fine("Skipped folder: " + folder.path);
+				}
 				continue;
 			}
 
-			final Path folderDirectory = parentDirectory.resolve(FileBrowser.removeIllegalCharacters(folder.name));
-			if (!Files.isDirectory(folderDirectory)) {
-				Files.createDirectory(folderDirectory);
+			/* Default folders share the path of their parent. */
+			if (!folder.path.equals(folderNode.path)) {
+				final Path folderDirectory = rootDirectory.resolve(folder.path);
+				if (!Files.isDirectory(folderDirectory)) {
+					Files.createDirectory(folderDirectory);
+				}
 			}
 
-			doFolder(phaser, folder, folderDirectory);
+			doFolder(phaser, rules, semester, course, folder);
 		}
 
+		final String folderPath = rules.isEmpty() ? null : getFolderPath(course, folderNode);
 		for (final DocumentTreeNode document : folderNode.documents) {
-			doDocument(phaser, folderNode, document, parentDirectory);
+			if (folderPath != null && rules.skipsDocument(semester, course, folderPath, document)) {
+				if (LOG.isLoggable(Level.FINE)) {
+					LOG.fine("Skipped: " + document.path);
+				}
+				continue;
+			}
+
+			doDocument(phaser, document);
 		}
 	}
 
+	/**
+	 * Get the local folder path relative to the course directory, without trailing slash.
+	 * 
+	 * @param course Course tree-node
+	 * @param folder Folder tree-node
+	 * @return Folder path ("" for the course root)
+	 */
+	private static String getFolderPath(final CourseTreeNode course, final DocumentFolderTreeNode folder) {
+		final String path = folder.path.substring(course.path.length());
+		return path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
+	}
+
 	/**
 	 * Document node handler.
 	 * 
 	 * @param phaser
-	 * @param folderNode Parent folder tree-node
 	 * @param documentNode Document tree-node
-	 * @param parentDirectory Path to parent directory
 	 * @throws IOException 
 	 */
-	private void doDocument(final Phaser phaser, final DocumentFolderTreeNode folderNode, final DocumentTreeNode documentNode, final Path parentDirectory) throws IOException {
-		final String originalFileName = FileBrowser.removeIllegalCharacters(documentNode.fileName);
-		final Path documentFile = parentDirectory.resolve(originalFileName);
+	private void doDocument(final Phaser phaser, final DocumentTreeNode documentNode) throws IOException {
+		final Path documentFile = rootDirectory.resolve(documentNode.path);
+		final String originalFileName = documentFile.getFileName().toString();
+
+		if (documentNode.evicted != null) {
+			if (!Files.exists(documentFile)) {
+				/* Deleted by the disk budget, only downloaded on demand. */
+				return;
+			}
+
+			/* Restored by the user. */
+			documentNode.evicted = null;
+			isDirty = true;
+		}
 
 		if (!Files.exists(documentFile)) {
 			/* Download new file. */
+			DOCUMENTS_NEW.inc();
 			phaser.register();
-			threadPool.execute(new DownloadDocumentJob(this, phaser, folderNode, documentNode, documentFile));
+			progress.addExpectedBytes(documentNode.fileSize == null ? 0 : documentNode.fileSize);
+			execute(new DownloadDocumentJob(this, phaser, documentNode, documentFile));
 
 			if (LOG.isLoggable(Level.INFO)) {
 				LOG.info("New: " + originalFileName);
@@ -151,14 +362,14 @@ public class TreeSync extends TreeBuilder {
 		} else if (Files.size(documentFile) != documentNode.fileSize || Files.getLastModifiedTime(documentFile).toMillis() != documentNode.chDate * 1000L) {
 			/* Document has changed, we will download it again. */
 
-			if (!CONFIG.isOverwriteFiles()) {
+			if (!Config.getInstance().isOverwriteFiles()) {
 				/* Overwrite files is disabled, we append a version number to the old document filename. */
 				Path renameFile;
 				int i = 0;
 
 				do {
 					i++;
-					renameFile = parentDirectory.resolve(FileBrowser.appendFilename(originalFileName, "_v" + i));
+					renameFile = documentFile.resolveSibling(FileBrowser.appendFilename(originalFileName, "_v" + i));
 				} while(Files.exists(renameFile));
 
 				Files.move(documentFile, renameFile);
@@ -169,8 +380,10 @@ public class TreeSync extends TreeBuilder {
 			}
 
 			/* Download modified file. */
+			DOCUMENTS_MODIFIED.inc();
 			phaser.register();
-			threadPool.execute(new DownloadDocumentJob(this, phaser, folderNode, documentNode, documentFile));
+			progress.addExpectedBytes(documentNode.fileSize == null ? 0 : documentNode.fileSize);
+			execute(new DownloadDocumentJob(this, phaser, documentNode, documentFile));
 
 			if (LOG.isLoggable(Level.WARNING)) {
 				LOG.warning("Modified: " + originalFileName);
@@ -1,7 +1,9 @@
 package de.uni.hannover.studip.sync.models.jobs;
 
 import java.io.IOException;
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.Phaser;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.logging.Logger;
@@ -10,15 +12,16 @@ import org.scribe.exceptions.OAuthConnectionException;
 
 import de.elanev.studip.android.app.backend.datamodel.Course;
 import de.elanev.studip.android.app.backend.datamodel.Courses;
-import de.uni.hannover.studip.sync.Main;
+import de.uni.hannover.studip.sync.AppState;
 import de.uni.hannover.studip.sync.datamodel.CourseTreeNode;
 import de.uni.hannover.studip.sync.datamodel.SemesterTreeNode;
 import de.uni.hannover.studip.sync.exceptions.NotFoundException;
 import de.uni.hannover.studip.sync.exceptions.UnauthorizedException;
-import de.uni.hannover.studip.sync.models.OAuth;
+import de.uni.hannover.studip.sync.metrics.Trace;
+import de.uni.hannover.studip.sync.metrics.TraceEvent;
 import de.uni.hannover.studip.sync.models.RestApi;
 import de.uni.hannover.studip.sync.models.TreeBuilder;
-import javafx.application.Platform;
+import de.uni.hannover.studip.sync.models.TreeConflict;
 
 /**
  * Build courses job.
@@ -59,28 +62,37 @@ public class BuildCoursesJob implements Runnable {
 
 	@Override
 	public void run() {
-		try {
-			CourseTreeNode courseNode;
+		final TraceEvent event = Trace.job("BuildCoursesJob", semesterNode.semesterId, null, null, null);
 
+		try {
 			/* Get subscribed courses. */
 			final Courses courses = RestApi.getAllCoursesBySemesterId(semesterNode.semesterId);
 			phaser.bulkRegister(courses.courses.size());
 
+			/* Only this job writes the course list, so we can collect it without locking. */
+			final List<CourseTreeNode> courseNodes = new ArrayList<CourseTreeNode>(courses.courses.size());
+
 			for (final Course course : courses.courses) {
-				semesterNode.courses.add(courseNode = new CourseTreeNode(course));
+				final CourseTreeNode courseNode = new CourseTreeNode(course);
+				courseNodes.add(courseNode);
 
-				builder.execute(new BuildDocumentsJob(builder, phaser, courseNode, courseNode.root, new HashSet<String>()));
+				builder.execute(new BuildDocumentsJob(builder, phaser, courseNode, courseNode.root));
+
+				/* Resolve name conflicts after all course folders are built. */
+				builder.modifyLater(() -> TreeConflict.resolveNameConflicts(courseNode.root));
 
 				LOG.info(courseNode.title);
 			}
 
+			semesterNode.courses = Collections.unmodifiableList(courseNodes);
+
 		} catch (OAuthConnectionException | IOException | RejectedExecutionException e) {
 			/* Connection failed. */
 			builder.stopPending = true;
 
 		} catch (UnauthorizedException e) {
 			/* Invalid oauth access token. */
-			Platform.runLater(() -> OAuth.getInstance().removeAccessToken());
+			builder.removeAccessToken();
 			builder.stopPending = true;
 
 		} catch (NotFoundException e) {
@@ -88,8 +100,10 @@ public class BuildCoursesJob implements Runnable {
 			throw new IllegalStateException(e);
 
 		} finally {
+			event.commit();
+
 			/* Job done. */
-			if (builder.stopPending || Main.exitPending) {
+			if (builder.stopPending || AppState.exitPending) {
 				phaser.forceTermination();
 				builder.shutdownNow();
 			} else {
@@ -1,29 +1,27 @@
 package de.uni.hannover.studip.sync.models.jobs;
 
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Set;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.Phaser;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.logging.Logger;
 
 import org.scribe.exceptions.OAuthConnectionException;
 
-import de.elanev.studip.android.app.backend.datamodel.Document;
-import de.elanev.studip.android.app.backend.datamodel.DocumentFolder;
-import de.elanev.studip.android.app.backend.datamodel.DocumentFolders;
-import de.uni.hannover.studip.sync.Main;
+import de.uni.hannover.studip.sync.AppState;
 import de.uni.hannover.studip.sync.datamodel.CourseTreeNode;
 import de.uni.hannover.studip.sync.datamodel.DocumentFolderTreeNode;
 import de.uni.hannover.studip.sync.datamodel.DocumentTreeNode;
 import de.uni.hannover.studip.sync.exceptions.ForbiddenException;
 import de.uni.hannover.studip.sync.exceptions.NotFoundException;
 import de.uni.hannover.studip.sync.exceptions.UnauthorizedException;
-import de.uni.hannover.studip.sync.models.OAuth;
+import de.uni.hannover.studip.sync.metrics.Trace;
+import de.uni.hannover.studip.sync.metrics.TraceEvent;
+import de.uni.hannover.studip.sync.models.DocumentFolderReader;
 import de.uni.hannover.studip.sync.models.RestApi;
 import de.uni.hannover.studip.sync.models.TreeBuilder;
-import de.uni.hannover.studip.sync.models.TreeConflict;
-import javafx.application.Platform;
 
 /**
  * Build files job.
@@ -55,63 +53,56 @@ public class BuildDocumentsJob implements Runnable {
 	 */
 	private final DocumentFolderTreeNode parentNode;
 
-	/**
-	 * File index for duplicate check.
-	 */
-	private final Set<String> fileIndex;
-
 	/**
 	 * Constructor.
 	 * 
 	 * @param phaser
 	 * @param courseNode Course tree-node
 	 * @param parentNode Folder tree-node
+	 * @see TreeConflict.resolveNameConflicts() Name conflicts are resolved after the build
 	 */
-	public BuildDocumentsJob(final TreeBuilder builder, final Phaser phaser, final CourseTreeNode courseNode, final DocumentFolderTreeNode parentNode, final Set<String> fileIndex) {
+	public BuildDocumentsJob(final TreeBuilder builder, final Phaser phaser, final CourseTreeNode courseNode, final DocumentFolderTreeNode parentNode) {
 		this.builder = builder;
 		this.phaser = phaser;
 		this.courseNode = courseNode;
 		this.parentNode = parentNode;
-		this.fileIndex = fileIndex;
 	}
 
 	@Override
 	public void run() {
-		try {
-			/* Folder merges must be mutually exclusive. */
-			synchronized (fileIndex) {
-				DocumentFolderTreeNode folderNode;
-				DocumentTreeNode documentNode;
-
-				final HashMap<String, Set<String>> fileIndexMap = new HashMap<String, Set<String>>();
+		final TraceEvent event = Trace.job("BuildDocumentsJob", null, courseNode.courseId, parentNode.folderId, null);
 
-				/*
-				 * Get course folder content.
-				 * If parent node is the root course folder the folder id is null.
-				 */
-				final DocumentFolders folders = RestApi.getAllDocumentsByRangeAndFolderId(courseNode.courseId, parentNode.folderId);
-				phaser.bulkRegister(folders.folders.size());
+		try {
+			/* Only this job writes the child lists of the parent node, so we can collect them without locking. */
+			final List<DocumentFolderTreeNode> folderNodes = new ArrayList<DocumentFolderTreeNode>();
+			final List<DocumentTreeNode> documentNodes = new ArrayList<DocumentTreeNode>();
 
-				/* Folders. */
-				for (final DocumentFolder folder : folders.folders) {
-					/* Get folder index (merged folders use same index) and rename the folder if it's name already exists. */
-					final Set<String> folderFileIndex = TreeConflict.resolveFolderNameConflict(fileIndex, fileIndexMap, folder);
-					parentNode.folders.add(folderNode = new DocumentFolderTreeNode(folder));
+			/*
+			 * Get course folder content.
+			 * If parent node is the root course folder the folder id is null.
+			 * The listing is streamed, child folders are crawled while the rest is still parsed.
+			 */
+			RestApi.getAllDocumentsByRangeAndFolderId(courseNode.courseId, parentNode.folderId, new DocumentFolderReader.Listener() {
+				@Override
+				public void folder(final DocumentFolderTreeNode folderNode) {
+					folderNodes.add(folderNode);
 
-					builder.execute(new BuildDocumentsJob(builder, phaser, courseNode, folderNode, folderFileIndex));
+					phaser.register();
+					builder.execute(new BuildDocumentsJob(builder, phaser, courseNode, folderNode));
 
 					LOG.info(folderNode.name);
 				}
 
-				/* Documents. */
-				for (final Document document : folders.documents) {
-					/* Rename the document if it's filename already exists. */
-					TreeConflict.resolveFileNameConflict(fileIndex, document);
-					parentNode.documents.add(documentNode = new DocumentTreeNode(document));
+				@Override
+				public void document(final DocumentTreeNode documentNode) {
+					documentNodes.add(documentNode);
 
 					LOG.info(documentNode.name);
 				}
-			}
+			});
+
+			parentNode.folders = Collections.unmodifiableList(folderNodes);
+			parentNode.documents = Collections.unmodifiableList(documentNodes);
 
 		} catch (OAuthConnectionException | IOException | RejectedExecutionException e) {
 			/* Connection failed. */
@@ -119,7 +110,7 @@ public class BuildDocumentsJob implements Runnable {
 
 		} catch (UnauthorizedException e) {
 			/* Invalid oauth access token. */
-			Platform.runLater(() -> OAuth.getInstance().removeAccessToken());
+			builder.removeAccessToken();
 			builder.stopPending = true;
 
 		} catch (ForbiddenException | NotFoundException e) {
@@ -130,8 +121,10 @@ public class BuildDocumentsJob implements Runnable {
 			throw new IllegalStateException(e);
 
 		} finally {
+			event.commit();
+
 			/* Job done. */
-			if (builder.stopPending || Main.exitPending) {
+			if (builder.stopPending || AppState.exitPending) {
 				phaser.forceTermination();
 				builder.shutdownNow();
 			} else {
@@ -1,6 +1,9 @@
 package de.uni.hannover.studip.sync.models.jobs;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.Phaser;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.logging.Logger;
@@ -9,14 +12,14 @@ import org.scribe.exceptions.OAuthConnectionException;
 
 import de.elanev.studip.android.app.backend.datamodel.Semester;
 import de.elanev.studip.android.app.backend.datamodel.Semesters;
-import de.uni.hannover.studip.sync.Main;
+import de.uni.hannover.studip.sync.AppState;
 import de.uni.hannover.studip.sync.datamodel.SemesterTreeNode;
 import de.uni.hannover.studip.sync.datamodel.SemestersTreeNode;
 import de.uni.hannover.studip.sync.exceptions.UnauthorizedException;
-import de.uni.hannover.studip.sync.models.OAuth;
+import de.uni.hannover.studip.sync.metrics.Trace;
+import de.uni.hannover.studip.sync.metrics.TraceEvent;
 import de.uni.hannover.studip.sync.models.RestApi;
 import de.uni.hannover.studip.sync.models.TreeBuilder;
-import javafx.application.Platform;
 
 /**
  * Build semesters job.
@@ -57,6 +60,8 @@ public class BuildSemestersJob implements Runnable {
 
 	@Override
 	public void run() {
+		final TraceEvent event = Trace.job("BuildSemestersJob", null, null, null, null);
+
 		try {
 			SemesterTreeNode semesterNode;
 
@@ -64,26 +69,33 @@ public class BuildSemestersJob implements Runnable {
 			final Semesters semesters = RestApi.getAllSemesters();
 			phaser.bulkRegister(semesters.semesters.size());
 
+			/* Only this job writes the semester list, so we can collect it without locking. */
+			final List<SemesterTreeNode> semesterNodes = new ArrayList<SemesterTreeNode>(semesters.semesters.size());
+
 			for (final Semester semester : semesters.semesters) {
-				rootNode.semesters.add(semesterNode = new SemesterTreeNode(semester));
+				semesterNodes.add(semesterNode = new SemesterTreeNode(semester));
 
 				builder.execute(new BuildCoursesJob(builder, phaser, semesterNode));
 
 				LOG.info(semesterNode.title);
 			}
 
+			rootNode.semesters = Collections.unmodifiableList(semesterNodes);
+
 		} catch (OAuthConnectionException | IOException | RejectedExecutionException e) {
 			/* Connection failed. */
 			builder.stopPending = true;
 
 		} catch (UnauthorizedException e) {
 			/* Invalid oauth access token. */
-			Platform.runLater(() -> OAuth.getInstance().removeAccessToken());
+			builder.removeAccessToken();
 			builder.stopPending = true;
 
 		} finally {
+			event.commit();
+
 			/* Job done. */
-			if (builder.stopPending || Main.exitPending) {
+			if (builder.stopPending || AppState.exitPending) {
 				phaser.forceTermination();
 				builder.shutdownNow();
 			} else {
@@ -11,16 +11,17 @@ import java.util.logging.Logger;
 
 import org.scribe.exceptions.OAuthConnectionException;
 
-import de.uni.hannover.studip.sync.Main;
+import de.uni.hannover.studip.sync.AppState;
 import de.uni.hannover.studip.sync.datamodel.DocumentFolderTreeNode;
 import de.uni.hannover.studip.sync.datamodel.DocumentTreeNode;
 import de.uni.hannover.studip.sync.exceptions.ForbiddenException;
 import de.uni.hannover.studip.sync.exceptions.NotFoundException;
 import de.uni.hannover.studip.sync.exceptions.UnauthorizedException;
-import de.uni.hannover.studip.sync.models.OAuth;
-import de.uni.hannover.studip.sync.models.RestApi;
+import de.uni.hannover.studip.sync.metrics.Trace;
+import de.uni.hannover.studip.sync.metrics.TraceEvent;
+import de.uni.hannover.studip.sync.models.SearchContent;
+import de.uni.hannover.studip.sync.models.TreeIndex;
 import de.uni.hannover.studip.sync.models.TreeSync;
-import javafx.application.Platform;
 
 /**
  * Download document job.
@@ -42,11 +43,6 @@ public class DownloadDocumentJob implements Runnable {
 	 */
 	private final Phaser phaser;
 
-	/**
-	 * Folder node.
-	 */
-	private final DocumentFolderTreeNode folderNode;
-
 	/**
 	 * Document node.
 	 * The document node to download.
@@ -63,23 +59,23 @@ public class DownloadDocumentJob implements Runnable {
 	 * Download document job.
 	 * 
 	 * @param phaser
-	 * @param folderNode Parent folder tree-node
 	 * @param documentNode Document tree-node to download
 	 * @param documentFile Path to document file destination
 	 */
-	public DownloadDocumentJob(final TreeSync sync, final Phaser phaser, final DocumentFolderTreeNode folderNode, final DocumentTreeNode documentNode, final Path documentFile) {
+	public DownloadDocumentJob(final TreeSync sync, final Phaser phaser, final DocumentTreeNode documentNode, final Path documentFile) {
 		this.sync = sync;
 		this.phaser = phaser;
-		this.folderNode = folderNode;
 		this.documentNode = documentNode;
 		this.documentFile = documentFile;
 	}
 
 	@Override
 	public void run() {
+		final TraceEvent event = Trace.job("DownloadDocumentJob", null, null, null, documentNode.documentId);
+
 		try {
 			final long startTime = System.currentTimeMillis();
-			RestApi.downloadDocumentById(documentNode.documentId, documentFile);
+			sync.download(documentNode, documentFile);
 			final long endTime = System.currentTimeMillis();
 
 			if (LOG.isLoggable(Level.INFO)) {
@@ -93,13 +89,16 @@ public class DownloadDocumentJob implements Runnable {
 			 */
 			Files.setLastModifiedTime(documentFile, FileTime.fromMillis(documentNode.chDate * 1000L));
 
+			/* Index the text of the new document version. */
+			SearchContent.extract(documentNode, documentFile);
+
 		} catch (OAuthConnectionException | IOException | RejectedExecutionException e) {
 			/* Connection failed. */
 			sync.stopPending = true;
 
 		} catch (UnauthorizedException e) {
 			/* Invalid oauth access token. */
-			Platform.runLater(() -> OAuth.getInstance().removeAccessToken());
+			sync.removeAccessToken();
 			sync.stopPending = true;
 
 		} catch (ForbiddenException | NotFoundException e) {
@@ -107,16 +106,24 @@ public class DownloadDocumentJob implements Runnable {
 			 * User does not have the required permissions
 			 * or document does not exist.
 			 */
-			folderNode.documents.remove(documentNode);
-			sync.isDirty = true;
+			sync.modifyLater(() -> {
+				final TreeIndex index = sync.getIndex();
+				final DocumentFolderTreeNode folderNode = index.getDocumentParent(documentNode.documentId);
+				if (folderNode != null) {
+					folderNode.removeDocument(documentNode);
+					index.removeDocument(documentNode.documentId);
+				}
+			});
 
 			if (LOG.isLoggable(Level.WARNING)) {
 				LOG.warning("Removed document: " + documentNode.fileName);
 			}
 
 		} finally {
+			event.commit();
+
 			/* Job done. */
-			if (sync.stopPending || Main.exitPending) {
+			if (sync.stopPending || AppState.exitPending) {
 				phaser.forceTermination();
 				sync.shutdownNow();
 			} else {
@@ -0,0 +1,164 @@
+package de.uni.hannover.studip.sync.models.jobs;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+
+import org.scribe.exceptions.OAuthConnectionException;
+
+import de.uni.hannover.studip.sync.AppState;
+import de.uni.hannover.studip.sync.datamodel.CourseTreeNode;
+import de.uni.hannover.studip.sync.datamodel.SemesterTreeNode;
+import de.uni.hannover.studip.sync.datamodel.SemestersTreeNode;
+import de.uni.hannover.studip.sync.exceptions.ForbiddenException;
+import de.uni.hannover.studip.sync.exceptions.NotFoundException;
+import de.uni.hannover.studip.sync.exceptions.UnauthorizedException;
+import de.uni.hannover.studip.sync.metrics.Trace;
+import de.uni.hannover.studip.sync.metrics.TraceEvent;
+import de.uni.hannover.studip.sync.models.ActivityFeed;
+import de.uni.hannover.studip.sync.models.RestApi;
+import de.uni.hannover.studip.sync.models.TreeBuilder;
+import de.uni.hannover.studip.sync.oauth.StudIPApiProvider;
+
+/**
+ * Update activities job.
+ *
+ * Queries the activity feed once and starts an UpdateDocumentsJob only for courses with file activity.
+ * Courses which are known to be unchanged since the activity cursor are marked as updated without a request.
+ * Falls back to one UpdateDocumentsJob per expired course if the feed is not available or not conclusive.
+ *
+ * @author Lennart Glauer
+ * @notice Thread safe
+ */
+public class UpdateActivitiesJob implements Runnable {
+
+	private static final Logger LOG = Logger.getLogger(Logger.GLOBAL_LOGGER_NAME);
+
+	/**
+	 * TreeBuilder.
+	 */
+	private final TreeBuilder builder;
+
+	/**
+	 * Phaser.
+	 */
+	private final Phaser phaser;
+
+	/**
+	 * Root node.
+	 */
+	private final SemestersTreeNode rootNode;
+
+	/**
+	 * Courses whose request cache time expired.
+	 */
+	private final Set<CourseTreeNode> expiredCourses;
+
+	/**
+	 * Current unix timestamp.
+	 */
+	private final long now;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param phaser
+	 * @param rootNode Root tree-node
+	 * @param expiredCourses Courses whose request cache time expired
+	 * @param now Current unix timestamp
+	 */
+	public UpdateActivitiesJob(final TreeBuilder builder, final Phaser phaser, final SemestersTreeNode rootNode, final Set<CourseTreeNode> expiredCourses, final long now) {
+		this.builder = builder;
+		this.phaser = phaser;
+		this.rootNode = rootNode;
+		this.expiredCourses = expiredCourses;
+		this.now = now;
+	}
+
+	@Override
+	public void run() {
+		final TraceEvent event = Trace.job("UpdateActivitiesJob", null, null, null, null);
+
+		try {
+			final long cursor = rootNode.activityTime;
+
+			final Set<String> courseIds = new HashSet<String>();
+			for (final SemesterTreeNode semester : rootNode.semesters) {
+				for (final CourseTreeNode course : semester.courses) {
+					courseIds.add(course.courseId);
+				}
+			}
+
+			boolean feedAvailable = false;
+			Set<String> changedCourses = null;
+			try {
+				changedCourses = ActivityFeed.getChangedCourses(RestApi.getActivities(),
+						cursor - StudIPApiProvider.ACTIVITY_TIME_SKEW, courseIds);
+				feedAvailable = true;
+
+			} catch (ForbiddenException | NotFoundException e) {
+				/* Activity feed not available. */
+				if (LOG.isLoggable(Level.INFO)) {
+					LOG.info("Activity feed not available!");
+				}
+
+			} catch (IllegalStateException | JsonProcessingException e) {
+				/* Unexpected status code or malformed feed, update the expired courses. */
+				if (LOG.isLoggable(Level.WARNING)) {
+					LOG.warning("Activity feed failed: " + e.getMessage());
+				}
+			}
+
+			/* The feed contains all file changes after the cursor, if the cursor is not too old. */
+			final boolean covered = changedCourses != null && cursor > 0
+					&& now - cursor <= StudIPApiProvider.ACTIVITY_CURSOR_AGE;
+
+			for (final SemesterTreeNode semester : rootNode.semesters) {
+				for (final CourseTreeNode course : semester.courses) {
+					final boolean changed = changedCourses != null && changedCourses.contains(course.courseId);
+
+					if (covered && !changed && course.updateTime >= cursor) {
+						/* No file activity since the last update of this course. */
+						course.updateTime = now;
+
+					} else if (changed || expiredCourses.contains(course)) {
+						phaser.register();
+						builder.execute(new UpdateDocumentsJob(builder, phaser, semester, course, now));
+					}
+				}
+			}
+
+			/* Courses which were not updated now stay behind the cursor and are requested when they expire. */
+			if (feedAvailable) {
+				rootNode.activityTime = now;
+			}
+			builder.isDirty = true;
+
+		} catch (OAuthConnectionException | IOException | RejectedExecutionException e) {
+			/* Connection failed. */
+			builder.stopPending = true;
+
+		} catch (UnauthorizedException e) {
+			/* Invalid oauth access token. */
+			builder.removeAccessToken();
+			builder.stopPending = true;
+
+		} finally {
+			event.commit();
+
+			/* Job done. */
+			if (builder.stopPending || AppState.exitPending) {
+				phaser.forceTermination();
+				builder.shutdownNow();
+			} else {
+				phaser.arrive();
+			}
+		}
+	}
+}
@@ -1,12 +1,6 @@
 package de.uni.hannover.studip.sync.models.jobs;
 
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Iterator;
-import java.util.Locale;
-import java.util.Map;
-import java.util.Set;
 import java.util.concurrent.Phaser;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.logging.Level;
@@ -16,7 +10,7 @@ import org.scribe.exceptions.OAuthConnectionException;
 
 import de.elanev.studip.android.app.backend.datamodel.Document;
 import de.elanev.studip.android.app.backend.datamodel.Documents;
-import de.uni.hannover.studip.sync.Main;
+import de.uni.hannover.studip.sync.AppState;
 import de.uni.hannover.studip.sync.datamodel.CourseTreeNode;
 import de.uni.hannover.studip.sync.datamodel.DocumentFolderTreeNode;
 import de.uni.hannover.studip.sync.datamodel.DocumentTreeNode;
@@ -24,13 +18,14 @@ import de.uni.hannover.studip.sync.datamodel.SemesterTreeNode;
 import de.uni.hannover.studip.sync.exceptions.ForbiddenException;
 import de.uni.hannover.studip.sync.exceptions.NotFoundException;
 import de.uni.hannover.studip.sync.exceptions.UnauthorizedException;
-import de.uni.hannover.studip.sync.models.OAuth;
+import de.uni.hannover.studip.sync.metrics.Trace;
+import de.uni.hannover.studip.sync.metrics.TraceEvent;
+import de.uni.hannover.studip.sync.models.CourseIndex;
+import de.uni.hannover.studip.sync.models.DiskQuota;
+import de.uni.hannover.studip.sync.models.PathBuilder;
 import de.uni.hannover.studip.sync.models.RestApi;
 import de.uni.hannover.studip.sync.models.TreeBuilder;
 import de.uni.hannover.studip.sync.models.TreeConflict;
-import de.uni.hannover.studip.sync.oauth.StudIPApiProvider;
-import de.uni.hannover.studip.sync.utils.FileBrowser;
-import javafx.application.Platform;
 
 /**
  * Update files job.
@@ -83,84 +78,10 @@ public class UpdateDocumentsJob implements Runnable {
 		this.now = now;
 	}
 
-	/**
-	 * Build folder index, so we can access the folder nodes in constant time.
-	 * 
-	 * @param folderIndex Folder index
-	 * @param parentFolder Foler tree-node
-	 */
-	private static void buildFolderIndex(final Map<String, DocumentFolderTreeNode> folderIndex, final Map<String, DocumentFolderTreeNode> parentIndex, final DocumentFolderTreeNode parentFolder) {
-		for (final DocumentFolderTreeNode folder : parentFolder.folders) {
-			buildFolderIndex(folderIndex, parentIndex, folder);
-			parentIndex.put(folder.folderId, parentFolder);
-		}
-
-		folderIndex.put(parentFolder.folderId, parentFolder);
-	}
-
-	/**
-	 * Remove document node if it exists.
-	 * 
-	 * @param folderNode Parent folder tree-node
-	 * @param document Document to remove
-	 * @return True if document was removed
-	 */
-	private static boolean removeDocument(final DocumentFolderTreeNode folderNode, final Document document) {
-		final Iterator<DocumentTreeNode> iter = folderNode.documents.iterator();
-
-		while (iter.hasNext()) {
-			final DocumentTreeNode doc = iter.next();
-
-			if (document.document_id.equals(doc.documentId)) {
-				iter.remove();
-				return true;
-			}
-		}
-
-		return false;
-	}
-
-	/**
-	 * Resolve file name conflicts.
-	 * Ignore case because Windows and MacOS filesystems are case insensitive.
-	 * 
-	 * @param parentIndex
-	 * @param folderNode Parent folder tree-node
-	 * @param document Document to compare
-	 * @return True if duplicate exists
-	 */
-	private static void resolveFileNameConflict(final Map<String, DocumentFolderTreeNode> parentIndex, final DocumentFolderTreeNode folderNode, final Document document) {
-		final DocumentFolderTreeNode parentNode = parentIndex.get(folderNode.folderId);
-		final Set<String> fileIndex = new HashSet<String>();
-
-		/* Merge default folder with parent. */
-		if (StudIPApiProvider.DEFAULT_FOLDER.equals(folderNode.name.trim())) {
-			for (final DocumentFolderTreeNode folder : parentNode.folders) {
-				fileIndex.add(FileBrowser.removeIllegalCharacters(folder.name).toLowerCase(Locale.GERMANY));
-			}
-			for (final DocumentTreeNode doc : parentNode.documents) {
-				fileIndex.add(FileBrowser.removeIllegalCharacters(doc.fileName).toLowerCase(Locale.GERMANY));
-			}
-		}
-
-		/* Build file index for merged folders. */
-		final String folderName = FileBrowser.removeIllegalCharacters(folderNode.name);
-		for (final DocumentFolderTreeNode sibling : parentNode.folders) {
-			if (folderName.equalsIgnoreCase(FileBrowser.removeIllegalCharacters(sibling.name))) {
-				for (final DocumentFolderTreeNode folder : sibling.folders) {
-					fileIndex.add(FileBrowser.removeIllegalCharacters(folder.name).toLowerCase(Locale.GERMANY));
-				}
-				for (final DocumentTreeNode doc : sibling.documents) {
-					fileIndex.add(FileBrowser.removeIllegalCharacters(doc.fileName).toLowerCase(Locale.GERMANY));
-				}
-			}
-		}
-
-		TreeConflict.resolveFileNameConflict(fileIndex, document);
-	}
-
 	@Override
 	public void run() {
+		final TraceEvent event = Trace.job("UpdateDocumentsJob", semesterNode.semesterId, courseNode.courseId, null, null);
+
 		try {
 			DocumentFolderTreeNode folderNode;
 			DocumentTreeNode documentNode;
@@ -168,17 +89,25 @@ public class UpdateDocumentsJob implements Runnable {
 			/* Get all course documents with newer change date than course update time. */
 			final Documents newDocuments = RestApi.getNewDocumentsByCourseId(courseNode.courseId, courseNode.updateTime);
 			if (!newDocuments.documents.isEmpty()) {
-				/* Build a folder index for this course, so we can easily access the folders. */
-				final HashMap<String, DocumentFolderTreeNode> folderIndex = new HashMap<String, DocumentFolderTreeNode>();
-				final HashMap<String, DocumentFolderTreeNode> parentIndex = new HashMap<String, DocumentFolderTreeNode>();
-				buildFolderIndex(folderIndex, parentIndex, courseNode.root);
+				/* Build an index for this course once, so we can add the new documents in constant time. */
+				final CourseIndex index = new CourseIndex(builder.getIndex(), courseNode.root);
 
 				for (final Document document : newDocuments.documents) {
-					folderNode = folderIndex.get(document.folder_id);
+					folderNode = index.getFolder(document.folder_id);
 					if (folderNode == null) {
 						/* Folder does not exist locally, we need to re-sync all course folders. */
+						final DocumentFolderTreeNode oldRoot = courseNode.root;
 						phaser.register();
-						builder.execute(new BuildDocumentsJob(builder, phaser, courseNode, courseNode.root = new DocumentFolderTreeNode(), new HashSet<String>()));
+						builder.execute(new BuildDocumentsJob(builder, phaser, courseNode, courseNode.root = new DocumentFolderTreeNode()));
+
+						/* Resolve name conflicts, paths and re-index after all course folders are built. */
+						builder.modifyLater(() -> {
+							TreeConflict.resolveNameConflicts(courseNode.root);
+							PathBuilder.updatePaths(semesterNode, courseNode);
+							DiskQuota.carryOver(oldRoot, courseNode.root);
+							builder.getIndex().removeFolder(oldRoot);
+							builder.getIndex().putFolder(null, courseNode.root);
+						});
 						break;
 					}
 
@@ -186,14 +115,15 @@ public class UpdateDocumentsJob implements Runnable {
 					 * Maybe the document was updated and the node already exists,
 					 * we need to replace the document node (remove + add).
 					 */
-					removeDocument(folderNode, document);
+					index.removeDocument(document.document_id);
 
 					/* Add document to existing folder. */
-					resolveFileNameConflict(parentIndex, folderNode, document);
-					folderNode.documents.add(documentNode = new DocumentTreeNode(document));
+					index.addDocument(folderNode, documentNode = new DocumentTreeNode(document));
 
 					LOG.info(documentNode.name);
 				}
+
+				index.commit();
 			}
 
 			/* Update unix timestamp. */
@@ -206,7 +136,7 @@ public class UpdateDocumentsJob implements Runnable {
 
 		} catch (UnauthorizedException e) {
 			/* Invalid oauth access token. */
-			Platform.runLater(() -> OAuth.getInstance().removeAccessToken());
+			builder.removeAccessToken();
 			builder.stopPending = true;
 
 		} catch (ForbiddenException | NotFoundException e) {
@@ -214,16 +144,23 @@ public class UpdateDocumentsJob implements Runnable {
 			 * User does not have the required permissions
 			 * or course does not exist.
 			 */
-			semesterNode.courses.remove(courseNode);
-			builder.isDirty = true;
+			builder.modifyLater(() -> {
+				semesterNode.removeCourse(courseNode);
+				builder.getIndex().removeFolder(courseNode.root);
+
+				/* Exercise paths might depend on the removed lecture. */
+				PathBuilder.updatePaths(semesterNode);
+			});
 
 			if (LOG.isLoggable(Level.WARNING)) {
 				LOG.warning("Removed course: " + courseNode.title);
 			}
 
 		} finally {
+			event.commit();
+
 			/* Job done. */
-			if (builder.stopPending || Main.exitPending) {
+			if (builder.stopPending || AppState.exitPending) {
 				phaser.forceTermination();
 				builder.shutdownNow();
 			} else {
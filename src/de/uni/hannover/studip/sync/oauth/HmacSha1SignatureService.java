@@ -0,0 +1,53 @@
+package de.uni.hannover.studip.sync.oauth;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Base64;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.scribe.exceptions.OAuthSignatureException;
+import org.scribe.services.SignatureService;
+import org.scribe.utils.OAuthEncoder;
+import org.scribe.utils.Preconditions;
+
+/**
+ * OAuth 1.0a HMAC-SHA1 signature service.
+ *
+ * Same signature as scribe's HMACSha1SignatureService, but encoded with java.util.Base64.
+ * Scribe needs javax.xml.bind.DatatypeConverter or commons-codec for the encoding,
+ * which are not available on java 11 or later.
+ *
+ * @author Lennart Glauer
+ * @notice Thread safe
+ */
+public final class HmacSha1SignatureService implements SignatureService {
+
+	private static final String HMAC_SHA1 = "HmacSHA1";
+	private static final String METHOD = "HMAC-SHA1";
+
+	@Override
+	public String getSignature(final String baseString, final String apiSecret, final String tokenSecret) {
+		Preconditions.checkEmptyString(baseString, "Base string cant be null or empty string");
+		Preconditions.checkEmptyString(apiSecret, "Api secret cant be null or empty string");
+
+		final String key = OAuthEncoder.encode(apiSecret) + '&' + OAuthEncoder.encode(tokenSecret);
+
+		try {
+			final Mac mac = Mac.getInstance(HMAC_SHA1);
+			mac.init(new SecretKeySpec(key.getBytes(StandardCharsets.UTF_8), HMAC_SHA1));
+
+			return Base64.getEncoder().encodeToString(mac.doFinal(baseString.getBytes(StandardCharsets.UTF_8)));
+
+		} catch (GeneralSecurityException e) {
+			throw new OAuthSignatureException(baseString, e);
+		}
+	}
+
+	@Override
+	public String getSignatureMethod() {
+		return METHOD;
+	}
+
+}
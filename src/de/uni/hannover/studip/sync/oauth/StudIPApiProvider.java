@@ -2,6 +2,7 @@ package de.uni.hannover.studip.sync.oauth;
 
 import org.scribe.builder.api.DefaultApi10a;
 import org.scribe.model.Token;
+import org.scribe.services.SignatureService;
 
 /**
  * Stud.IP Api Provider for Scribe OAuth 1.0a.
@@ -12,8 +13,9 @@ public final class StudIPApiProvider extends DefaultApi10a
 {
 	/**
 	 * Studip rest api plugin base url.
+	 * Can be overridden with the system property studip.baseUrl (e.g. for a local test server).
 	 */
-	public static final String BASE_URL = "https://studip.uni-hannover.de/api.php";
+	public static final String BASE_URL = System.getProperty("studip.baseUrl", "https://studip.uni-hannover.de/api.php");
 
 	/**
 	 * OAuth service callback address.
@@ -22,8 +24,9 @@ public final class StudIPApiProvider extends DefaultApi10a
 
 	/**
 	 * OAuth authentication base url.
+	 * Can be overridden with the system property studip.oauthUrl.
 	 */
-	public static final String OAUTH_BASE_URL = "https://studip.uni-hannover.de/dispatch.php/api/oauth";
+	public static final String OAUTH_BASE_URL = System.getProperty("studip.oauthUrl", "https://studip.uni-hannover.de/dispatch.php/api/oauth");
 
 	/**
 	 * Logout address.
@@ -32,13 +35,15 @@ public final class StudIPApiProvider extends DefaultApi10a
 
 	/**
 	 * OAuth consumer key.
+	 * Can be overridden with the system property studip.apiKey.
 	 */
-	public static final String API_KEY = "";
+	public static final String API_KEY = System.getProperty("studip.apiKey", "");
 
 	/**
 	 * OAuth consumer secret.
+	 * Can be overridden with the system property studip.apiSecret.
 	 */
-	public static final String API_SECRET = "";
+	public static final String API_SECRET = System.getProperty("studip.apiSecret", "");
 
 	/**
 	 * Request cache time in seconds (current semester).
@@ -50,6 +55,17 @@ public final class StudIPApiProvider extends DefaultApi10a
 	 */
 	public static final int LARGE_CACHE_TIME = 24 * 60 * 60;
 
+	/**
+	 * Maximum age in seconds of the activity feed cursor,
+	 * older changes might not be in the activity feed anymore.
+	 */
+	public static final int ACTIVITY_CURSOR_AGE = 2 * 24 * 60 * 60;
+
+	/**
+	 * Activity feed overlap in seconds (clock skew between client and server).
+	 */
+	public static final int ACTIVITY_TIME_SKEW = 5 * 60;
+
 	/**
 	 * Stud.IP course default folder name.
 	 */
@@ -72,4 +88,13 @@ public final class StudIPApiProvider extends DefaultApi10a
 	{
 		return OAUTH_BASE_URL + "/authorize?oauth_token=" + requestToken.getToken();
 	}
+
+	/**
+	 * HMAC-SHA1 signatures without javax.xml.bind (java 11 or later).
+	 */
+	@Override
+	public SignatureService getSignatureService()
+	{
+		return new HmacSha1SignatureService();
+	}
 }
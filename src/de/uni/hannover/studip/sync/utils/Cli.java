@@ -4,13 +4,21 @@ import java.io.IOException;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
 
 import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.databind.JsonMappingException;
 
-import de.uni.hannover.studip.sync.Main;
+import de.uni.hannover.studip.sync.AppState;
+import de.uni.hannover.studip.sync.datamodel.RecentDocument;
+import de.uni.hannover.studip.sync.metrics.Metrics;
 import de.uni.hannover.studip.sync.models.Config;
+import de.uni.hannover.studip.sync.models.History;
 import de.uni.hannover.studip.sync.models.OAuth;
+import de.uni.hannover.studip.sync.models.SearchIndex;
 import de.uni.hannover.studip.sync.models.TreeSync;
 
 /**
@@ -21,8 +29,20 @@ import de.uni.hannover.studip.sync.models.TreeSync;
  */
 public final class Cli {
 
-	private static final Config CONFIG = Config.getInstance();
-	private static final OAuth OAUTH = OAuth.getInstance();
+	/**
+	 * Progress sampling interval on a terminal (ms).
+	 */
+	private static final long PROGRESS_INTERVAL = 250;
+
+	/**
+	 * Progress sampling interval with --progress if the output is not a terminal (ms).
+	 */
+	private static final long PROGRESS_LOG_INTERVAL = 10000;
+
+	/**
+	 * Maximum number of printed search results.
+	 */
+	private static final int SEARCH_LIMIT = 50;
 
 	private Cli() {
 		// Utility class.
@@ -30,73 +50,294 @@ public final class Cli {
 
 	public static void handleArgs(final String[] args) {
 		boolean sync = false;
+		Path serviceDir = null;
+		int interval = 0;
+		int threads = 0;
+		Path metricsFile = null;
+		boolean report = false;
+		boolean progress = false;
+		String query = null;
+		String refetch = null;
 
-		for (final String arg : args) {
-			switch (arg) {
+		for (int i = 0; i < args.length; i++) {
+			switch (args[i]) {
 			case "-s":
 			case "--sync":
 				sync = true;
 				break;
+			case "--service":
+				serviceDir = Paths.get(getValue(args, ++i));
+				break;
+			case "--interval":
+				interval = getNumber(args, ++i);
+				break;
+			case "--threads":
+				threads = getNumber(args, ++i);
+				break;
+			case "--report":
+				report = true;
+				break;
+			case "--progress":
+				progress = true;
+				break;
+			case "--search":
+				query = getValue(args, ++i);
+				break;
+			case "--refetch":
+				refetch = getValue(args, ++i);
+				break;
+			case "--metrics":
+				metricsFile = Paths.get(getValue(args, ++i));
+				break;
 			default:
-				System.out.println("Invalid argument.");
-				System.exit(1);
+				invalidArgument();
 				break;
 			}
 		}
 
+		if (report) {
+			System.exit(handleReport(serviceDir));
+		}
+
+		if (query != null) {
+			System.exit(handleSearch(query));
+		}
+
+		if (refetch != null) {
+			System.exit(handleRefetch(refetch));
+		}
+
+		if (serviceDir != null) {
+			System.exit(Service.run(serviceDir, interval, threads, metricsFile));
+		}
+
 		if (sync) {
-			System.exit(handleSync());
+			final long start = System.nanoTime();
+			final int exitCode = handleSync(progress);
+			if (metricsFile != null) {
+				writeMetrics(metricsFile, start, exitCode);
+			}
+
+			System.exit(exitCode);
+		}
+	}
+
+	/**
+	 * Write the metrics text file after a run (e.g. for the node exporter textfile collector).
+	 * 
+	 * @param file Path to metrics text file
+	 * @param start Start time of the run (System.nanoTime)
+	 * @param exitCode Exit code of the run
+	 */
+	static void writeMetrics(final Path file, final long start, final int exitCode) {
+		Metrics.recordRun(start, exitCode);
+
+		try {
+			Metrics.writeTextFile(file);
+
+		} catch (IOException e) {
+			System.out.println("Could not write metrics: " + e.getMessage());
+		}
+	}
+
+	private static String getValue(final String[] args, final int i) {
+		if (i >= args.length) {
+			invalidArgument();
+		}
+
+		return args[i];
+	}
+
+	private static int getNumber(final String[] args, final int i) {
+		try {
+			return Integer.parseInt(getValue(args, i));
+
+		} catch (NumberFormatException e) {
+			invalidArgument();
+			return 0;
+		}
+	}
+
+	private static void invalidArgument() {
+		System.out.println("Invalid argument.");
+		System.exit(1);
+	}
+
+	/**
+	 * Print the sync history report of the default config or all service accounts.
+	 * 
+	 * @param serviceDir Accounts directory or null
+	 * @return Exit code (1 if a regression was flagged)
+	 */
+	private static int handleReport(final Path serviceDir) {
+		try {
+			final boolean regression = serviceDir == null
+					? Report.print(Config.getInstance().getHistoryFile(), null)
+					: Service.report(serviceDir);
+
+			return regression ? 1 : 0;
+
+		} catch (IOException e) {
+			System.out.println(e.getMessage());
+			return 4;
+		}
+	}
+
+	/**
+	 * Print the documents of the default config which match the query.
+	 * 
+	 * @param query Search query
+	 * @return Exit code (1 if nothing was found)
+	 */
+	private static int handleSearch(final String query) {
+		final String rootDir = Config.getInstance().getRootDirectory();
+		if (rootDir == null || rootDir.isEmpty()) {
+			System.out.println("Invalid root directory. Abort.");
+			return 2;
+		}
+
+		try {
+			final SearchIndex index = SearchIndex.load(Config.openTreeFile());
+
+			final long start = System.nanoTime();
+			final List<RecentDocument> results = index.search(query, SEARCH_LIMIT);
+			final long elapsed = System.nanoTime() - start;
+
+			final SimpleDateFormat dateFormat = new SimpleDateFormat("dd.MM.yy HH:mm", Locale.GERMANY);
+			for (final RecentDocument document : results) {
+				System.out.println(dateFormat.format(new Date(document.chDate * 1000L)) + "  "
+						+ (document.path == null ? document.name : Paths.get(rootDir).resolve(document.path))
+						+ "  (" + document.courseTitle + ")");
+			}
+
+			System.out.println(String.format(Locale.ROOT, "%d result(s)%s, %d documents, %.2f ms", results.size(),
+					results.size() == SEARCH_LIMIT ? " or more" : "", index.getDocumentCount(), elapsed / 1e6));
+			return results.isEmpty() ? 1 : 0;
+
+		} catch (NoSuchFileException | JsonParseException | JsonMappingException e) {
+			System.out.println("No documents found, please sync first.");
+			return 3;
+
+		} catch (IOException e) {
+			System.out.println(e.getMessage());
+			return 4;
 		}
 	}
 
-	private static int handleSync() {
-		if (!OAUTH.restoreAccessToken()) {
-			OAUTH.removeAccessToken();
+	/**
+	 * Download the missing (e.g. evicted by the disk budget) documents of a course or a single document.
+	 * 
+	 * @param query Course id, course title pattern or document id
+	 * @return Exit code (1 if nothing was downloaded)
+	 */
+	private static int handleRefetch(final String query) {
+		final OAuth oauth = OAuth.getInstance();
+		if (!oauth.restoreAccessToken()) {
+			oauth.removeAccessToken();
 			System.out.println("Invalid oauth access token. Abort.");
 			return 1;
 		}
 
-		final String rootDir = CONFIG.getRootDirectory();
+		final String rootDir = Config.getInstance().getRootDirectory();
 		if (rootDir == null || rootDir.isEmpty()) {
 			System.out.println("Invalid root directory. Abort.");
 			return 2;
 		}
 
-		if (!Main.TREE_LOCK.tryLock()) {
+		if (!AppState.TREE_LOCK.tryLock()) {
 			System.out.println("Failed to lock the tree. Abort.");
 			return 3;
 		}
 
 		try (final TreeSync tree = new TreeSync(Paths.get(rootDir))) {
-			final Path treeFile = Config.openTreeFile();
+			final int documents = tree.refetch(Config.openTreeFile(), query);
+			System.out.println("Downloaded documents: " + documents);
+			return documents > 0 ? 0 : 1;
+
+		} catch (NoSuchFileException | JsonParseException | JsonMappingException e) {
+			System.out.println("No documents found, please sync first.");
+			return 3;
+
+		} catch (IOException e) {
+			System.out.println(e.getMessage());
+			return 4;
+
+		} finally {
+			AppState.TREE_LOCK.unlock();
+		}
+	}
+
+	/**
+	 * Update and download the documents of the default config.
+	 * 
+	 * @param progress Print progress lines, even if the output is not a terminal
+	 * @return Exit code
+	 */
+	private static int handleSync(final boolean progress) {
+		final Config config = Config.getInstance();
+		final OAuth oauth = OAuth.getInstance();
+
+		if (!oauth.restoreAccessToken()) {
+			oauth.removeAccessToken();
+			System.out.println("Invalid oauth access token. Abort.");
+			return 1;
+		}
+
+		final String rootDir = config.getRootDirectory();
+		if (rootDir == null || rootDir.isEmpty()) {
+			System.out.println("Invalid root directory. Abort.");
+			return 2;
+		}
+
+		if (!AppState.TREE_LOCK.tryLock()) {
+			System.out.println("Failed to lock the tree. Abort.");
+			return 3;
+		}
+
+		/* Progress line on a terminal (redrawn 4 times per second) or every 10 seconds in a log. */
+		final boolean interactive = System.console() != null;
+		try (final TreeSync tree = new TreeSync(Paths.get(rootDir));
+				final ConsoleProgressListener listener = interactive || progress
+						? new ConsoleProgressListener(System.out, interactive, interactive ? PROGRESS_INTERVAL : PROGRESS_LOG_INTERVAL)
+						: null) {
+			tree.setProgressListener(listener);
 
-			/* Update documents. */
 			try {
-				System.out.println("Updating...");
-				tree.update(treeFile);
+				final Path treeFile = Config.openTreeFile();
 
-			} catch (NoSuchFileException | JsonParseException | JsonMappingException e) {
-				/* Invalid tree file. */
-				System.out.println("Building new tree...");
-				tree.build(treeFile);
-			}
+				/* Update documents. */
+				try {
+					System.out.println("Updating...");
+					tree.update(treeFile);
 
-			/* Download documents. */
-			System.out.println("Downloading...");
-			final int newDocuments = tree.sync(treeFile, CONFIG.isDownloadAllSemesters());
-			if (newDocuments > 0) {
-				System.out.println("New documents: " + newDocuments);
-			}
+				} catch (NoSuchFileException | JsonParseException | JsonMappingException e) {
+					/* Invalid tree file. */
+					System.out.println("Building new tree...");
+					tree.build(treeFile);
+				}
 
-			System.out.println("Done.");
-			return 0;
+				/* Download documents. */
+				System.out.println("Downloading...");
+				final int newDocuments = tree.sync(treeFile, config.isDownloadAllSemesters());
+				if (newDocuments > 0) {
+					System.out.println("New documents: " + newDocuments);
+				}
+
+				History.record(tree, "cli", false);
+				System.out.println("Done.");
+				return 0;
+
+			} catch (IOException e) {
+				History.record(tree, "cli", true);
+				throw e;
+			}
 
 		} catch (IOException e) {
 			System.out.println(e.getMessage());
 			return 4;
 
 		} finally {
-			Main.TREE_LOCK.unlock();
+			AppState.TREE_LOCK.unlock();
 		}
 	}
 
@@ -0,0 +1,142 @@
+package de.uni.hannover.studip.sync.utils;
+
+import java.io.PrintStream;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import de.uni.hannover.studip.sync.models.ProgressListener;
+import de.uni.hannover.studip.sync.models.SyncProgress;
+
+/**
+ * Cli progress line (jobs, bytes, throughput and eta).
+ *
+ * The progress is sampled once per interval by a daemon thread. On a terminal the
+ * line is redrawn in place, otherwise (e.g. redirected to a log) one line is printed per interval.
+ *
+ * @author Lennart Glauer
+ * @notice Thread safe
+ */
+public class ConsoleProgressListener implements ProgressListener, AutoCloseable {
+
+	private static final double MB = 1024.0 * 1024.0;
+
+	/**
+	 * Maximum length of the current item (the line must not wrap on a terminal).
+	 */
+	private static final int MAX_ITEM_LENGTH = 40;
+
+	/**
+	 * Output stream.
+	 */
+	private final PrintStream out;
+
+	/**
+	 * Redraw the line in place (terminal).
+	 */
+	private final boolean interactive;
+
+	/**
+	 * Sampling thread.
+	 */
+	private final ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		final Thread thread = new Thread(runnable, "progress");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	/**
+	 * Progress of the current phase or null.
+	 */
+	private SyncProgress progress;
+
+	/**
+	 * Length of the last in place line, 0 if the line is complete.
+	 */
+	private int lineLength;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param out Output stream
+	 * @param interactive Redraw the line in place
+	 * @param interval Sampling interval in milliseconds
+	 */
+	public ConsoleProgressListener(final PrintStream out, final boolean interactive, final long interval) {
+		this.out = out;
+		this.interactive = interactive;
+		sampler.scheduleAtFixedRate(this::sample, interval, interval, TimeUnit.MILLISECONDS);
+	}
+
+	@Override
+	public synchronized void started(final SyncProgress progress) {
+		this.progress = progress;
+	}
+
+	@Override
+	public synchronized void finished(final SyncProgress progress) {
+		print(progress.snapshot());
+		if (lineLength > 0) {
+			out.println();
+			lineLength = 0;
+		}
+
+		this.progress = null;
+	}
+
+	private synchronized void sample() {
+		if (progress != null) {
+			final SyncProgress.Snapshot snapshot = progress.snapshot();
+			if (!snapshot.done) {
+				print(snapshot);
+			}
+		}
+	}
+
+	private void print(final SyncProgress.Snapshot snapshot) {
+		final StringBuilder line = new StringBuilder(120);
+		line.append(String.format(Locale.ROOT, "%s: %d/%d jobs", snapshot.phase, snapshot.jobsDone, snapshot.jobsTotal));
+
+		if (snapshot.bytesTotal > 0) {
+			line.append(String.format(Locale.ROOT, ", %.1f/%.1f MB, %.1f MB/s",
+					snapshot.bytesDone / MB, snapshot.bytesTotal / MB, snapshot.getBytesPerSecond() / MB));
+		}
+
+		final long eta = snapshot.getEtaSeconds();
+		if (!snapshot.done && eta >= 0) {
+			line.append(String.format(Locale.ROOT, ", eta %d:%02d", eta / 60, eta % 60));
+		}
+
+		if (!snapshot.done && snapshot.current != null) {
+			line.append(", ").append(snapshot.current.length() > MAX_ITEM_LENGTH
+					? snapshot.current.substring(0, MAX_ITEM_LENGTH - 3) + "..."
+					: snapshot.current);
+		}
+
+		if (interactive) {
+			/* Overwrite the rest of the previous line. */
+			final int length = line.length();
+			for (int i = length; i < lineLength; i++) {
+				line.append(' ');
+			}
+
+			out.print('\r');
+			out.print(line);
+			out.flush();
+			lineLength = length;
+
+		} else {
+			out.println(line);
+		}
+	}
+
+	/**
+	 * Stop the sampling thread.
+	 */
+	@Override
+	public void close() {
+		sampler.shutdownNow();
+	}
+
+}
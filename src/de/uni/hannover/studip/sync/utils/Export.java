@@ -1,31 +1,169 @@
 package de.uni.hannover.studip.sync.utils;
 
+import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.FileSystemException;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.StandardCopyOption;
-
-import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import de.uni.hannover.studip.sync.datamodel.CourseTreeNode;
 import de.uni.hannover.studip.sync.datamodel.SemesterTreeNode;
 import de.uni.hannover.studip.sync.datamodel.SemestersTreeNode;
 import de.uni.hannover.studip.sync.models.Config;
+import de.uni.hannover.studip.sync.models.LectureIndex;
 import de.uni.hannover.studip.sync.models.PathBuilder;
+import de.uni.hannover.studip.sync.models.TreeBuilder;
 
 /**
  * Export helper.
- * 
+ *
+ * Exports are incremental: files with the same size and modification time
+ * as the last export are skipped. Courses are exported in parallel.
+ * Zip exports stream the same folder structure into one archive.
+ *
  * @author Lennart Glauer
  *
  */
 public final class Export {
 
-	private static final Config CONFIG = Config.getInstance();
-	private static final ObjectMapper MAPPER = Config.getMapper();
+	private static final Logger LOG = Logger.getLogger(Logger.GLOBAL_LOGGER_NAME);
+
+	/**
+	 * Maximum number of parallel course exports.
+	 */
+	private static final int MAX_THREADS = 4;
+
+	/**
+	 * Export folder structure.
+	 */
+	private static final String MAT_TEMPLATE = ":lecture/:sem/:type";
+
+	/**
+	 * Files up to this size are read ahead for the zip export, larger files are streamed.
+	 */
+	private static final int MAX_BUFFERED_FILE_SIZE = 8 * 1024 * 1024;
+
+	/**
+	 * Maximum bytes read ahead for the zip export.
+	 */
+	private static final long MAX_BUFFERED_BYTES = 64L * 1024 * 1024;
+
+	/**
+	 * Zip output buffer size.
+	 */
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * Already compressed formats (stored in zip archives).
+	 */
+	private static final Set<String> COMPRESSED_EXTENSIONS = new HashSet<String>(Arrays.asList(
+			"pdf", "zip", "gz", "tgz", "bz2", "xz", "7z", "rar", "jar",
+			"docx", "xlsx", "pptx", "odt", "ods", "odp",
+			"jpg", "jpeg", "png", "gif", "webp",
+			"mp3", "m4a", "ogg", "mp4", "m4v", "mkv", "avi", "mov", "webm", "flv", "wmv"));
+
+	/**
+	 * Modification time precision of the export file system (ms, e.g. 2 seconds on fat usb sticks).
+	 */
+	private static final long MTIME_PRECISION = 2000;
+
+	/**
+	 * Export mode.
+	 */
+	public enum Mode {
+		/**
+		 * Copy all files.
+		 */
+		COPY,
+
+		/**
+		 * Create hard links (no extra disk space), copy if the export directory is on another file system.
+		 */
+		LINK
+	}
+
+	/**
+	 * Export statistics.
+	 *
+	 * @notice Thread safe
+	 */
+	public static final class Stats {
+		private final LongAdder copied = new LongAdder();
+		private final LongAdder linked = new LongAdder();
+		private final LongAdder skipped = new LongAdder();
+		private final LongAdder bytes = new LongAdder();
+
+		/**
+		 * The export directory doesn't support hard links.
+		 */
+		private volatile boolean linkUnsupported;
+
+		/**
+		 * Get number of copied files.
+		 *
+		 * @return
+		 */
+		public long getCopied() {
+			return copied.sum();
+		}
+
+		/**
+		 * Get number of linked files.
+		 *
+		 * @return
+		 */
+		public long getLinked() {
+			return linked.sum();
+		}
+
+		/**
+		 * Get number of unchanged files.
+		 *
+		 * @return
+		 */
+		public long getSkipped() {
+			return skipped.sum();
+		}
+
+		/**
+		 * Get number of copied bytes.
+		 *
+		 * @return
+		 */
+		public long getBytes() {
+			return bytes.sum();
+		}
+
+		@Override
+		public String toString() {
+			return getCopied() + " copied (" + getBytes() / (1024 * 1024) + " MB), " + getLinked() + " linked, " + getSkipped() + " unchanged";
+		}
+	}
 
 	private Export() {
 		// Utility class.
@@ -33,12 +171,14 @@ public final class Export {
 
 	/**
 	 * Create a deep copy of a directory.
-	 * 
+	 *
 	 * @param source
 	 * @param destination
+	 * @param mode Copy or link files
+	 * @param stats Export statistics
 	 * @throws IOException
 	 */
-	private static void deepCopy(final Path source, final Path destination) throws IOException {
+	private static void deepCopy(final Path source, final Path destination, final Mode mode, final Stats stats) throws IOException {
 		Files.walkFileTree(source, new SimpleFileVisitor<Path>() {
 			@Override
 			public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attrs) throws IOException {
@@ -52,48 +192,364 @@ public final class Export {
 
 			@Override
 			public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) throws IOException {
-				final Path destFile = destination.resolve(source.relativize(file));
-
-				Files.copy(file, destFile, StandardCopyOption.REPLACE_EXISTING);
+				exportFile(file, attrs, destination.resolve(source.relativize(file)), mode, stats);
 
 				return FileVisitResult.CONTINUE;
 			}
 		});
 	}
 
+	/**
+	 * Copy or link a file, unless it is unchanged since the last export.
+	 *
+	 * @param file Source file
+	 * @param attrs Source file attributes
+	 * @param destFile Destination file
+	 * @param mode Copy or link
+	 * @param stats Export statistics
+	 * @throws IOException
+	 */
+	private static void exportFile(final Path file, final BasicFileAttributes attrs, final Path destFile, final Mode mode, final Stats stats) throws IOException {
+		BasicFileAttributes destAttrs;
+		try {
+			destAttrs = Files.readAttributes(destFile, BasicFileAttributes.class);
+
+		} catch (NoSuchFileException e) {
+			destAttrs = null;
+		}
+
+		if (destAttrs != null) {
+			/* Hard link to the same file or copy (also in link mode without hard link support) with the same size and modification time. */
+			if (attrs.fileKey() != null && attrs.fileKey().equals(destAttrs.fileKey())
+					|| (mode == Mode.COPY || stats.linkUnsupported) && attrs.size() == destAttrs.size()
+							&& Math.abs(attrs.lastModifiedTime().toMillis() - destAttrs.lastModifiedTime().toMillis()) < MTIME_PRECISION) {
+				stats.skipped.increment();
+				return;
+			}
+
+			Files.delete(destFile);
+		}
+
+		if (mode == Mode.LINK && !stats.linkUnsupported) {
+			try {
+				Files.createLink(destFile, file);
+				stats.linked.increment();
+				return;
+
+			} catch (UnsupportedOperationException | FileSystemException e) {
+				/* Different file system or no hard link support, copy all remaining files. */
+				stats.linkUnsupported = true;
+				if (LOG.isLoggable(Level.WARNING)) {
+					LOG.warning("Hard links not supported, copying files: " + e.getMessage());
+				}
+			}
+		}
+
+		/* Keep the modification time to detect unchanged files on the next export. */
+		Files.copy(file, destFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+		stats.copied.increment();
+		stats.bytes.add(attrs.size());
+	}
+
+	/**
+	 * Try to hard link a file from the source into the export directory once,
+	 * so existing copies are not deleted and copied again if hard links are not supported.
+	 *
+	 * @param rootDirectory Source directory
+	 * @param exportDirectory Export directory
+	 * @param stats Export statistics
+	 * @throws IOException
+	 */
+	private static void probeLinks(final Path rootDirectory, final Path exportDirectory, final Stats stats) throws IOException {
+		final Path file = Files.createTempFile(rootDirectory, ".export", ".tmp");
+		final Path link = exportDirectory.resolve(file.getFileName());
+
+		try {
+			Files.createLink(link, file);
+
+		} catch (UnsupportedOperationException | FileSystemException e) {
+			/* Different file system or no hard link support. */
+			stats.linkUnsupported = true;
+			if (LOG.isLoggable(Level.WARNING)) {
+				LOG.warning("Hard links not supported, copying files: " + e.getMessage());
+			}
+
+		} finally {
+			Files.deleteIfExists(link);
+			Files.delete(file);
+		}
+	}
+
 	/**
 	 * Export Materialsammlung.
-	 * 
+	 *
 	 * @param rootDirectory
 	 * @param exportDirectory
+	 * @param mode Copy or link files
+	 * @return Export statistics
 	 * @throws IOException
 	 */
-	public static void exportMat(final Path rootDirectory, final Path exportDirectory) throws IOException {
-		final String folderStructure = CONFIG.getFolderStructure();
+	public static Stats exportMat(final Path rootDirectory, final Path exportDirectory, final Mode mode) throws IOException {
+		final Map<String, List<Path>> courses = collectCourses(rootDirectory, true);
+
+		final Stats stats = new Stats();
+		if (mode == Mode.LINK) {
+			Files.createDirectories(exportDirectory);
+			probeLinks(rootDirectory, exportDirectory, stats);
+		}
+
+		final ExecutorService threadPool = Executors.newFixedThreadPool(Math.max(1, Math.min(MAX_THREADS, courses.size())));
+
+		try {
+			final List<Future<Void>> futures = new ArrayList<Future<Void>>(courses.size());
+			for (final Map.Entry<String, List<Path>> entry : courses.entrySet()) {
+				futures.add(threadPool.submit(() -> {
+					final Path exportCourseDirectory = exportDirectory.resolve(entry.getKey());
+					if (!Files.isDirectory(exportCourseDirectory)) {
+						Files.createDirectories(exportCourseDirectory);
+					}
 
+					for (final Path courseDirectory : entry.getValue()) {
+						deepCopy(courseDirectory, exportCourseDirectory, mode, stats);
+					}
+
+					return null;
+				}));
+			}
+
+			for (final Future<Void> future : futures) {
+				future.get();
+			}
+
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Export interrupted.", e);
+
+		} catch (ExecutionException e) {
+			throw toIOException(e);
+
+		} finally {
+			threadPool.shutdownNow();
+		}
+
+		if (LOG.isLoggable(Level.INFO)) {
+			LOG.info("Export: " + stats);
+		}
+
+		return stats;
+	}
+
+	/**
+	 * Export Materialsammlung as zip archive.
+	 *
+	 * The archive is written sequentially by the calling thread, while the reader threads read ahead
+	 * small files (bounded by MAX_BUFFERED_BYTES). Larger files are streamed from disk by the writer.
+	 * Already compressed formats are stored, all other files are deflated.
+	 *
+	 * @param rootDirectory
+	 * @param zipFile Path to zip file (replaced)
+	 * @param allSemesters If true documents from all semesters will be exported, otherwise only from current semester
+	 * @return Export statistics
+	 * @throws IOException
+	 */
+	public static Stats exportZip(final Path rootDirectory, final Path zipFile, final boolean allSemesters) throws IOException {
+		final Map<String, List<Path>> courses = collectCourses(rootDirectory, allSemesters);
+
+		/* Entries in export order, the first file of a name wins (courses may share a directory). */
+		final List<ZipItem> items = new ArrayList<ZipItem>();
+		final Set<String> names = new HashSet<String>();
+
+		for (final Map.Entry<String, List<Path>> entry : courses.entrySet()) {
+			for (final Path courseDirectory : entry.getValue()) {
+				Files.walkFileTree(courseDirectory, new SimpleFileVisitor<Path>() {
+					@Override
+					public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) throws IOException {
+						final StringBuilder name = new StringBuilder(entry.getKey());
+						for (final Path part : courseDirectory.relativize(file)) {
+							if (name.length() > entry.getKey().length()) {
+								name.append('/');
+							}
+							name.append(part.toString());
+						}
+
+						if (names.add(name.toString())) {
+							items.add(new ZipItem(name.toString(), file, attrs));
+						}
+
+						return FileVisitResult.CONTINUE;
+					}
+				});
+			}
+		}
+
+		final Stats stats = new Stats();
+		final ExecutorService threadPool = Executors.newFixedThreadPool(MAX_THREADS);
+		boolean success = false;
+
+		try {
+			try (final ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(Files.newOutputStream(zipFile), BUFFER_SIZE))) {
+				/* Read ahead futures by item index. */
+				final List<Future<ZipData>> readAhead = new ArrayList<Future<ZipData>>(Collections.<Future<ZipData>>nCopies(items.size(), null));
+				int next = 0;
+				long buffered = 0;
+
+				for (int i = 0; i < items.size(); i++) {
+					for (; next < items.size(); next++) {
+						final ZipItem item = items.get(next);
+						final long cost = item.size <= MAX_BUFFERED_FILE_SIZE ? item.size : 0;
+						if (next > i && buffered + cost > MAX_BUFFERED_BYTES) {
+							break;
+						}
+
+						if (cost > 0) {
+							readAhead.set(next, threadPool.submit(() -> ZipData.read(item.file)));
+							buffered += cost;
+						}
+					}
+
+					final ZipItem item = items.get(i);
+					final Future<ZipData> future = readAhead.set(i, null);
+					final ZipEntry entry = new ZipEntry(item.name);
+					entry.setTime(item.lastModified);
+
+					if (future != null) {
+						final ZipData data = future.get();
+						buffered -= item.size;
+
+						zip.setLevel(Deflater.DEFAULT_COMPRESSION);
+						if (isCompressed(item.name)) {
+							entry.setMethod(ZipEntry.STORED);
+							entry.setSize(data.bytes.length);
+							entry.setCompressedSize(data.bytes.length);
+							entry.setCrc(data.crc);
+						}
+
+						zip.putNextEntry(entry);
+						zip.write(data.bytes);
+						stats.bytes.add(data.bytes.length);
+
+					} else {
+						/* Stored entries need the crc in advance, large files are deflated without compression (single read). */
+						zip.setLevel(isCompressed(item.name) ? Deflater.NO_COMPRESSION : Deflater.DEFAULT_COMPRESSION);
+						zip.putNextEntry(entry);
+						stats.bytes.add(Files.copy(item.file, zip));
+					}
+
+					zip.closeEntry();
+					stats.copied.increment();
+				}
+			}
+
+			/* The central directory is written on close, the archive is only complete afterwards. */
+			success = true;
+
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Export interrupted.", e);
+
+		} catch (ExecutionException e) {
+			throw toIOException(e);
+
+		} finally {
+			threadPool.shutdownNow();
+			if (!success) {
+				Files.deleteIfExists(zipFile);
+			}
+		}
+
+		if (LOG.isLoggable(Level.INFO)) {
+			LOG.info("Zip export: " + stats + ", " + Files.size(zipFile) / (1024 * 1024) + " MB archive");
+		}
+
+		return stats;
+	}
+
+	/**
+	 * Read the tree and group the course directories by their export directory.
+	 * Courses with the same export directory are exported by the same task.
+	 *
+	 * @param rootDirectory
+	 * @param allSemesters If false only courses of the current semester
+	 * @return Course directories by relative export directory (e.g. "Analysis/10ss/vorlesung/")
+	 * @throws IOException
+	 */
+	private static Map<String, List<Path>> collectCourses(final Path rootDirectory, final boolean allSemesters) throws IOException {
 		/* Read existing tree. */
-		final SemestersTreeNode rootNode = MAPPER.readerFor(SemestersTreeNode.class)
-				.readValue(Files.newInputStream(Config.openTreeFile()));
+		final SemestersTreeNode rootNode = TreeBuilder.readTree(Config.openTreeFile());
+		PathBuilder.updatePaths(rootNode);
+
+		final Map<String, List<Path>> courses = new LinkedHashMap<String, List<Path>>();
+		final long now = System.currentTimeMillis() / 1000L;
 
 		for (final SemesterTreeNode semester : rootNode.semesters) {
+			if (!allSemesters && (now <= semester.begin || now >= semester.end)) {
+				continue;
+			}
+
+			final LectureIndex lectures = new LectureIndex(semester);
+
 			for (final CourseTreeNode course : semester.courses) {
 				if (course.type == 99) {
 					// Studiengruppe.
 					continue;
 				}
 
-				final Path courseDirectory = PathBuilder.toPath(folderStructure, rootDirectory, semester, course);
+				final Path courseDirectory = rootDirectory.resolve(course.path);
 				if (!Files.isDirectory(courseDirectory)) {
 					continue;
 				}
 
-				final Path exportCourseDirectory = PathBuilder.toPath(":lecture/:sem/:type", exportDirectory, semester, course);
-				if (!Files.isDirectory(exportCourseDirectory)) {
-					Files.createDirectories(exportCourseDirectory);
-				}
-
-				deepCopy(courseDirectory, exportCourseDirectory);
+				final String exportCourseDirectory = PathBuilder.toString(MAT_TEMPLATE, semester, course, lectures);
+				courses.computeIfAbsent(exportCourseDirectory, key -> new ArrayList<Path>()).add(courseDirectory);
 			}
 		}
+
+		return courses;
+	}
+
+	private static IOException toIOException(final ExecutionException e) {
+		return e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+	}
+
+	private static boolean isCompressed(final String name) {
+		final int dot = name.lastIndexOf('.');
+		return dot >= 0 && COMPRESSED_EXTENSIONS.contains(name.substring(dot + 1).toLowerCase(Locale.ROOT));
+	}
+
+	/**
+	 * Zip entry to write.
+	 */
+	private static final class ZipItem {
+		private final String name;
+		private final Path file;
+		private final long size;
+		private final long lastModified;
+
+		ZipItem(final String name, final Path file, final BasicFileAttributes attrs) {
+			this.name = name;
+			this.file = file;
+			this.size = attrs.size();
+			this.lastModified = attrs.lastModifiedTime().toMillis();
+		}
+	}
+
+	/**
+	 * File content read ahead.
+	 */
+	private static final class ZipData {
+		private final byte[] bytes;
+		private final long crc;
+
+		private ZipData(final byte[] bytes, final long crc) {
+			this.bytes = bytes;
+			this.crc = crc;
+		}
+
+		static ZipData read(final Path file) throws IOException {
+			final byte[] bytes = Files.readAllBytes(file);
+			final CRC32 crc = new CRC32();
+			crc.update(bytes);
+			return new ZipData(bytes, crc.getValue());
+		}
 	}
 }
@@ -17,8 +17,6 @@ import de.uni.hannover.studip.sync.models.Config;
  */
 public final class FileBrowser {
 
-	private static final Config CONFIG = Config.getInstance();
-
 	private FileBrowser() {
 		// Utility class.
 	}
@@ -119,7 +117,7 @@ public final class FileBrowser {
 	 * @return New filename
 	 */
 	public static String removeIllegalCharacters(final String fileName) {
-		return removeIllegalCharacters(fileName, CONFIG.getReplaceWhitespaces());
+		return removeIllegalCharacters(fileName, Config.getInstance().getReplaceWhitespaces());
 	}
 
 	/**
@@ -5,6 +5,7 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Path;
+import java.util.function.LongConsumer;
 
 /**
  * File download utility class.
@@ -28,6 +29,18 @@ public final class FileDownload {
 	 * @throws IOException
 	 */
 	public static long get(final InputStream is, final Path file) throws IOException {
+		return get(is, file, null);
+	}
+
+	/**
+	 * Write inputstream to file and report the written bytes.
+	 * 
+	 * @param is Response input stream
+	 * @param file Path to file destination
+	 * @param progress Called with the number of bytes after each write or null
+	 * @throws IOException
+	 */
+	public static long get(final InputStream is, final Path file, final LongConsumer progress) throws IOException {
 		try (final BufferedInputStream in = new BufferedInputStream(is); final FileOutputStream out = new FileOutputStream(file.toFile())) {
 			final byte buffer[] = new byte[BUFFER_SIZE];
 			long bytesWritten = 0;
@@ -36,6 +49,10 @@ public final class FileDownload {
 			while ((count = in.read(buffer, 0, BUFFER_SIZE)) > 0) {
 				out.write(buffer, 0, count);
 				bytesWritten += count;
+
+				if (progress != null) {
+					progress.accept(count);
+				}
 			}
 
 			return bytesWritten;
@@ -0,0 +1,220 @@
+package de.uni.hannover.studip.sync.utils;
+
+import java.util.Arrays;
+
+/**
+ * Hash map with 128 bit keys (e.g. packed Stud.IP ids).
+ * 
+ * Open addressing with linear probing, the keys are stored in a primitive long array,
+ * so there is no boxing and no entry object per mapping.
+ * 
+ * @author Lennart Glauer
+ * @notice Not thread safe
+ * @param <V> Value type
+ */
+public final class IdMap<V> {
+
+	private static final int MIN_CAPACITY = 16;
+
+	/**
+	 * Keys, two longs (high, low) per slot.
+	 */
+	private long[] keys;
+
+	/**
+	 * Values, null marks an empty slot.
+	 */
+	private Object[] values;
+
+	/**
+	 * Number of mappings.
+	 */
+	private int size;
+
+	/**
+	 * Capacity - 1 (capacity is a power of two).
+	 */
+	private int mask;
+
+	public IdMap() {
+		this(MIN_CAPACITY);
+	}
+
+	/**
+	 * @param expectedSize Expected number of mappings
+	 */
+	public IdMap(final int expectedSize) {
+		allocate(capacityFor(expectedSize));
+	}
+
+	/**
+	 * Get value.
+	 * 
+	 * @param high Key high bits
+	 * @param low Key low bits
+	 * @return Value or null if the key does not exist
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(final long high, final long low) {
+		final int slot = find(high, low);
+		return slot < 0 ? null : (V) values[slot];
+	}
+
+	/**
+	 * Put value.
+	 * 
+	 * @param high Key high bits
+	 * @param low Key low bits
+	 * @param value Value (not null)
+	 * @return Previous value or null
+	 */
+	@SuppressWarnings("unchecked")
+	public V put(final long high, final long low, final V value) {
+		if (value == null) {
+			throw new IllegalArgumentException("Value must not be null!");
+		}
+
+		int slot = hash(high, low) & mask;
+		while (values[slot] != null) {
+			if (keys[2 * slot] == high && keys[2 * slot + 1] == low) {
+				final V previous = (V) values[slot];
+				values[slot] = value;
+				return previous;
+			}
+
+			slot = (slot + 1) & mask;
+		}
+
+		keys[2 * slot] = high;
+		keys[2 * slot + 1] = low;
+		values[slot] = value;
+
+		/* Max load factor 0.5. */
+		if (++size > values.length / 2) {
+			resize(values.length * 2);
+		}
+
+		return null;
+	}
+
+	/**
+	 * Remove value.
+	 * 
+	 * @param high Key high bits
+	 * @param low Key low bits
+	 * @return Removed value or null if the key does not exist
+	 */
+	@SuppressWarnings("unchecked")
+	public V remove(final long high, final long low) {
+		int slot = find(high, low);
+		if (slot < 0) {
+			return null;
+		}
+
+		final V removed = (V) values[slot];
+		values[slot] = null;
+		size--;
+
+		/* Shift following entries back, so the probe sequences stay intact. */
+		int next = slot;
+		while (true) {
+			next = (next + 1) & mask;
+			if (values[next] == null) {
+				break;
+			}
+
+			final int home = hash(keys[2 * next], keys[2 * next + 1]) & mask;
+			final boolean reachable = slot <= next
+					? slot < home && home <= next
+					: slot < home || home <= next;
+
+			if (!reachable) {
+				keys[2 * slot] = keys[2 * next];
+				keys[2 * slot + 1] = keys[2 * next + 1];
+				values[slot] = values[next];
+				values[next] = null;
+				slot = next;
+			}
+		}
+
+		return removed;
+	}
+
+	/**
+	 * Get number of mappings.
+	 * 
+	 * @return Size
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Remove all mappings.
+	 */
+	public void clear() {
+		Arrays.fill(values, null);
+		size = 0;
+	}
+
+	/**
+	 * Find slot of key.
+	 * 
+	 * @return Slot or -1 if the key does not exist
+	 */
+	private int find(final long high, final long low) {
+		int slot = hash(high, low) & mask;
+		while (values[slot] != null) {
+			if (keys[2 * slot] == high && keys[2 * slot + 1] == low) {
+				return slot;
+			}
+
+			slot = (slot + 1) & mask;
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Stud.IP ids are MD5 hashes, so the bits are already well distributed.
+	 */
+	private static int hash(final long high, final long low) {
+		final long bits = high ^ low;
+		return (int) (bits ^ (bits >>> 32));
+	}
+
+	private static int capacityFor(final int expectedSize) {
+		int capacity = MIN_CAPACITY;
+		while (capacity < expectedSize * 2) {
+			capacity <<= 1;
+		}
+
+		return capacity;
+	}
+
+	private void allocate(final int capacity) {
+		keys = new long[2 * capacity];
+		values = new Object[capacity];
+		mask = capacity - 1;
+	}
+
+	private void resize(final int capacity) {
+		final long[] oldKeys = keys;
+		final Object[] oldValues = values;
+
+		allocate(capacity);
+
+		for (int i = 0; i < oldValues.length; i++) {
+			if (oldValues[i] != null) {
+				int slot = hash(oldKeys[2 * i], oldKeys[2 * i + 1]) & mask;
+				while (values[slot] != null) {
+					slot = (slot + 1) & mask;
+				}
+
+				keys[2 * slot] = oldKeys[2 * i];
+				keys[2 * slot + 1] = oldKeys[2 * i + 1];
+				values[slot] = oldValues[i];
+			}
+		}
+	}
+}
@@ -0,0 +1,185 @@
+package de.uni.hannover.studip.sync.utils;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+import de.uni.hannover.studip.sync.datamodel.RunRecord;
+import de.uni.hannover.studip.sync.models.History;
+
+/**
+ * Sync run history report.
+ *
+ * Prints the most recent runs and compares the last run with the median
+ * of the previous successful runs to flag performance regressions.
+ *
+ * @author Lennart Glauer
+ */
+public final class Report {
+
+	/**
+	 * Number of runs in the table.
+	 */
+	private static final int SHOW_RUNS = 15;
+
+	/**
+	 * Number of previous runs used as baseline.
+	 */
+	private static final int BASELINE_RUNS = 20;
+
+	/**
+	 * A value is flagged if it is worse than the baseline median by this factor.
+	 */
+	private static final double FACTOR = 2.0;
+
+	/**
+	 * Ignore phase slowdowns below this difference (seconds), short phases are noisy.
+	 */
+	private static final double MIN_PHASE_DELTA = 1.0;
+
+	/**
+	 * Ignore request count increases below this difference.
+	 */
+	private static final long MIN_REQUEST_DELTA = 50;
+
+	private static final String[] PHASES = {"update", "build", "sync"};
+
+	private Report() {
+		// Utility class.
+	}
+
+	/**
+	 * Print history report.
+	 *
+	 * @param historyFile Path to history file
+	 * @param title Report title (e.g. account name) or null
+	 * @return True if a regression was flagged
+	 * @throws IOException
+	 */
+	public static boolean print(final Path historyFile, final String title) throws IOException {
+		final List<RunRecord> records = History.read(historyFile, BASELINE_RUNS + 1);
+
+		if (title != null) {
+			System.out.println("[" + title + "]");
+		}
+
+		if (records.isEmpty()) {
+			System.out.println("No sync history.");
+			return false;
+		}
+
+		final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm", Locale.ROOT);
+		System.out.println(String.format(Locale.ROOT, "%-16s %-7s %-7s %8s %8s %8s %8s %7s %9s %8s %6s",
+				"Time", "Mode", "Status", "Update", "Build", "Sync", "Requests", "Files", "MB", "MB/s", "Errors"));
+
+		for (final RunRecord record : records.subList(Math.max(0, records.size() - SHOW_RUNS), records.size())) {
+			System.out.println(String.format(Locale.ROOT, "%-16s %-7s %-7s %8s %8s %8s %8d %7d %9.1f %8.2f %6d",
+					dateFormat.format(new Date(record.time * 1000L)), record.mode, record.status,
+					formatPhase(record, "update"), formatPhase(record, "build"), formatPhase(record, "sync"),
+					requests(record), record.files, record.bytes / (1024.0 * 1024.0),
+					record.throughput / (1024 * 1024), record.errors));
+		}
+
+		return printRegressions(records);
+	}
+
+	/**
+	 * Compare the last run with the median of the previous successful runs.
+	 *
+	 * @return True if a regression was flagged
+	 */
+	private static boolean printRegressions(final List<RunRecord> records) {
+		final RunRecord last = records.get(records.size() - 1);
+		final List<RunRecord> baseline = new ArrayList<RunRecord>();
+		for (final RunRecord record : records.subList(0, records.size() - 1)) {
+			if ("ok".equals(record.status)) {
+				baseline.add(record);
+			}
+		}
+
+		if (baseline.isEmpty()) {
+			return false;
+		}
+
+		final List<String> regressions = new ArrayList<String>();
+
+		for (final String phase : PHASES) {
+			final Double value = last.phases.get(phase);
+			final double median = median(baseline, record -> record.phases.get(phase));
+			if (value != null && median > 0 && value >= FACTOR * median && value - median >= MIN_PHASE_DELTA) {
+				regressions.add(String.format(Locale.ROOT, "%s took %.1fs (%.1fx the median of %.1fs)", phase, value, value / median, median));
+			}
+		}
+
+		final long lastRequests = requests(last);
+		final double medianRequests = median(baseline, record -> (double) requests(record));
+		if (medianRequests > 0 && lastRequests >= FACTOR * medianRequests && lastRequests - medianRequests >= MIN_REQUEST_DELTA) {
+			regressions.add(String.format(Locale.ROOT, "%d requests (%.1fx the median of %.0f)", lastRequests, lastRequests / medianRequests, medianRequests));
+		}
+
+		final double medianThroughput = median(baseline, record -> record.files > 0 ? record.throughput : null);
+		if (last.files > 0 && medianThroughput > 0 && last.throughput * FACTOR <= medianThroughput) {
+			regressions.add(String.format(Locale.ROOT, "download throughput %.2f MB/s (median %.2f MB/s)",
+					last.throughput / (1024 * 1024), medianThroughput / (1024 * 1024)));
+		}
+
+		if (last.errors > 0 && median(baseline, record -> (double) record.errors) == 0) {
+			regressions.add(last.errors + " errors (median 0)");
+		}
+
+		if (!"ok".equals(last.status)) {
+			regressions.add("last run " + last.status);
+		}
+
+		for (final String regression : regressions) {
+			System.out.println("Regression: " + regression);
+		}
+
+		return !regressions.isEmpty();
+	}
+
+	@FunctionalInterface
+	private interface Value {
+		Double get(RunRecord record);
+	}
+
+	/**
+	 * Median of the non-null values, 0 if there are none.
+	 */
+	private static double median(final List<RunRecord> records, final Value value) {
+		final double[] values = new double[records.size()];
+		int count = 0;
+		for (final RunRecord record : records) {
+			final Double v = value.get(record);
+			if (v != null) {
+				values[count++] = v;
+			}
+		}
+
+		if (count == 0) {
+			return 0;
+		}
+
+		Arrays.sort(values, 0, count);
+		return count % 2 == 1 ? values[count / 2] : (values[count / 2 - 1] + values[count / 2]) / 2;
+	}
+
+	private static long requests(final RunRecord record) {
+		long sum = 0;
+		for (final long count : record.requests.values()) {
+			sum += count;
+		}
+
+		return sum;
+	}
+
+	private static String formatPhase(final RunRecord record, final String phase) {
+		final Double seconds = record.phases.get(phase);
+		return seconds == null ? "-" : String.format(Locale.ROOT, "%.1fs", seconds);
+	}
+}
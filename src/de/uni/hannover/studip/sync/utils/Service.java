@@ -0,0 +1,238 @@
+package de.uni.hannover.studip.sync.utils;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.databind.JsonMappingException;
+
+import de.uni.hannover.studip.sync.AppState;
+import de.uni.hannover.studip.sync.models.Account;
+import de.uni.hannover.studip.sync.models.Config;
+import de.uni.hannover.studip.sync.models.FairScheduler;
+import de.uni.hannover.studip.sync.models.History;
+import de.uni.hannover.studip.sync.models.OAuth;
+import de.uni.hannover.studip.sync.models.SharedDownloads;
+import de.uni.hannover.studip.sync.models.TreeSync;
+
+/**
+ * Multi account sync service.
+ *
+ * Every subdirectory of the accounts directory is the config directory of one account
+ * (config.json, oauth.json and tree.json like ~/.studip-sync). All accounts share
+ * the worker threads (fair round-robin scheduling), the http keep-alive connections
+ * and downloads of identical documents.
+ *
+ * @author Lennart Glauer
+ */
+public final class Service {
+
+	private Service() {
+		// Utility class.
+	}
+
+	/**
+	 * Sync all accounts.
+	 *
+	 * @param accountsDir Accounts directory
+	 * @param interval Minutes between runs, 0 for a single run
+	 * @param threads Number of shared worker threads, 0 for default
+	 * @param metricsFile Metrics text file written after each run, may be null
+	 * @return Exit code (highest exit code of all accounts)
+	 */
+	public static int run(final Path accountsDir, final int interval, final int threads, final Path metricsFile) {
+		final List<Account> accounts;
+		try {
+			accounts = openAccounts(accountsDir);
+
+		} catch (IOException e) {
+			System.out.println(e.getMessage());
+			return 4;
+		}
+
+		if (accounts.isEmpty()) {
+			System.out.println("No accounts found. Abort.");
+			return 2;
+		}
+
+		/* Downloads are network bound, use more workers than cores. */
+		final int workers = threads > 0 ? threads : 4 * Runtime.getRuntime().availableProcessors();
+
+		/* The jdk keep-alive cache is shared by all accounts, keep enough idle connections for all workers. */
+		if (System.getProperty("http.maxConnections") == null) {
+			System.setProperty("http.maxConnections", Integer.toString(workers));
+		}
+
+		final SharedDownloads sharedDownloads = new SharedDownloads();
+		final ExecutorService coordinators = Executors.newFixedThreadPool(Math.min(accounts.size(), workers));
+
+		try (final FairScheduler scheduler = new FairScheduler(workers)) {
+			int result;
+
+			while (true) {
+				final long start = System.nanoTime();
+				final int[] results = new int[accounts.size()];
+				final List<Future<?>> futures = new ArrayList<Future<?>>(accounts.size());
+
+				for (int i = 0; i < accounts.size(); i++) {
+					final int n = i;
+					final Account account = accounts.get(i);
+					futures.add(coordinators.submit(account.bind(() -> results[n] = syncAccount(account, scheduler, sharedDownloads))));
+				}
+
+				for (final Future<?> future : futures) {
+					future.get();
+				}
+
+				/* Local files may be moved or modified until the next run. */
+				sharedDownloads.clear();
+
+				result = 0;
+				for (final int code : results) {
+					result = Math.max(result, code);
+				}
+
+				if (metricsFile != null) {
+					Cli.writeMetrics(metricsFile, start, result);
+				}
+
+				if (interval <= 0 || AppState.exitPending) {
+					return result;
+				}
+
+				System.out.println("Next run in " + interval + " minutes.");
+				Thread.sleep(TimeUnit.MINUTES.toMillis(interval));
+			}
+
+		} catch (InterruptedException | ExecutionException e) {
+			System.out.println("Service stopped.");
+			return 4;
+
+		} finally {
+			coordinators.shutdownNow();
+		}
+	}
+
+	/**
+	 * Print the sync history report of all accounts.
+	 *
+	 * @param accountsDir Accounts directory
+	 * @return True if a regression was flagged for any account
+	 * @throws IOException
+	 */
+	public static boolean report(final Path accountsDir) throws IOException {
+		boolean regression = false;
+		for (final Account account : openAccounts(accountsDir)) {
+			regression |= Report.print(account.getConfig().getHistoryFile(), account.getName());
+			System.out.println();
+		}
+
+		return regression;
+	}
+
+	/**
+	 * Open all accounts (subdirectories) of the accounts directory.
+	 *
+	 * @param accountsDir Accounts directory
+	 * @return Accounts sorted by name
+	 * @throws IOException
+	 */
+	private static List<Account> openAccounts(final Path accountsDir) throws IOException {
+		final List<Path> configDirs = new ArrayList<Path>();
+		try (final DirectoryStream<Path> stream = Files.newDirectoryStream(accountsDir)) {
+			for (final Path configDir : stream) {
+				if (Files.isDirectory(configDir)) {
+					configDirs.add(configDir);
+				}
+			}
+		}
+
+		configDirs.sort(null);
+
+		final List<Account> accounts = new ArrayList<Account>(configDirs.size());
+		for (final Path configDir : configDirs) {
+			accounts.add(new Account(configDir));
+		}
+
+		return accounts;
+	}
+
+	/**
+	 * Update and sync one account (like Cli --sync).
+	 * Must be called with the account bound to the current thread.
+	 *
+	 * @return Exit code
+	 */
+	private static int syncAccount(final Account account, final FairScheduler scheduler, final SharedDownloads sharedDownloads) {
+		final String prefix = "[" + account.getName() + "] ";
+		final Config config = account.getConfig();
+		final OAuth oauth = account.getOAuth();
+
+		if (!oauth.restoreAccessToken()) {
+			oauth.removeAccessToken();
+			System.out.println(prefix + "Invalid oauth access token. Skip.");
+			return 1;
+		}
+
+		final String rootDir = config.getRootDirectory();
+		if (rootDir == null || rootDir.isEmpty()) {
+			System.out.println(prefix + "Invalid root directory. Skip.");
+			return 2;
+		}
+
+		if (!account.getTreeLock().tryLock()) {
+			System.out.println(prefix + "Failed to lock the tree. Skip.");
+			return 3;
+		}
+
+		try (final TreeSync tree = new TreeSync(Paths.get(rootDir), scheduler.newQueue(), sharedDownloads)) {
+			try {
+				final Path treeFile = config.getTreeFile();
+
+				/* Update documents. */
+				try {
+					tree.update(treeFile);
+
+				} catch (NoSuchFileException | JsonParseException | JsonMappingException e) {
+					/* Invalid tree file. */
+					System.out.println(prefix + "Building new tree...");
+					tree.build(treeFile);
+				}
+
+				/* Download documents. */
+				final int newDocuments = tree.sync(treeFile, config.isDownloadAllSemesters());
+				History.record(tree, "service", false);
+
+				if (tree.stopPending) {
+					System.out.println(prefix + "Aborted.");
+					return 4;
+				}
+
+				System.out.println(prefix + "Done. New documents: " + newDocuments);
+				return 0;
+
+			} catch (IOException e) {
+				History.record(tree, "service", true);
+				throw e;
+			}
+
+		} catch (IOException | IllegalStateException e) {
+			System.out.println(prefix + e.getMessage());
+			return 4;
+
+		} finally {
+			account.getTreeLock().unlock();
+		}
+	}
+}
@@ -63,4 +63,36 @@ public final class SimpleAlert {
 		final Optional<ButtonType> result = alert(AlertType.CONFIRMATION, "Bestätigen", null, content);
 		return result.isPresent() ? result.get() : ButtonType.CLOSE;
 	}
+
+	/**
+	 * Let the user choose one of the options (or cancel).
+	 * 
+	 * @param content Question
+	 * @param options Button labels
+	 * @return Index of the chosen option or -1 if canceled
+	 */
+	public static int choice(final String content, final String... options) {
+		final Alert alert = new Alert(AlertType.CONFIRMATION);
+		alert.setTitle("Bestätigen");
+		alert.setHeaderText(null);
+		alert.setContentText(content);
+		alert.setResizable(true);
+
+		final ButtonType[] buttons = new ButtonType[options.length];
+		for (int i = 0; i < options.length; i++) {
+			buttons[i] = new ButtonType(options[i]);
+		}
+
+		alert.getButtonTypes().setAll(buttons);
+		alert.getButtonTypes().add(ButtonType.CANCEL);
+
+		final Optional<ButtonType> result = alert.showAndWait();
+		for (int i = 0; i < buttons.length; i++) {
+			if (result.isPresent() && result.get() == buttons[i]) {
+				return i;
+			}
+		}
+
+		return -1;
+	}
 }
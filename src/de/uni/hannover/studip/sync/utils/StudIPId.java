@@ -0,0 +1,102 @@
+package de.uni.hannover.studip.sync.utils;
+
+/**
+ * Stud.IP id utility class.
+ * 
+ * Stud.IP ids are 32 char lowercase MD5 hex strings,
+ * so they can be packed into two longs (128 bit).
+ * 
+ * @author Lennart Glauer
+ *
+ */
+public final class StudIPId {
+
+	private static final int LENGTH = 32;
+
+	private StudIPId() {
+		// Utility class.
+	}
+
+	/**
+	 * Check if the string is a valid Stud.IP id (^[a-f0-9]{32}$).
+	 * 
+	 * @param id Stud.IP id
+	 * @return True if valid
+	 */
+	public static boolean isValid(final String id) {
+		if (id == null || id.length() != LENGTH) {
+			return false;
+		}
+
+		for (int i = 0; i < LENGTH; i++) {
+			if (digit(id.charAt(i)) < 0) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Get the high 64 bit of the id.
+	 * 
+	 * @param id Valid Stud.IP id
+	 * @return High bits
+	 * @throws IllegalArgumentException If the id is invalid
+	 */
+	public static long high(final String id) {
+		return parse(id, 0);
+	}
+
+	/**
+	 * Get the low 64 bit of the id.
+	 * 
+	 * @param id Valid Stud.IP id
+	 * @return Low bits
+	 * @throws IllegalArgumentException If the id is invalid
+	 */
+	public static long low(final String id) {
+		return parse(id, LENGTH / 2);
+	}
+
+	/**
+	 * Parse 16 hex chars.
+	 * 
+	 * @param id Stud.IP id
+	 * @param offset Start offset
+	 * @return Packed bits
+	 */
+	private static long parse(final String id, final int offset) {
+		if (id.length() != LENGTH) {
+			throw new IllegalArgumentException("Invalid id!");
+		}
+
+		long bits = 0;
+		for (int i = offset; i < offset + LENGTH / 2; i++) {
+			final int digit = digit(id.charAt(i));
+			if (digit < 0) {
+				throw new IllegalArgumentException("Invalid id!");
+			}
+
+			bits = bits << 4 | digit;
+		}
+
+		return bits;
+	}
+
+	/**
+	 * Get lowercase hex digit value.
+	 * 
+	 * @param c Char
+	 * @return Digit value or -1 if invalid
+	 */
+	private static int digit(final char c) {
+		if (c >= '0' && c <= '9') {
+			return c - '0';
+		} else if (c >= 'a' && c <= 'f') {
+			return c - 'a' + 10;
+		} else {
+			return -1;
+		}
+	}
+}
@@ -0,0 +1,107 @@
+package de.uni.hannover.studip.sync.views;
+
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+import javafx.scene.control.Label;
+import javafx.scene.control.ProgressIndicator;
+import de.uni.hannover.studip.sync.models.ProgressListener;
+import de.uni.hannover.studip.sync.models.SyncProgress;
+
+/**
+ * Gui progress indicator and label.
+ *
+ * The progress is sampled by one animation timer on the gui thread,
+ * worker threads do not post any runnables.
+ *
+ * @author Lennart Glauer
+ * @notice Thread safe
+ */
+public class FxProgressListener implements ProgressListener {
+
+	/**
+	 * Label update interval (the indicator is animated each frame).
+	 */
+	private static final long LABEL_INTERVAL = 100L * 1000 * 1000;
+
+	/**
+	 * Gui progress indicator.
+	 */
+	private final ProgressIndicator progressIndicator;
+
+	/**
+	 * Gui progress label.
+	 */
+	private final Label progressLabel;
+
+	/**
+	 * Animation of the current phase (gui thread only).
+	 */
+	private AnimationTimer timer;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param progress Progress indicator
+	 * @param label Progress label
+	 */
+	public FxProgressListener(final ProgressIndicator progress, final Label label) {
+		this.progressIndicator = progress;
+		this.progressLabel = label;
+	}
+
+	/**
+	 * Start gui progress animation.
+	 */
+	@Override
+	public void started(final SyncProgress progress) {
+		Platform.runLater(() -> {
+			if (timer != null) {
+				timer.stop();
+			}
+
+			timer = new AnimationTimer() {
+				private double y;
+				private long lastLabel;
+				private String label;
+
+				@Override
+				public void handle(final long now) {
+					final SyncProgress.Snapshot snapshot = progress.snapshot();
+
+					final double x;
+					if (snapshot.done) {
+						x = 1.2;
+					} else if (snapshot.bytesTotal > 0) {
+						x = snapshot.getFraction();
+					} else {
+						/* The number of jobs grows while the tree is traversed. */
+						final long a = snapshot.jobsDone;
+						x = Math.min(0.02 * a * a, snapshot.getFraction());
+					}
+
+					if (y <= x) {
+						progressIndicator.setProgress(y += 0.1 * (x - y));
+					}
+
+					if (now - lastLabel >= LABEL_INTERVAL && snapshot.current != null && !snapshot.current.equals(label)) {
+						lastLabel = now;
+						label = snapshot.current;
+						progressLabel.setText(label);
+					}
+
+					if (y >= 1.0) {
+						progressIndicator.setProgress(1);
+						stop();
+					}
+				}
+			};
+			timer.start();
+		});
+	}
+
+	@Override
+	public void runLater(final Runnable task) {
+		Platform.runLater(task);
+	}
+
+}
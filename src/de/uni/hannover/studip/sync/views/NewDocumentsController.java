@@ -5,27 +5,35 @@ import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
 
 import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.databind.JsonMappingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 
+import de.uni.hannover.studip.sync.AppState;
 import de.uni.hannover.studip.sync.Main;
-import de.uni.hannover.studip.sync.datamodel.*;
+import de.uni.hannover.studip.sync.datamodel.NewDocumentsModel;
+import de.uni.hannover.studip.sync.datamodel.RecentDocument;
 import de.uni.hannover.studip.sync.models.Config;
-import de.uni.hannover.studip.sync.models.PathBuilder;
-import de.uni.hannover.studip.sync.oauth.StudIPApiProvider;
+import de.uni.hannover.studip.sync.models.RecentIndex;
+import de.uni.hannover.studip.sync.models.SearchIndex;
+import de.uni.hannover.studip.sync.models.TreeSync;
 import de.uni.hannover.studip.sync.utils.FileBrowser;
 import de.uni.hannover.studip.sync.utils.SimpleAlert;
 import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
+import javafx.scene.control.Button;
 import javafx.scene.control.ButtonType;
+import javafx.scene.control.Label;
 import javafx.scene.control.TableColumn;
 import javafx.scene.control.TableRow;
 import javafx.scene.control.TableView;
+import javafx.scene.control.TextField;
 import javafx.scene.control.Tooltip;
 import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.scene.input.MouseButton;
@@ -38,10 +46,31 @@ import javafx.scene.input.MouseButton;
 public class NewDocumentsController extends AbstractController {
 
 	private static final Config CONFIG = Config.getInstance();
-	private static final ObjectMapper MAPPER = Config.getMapper();
+
+	/**
+	 * Number of rows added per page.
+	 */
+	private static final int PAGE_SIZE = 200;
+
+	/**
+	 * Maximum number of search results.
+	 */
+	private static final int SEARCH_LIMIT = 500;
 
 	private final ObservableList<NewDocumentsModel> documentList = FXCollections.observableArrayList();
 
+	/**
+	 * Recency index (newest document first), set by the loader thread.
+	 */
+	private List<RecentDocument> documents = Collections.emptyList();
+
+	/**
+	 * Search index, set by the loader thread.
+	 */
+	private SearchIndex searchIndex;
+
+	private Path rootDirectory;
+
 	@FXML
 	protected TableView<NewDocumentsModel> tableView;
 
@@ -57,97 +86,135 @@ public class NewDocumentsController extends AbstractController {
 	@FXML
 	private TableColumn<NewDocumentsModel, String> semesterColumn;
 
+	@FXML
+	private Button moreButton;
+
+	@FXML
+	private TextField searchField;
+
 	/**
 	 * The initialize method is automatically invoked by the FXMLLoader.
 	 */
 	@FXML
 	public void initialize() {
+		// Init table properties.
+		dateColumn.setCellValueFactory(new PropertyValueFactory<NewDocumentsModel, Date>("documentChdate"));
+		documentColumn.setCellValueFactory(new PropertyValueFactory<NewDocumentsModel, String>("documentName"));
+		courseColumn.setCellValueFactory(new PropertyValueFactory<NewDocumentsModel, String>("courseTitle"));
+		semesterColumn.setCellValueFactory(new PropertyValueFactory<NewDocumentsModel, String>("semesterTitle"));
+
+		// Auto resize.
+		dateColumn.prefWidthProperty().bind(tableView.widthProperty().multiply(0.1));
+		documentColumn.prefWidthProperty().bind(tableView.widthProperty().multiply(0.4));
+		courseColumn.prefWidthProperty().bind(tableView.widthProperty().multiply(0.4));
+		semesterColumn.prefWidthProperty().bind(tableView.widthProperty().multiply(0.1));
+
+		// Table row factory.
+		tableView.setRowFactory(callback -> new NewDocumentsTableRow());
+
+		// Set list items (the index is sorted by document chdate).
+		tableView.setItems(documentList);
+		tableView.setPlaceholder(new Label("Dokumente werden geladen..."));
+
+		// Search as you type.
+		searchField.textProperty().addListener((observable, oldValue, newValue) -> handleSearch(newValue));
+
 		final String rootDir = CONFIG.getRootDirectory();
 		if (rootDir == null || rootDir.isEmpty()) {
 			SimpleAlert.error("Kein Ziel Ordner gewählt.");
 			return;
 		}
 
-		if (!Main.TREE_LOCK.tryLock()) {
-			return;
-		}
+		rootDirectory = Paths.get(rootDir);
 
-		try {
-			final Path rootDirectory = Paths.get(rootDir);
-			final String folderStructure = CONFIG.getFolderStructure();
+		/* Load the recency index in the background, the tree file is only read if the index is outdated. */
+		(new Thread(() -> {
+			if (!AppState.TREE_LOCK.tryLock()) {
+				Platform.runLater(() -> tableView.setPlaceholder(new Label("Synchronisation läuft.")));
+				return;
+			}
 
-			/* Read existing tree. */
-			final SemestersTreeNode rootNode = MAPPER.readerFor(SemestersTreeNode.class)
-					.readValue(Files.newInputStream(Config.openTreeFile()));
+			try {
+				final List<RecentDocument> index = RecentIndex.read(Config.openTreeFile()).documents;
+
+				Platform.runLater(() -> {
+					documents = index;
+					tableView.setPlaceholder(new Label("Keine Dokumente gefunden."));
+					handleMore();
+				});
+
+				/* The search index needs the whole tree, the first page is already visible. */
+				final SearchIndex search = SearchIndex.load(Config.openTreeFile());
+				Platform.runLater(() -> {
+					searchIndex = search;
+					searchField.setDisable(false);
+				});
+
+			} catch (NoSuchFileException | JsonParseException | JsonMappingException e) {
+				Platform.runLater(() -> {
+					tableView.setPlaceholder(new Label("Keine Dokumente gefunden."));
+
+					final ButtonType result = SimpleAlert.confirm("Keine Dokumente gefunden.\nMöchten Sie Ihre Dokumente jetzt synchronisieren?");
+					if (result == ButtonType.OK) {
+						// Redirect to overview.
+						getMain().setView(Main.OVERVIEW);
+
+						// Start the sync.
+						final OverviewController overview = (OverviewController) getMain().getController();
+						overview.handleSync();
+					}
+				});
 
-			/* Build list of documents. */
-			for (final SemesterTreeNode semester : rootNode.semesters) {
-				for (final CourseTreeNode course : semester.courses) {
-					doFolder(semester, course, course.root, PathBuilder.toPath(folderStructure, rootDirectory, semester, course));
-				}
+			} catch (IOException e) {
+				Platform.runLater(() -> SimpleAlert.exception(e));
+
+			} finally {
+				AppState.TREE_LOCK.unlock();
 			}
+		})).start();
+	}
 
-			// Init table properties.
-			dateColumn.setCellValueFactory(new PropertyValueFactory<NewDocumentsModel, Date>("documentChdate"));
-			documentColumn.setCellValueFactory(new PropertyValueFactory<NewDocumentsModel, String>("documentName"));
-			courseColumn.setCellValueFactory(new PropertyValueFactory<NewDocumentsModel, String>("courseTitle"));
-			semesterColumn.setCellValueFactory(new PropertyValueFactory<NewDocumentsModel, String>("semesterTitle"));
-
-			// Auto resize.
-			dateColumn.prefWidthProperty().bind(tableView.widthProperty().multiply(0.1));
-			documentColumn.prefWidthProperty().bind(tableView.widthProperty().multiply(0.4));
-			courseColumn.prefWidthProperty().bind(tableView.widthProperty().multiply(0.4));
-			semesterColumn.prefWidthProperty().bind(tableView.widthProperty().multiply(0.1));
-
-			// Table row factory.
-			tableView.setRowFactory(callback -> new NewDocumentsTableRow());
-
-			// Set list items.
-			tableView.setItems(documentList);
-
-			// Sort columns accordingly to the document chdate.
-			tableView.getSortOrder().add(dateColumn);
-
-		} catch (NoSuchFileException | JsonParseException | JsonMappingException e) {
-			Platform.runLater(() -> {
-				final ButtonType result = SimpleAlert.confirm("Keine Dokumente gefunden.\nMöchten Sie Ihre Dokumente jetzt synchronisieren?");
-				if (result == ButtonType.OK) {
-					// Redirect to overview.
-					getMain().setView(Main.OVERVIEW);
-
-					// Start the sync.
-					final OverviewController overview = (OverviewController) getMain().getController();
-					overview.handleSync();
-				}
-			});
+	/**
+	 * Show the search results or the recent documents, if the query is empty.
+	 * 
+	 * @param query Search query
+	 */
+	private void handleSearch(final String query) {
+		if (searchIndex == null) {
+			return;
+		}
+
+		documentList.clear();
 
-		} catch (IOException e) {
-			SimpleAlert.exception(e);
+		if (query == null || query.trim().isEmpty()) {
+			handleMore();
+			return;
+		}
 
-		} finally {
-			Main.TREE_LOCK.unlock();
+		final List<NewDocumentsModel> results = new ArrayList<NewDocumentsModel>();
+		for (final RecentDocument document : searchIndex.search(query, SEARCH_LIMIT)) {
+			results.add(new NewDocumentsModel(document, rootDirectory));
 		}
+
+		documentList.setAll(results);
+		moreButton.setDisable(true);
 	}
 
 	/**
-	 * Traverse folder structure (recursive).
-	 * 
-	 * @param semesterNode
-	 * @param courseNode
-	 * @param folderNode
-	 * @param parentDirectory
+	 * Add the next page of documents to the table.
 	 */
-	private void doFolder(final SemesterTreeNode semesterNode, final CourseTreeNode courseNode, final DocumentFolderTreeNode folderNode, final Path parentDirectory) {
-		for (final DocumentFolderTreeNode folder : folderNode.folders) {
-			doFolder(semesterNode, courseNode, folder,
-					StudIPApiProvider.DEFAULT_FOLDER.equals(folder.name.trim())
-					? parentDirectory
-					: parentDirectory.resolve(FileBrowser.removeIllegalCharacters(folder.name)));
-		}
+	@FXML
+	public void handleMore() {
+		final int from = documentList.size();
+		final int to = Math.min(from + PAGE_SIZE, documents.size());
 
-		for (final DocumentTreeNode document : folderNode.documents) {
-			documentList.add(new NewDocumentsModel(semesterNode, courseNode, document, parentDirectory.resolve(FileBrowser.removeIllegalCharacters(document.fileName))));
+		final List<NewDocumentsModel> page = new ArrayList<NewDocumentsModel>(to - from);
+		for (final RecentDocument document : documents.subList(from, to)) {
+			page.add(new NewDocumentsModel(document, rootDirectory));
 		}
+
+		documentList.addAll(page);
+		moreButton.setDisable(to >= documents.size());
 	}
 
 	/**
@@ -160,13 +227,25 @@ public class NewDocumentsController extends AbstractController {
 			// Click listener.
 			setOnMouseClicked(event -> {
 				final NewDocumentsModel selectedItem = getItem();
-				if (selectedItem != null && event.getButton() == MouseButton.PRIMARY && event.getClickCount() >= 2) {
+				if (selectedItem == null || event.getButton() != MouseButton.PRIMARY || event.getClickCount() < 2) {
+					return;
+				}
+
+				final Path documentFile = selectedItem.getDocumentFile();
+				if (documentFile != null && Files.exists(documentFile)) {
 					try {
-						FileBrowser.open(selectedItem.getDocumentFile());
+						FileBrowser.open(documentFile);
 
 					} catch (IOException e) {
 						SimpleAlert.exception(e);
 					}
+
+				} else if (documentFile != null && selectedItem.getDocumentId() != null) {
+					final ButtonType result = SimpleAlert.confirm("Das Dokument ist nicht lokal vorhanden "
+							+ "(z.B. wegen der Speicherplatzbegrenzung).\nMöchten Sie es jetzt herunterladen?");
+					if (result == ButtonType.OK) {
+						refetch(selectedItem.getDocumentId(), documentFile);
+					}
 				}
 			});
 
@@ -176,6 +255,36 @@ public class NewDocumentsController extends AbstractController {
 			setTooltip(tooltip);
 		}
 
+		/**
+		 * Download a missing document in the background and open it.
+		 * 
+		 * @param documentId Document id
+		 * @param documentFile Path to document file
+		 */
+		private static void refetch(final String documentId, final Path documentFile) {
+			final String rootDir = CONFIG.getRootDirectory();
+
+			(new Thread(() -> {
+				if (!AppState.TREE_LOCK.tryLock()) {
+					Platform.runLater(() -> SimpleAlert.info("Die Synchronisation läuft, bitte versuchen Sie es später erneut."));
+					return;
+				}
+
+				try (final TreeSync tree = new TreeSync(Paths.get(rootDir))) {
+					tree.refetch(Config.openTreeFile(), documentId);
+					if (Files.exists(documentFile)) {
+						FileBrowser.open(documentFile);
+					}
+
+				} catch (IOException e) {
+					Platform.runLater(() -> SimpleAlert.exception(e));
+
+				} finally {
+					AppState.TREE_LOCK.unlock();
+				}
+			})).start();
+		}
+
 		@Override
 		public void updateItem(final NewDocumentsModel item, final boolean empty) {
 			super.updateItem(item, empty);
@@ -10,8 +10,10 @@ import java.util.logging.Logger;
 import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.databind.JsonMappingException;
 
+import de.uni.hannover.studip.sync.AppState;
 import de.uni.hannover.studip.sync.Main;
 import de.uni.hannover.studip.sync.models.Config;
+import de.uni.hannover.studip.sync.models.History;
 import de.uni.hannover.studip.sync.models.OAuth;
 import de.uni.hannover.studip.sync.models.TreeSync;
 import de.uni.hannover.studip.sync.utils.SimpleAlert;
@@ -56,7 +58,7 @@ public class OverviewController extends AbstractController {
 				return;
 			}
 
-			if (!Main.TREE_LOCK.tryLock()) {
+			if (!AppState.TREE_LOCK.tryLock()) {
 				return;
 			}
 
@@ -67,30 +69,38 @@ public class OverviewController extends AbstractController {
 					syncButton.setText("Updating...");
 				});
 
-				final Path treeFile = Config.openTreeFile();
-				int numberOfRequests;
+				try {
+					final Path treeFile = Config.openTreeFile();
+					int numberOfRequests;
 
-				tree.setProgress(progress, progressLabel);
+					tree.setProgressListener(new FxProgressListener(progress, progressLabel));
 
-				/* Update documents. */
-				try {
-					numberOfRequests = tree.update(treeFile);
+					/* Update documents. */
+					try {
+						numberOfRequests = tree.update(treeFile);
 
-				} catch (NoSuchFileException | JsonParseException | JsonMappingException e) {
-					/* Invalid tree file. */
-					numberOfRequests = tree.build(treeFile);
-				}
+					} catch (NoSuchFileException | JsonParseException | JsonMappingException e) {
+						/* Invalid tree file. */
+						numberOfRequests = tree.build(treeFile);
+					}
 
-				Platform.runLater(() -> {
-					progressLabel.setText("");
-					syncButton.setText("Downloading...");
-				});
+					Platform.runLater(() -> {
+						progressLabel.setText("");
+						syncButton.setText("Downloading...");
+					});
+
+					/* Download documents. */
+					numberOfRequests += tree.sync(treeFile, CONFIG.isDownloadAllSemesters());
+
+					if (LOG.isLoggable(Level.INFO)) {
+						LOG.info("Number of requests: " + numberOfRequests);
+					}
 
-				/* Download documents. */
-				numberOfRequests += tree.sync(treeFile, CONFIG.isDownloadAllSemesters());
+					History.record(tree, "gui", false);
 
-				if (LOG.isLoggable(Level.INFO)) {
-					LOG.info("Number of requests: " + numberOfRequests);
+				} catch (IOException e) {
+					History.record(tree, "gui", true);
+					throw e;
 				}
 
 			} catch (IOException e) {
@@ -104,7 +114,7 @@ public class OverviewController extends AbstractController {
 					getMain().getRootLayoutController().getMenu().setDisable(false);
 				});
 
-				Main.TREE_LOCK.unlock();
+				AppState.TREE_LOCK.unlock();
 			}
 		})).start();
 	}
@@ -2,7 +2,6 @@ package de.uni.hannover.studip.sync.views;
 
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -10,8 +9,10 @@ import java.nio.file.Paths;
 import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.databind.JsonMappingException;
 
+import de.uni.hannover.studip.sync.AppState;
 import de.uni.hannover.studip.sync.Main;
 import de.uni.hannover.studip.sync.models.Config;
+import de.uni.hannover.studip.sync.models.TreeBuilder;
 import de.uni.hannover.studip.sync.utils.Export;
 import de.uni.hannover.studip.sync.utils.FileBrowser;
 import de.uni.hannover.studip.sync.utils.SimpleAlert;
@@ -20,6 +21,7 @@ import javafx.fxml.FXML;
 import javafx.scene.control.ButtonType;
 import javafx.scene.control.MenuBar;
 import javafx.stage.DirectoryChooser;
+import javafx.stage.FileChooser;
 
 /**
  * 
@@ -84,7 +86,7 @@ public class RootLayoutController extends AbstractController {
 	 */
 	@FXML
 	public void handleExit() {
-		Main.exitPending = true;
+		AppState.exitPending = true;
 		Platform.exit();
 	}
 
@@ -119,16 +121,76 @@ public class RootLayoutController extends AbstractController {
 			return;
 		}
 
+		/* Hard links need no extra disk space, but changes of exported files also change the synced files. */
+		final int choice = SimpleAlert.choice("Dateien kopieren oder als Hardlinks exportieren?\n"
+				+ "Hardlinks belegen keinen zusätzlichen Speicherplatz, Änderungen an exportierten Dateien "
+				+ "ändern aber auch die synchronisierten Dateien. Unveränderte Dateien werden übersprungen.",
+				"Kopieren", "Hardlinks");
+		if (choice < 0) {
+			return;
+		}
+
+		final Export.Mode mode = choice == 1 ? Export.Mode.LINK : Export.Mode.COPY;
+		final Path exportDirPath = exportDir.toPath();
+		runExport(() -> Export.exportMat(Paths.get(rootDir), exportDirPath, mode), exportDirPath);
+	}
+
+	/**
+	 * Help -> Export Materialsammlung (ZIP).
+	 */
+	@FXML
+	public void handleExportMatZip() {
+		/* Root directory. */
+		final String rootDir = Config.getInstance().getRootDirectory();
+		if (rootDir == null || rootDir.isEmpty()) {
+			SimpleAlert.error("Kein Ziel Ordner gewählt.");
+			return;
+		}
+
+		/* Zip file. */
+		final FileChooser chooser = new FileChooser();
+		chooser.setTitle("ZIP Archiv speichern");
+		chooser.setInitialDirectory(new File(System.getProperty("user.home")));
+		chooser.setInitialFileName("Materialsammlung.zip");
+		chooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("ZIP Archiv", "*.zip"));
+
+		final File zipFile = chooser.showSaveDialog(getMain().getPrimaryStage());
+		if (zipFile == null) {
+			return;
+		}
+
+		final int choice = SimpleAlert.choice("Welche Semester sollen exportiert werden?", "Aktuelles Semester", "Alle Semester");
+		if (choice < 0) {
+			return;
+		}
+
+		final Path zipFilePath = zipFile.toPath();
+		runExport(() -> Export.exportZip(Paths.get(rootDir), zipFilePath, choice == 1), zipFilePath.getParent());
+	}
+
+	/**
+	 * Export task.
+	 */
+	@FunctionalInterface
+	private interface ExportTask {
+		void run() throws IOException;
+	}
+
+	/**
+	 * Run an export in a background thread and open the export directory afterwards.
+	 * 
+	 * @param task Export task
+	 * @param openDirectory Directory to open
+	 */
+	private void runExport(final ExportTask task, final Path openDirectory) {
 		(new Thread(() -> {
-			if (!Main.TREE_LOCK.tryLock()) {
+			if (!AppState.TREE_LOCK.tryLock()) {
 				return;
 			}
 
 			try {
-				final Path rootDirPath = Paths.get(rootDir);
-				final Path exportDirPath = exportDir.toPath();
-				Export.exportMat(rootDirPath, exportDirPath);
-				FileBrowser.open(exportDirPath);
+				task.run();
+				FileBrowser.open(openDirectory);
 
 			} catch (NoSuchFileException | JsonParseException | JsonMappingException e) {
 				Platform.runLater(() -> {
@@ -147,7 +209,7 @@ public class RootLayoutController extends AbstractController {
 				Platform.runLater(() -> SimpleAlert.exception(e));
 
 			} finally {
-				Main.TREE_LOCK.unlock();
+				AppState.TREE_LOCK.unlock();
 			}
 		})).start();
 	}
@@ -161,16 +223,16 @@ public class RootLayoutController extends AbstractController {
 				+ "nachdem Sie sich in neue Veranstaltungen eingeschrieben haben. "
 				+ "Möchten Sie fortfahren?");
 		if (result == ButtonType.OK) {
-			Main.TREE_LOCK.lock();
+			AppState.TREE_LOCK.lock();
 			try {
 				// Signal the sync routine to rebuild the tree.
-				Files.deleteIfExists(Config.openTreeFile());
+				TreeBuilder.invalidateTree(Config.openTreeFile());
 
 			} catch (IOException e) {
 				SimpleAlert.exception(e);
 
 			} finally {
-				Main.TREE_LOCK.unlock();
+				AppState.TREE_LOCK.unlock();
 			}
 
 			// Redirect to overview.
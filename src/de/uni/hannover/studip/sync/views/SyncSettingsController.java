@@ -16,6 +16,11 @@ public class SyncSettingsController extends AbstractController {
 
 	private static final Config CONFIG = Config.getInstance();
 
+	/**
+	 * Disk budget choices in MB (see SyncSettings.fxml).
+	 */
+	private static final int[] DISK_BUDGETS = {0, 5 * 1024, 10 * 1024, 20 * 1024, 50 * 1024};
+
 	@FXML
 	private ChoiceBox<String> downloadAllSemestersChoicebox;
 
@@ -25,6 +30,9 @@ public class SyncSettingsController extends AbstractController {
 	@FXML
 	private ChoiceBox<String> replaceWhitespacesChoicebox;
 
+	@FXML
+	private ChoiceBox<String> diskBudgetChoicebox;
+
 	/**
 	 * The initialize method is automatically invoked by the FXMLLoader.
 	 */
@@ -33,6 +41,7 @@ public class SyncSettingsController extends AbstractController {
 		downloadAllSemestersChoicebox.getSelectionModel().select(CONFIG.isDownloadAllSemesters() ? 0 : 1);
 		overwriteChoicebox.getSelectionModel().select(CONFIG.isOverwriteFiles() ? 0 : 1);
 		replaceWhitespacesChoicebox.getSelectionModel().select(CONFIG.getReplaceWhitespaces());
+		selectDiskBudget(CONFIG.getDiskBudget());
 
 		downloadAllSemestersChoicebox.getSelectionModel().selectedIndexProperty().addListener(
 			(observableValue, oldValue, newValue) -> {
@@ -63,5 +72,34 @@ public class SyncSettingsController extends AbstractController {
 					replaceWhitespacesChoicebox.getSelectionModel().selectPrevious();
 				}
 			});
+
+		diskBudgetChoicebox.getSelectionModel().selectedIndexProperty().addListener(
+			(observableValue, oldValue, newValue) -> {
+				try {
+					if (newValue.intValue() >= 0 && newValue.intValue() < DISK_BUDGETS.length) {
+						CONFIG.setDiskBudget(DISK_BUDGETS[newValue.intValue()]);
+					}
+
+				} catch (IOException e) {
+					diskBudgetChoicebox.getSelectionModel().selectPrevious();
+				}
+			});
+	}
+
+	/**
+	 * Select the disk budget choice, other values of the config file are added as extra choice.
+	 * 
+	 * @param budget Disk budget in MB
+	 */
+	private void selectDiskBudget(final int budget) {
+		for (int i = 0; i < DISK_BUDGETS.length; i++) {
+			if (DISK_BUDGETS[i] == budget) {
+				diskBudgetChoicebox.getSelectionModel().select(i);
+				return;
+			}
+		}
+
+		diskBudgetChoicebox.getItems().add(budget + " MB");
+		diskBudgetChoicebox.getSelectionModel().select(DISK_BUDGETS.length);
 	}
 }